@@ -0,0 +1,155 @@
+package com.fayemanalo.smartpark.benchmark;
+
+import com.fayemanalo.smartpark.SmartparkApplication;
+import com.fayemanalo.smartpark.dto.CheckInDto;
+import com.fayemanalo.smartpark.dto.CheckOutDto;
+import com.fayemanalo.smartpark.dto.ParkingLotDto;
+import com.fayemanalo.smartpark.dto.VehicleDto;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.service.LotOccupancyTracker;
+import com.fayemanalo.smartpark.service.ParkingLotService;
+import com.fayemanalo.smartpark.service.ParkingRecordService;
+import com.fayemanalo.smartpark.service.VehicleService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 64 gates each checking one vehicle in and out of one lot with 48 spaces, in each concurrency mode, through
+ * the transactional service against in-memory H2.
+ *
+ * Besides the throughput, the full and busy (409) rejections are counted per second, and every iteration fails
+ * if the lot ever held more vehicles than its capacity, or if the database disagrees with the vehicles parked.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(ConcurrencyModeBenchmark.GATES)
+public class ConcurrencyModeBenchmark {
+
+    static final int GATES = 64;
+    private static final int CAPACITY = GATES * 3 / 4;
+    private static final String LOT_ID = "LOT1";
+
+    @Param({"in-memory", "optimistic", "pessimistic", "atomic-update"})
+    public String mode;
+
+    private ConfigurableApplicationContext context;
+    private ParkingRecordService parkingRecordService;
+    private LotOccupancyTracker lotOccupancyTracker;
+    private JdbcTemplate jdbcTemplate;
+    private final AtomicInteger nextGate = new AtomicInteger();
+
+    // Counted up after a check-in commits and down before a check-out starts, so never above the real occupancy
+    private final AtomicInteger parked = new AtomicInteger();
+    private final AtomicInteger maxParked = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(SmartparkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:concurrency;LOCK_TIMEOUT=10000",
+                        "spring.datasource.hikari.maximum-pool-size=" + GATES,
+                        "spring.h2.console.enabled=false",
+                        "smartpark.occupancy.concurrency-mode=" + mode,
+                        "logging.level.root=WARN")
+                .run();
+
+        context.getBean(ParkingLotService.class)
+                .save(new ParkingLotDto(LOT_ID, "Main Street", null, null, CAPACITY, 0, null));
+
+        VehicleService vehicleService = context.getBean(VehicleService.class);
+        for (int i = 0; i < GATES; i++) {
+            vehicleService.save(new VehicleDto(plate(i), VehicleType.CAR, "John Doe"));
+        }
+
+        parkingRecordService = context.getBean(ParkingRecordService.class);
+        lotOccupancyTracker = context.getBean(LotOccupancyTracker.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkOccupancy() {
+        // Without a guard the counters are written back asynchronously
+        lotOccupancyTracker.flush();
+        int persisted = jdbcTemplate.queryForObject(
+                "select occupied_spaces from parking_lot where lot_id = ?", Integer.class, LOT_ID);
+
+        if (maxParked.get() > CAPACITY) {
+            throw new IllegalStateException(maxParked.get() + " vehicles parked in " + CAPACITY + " spaces");
+        }
+        if (persisted != parked.get() || lotOccupancyTracker.getOccupiedSpaces(LOT_ID) != parked.get()) {
+            throw new IllegalStateException("Occupancy " + persisted + " in the database and "
+                    + lotOccupancyTracker.getOccupiedSpaces(LOT_ID) + " in memory, but " + parked.get() + " parked");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void checkInOrOut(Gate gate) {
+        if (gate.parked) {
+            parked.decrementAndGet();
+            parkingRecordService.checkOut(new CheckOutDto(gate.plate, LOT_ID));
+            gate.parked = false;
+            gate.checkOuts++;
+            return;
+        }
+
+        try {
+            parkingRecordService.checkIn(new CheckInDto(gate.plate, LOT_ID));
+        } catch (ResponseStatusException ex) {
+            if (ex.getStatusCode() == HttpStatus.CONFLICT) {
+                gate.busy++;
+            } else {
+                gate.full++;
+            }
+            return;
+        }
+        maxParked.accumulateAndGet(parked.incrementAndGet(), Math::max);
+        gate.parked = true;
+        gate.checkIns++;
+    }
+
+    private static String plate(int i) {
+        return "GATE-" + i;
+    }
+
+    // The vehicle of one gate thread, and what happened to it
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Gate {
+
+        public long checkIns;
+        public long checkOuts;
+        public long full;
+        public long busy;
+
+        private String plate;
+        private boolean parked;
+
+        @Setup
+        public void setUp(ConcurrencyModeBenchmark benchmark) {
+            plate = plate(benchmark.nextGate.getAndIncrement());
+        }
+
+        @Setup(Level.Iteration)
+        public void resetCounters() {
+            checkIns = 0;
+            checkOuts = 0;
+            full = 0;
+            busy = 0;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.fayemanalo.smartpark.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fayemanalo.smartpark.dto.ParkingRecordDto;
+import com.fayemanalo.smartpark.dto.VehiclesInLotDto;
+import com.fayemanalo.smartpark.model.VehicleType;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of serializing the response DTOs, including their {@code yyyy-MM-dd hh:mm:ss a E} date format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonBenchmark {
+
+    // Same modules as the application's ObjectMapper (JavaTimeModule for LocalDateTime)
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    private ParkingRecordDto parkingRecord;
+    private VehiclesInLotDto vehicleInLot;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime checkIn = LocalDateTime.of(2025, 11, 8, 21, 22, 46);
+        parkingRecord = new ParkingRecordDto("ABC-123", "LOT1", checkIn, checkIn.plusHours(2), new BigDecimal("5.00"));
+        vehicleInLot = new VehiclesInLotDto("ABC-123", VehicleType.CAR, "John Doe", checkIn);
+    }
+
+    @Benchmark
+    public byte[] parkingRecordDto() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(parkingRecord);
+    }
+
+    @Benchmark
+    public byte[] vehiclesInLotDto() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(vehicleInLot);
+    }
+}
@@ -0,0 +1,85 @@
+package com.fayemanalo.smartpark.benchmark;
+
+import com.fayemanalo.smartpark.dto.ParkingLotDto;
+import com.fayemanalo.smartpark.dto.ParkingRecordDto;
+import com.fayemanalo.smartpark.dto.VehicleDto;
+import com.fayemanalo.smartpark.mapper.ParkingLotMapper;
+import com.fayemanalo.smartpark.mapper.ParkingRecordMapper;
+import com.fayemanalo.smartpark.mapper.VehicleMapper;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.ParkingRecord;
+import com.fayemanalo.smartpark.model.Vehicle;
+import com.fayemanalo.smartpark.model.VehicleType;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the entity/DTO mappers and of parsing a vehicle type, all of which run on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MapperBenchmark {
+
+    private final ParkingRecordMapper parkingRecordMapper = new ParkingRecordMapper();
+    private final VehicleMapper vehicleMapper = new VehicleMapper();
+    private final ParkingLotMapper parkingLotMapper = new ParkingLotMapper();
+
+    private ParkingRecord parkingRecord;
+    private VehicleDto vehicleDto;
+    private ParkingLotDto parkingLotDto;
+
+    @Setup
+    public void setUp() {
+        Vehicle vehicle = Vehicle.builder()
+                .licensePlate("ABC-123")
+                .type(VehicleType.CAR)
+                .ownerName("John Doe")
+                .build();
+        ParkingLot lot = ParkingLot.builder()
+                .lotId("LOT1")
+                .location("Main Street")
+                .capacity(50)
+                .occupiedSpaces(10)
+                .build();
+        parkingRecord = ParkingRecord.builder()
+                .id(1L)
+                .vehicle(vehicle)
+                .parkingLot(lot)
+                .checkInTime(LocalDateTime.of(2025, 11, 8, 21, 22, 46))
+                .build();
+
+        vehicleDto = vehicleMapper.toDto(vehicle);
+        parkingLotDto = parkingLotMapper.toDto(lot);
+    }
+
+    @Benchmark
+    public ParkingRecordDto parkingRecordToDto() {
+        return parkingRecordMapper.toDto(parkingRecord);
+    }
+
+    @Benchmark
+    public VehicleDto vehicleRoundTrip() {
+        return vehicleMapper.toDto(vehicleMapper.toEntity(vehicleDto));
+    }
+
+    @Benchmark
+    public ParkingLotDto parkingLotRoundTrip() {
+        return parkingLotMapper.toDto(parkingLotMapper.toEntity(parkingLotDto));
+    }
+
+    @Benchmark
+    public VehicleType vehicleTypeFrom(VehicleTypeInput input) {
+        return VehicleType.from(input.value);
+    }
+
+    // Separate state, so only vehicleTypeFrom is run once per input
+    @State(Scope.Benchmark)
+    public static class VehicleTypeInput {
+
+        @Param({"car", "MOTORCYCLE", "Truck"})
+        private String value;
+    }
+}
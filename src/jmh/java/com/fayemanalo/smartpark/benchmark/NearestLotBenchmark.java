@@ -0,0 +1,73 @@
+package com.fayemanalo.smartpark.benchmark;
+
+import com.fayemanalo.smartpark.dto.NearestLotDto;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.service.LotSpatialIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the nearest-lot search over 50,000 lots: 40,000 spread over a country-sized region and 10,000
+ * packed into one city, searched from random positions in the city. One lot in three is full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NearestLotBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    private LotSpatialIndex index;
+    private double[] latitudes;
+    private double[] longitudes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        // Only the in-memory search is measured
+        index = new LotSpatialIndex(null, 0.05);
+        Random random = new Random(42);
+        for (int i = 0; i < 40_000; i++) {
+            index.add(lot(i, 5 + random.nextDouble() * 14, 117 + random.nextDouble() * 10));
+        }
+        for (int i = 40_000; i < 50_000; i++) {
+            index.add(lot(i, 14.4 + random.nextDouble() * 0.3, 120.9 + random.nextDouble() * 0.2));
+        }
+
+        latitudes = new double[QUERIES];
+        longitudes = new double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            latitudes[i] = 14.4 + random.nextDouble() * 0.3;
+            longitudes[i] = 120.9 + random.nextDouble() * 0.2;
+        }
+    }
+
+    private static ParkingLot lot(int i, double latitude, double longitude) {
+        return ParkingLot.builder()
+                .lotId("LOT" + i)
+                .location("Street " + i)
+                .latitude(latitude)
+                .longitude(longitude)
+                .capacity(50)
+                .occupiedSpaces(i % 3 == 0 ? 50 : 10)
+                .build();
+    }
+
+    @Benchmark
+    public List<NearestLotDto> findNearest5() {
+        int query = next++ & (QUERIES - 1);
+        return index.findNearest(latitudes[query], longitudes[query], 5, 50,
+                lot -> lot.capacity() - lot.occupiedSpaces());
+    }
+
+    @Benchmark
+    public List<NearestLotDto> findNearest5InTheCountryside() {
+        int query = next++ & (QUERIES - 1);
+        // Same positions moved out of the city, where lots are about 4 km apart
+        return index.findNearest(latitudes[query] - 5, longitudes[query] + 3, 5, 50,
+                lot -> lot.capacity() - lot.occupiedSpaces());
+    }
+}
@@ -0,0 +1,72 @@
+package com.fayemanalo.smartpark.benchmark;
+
+import com.fayemanalo.smartpark.SmartparkApplication;
+import com.fayemanalo.smartpark.dto.CheckInDto;
+import com.fayemanalo.smartpark.dto.CheckOutDto;
+import com.fayemanalo.smartpark.dto.ParkingLotDto;
+import com.fayemanalo.smartpark.dto.ParkingRecordDto;
+import com.fayemanalo.smartpark.dto.VehicleDto;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.service.ParkingLotService;
+import com.fayemanalo.smartpark.service.ParkingRecordService;
+import com.fayemanalo.smartpark.service.VehicleService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of a check-in followed by a check-out, through the transactional service proxy,
+ * against an in-memory H2 database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParkingRecordServiceBenchmark {
+
+    private static final int VEHICLES = 1000;
+    private static final String LOT_ID = "LOT1";
+
+    private ConfigurableApplicationContext context;
+    private ParkingRecordService parkingRecordService;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(SmartparkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark",
+                        "spring.h2.console.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+
+        context.getBean(ParkingLotService.class)
+                .save(new ParkingLotDto(LOT_ID, "Main Street", null, null, VEHICLES, 0, null));
+
+        VehicleService vehicleService = context.getBean(VehicleService.class);
+        for (int i = 0; i < VEHICLES; i++) {
+            vehicleService.save(new VehicleDto(plate(i), VehicleType.CAR, "John Doe"));
+        }
+
+        parkingRecordService = context.getBean(ParkingRecordService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ParkingRecordDto checkInCheckOut() {
+        String plate = plate(next++ % VEHICLES);
+        parkingRecordService.checkIn(new CheckInDto(plate, LOT_ID));
+        return parkingRecordService.checkOut(new CheckOutDto(plate, LOT_ID));
+    }
+
+    private static String plate(int i) {
+        return "BENCH-" + i;
+    }
+}
@@ -0,0 +1,80 @@
+package com.fayemanalo.smartpark.benchmark;
+
+import com.fayemanalo.smartpark.model.ClosedSession;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.service.BillingRunService;
+import com.fayemanalo.smartpark.service.Tariff;
+import com.fayemanalo.smartpark.service.TariffProperties;
+import com.fayemanalo.smartpark.service.TariffService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records rated per second: one stay through the tariff lookup, and a chunk of closed records as rated by a
+ * billing run, sequentially and in parallel. The database reads and writes of a billing run are not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TariffBenchmark {
+
+    private static final int RECORDS = 100_000;
+
+    private TariffService tariffService;
+    private BillingRunService billingRunService;
+    private List<ClosedSession> sessions;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        tariffService = new TariffService(new TariffProperties(List.of(
+                new TariffProperties.Entry(null, null, "00:00=1.00,07:00=2.50,19:00=1.50", new BigDecimal("20.00")),
+                new TariffProperties.Entry(null, VehicleType.TRUCK, "00:00=2.00,07:00=5.00,19:00=3.00", new BigDecimal("40.00")),
+                new TariffProperties.Entry("LOT3", VehicleType.MOTORCYCLE, "00:00=0.50", null))));
+        // Only the tariff lookup and rating are measured
+        billingRunService = new BillingRunService(null, null, tariffService, null, null, RECORDS);
+
+        // Stays of up to three days, checked in at any minute of a month
+        Random random = new Random(42);
+        VehicleType[] types = VehicleType.values();
+        LocalDateTime start = LocalDateTime.of(2025, 11, 1, 0, 0);
+        sessions = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            LocalDateTime checkIn = start.plusSeconds(random.nextInt(30 * 24 * 3600));
+            LocalDateTime checkOut = checkIn.plusSeconds(60 + random.nextInt(3 * 24 * 3600));
+            sessions.add(new ClosedSession((long) i, "LOT" + random.nextInt(5), types[random.nextInt(types.length)],
+                    checkIn, checkOut));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal calculateFee() {
+        ClosedSession session = sessions.get(next++ % RECORDS);
+        return tariffService.calculateFee(session.lotId(), session.vehicleType(),
+                session.checkInTime(), session.checkOutTime()).orElse(null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long[] rateSequentially() {
+        long[] fees = new long[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            ClosedSession session = sessions.get(i);
+            Tariff tariff = tariffService.findTariff(session.lotId(), session.vehicleType()).orElseThrow();
+            fees[i] = tariff.feeInCents(session.checkInTime(), session.checkOutTime());
+        }
+        return fees;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long[] rateInParallel() {
+        return billingRunService.rate(sessions);
+    }
+}
@@ -0,0 +1,78 @@
+package com.fayemanalo.smartpark.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and error count of one endpoint.
+ *
+ * Latencies are measured from the time a request was scheduled to be sent, not from when it actually
+ * was, so a stalled server shows up in the percentiles instead of silently lowering the request rate.
+ */
+final class EndpointStats {
+
+    // Up to one minute, with three significant digits
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String name;
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+    private final LongAdder errors = new LongAdder();
+    private volatile boolean recording;
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    void record(long latencyNanos, boolean success) {
+        if (!recording) {
+            return;
+        }
+        recorder.recordValue(Math.min(latencyNanos, HIGHEST_TRACKABLE_NANOS));
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    // Discards everything recorded during warm-up
+    void startRecording() {
+        recorder.reset();
+        errors.reset();
+        recording = true;
+    }
+
+    void stopRecording() {
+        recording = false;
+    }
+
+    void writeSummary(PrintStream out, Histogram histogram, double seconds) {
+        long count = histogram.getTotalCount();
+        long errorCount = errors.sum();
+        out.printf("%-9s %8d %9.1f %7d %6.2f%% %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                name,
+                count,
+                count / seconds,
+                errorCount,
+                count == 0 ? 0.0 : 100.0 * errorCount / count,
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    String name() {
+        return name;
+    }
+
+    Histogram snapshot() {
+        return recorder.getIntervalHistogram();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
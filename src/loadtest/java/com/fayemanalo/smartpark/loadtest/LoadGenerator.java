@@ -0,0 +1,302 @@
+package com.fayemanalo.smartpark.loadtest;
+
+import com.fayemanalo.smartpark.loadtest.LoadTestConfig.Operation;
+import org.HdrHistogram.Histogram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+/**
+ * Open-loop HTTP load generator for a locally started SmartPark instance.
+ *
+ * Registers the configured number of lots and vehicles, then sends a weighted mix of check-in, check-out,
+ * lot status and vehicles-in-lot requests at a fixed rate, independent of how fast the server answers.
+ * After a warm-up, per-endpoint latency histograms and error rates are recorded and written to a report.
+ *
+ * Usage: {@code mvn -Ploadtest verify -Dloadtest.args="rate=500 duration=60s"}
+ */
+public final class LoadGenerator {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final int REGISTRATION_BATCH = 100;
+
+    private final LoadTestConfig config;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    // Unique per run, so repeated runs against the same instance do not collide
+    private final String runId = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX).toUpperCase();
+
+    private final List<String> lotIds = new ArrayList<>();
+    private final Queue<String> idleVehicles = new ConcurrentLinkedQueue<>();
+    private final Queue<ParkedVehicle> parkedVehicles = new ConcurrentLinkedQueue<>();
+    private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    public LoadGenerator(LoadTestConfig config) {
+        this.config = config;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new EndpointStats(operation.name().toLowerCase()));
+        }
+
+        operations = config.mix().keySet().toArray(Operation[]::new);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += config.mix().get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        new LoadGenerator(LoadTestConfig.parse(args)).run();
+    }
+
+    public void run() throws IOException {
+        System.out.printf("Registering %d lots and %d vehicles at %s%n", config.lots(), config.vehicles(), config.baseUrl());
+        register();
+
+        System.out.printf("Sending %d requests/s for %s (after %s warm-up)%n", config.rate(), config.duration(), config.warmup());
+        Instant startedAt = Instant.now();
+        drive();
+        awaitInFlight();
+        stats.values().forEach(EndpointStats::stopRecording);
+
+        String report = report(startedAt);
+        Files.createDirectories(config.report().toAbsolutePath().getParent());
+        Files.writeString(config.report(), report);
+        System.out.print(report);
+        System.out.println("Report written to " + config.report().toAbsolutePath());
+    }
+
+    private void register() {
+        int capacity = config.vehicles();
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (int i = 0; i < config.lots(); i++) {
+            String lotId = "LT-" + runId + "-" + i;
+            lotIds.add(lotId);
+            pending.add(post("/api/parking", """
+                    {"lotId":"%s","location":"Load test lot %d","capacity":%d,"occupiedSpaces":0}"""
+                    .formatted(lotId, i, capacity)));
+            awaitBatch(pending);
+        }
+        for (int i = 0; i < config.vehicles(); i++) {
+            String plate = "LT-" + runId + "-" + i;
+            idleVehicles.add(plate);
+            pending.add(post("/api/vehicles", """
+                    {"licensePlate":"%s","type":"CAR","ownerName":"Load Test"}"""
+                    .formatted(plate)));
+            awaitBatch(pending);
+        }
+        pending.forEach(CompletableFuture::join);
+    }
+
+    private void awaitBatch(List<CompletableFuture<?>> pending) {
+        if (pending.size() >= REGISTRATION_BATCH) {
+            pending.forEach(CompletableFuture::join);
+            pending.clear();
+        }
+    }
+
+    // Sends requests on a fixed schedule; a request is never delayed by the response to an earlier one
+    private void drive() {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / config.rate();
+        long start = System.nanoTime();
+        long recordFrom = start + config.warmup().toNanos();
+        long end = recordFrom + config.duration().toNanos();
+        boolean recording = false;
+
+        for (long i = 0; ; i++) {
+            long scheduledAt = start + i * intervalNanos;
+            if (scheduledAt >= end) {
+                break;
+            }
+            if (!recording && scheduledAt >= recordFrom) {
+                stats.values().forEach(EndpointStats::startRecording);
+                recording = true;
+            }
+
+            long wait = scheduledAt - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            dispatch(pickOperation(), scheduledAt);
+        }
+    }
+
+    private Operation pickOperation() {
+        int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private void dispatch(Operation operation, long scheduledAt) {
+        switch (operation) {
+            case CHECKIN -> {
+                String plate = idleVehicles.poll();
+                if (plate == null) {
+                    // Every vehicle is parked (or in flight); keep the rate by checking one out instead
+                    dispatchCheckOut(scheduledAt, parkedVehicles.poll());
+                } else {
+                    dispatchCheckIn(scheduledAt, plate);
+                }
+            }
+            case CHECKOUT -> {
+                ParkedVehicle parked = parkedVehicles.poll();
+                if (parked == null) {
+                    dispatchCheckIn(scheduledAt, idleVehicles.poll());
+                } else {
+                    dispatchCheckOut(scheduledAt, parked);
+                }
+            }
+            case STATUS -> send(Operation.STATUS, get("/api/parking/" + randomLot() + "/status"), scheduledAt, status -> { });
+            case VEHICLES -> send(Operation.VEHICLES, get("/api/parking/" + randomLot() + "/vehicles?limit=100"), scheduledAt, status -> { });
+        }
+    }
+
+    private void dispatchCheckIn(long scheduledAt, String plate) {
+        if (plate == null) {
+            dispatch(Operation.STATUS, scheduledAt);
+            return;
+        }
+        String lotId = randomLot();
+        send(Operation.CHECKIN, postRequest("/api/parkingrecords/checkin", checkBody(plate, lotId)), scheduledAt, status -> {
+            if (isSuccess(status)) {
+                parkedVehicles.add(new ParkedVehicle(plate, lotId));
+            } else {
+                idleVehicles.add(plate);
+            }
+        });
+    }
+
+    private void dispatchCheckOut(long scheduledAt, ParkedVehicle parked) {
+        if (parked == null) {
+            dispatch(Operation.STATUS, scheduledAt);
+            return;
+        }
+        send(Operation.CHECKOUT, postRequest("/api/parkingrecords/checkout", checkBody(parked.plate(), parked.lotId())), scheduledAt, status -> {
+            if (isSuccess(status)) {
+                idleVehicles.add(parked.plate());
+            } else {
+                parkedVehicles.add(parked);
+            }
+        });
+    }
+
+    private void send(Operation operation, HttpRequest request, long scheduledAt, IntConsumer onStatus) {
+        inFlight.incrementAndGet();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, ex) -> {
+                    int status = response != null ? response.statusCode() : -1;
+                    stats.get(operation).record(System.nanoTime() - scheduledAt, isSuccess(status));
+                    onStatus.accept(status);
+                    inFlight.decrementAndGet();
+                    return null;
+                });
+    }
+
+    private void awaitInFlight() {
+        long deadline = System.nanoTime() + REQUEST_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    private String report(Instant startedAt) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+        double seconds = config.duration().toMillis() / 1000.0;
+
+        out.printf("SmartPark load test%n");
+        out.printf("started:  %s%n", startedAt);
+        out.printf("target:   %s%n", config.baseUrl());
+        out.printf("lots:     %d, vehicles: %d%n", config.lots(), config.vehicles());
+        out.printf("rate:     %d requests/s, warm-up %s, measured %s%n", config.rate(), config.warmup(), config.duration());
+        out.printf("mix:      %s%n%n", config.mix());
+
+        Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+        stats.forEach((operation, endpoint) -> histograms.put(operation, endpoint.snapshot()));
+
+        out.printf("%-9s %8s %9s %7s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "req/s", "errors", "err%", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        stats.forEach((operation, endpoint) -> endpoint.writeSummary(out, histograms.get(operation), seconds));
+
+        stats.forEach((operation, endpoint) -> {
+            Histogram histogram = histograms.get(operation);
+            if (histogram.getTotalCount() > 0) {
+                out.printf("%n%s latency distribution (ms)%n", endpoint.name());
+                histogram.outputPercentileDistribution(out, 5, 1_000_000.0);
+            }
+        });
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    private String randomLot() {
+        return lotIds.get(ThreadLocalRandom.current().nextInt(lotIds.size()));
+    }
+
+    private CompletableFuture<HttpResponse<Void>> post(String path, String body) {
+        return client.sendAsync(postRequest(path, body), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private HttpRequest postRequest(String path, String body) {
+        return HttpRequest.newBuilder(uri(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+    }
+
+    private URI uri(String path) {
+        return config.baseUrl().resolve(path);
+    }
+
+    private static String checkBody(String plate, String lotId) {
+        return """
+                {"licensePlate":"%s","lotId":"%s"}""".formatted(plate, lotId);
+    }
+
+    private static boolean isSuccess(int status) {
+        return status >= 200 && status < 300;
+    }
+
+    private record ParkedVehicle(String plate, String lotId) {
+    }
+}
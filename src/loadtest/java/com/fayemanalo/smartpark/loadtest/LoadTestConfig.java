@@ -0,0 +1,86 @@
+package com.fayemanalo.smartpark.loadtest;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, parsed from {@code key=value} command-line arguments.
+ *
+ * @param baseUrl  root URL of the running application
+ * @param lots     number of parking lots to register
+ * @param vehicles number of vehicles to register
+ * @param rate     target request rate, in requests per second
+ * @param warmup   time to run before latencies are recorded
+ * @param duration time to record latencies for
+ * @param mix      relative weight of each operation
+ * @param report   file the report is written to
+ */
+public record LoadTestConfig(
+        URI baseUrl,
+        int lots,
+        int vehicles,
+        int rate,
+        Duration warmup,
+        Duration duration,
+        Map<Operation, Integer> mix,
+        Path report
+) {
+
+    public static LoadTestConfig parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            }
+            values.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        return new LoadTestConfig(
+                URI.create(values.getOrDefault("baseUrl", "http://localhost:8080")),
+                Integer.parseInt(values.getOrDefault("lots", "10")),
+                Integer.parseInt(values.getOrDefault("vehicles", "1000")),
+                Integer.parseInt(values.getOrDefault("rate", "200")),
+                parseDuration(values.getOrDefault("warmup", "10s")),
+                parseDuration(values.getOrDefault("duration", "60s")),
+                parseMix(values.getOrDefault("mix", "checkin:40,checkout:40,status:15,vehicles:5")),
+                Path.of(values.getOrDefault("report", "target/loadtest-report.txt"))
+        );
+    }
+
+    // "90s", "5m" or an ISO-8601 duration such as "PT1M30S"
+    private static Duration parseDuration(String value) {
+        if (value.startsWith("P") || value.startsWith("p")) {
+            return Duration.parse(value);
+        }
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            default -> throw new IllegalArgumentException("Invalid duration: " + value);
+        };
+    }
+
+    // "checkin:40,checkout:40,status:15,vehicles:5"
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split(":");
+            mix.put(Operation.valueOf(parts[0].trim().toUpperCase().replace('-', '_')),
+                    Integer.parseInt(parts[1].trim()));
+        }
+        return mix;
+    }
+
+    public enum Operation {
+        CHECKIN,
+        CHECKOUT,
+        STATUS,
+        VEHICLES
+    }
+}
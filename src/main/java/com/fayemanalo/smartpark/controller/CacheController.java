@@ -0,0 +1,36 @@
+package com.fayemanalo.smartpark.controller;
+
+import com.fayemanalo.smartpark.dto.CacheStatsDto;
+import com.fayemanalo.smartpark.service.IdempotencyCache;
+import com.fayemanalo.smartpark.service.ReferenceDataCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * REST controller exposing statistics of the vehicle, parking lot and idempotency key caches.
+ */
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+
+    private final ReferenceDataCache referenceDataCache;
+    private final IdempotencyCache idempotencyCache;
+
+    public CacheController(ReferenceDataCache referenceDataCache, IdempotencyCache idempotencyCache) {
+        this.referenceDataCache = referenceDataCache;
+        this.idempotencyCache = idempotencyCache;
+    }
+
+    // Get hit/miss/eviction statistics of each cache
+    @GetMapping("/stats")
+    public ResponseEntity<List<CacheStatsDto>> getStats() {
+        List<CacheStatsDto> stats = new ArrayList<>(referenceDataCache.getStats());
+        stats.add(idempotencyCache.getStats());
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -1,30 +1,68 @@
 package com.fayemanalo.smartpark.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fayemanalo.smartpark.dto.LotAvailabilityDto;
+import com.fayemanalo.smartpark.dto.LotHourlyStatsDto;
+import com.fayemanalo.smartpark.dto.NearestLotDto;
 import com.fayemanalo.smartpark.dto.ParkingLotDto;
 import com.fayemanalo.smartpark.dto.ParkingLotStatusDto;
 import com.fayemanalo.smartpark.dto.VehiclesInLotDto;
+import com.fayemanalo.smartpark.dto.VehiclesInLotPageDto;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.service.OccupancyRollupService;
+import com.fayemanalo.smartpark.service.OccupancyStreamService;
 import com.fayemanalo.smartpark.service.ParkingLotService;
+import com.fayemanalo.smartpark.service.ReservationService;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.*;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
  * REST controller for managing parking lots.
  *
- * Provides endpoints to register a parking lot, check its status,
- * and list vehicles currently parked in a lot.
+ * Provides endpoints to register a parking lot, check (or subscribe to) its status,
+ * find the nearest lots with space, list (or stream) vehicles currently parked in a lot,
+ * report its hourly occupancy, and tell how many of its spaces can still be booked for a time range.
  */
 @RestController
 @RequestMapping("/api/parking")
 public class ParkingLotController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final ParkingLotService parkingLotService;
+    private final OccupancyStreamService occupancyStreamService;
+    private final OccupancyRollupService occupancyRollupService;
+    private final ReservationService reservationService;
+    private final ObjectMapper objectMapper;
 
-    public ParkingLotController(ParkingLotService parkingLotService) {
+    public ParkingLotController(ParkingLotService parkingLotService, OccupancyStreamService occupancyStreamService,
+                                OccupancyRollupService occupancyRollupService, ReservationService reservationService,
+                                ObjectMapper objectMapper) {
         this.parkingLotService = parkingLotService;
+        this.occupancyStreamService = occupancyStreamService;
+        this.occupancyRollupService = occupancyRollupService;
+        this.reservationService = reservationService;
+        this.objectMapper = objectMapper;
     }
 
     // Register a new parking lot
@@ -33,16 +71,125 @@ public class ParkingLotController {
         return ResponseEntity.status(HttpStatus.CREATED).body(parkingLotService.save(parkingLotDto));
     }
 
-    // Get the status of a parking lot
+    // Get the status of a parking lot.
+    // Answers 304 Not Modified when If-None-Match carries the current ETag.
     @GetMapping("/{lotId}/status")
-    public ResponseEntity<ParkingLotStatusDto> getStatus(@PathVariable String lotId) {
-        return ResponseEntity.ok(parkingLotService.getStatus(lotId));
+    public ResponseEntity<ParkingLotStatusDto> getStatus(
+            @PathVariable String lotId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        String eTag = parkingLotService.getStatusETag(lotId);
+        if (matchesETag(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .body(parkingLotService.getStatus(lotId));
+    }
+
+    // Find the k nearest parking lots with space (for a vehicle type, if given)
+    @GetMapping("/nearest")
+    public ResponseEntity<List<NearestLotDto>> findNearest(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(required = false) VehicleType type,
+            @RequestParam(defaultValue = "" + ParkingLotService.DEFAULT_NEAREST) int k) {
+        return ResponseEntity.ok(parkingLotService.findNearest(lat, lon, type, k));
+    }
+
+    // Get the status of several parking lots in one request (?ids=LOT1,LOT2), or of every lot when no IDs are given
+    @GetMapping("/status")
+    public ResponseEntity<List<ParkingLotStatusDto>> getStatuses(@RequestParam(required = false) List<String> ids) {
+        return ResponseEntity.ok(parkingLotService.getStatuses(ids));
+    }
+
+    // Stream status changes of a parking lot as Server-Sent Events (at most one event per interval)
+    @GetMapping(value = "/{lotId}/status/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStatus(@PathVariable String lotId) {
+        return occupancyStreamService.subscribe(lotId);
     }
 
-    // Get a list of vehicles currently parked in a specific lot.
+    // Stream status changes of every parking lot as Server-Sent Events
+    @GetMapping(value = "/status/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAllStatuses() {
+        return occupancyStreamService.subscribeAll();
+    }
+
+    // Get a page of vehicles currently parked in a specific lot, ordered by check-in time.
+    // The cursor for the next page is returned in the X-Next-Cursor header.
     @GetMapping("/{lotId}/vehicles")
-    public ResponseEntity<List<VehiclesInLotDto>> getVehiclesInLot(@PathVariable String lotId) {
-        return ResponseEntity.ok(parkingLotService.getVehiclesInLot(lotId));
+    public ResponseEntity<List<VehiclesInLotDto>> getVehiclesInLot(
+            @PathVariable String lotId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + ParkingLotService.DEFAULT_PAGE_SIZE) int limit) {
+
+        VehiclesInLotPageDto page = parkingLotService.getVehiclesInLot(lotId, after, limit);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.vehicles());
+    }
+
+    // Stream every vehicle currently parked in a specific lot as newline-delimited JSON (Accept: application/x-ndjson)
+    @GetMapping(value = "/{lotId}/vehicles", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamVehiclesInLot(@PathVariable String lotId) {
+        // Fail with 404 before the response is committed
+        parkingLotService.checkLotExists(lotId);
+
+        StreamingResponseBody body = out -> parkingLotService.streamVehiclesInLot(lotId, vehicle -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(vehicle));
+                out.write('\n');
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // Get hourly occupancy statistics of a parking lot for [from, to) (ISO date-times, default: the last 24 hours)
+    @GetMapping("/{lotId}/stats")
+    public ResponseEntity<List<LotHourlyStatsDto>> getHourlyStats(
+            @PathVariable String lotId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ResponseEntity.ok(occupancyRollupService.getHourlyStats(lotId, from, to));
+    }
+
+    // Get the spaces of a parking lot that can still be booked throughout [from, to) (ISO date-times, default: now)
+    @GetMapping("/{lotId}/availability")
+    public ResponseEntity<LotAvailabilityDto> getAvailability(
+            @PathVariable String lotId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ResponseEntity.ok(reservationService.getAvailability(lotId, from, to));
+    }
+
+    // If-None-Match uses weak comparison and may list several tags or be "*"
+    private static boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
 }
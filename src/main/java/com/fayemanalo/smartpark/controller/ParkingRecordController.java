@@ -1,41 +1,82 @@
 package com.fayemanalo.smartpark.controller;
 
+import com.fayemanalo.smartpark.dto.BatchRequestDto;
+import com.fayemanalo.smartpark.dto.BatchResultDto;
+import com.fayemanalo.smartpark.dto.BillingRunDto;
 import com.fayemanalo.smartpark.dto.CheckInDto;
 import com.fayemanalo.smartpark.dto.CheckOutDto;
 import com.fayemanalo.smartpark.dto.ParkingRecordDto;
+import com.fayemanalo.smartpark.service.BillingRunService;
+import com.fayemanalo.smartpark.service.IdempotencyCache;
 import com.fayemanalo.smartpark.service.ParkingRecordService;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 /**
  * REST controller for managing parking records.
  *
- * Provides endpoints to check-in and check-out vehicles in parking lots.
+ * Provides endpoints to check-in and check-out vehicles in parking lots,
+ * one at a time or as a batch, and to rate closed records for billing.
+ * Check-in and check-out accept an Idempotency-Key header; a retry with the same key
+ * gets the original record back without the operation running again.
  */
 @RestController
 @RequestMapping("/api/parkingrecords")
 public class ParkingRecordController {
 
     private final ParkingRecordService parkingRecordService;
+    private final BillingRunService billingRunService;
+    private final IdempotencyCache idempotencyCache;
 
-    public ParkingRecordController(ParkingRecordService parkingRecordService) {
+    public ParkingRecordController(ParkingRecordService parkingRecordService,
+                                   BillingRunService billingRunService,
+                                   IdempotencyCache idempotencyCache) {
         this.parkingRecordService = parkingRecordService;
+        this.billingRunService = billingRunService;
+        this.idempotencyCache = idempotencyCache;
     }
 
-    // Check-in a vehicle
+    // Check-in a vehicle (once per Idempotency-Key, if given)
     @PostMapping("/checkin")
-    public ResponseEntity<ParkingRecordDto> checkIn(@Valid @RequestBody CheckInDto dto) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(parkingRecordService.checkIn(dto));
+    public ResponseEntity<ParkingRecordDto> checkIn(
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+            @Valid @RequestBody CheckInDto dto) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(idempotencyCache.execute(idempotencyKey, dto, () -> parkingRecordService.checkIn(dto)));
     }
 
-    // Check-out a vehicle
+    // Check-out a vehicle (once per Idempotency-Key, if given)
     @PostMapping("/checkout")
-    public ResponseEntity<ParkingRecordDto> checkOut(@Valid @RequestBody CheckOutDto dto) {
-        return ResponseEntity.ok(parkingRecordService.checkOut(dto));
+    public ResponseEntity<ParkingRecordDto> checkOut(
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+            @Valid @RequestBody CheckOutDto dto) {
+        return ResponseEntity.ok(idempotencyCache.execute(idempotencyKey, dto, () -> parkingRecordService.checkOut(dto)));
+    }
+
+    // Apply a batch of check-in/check-out operations and report the result of each one
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchResultDto>> batch(@Valid @RequestBody BatchRequestDto dto) {
+        return ResponseEntity.ok(parkingRecordService.processBatch(dto.operations()));
+    }
+
+    // Rate every record checked out within [from, to) and store the fees (defaults to yesterday); the run goes
+    // to the async executor, so it does not hold a request thread
+    @PostMapping("/billing")
+    public Callable<ResponseEntity<BillingRunDto>> billing(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return () -> ResponseEntity.ok(billingRunService.run(from, to));
     }
 }
@@ -0,0 +1,42 @@
+package com.fayemanalo.smartpark.controller;
+
+import com.fayemanalo.smartpark.dto.ReservationDto;
+import com.fayemanalo.smartpark.dto.ReservationRequestDto;
+import com.fayemanalo.smartpark.service.ReservationService;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for reservations.
+ *
+ * Provides endpoints to book a space in a parking lot ahead of time and to cancel a booking.
+ */
+@RestController
+@RequestMapping("/api/reservations")
+public class ReservationController {
+
+    private final ReservationService reservationService;
+
+    public ReservationController(ReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
+
+    // Book a space for a vehicle and a time range
+    @PostMapping
+    public ResponseEntity<ReservationDto> book(@Valid @RequestBody ReservationRequestDto dto) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(reservationService.book(dto));
+    }
+
+    // Cancel a reservation, releasing its space
+    @DeleteMapping("/{id}")
+    public ResponseEntity<ReservationDto> cancel(@PathVariable Long id) {
+        return ResponseEntity.ok(reservationService.cancel(id));
+    }
+}
@@ -1,10 +1,13 @@
 package com.fayemanalo.smartpark.controller;
 
 import com.fayemanalo.smartpark.dto.VehicleDto;
+import com.fayemanalo.smartpark.dto.VehicleLocationDto;
 import com.fayemanalo.smartpark.service.VehicleService;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -13,7 +16,7 @@ import org.springframework.web.bind.annotation.RestController;
 /**
  * REST controller for managing vehicles in the SmartPark system.
  *
- * Provides endpoints for registering new vehicles.
+ * Provides endpoints for registering new vehicles and locating parked vehicles.
  */
 @RestController
 @RequestMapping("/api/vehicles")
@@ -31,4 +34,10 @@ public class VehicleController {
         return ResponseEntity.status(HttpStatus.CREATED).body(vehicleService.save(vehicleDto));
     }
 
+    // Find the lot a vehicle is currently parked in
+    @GetMapping("/{licensePlate}/location")
+    public ResponseEntity<VehicleLocationDto> getLocation(@PathVariable String licensePlate) {
+        return ResponseEntity.ok(vehicleService.getLocation(licensePlate));
+    }
+
 }
@@ -0,0 +1,14 @@
+package com.fayemanalo.smartpark.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+public enum BatchOperationType {
+    CHECK_IN,
+    CHECK_OUT;
+
+    @JsonCreator
+    public static BatchOperationType from(String value) {
+        if (value == null) return null;
+        return BatchOperationType.valueOf(value.toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,13 @@
+package com.fayemanalo.smartpark.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BatchRequestDto(
+        @NotEmpty
+        @Size(max = 1000)
+        List<@Valid BatchOperationDto> operations
+) {}
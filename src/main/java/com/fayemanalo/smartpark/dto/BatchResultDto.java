@@ -0,0 +1,16 @@
+package com.fayemanalo.smartpark.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchResultDto(
+        int index,
+
+        BatchOperationType operation,
+
+        int status,
+
+        ParkingRecordDto record,
+
+        String message
+) {}
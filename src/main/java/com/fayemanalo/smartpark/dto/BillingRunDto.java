@@ -0,0 +1,30 @@
+package com.fayemanalo.smartpark.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of rating the parking records checked out within [from, to).
+ *
+ * @param rated         records that were charged with a tariff
+ * @param unrated       records no tariff applies to; their fee is cleared
+ * @param totalFees     the sum of the fees of the rated records
+ * @param elapsedMillis how long the run took
+ */
+public record BillingRunDto(
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd hh:mm:ss a E")
+        LocalDateTime from,
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd hh:mm:ss a E")
+        LocalDateTime to,
+
+        long rated,
+
+        long unrated,
+
+        BigDecimal totalFees,
+
+        long elapsedMillis
+) {}
@@ -0,0 +1,31 @@
+package com.fayemanalo.smartpark.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Shared spaces of a lot that can still be booked throughout a time range.
+ *
+ * @param capacity        the shared spaces, i.e. the capacity outside the vehicle types' own pools
+ * @param reservedSpaces  the most spaces held by reservations at any time in the range
+ * @param occupiedSpaces  vehicles parked in shared spaces now, if the range starts now; otherwise 0
+ * @param availableSpaces spaces free throughout the range
+ */
+public record LotAvailabilityDto(
+        String lotId,
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd hh:mm:ss a E")
+        LocalDateTime from,
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd hh:mm:ss a E")
+        LocalDateTime to,
+
+        int capacity,
+
+        int reservedSpaces,
+
+        int occupiedSpaces,
+
+        int availableSpaces
+) {}
@@ -0,0 +1,18 @@
+package com.fayemanalo.smartpark.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+public record LotHourlyStatsDto(
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd hh:mm:ss a E")
+        LocalDateTime hour,
+
+        int entries,
+
+        int exits,
+
+        int peakOccupancy,
+
+        long dwellMinutes
+) {}
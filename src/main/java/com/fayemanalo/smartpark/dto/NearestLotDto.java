@@ -0,0 +1,16 @@
+package com.fayemanalo.smartpark.dto;
+
+/**
+ * A parking lot with space, found by the nearest-lot search.
+ *
+ * @param distanceKm      the great-circle distance from the searched position
+ * @param availableSpaces the free spaces for the searched vehicle type, or in total if no type was given
+ */
+public record NearestLotDto(
+        String lotId,
+        String location,
+        double latitude,
+        double longitude,
+        double distanceKm,
+        int availableSpaces
+) {}
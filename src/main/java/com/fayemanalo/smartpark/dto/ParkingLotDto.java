@@ -1,10 +1,16 @@
 package com.fayemanalo.smartpark.dto;
 
+import com.fayemanalo.smartpark.model.VehicleType;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.Builder;
 
+import java.util.Map;
+
 @Builder
 public record ParkingLotDto (
     @NotBlank
@@ -14,9 +20,19 @@ public record ParkingLotDto (
     @NotBlank
     String location,
 
+    // Optional, but both or neither
+    @DecimalMin("-90") @DecimalMax("90")
+    Double latitude,
+
+    @DecimalMin("-180") @DecimalMax("180")
+    Double longitude,
+
     @Min(1)
     int capacity,
 
     @Min(0)
-    int occupiedSpaces
+    int occupiedSpaces,
+
+    // Spaces set aside per vehicle type, out of the capacity (optional)
+    Map<@NotNull VehicleType, @NotNull @Min(1) Integer> capacityPools
 ) {}
\ No newline at end of file
@@ -1,9 +1,14 @@
 package com.fayemanalo.smartpark.dto;
 
+import com.fayemanalo.smartpark.model.VehicleType;
+
+import java.util.Map;
+
 public record ParkingLotStatusDto(
         String lotId,
         String location,
         int capacity,
         int occupiedSpaces,
-        int availableSpaces
+        int availableSpaces,
+        Map<VehicleType, VehicleTypeAvailabilityDto> availabilityByType
 ) {}
@@ -2,6 +2,7 @@ package com.fayemanalo.smartpark.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 public record ParkingRecordDto(
@@ -13,5 +14,7 @@ public record ParkingRecordDto(
         LocalDateTime checkInTime,
 
         @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd hh:mm:ss a E")
-        LocalDateTime checkOutTime
+        LocalDateTime checkOutTime,
+
+        BigDecimal fee
 ) {}
@@ -0,0 +1,22 @@
+package com.fayemanalo.smartpark.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fayemanalo.smartpark.model.ReservationStatus;
+
+import java.time.LocalDateTime;
+
+public record ReservationDto(
+        Long id,
+
+        String licensePlate,
+
+        String lotId,
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd hh:mm:ss a E")
+        LocalDateTime startTime,
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd hh:mm:ss a E")
+        LocalDateTime endTime,
+
+        ReservationStatus status
+) {}
@@ -0,0 +1,14 @@
+package com.fayemanalo.smartpark.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+public record VehicleLocationDto(
+        String licensePlate,
+
+        String lotId,
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd hh:mm:ss a E")
+        LocalDateTime checkInTime
+) {}
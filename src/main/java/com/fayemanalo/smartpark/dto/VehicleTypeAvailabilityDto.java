@@ -0,0 +1,13 @@
+package com.fayemanalo.smartpark.dto;
+
+/**
+ * The spaces one vehicle type can use in a parking lot.
+ *
+ * @param dedicated whether these are the type's own spaces, or the spaces shared by every type without any
+ */
+public record VehicleTypeAvailabilityDto(
+        int capacity,
+        int occupiedSpaces,
+        int availableSpaces,
+        boolean dedicated
+) {}
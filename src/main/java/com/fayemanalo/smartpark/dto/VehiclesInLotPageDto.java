@@ -0,0 +1,14 @@
+package com.fayemanalo.smartpark.dto;
+
+import java.util.List;
+
+/**
+ * One page of vehicles currently parked in a lot, ordered by check-in time.
+ *
+ * @param vehicles   the vehicles on this page
+ * @param nextCursor the cursor to pass as {@code after} for the next page, or null if this is the last page
+ */
+public record VehiclesInLotPageDto(
+        List<VehiclesInLotDto> vehicles,
+        String nextCursor
+) {}
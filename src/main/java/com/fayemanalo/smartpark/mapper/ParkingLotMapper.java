@@ -1,9 +1,14 @@
 package com.fayemanalo.smartpark.mapper;
 
 import com.fayemanalo.smartpark.dto.ParkingLotDto;
+import com.fayemanalo.smartpark.model.CapacityPool;
 import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.VehicleType;
 import org.springframework.stereotype.Component;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 @Component
 public class ParkingLotMapper {
 
@@ -14,8 +19,11 @@ public class ParkingLotMapper {
         return ParkingLot.builder()
                 .lotId(dto.lotId())
                 .location(dto.location())
+                .latitude(dto.latitude())
+                .longitude(dto.longitude())
                 .capacity(dto.capacity())
                 .occupiedSpaces(dto.occupiedSpaces())
+                .capacityPools(toPools(dto.capacityPools()))
                 .build();
     }
 
@@ -26,8 +34,26 @@ public class ParkingLotMapper {
         return ParkingLotDto.builder()
                 .lotId(entity.getLotId())
                 .location(entity.getLocation())
+                .latitude(entity.getLatitude())
+                .longitude(entity.getLongitude())
                 .capacity(entity.getCapacity())
                 .occupiedSpaces(entity.getOccupiedSpaces())
+                .capacityPools(toCapacities(entity.getCapacityPools()))
                 .build();
     }
+
+    // New pools start empty; vehicles parked at registration count against the shared spaces
+    private static Map<VehicleType, CapacityPool> toPools(Map<VehicleType, Integer> capacities) {
+        Map<VehicleType, CapacityPool> pools = new EnumMap<>(VehicleType.class);
+        if (capacities != null) {
+            capacities.forEach((vehicleType, capacity) -> pools.put(vehicleType, new CapacityPool(capacity, 0)));
+        }
+        return pools;
+    }
+
+    private static Map<VehicleType, Integer> toCapacities(Map<VehicleType, CapacityPool> pools) {
+        Map<VehicleType, Integer> capacities = new EnumMap<>(VehicleType.class);
+        pools.forEach((vehicleType, pool) -> capacities.put(vehicleType, pool.getCapacity()));
+        return capacities;
+    }
 }
@@ -15,7 +15,8 @@ public class ParkingRecordMapper {
                 record.getVehicle().getLicensePlate(),
                 record.getParkingLot().getLotId(),
                 record.getCheckInTime(),
-                record.getCheckOutTime()
+                record.getCheckOutTime(),
+                record.getFee()
         );
     }
 }
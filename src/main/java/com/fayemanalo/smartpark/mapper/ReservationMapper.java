@@ -0,0 +1,23 @@
+package com.fayemanalo.smartpark.mapper;
+
+import com.fayemanalo.smartpark.dto.ReservationDto;
+import com.fayemanalo.smartpark.model.Reservation;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ReservationMapper {
+
+    // Convert Entity to DTO
+    public ReservationDto toDto(Reservation reservation) {
+        if (reservation == null) return null;
+
+        return new ReservationDto(
+                reservation.getId(),
+                reservation.getVehicle().getLicensePlate(),
+                reservation.getParkingLot().getLotId(),
+                reservation.getStartTime(),
+                reservation.getEndTime(),
+                reservation.getStatus()
+        );
+    }
+}
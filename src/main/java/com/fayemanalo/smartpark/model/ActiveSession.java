@@ -0,0 +1,33 @@
+package com.fayemanalo.smartpark.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A vehicle that is currently checked in, as held by the active-session index.
+ *
+ * @param licensePlate the license plate of the parked vehicle
+ * @param lotId        the lot the vehicle is parked in
+ * @param checkInTime  when the vehicle checked in
+ * @param recordId     the ID of the open ParkingRecord, or null until it has been saved; for a check-in
+ *                     that is still only in the event journal, its journal sequence number until the
+ *                     journal is drained
+ */
+public record ActiveSession(
+        String licensePlate,
+        String lotId,
+        LocalDateTime checkInTime,
+        Long recordId
+) {
+
+    public ActiveSession withRecordId(Long recordId) {
+        return new ActiveSession(licensePlate, lotId, checkInTime, recordId);
+    }
+
+    // Two entries describe the same session regardless of whether the record ID is known yet
+    public boolean isSameSession(ActiveSession other) {
+        return other != null
+                && licensePlate.equals(other.licensePlate)
+                && lotId.equals(other.lotId)
+                && checkInTime.equals(other.checkInTime);
+    }
+}
@@ -0,0 +1,20 @@
+package com.fayemanalo.smartpark.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A reservation that holds a space, as kept in memory by the reservation service.
+ *
+ * @param id           the ID of the Reservation
+ * @param licensePlate the vehicle the space is held for
+ * @param lotId        the parking lot
+ * @param startTime    start of the reservation
+ * @param endTime      end of the reservation, exclusive
+ */
+public record BookedReservation(
+        Long id,
+        String licensePlate,
+        String lotId,
+        LocalDateTime startTime,
+        LocalDateTime endTime
+) {}
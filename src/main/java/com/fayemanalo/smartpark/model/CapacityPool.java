@@ -0,0 +1,20 @@
+package com.fayemanalo.smartpark.model;
+
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Spaces of a parking lot set aside for one vehicle type, e.g. motorcycle or truck bays.
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CapacityPool {
+
+    private int capacity;
+
+    private int occupiedSpaces;
+}
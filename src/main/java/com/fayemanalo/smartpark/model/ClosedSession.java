@@ -0,0 +1,20 @@
+package com.fayemanalo.smartpark.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A closed parking record, with only what is needed to rate it.
+ *
+ * @param recordId     the ID of the ParkingRecord
+ * @param lotId        the lot the vehicle was parked in
+ * @param vehicleType  the type of the vehicle
+ * @param checkInTime  when the vehicle checked in
+ * @param checkOutTime when the vehicle checked out
+ */
+public record ClosedSession(
+        Long recordId,
+        String lotId,
+        VehicleType vehicleType,
+        LocalDateTime checkInTime,
+        LocalDateTime checkOutTime
+) {}
@@ -0,0 +1,33 @@
+package com.fayemanalo.smartpark.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * How far the event journal has been written to the database.
+ *
+ * Saved in the same transaction as the drained events, so after a crash every event is applied exactly once.
+ * There is a single row, with ID {@link #ID}.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JournalCheckpoint {
+
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    // Journal position just after the last drained event
+    private long segmentNumber;
+    private int segmentOffset;
+
+    private long lastSequence;
+}
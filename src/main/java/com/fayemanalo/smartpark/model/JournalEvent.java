@@ -0,0 +1,38 @@
+package com.fayemanalo.smartpark.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A gate event as stored in the append-only event journal.
+ *
+ * @param sequence     position of the event in the journal, assigned when it is appended
+ * @param type         whether the vehicle checked in or out
+ * @param licensePlate the license plate of the vehicle
+ * @param lotId        the parking lot
+ * @param time         the check-in or check-out time
+ */
+public record JournalEvent(
+        long sequence,
+        Type type,
+        String licensePlate,
+        String lotId,
+        LocalDateTime time
+) {
+
+    public static JournalEvent checkIn(String licensePlate, String lotId, LocalDateTime checkInTime) {
+        return new JournalEvent(0, Type.CHECK_IN, licensePlate, lotId, checkInTime);
+    }
+
+    public static JournalEvent checkOut(String licensePlate, String lotId, LocalDateTime checkOutTime) {
+        return new JournalEvent(0, Type.CHECK_OUT, licensePlate, lotId, checkOutTime);
+    }
+
+    public JournalEvent withSequence(long sequence) {
+        return new JournalEvent(sequence, type, licensePlate, lotId, time);
+    }
+
+    public enum Type {
+        CHECK_IN,
+        CHECK_OUT
+    }
+}
@@ -0,0 +1,19 @@
+package com.fayemanalo.smartpark.model;
+
+import java.util.Map;
+
+/**
+ * A parking lot with coordinates, as held by the spatial index.
+ *
+ * The occupancy is the persisted one from when the lot was indexed, which stays current only until the
+ * lot gets an in-memory occupancy counter.
+ */
+public record LocatedLot(
+        String lotId,
+        String location,
+        double latitude,
+        double longitude,
+        int capacity,
+        int occupiedSpaces,
+        Map<VehicleType, PoolOccupancy> occupancyByType
+) {}
@@ -0,0 +1,26 @@
+package com.fayemanalo.smartpark.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Key of an hourly occupancy bucket: a parking lot and the start of the hour.
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LotHour implements Serializable {
+
+    @Column(length = 50)
+    private String lotId;
+
+    @Column(name = "hour_start")
+    private LocalDateTime hour;
+}
@@ -0,0 +1,33 @@
+package com.fayemanalo.smartpark.model;
+
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Occupancy of a parking lot during one hour, maintained incrementally from check-ins and check-outs.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LotHourlyStats {
+
+    @EmbeddedId
+    private LotHour id;
+
+    // Check-ins and check-outs during the hour
+    private int entries;
+    private int exits;
+
+    // Highest occupancy reached during the hour, and the occupancy after its last event
+    private int peakOccupancy;
+    private int closingOccupancy;
+
+    // Total time parked by the vehicles that checked out during the hour
+    private long dwellMinutes;
+}
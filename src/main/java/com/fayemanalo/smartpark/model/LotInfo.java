@@ -0,0 +1,16 @@
+package com.fayemanalo.smartpark.model;
+
+/**
+ * The attributes of a parking lot that do not change after registration.
+ * Occupancy is deliberately left out; it is tracked by the occupancy counters.
+ */
+public record LotInfo(
+        String lotId,
+        String location,
+        int capacity
+) {
+
+    public static LotInfo from(ParkingLot lot) {
+        return new LotInfo(lot.getLotId(), lot.getLocation(), lot.getCapacity());
+    }
+}
@@ -0,0 +1,16 @@
+package com.fayemanalo.smartpark.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Point-in-time copy of the active sessions, from which lot occupancy is derived on restart.
+ *
+ * @param replayFrom sessions started or ended at or after this time may be missing from the snapshot, so
+ *                   those changes are read back from parking_record when it is restored
+ * @param sessions   the active sessions whose ParkingRecord had been saved
+ */
+public record OccupancySnapshot(
+        LocalDateTime replayFrom,
+        List<ActiveSession> sessions
+) {}
@@ -0,0 +1,30 @@
+package com.fayemanalo.smartpark.model;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The number of vehicles of one type currently parked in a lot.
+ *
+ * @param lotId       the lot the vehicles are parked in
+ * @param vehicleType the type of the vehicles
+ * @param count       how many are parked
+ */
+public record ParkedVehicles(
+        String lotId,
+        VehicleType vehicleType,
+        long count
+) {
+
+    // Groups counts by lot ID, then by vehicle type; types without parked vehicles are absent
+    public static Map<String, Map<VehicleType, Integer>> byLot(List<ParkedVehicles> counts) {
+        Map<String, Map<VehicleType, Integer>> byLot = new HashMap<>();
+        for (ParkedVehicles parked : counts) {
+            byLot.computeIfAbsent(parked.lotId(), lotId -> new EnumMap<>(VehicleType.class))
+                    .put(parked.vehicleType(), (int) parked.count());
+        }
+        return byLot;
+    }
+}
@@ -5,8 +5,13 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 @Entity
 @Data
@@ -21,10 +26,30 @@ public class ParkingLot {
 
     private String location;
 
+    // WGS 84 coordinates in degrees; lots without them are not found by the nearest-lot search
+    private Double latitude;
+
+    private Double longitude;
+
     private int capacity;
 
+    // Total over the shared spaces and every pool
     private int occupiedSpaces;
 
+    // Spaces set aside per vehicle type, out of the capacity; other types share the remaining spaces
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "parking_lot_pool", joinColumns = @JoinColumn(name = "lot_id"))
+    @MapKeyEnumerated(EnumType.STRING)
+    @MapKeyColumn(name = "vehicle_type", length = 16)
+    @Fetch(FetchMode.SUBSELECT)
+    @Builder.Default
+    private Map<VehicleType, CapacityPool> capacityPools = new EnumMap<>(VehicleType.class);
+
+    // Bumped by every change of the occupancy when the database decides whether the lot is full
+    @Version
+    @ColumnDefault("0")
+    private long version;
+
     @OneToMany(mappedBy = "parkingLot", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<ParkingRecord> parkingRecords;
 }
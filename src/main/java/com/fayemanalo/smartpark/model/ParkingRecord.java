@@ -6,17 +6,28 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+        // Active record of a vehicle (check_out_time is null)
+        @Index(name = "idx_parking_record_vehicle_active", columnList = "vehicle_id, check_out_time"),
+        // Active records of a lot, in check-in order for keyset pagination
+        @Index(name = "idx_parking_record_lot_active", columnList = "lot_id, check_out_time, check_in_time"),
+        // All active records (active-session index rebuild), and records opened or closed since a snapshot
+        @Index(name = "idx_parking_record_check_out_check_in", columnList = "check_out_time, check_in_time")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class ParkingRecord {
 
+    // Pooled sequence instead of IDENTITY, so Hibernate can batch the inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "parking_record_seq")
+    @SequenceGenerator(name = "parking_record_seq", sequenceName = "parking_record_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -31,4 +42,8 @@ public class ParkingRecord {
     private LocalDateTime checkInTime;
     private LocalDateTime checkOutTime;
 
+    // Parking fee, set at check-out; null while parked or if no tariff applies
+    @Column(precision = 10, scale = 2)
+    private BigDecimal fee;
+
 }
@@ -0,0 +1,49 @@
+package com.fayemanalo.smartpark.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A closed ParkingRecord moved out of parking_record by the archiver. Keeps the ID of the original record.
+ */
+@Entity
+@Table(indexes = {
+        // History of a vehicle, most recent first
+        @Index(name = "idx_parking_record_history_vehicle", columnList = "vehicle_id, check_out_time"),
+        // History of a lot over a period
+        @Index(name = "idx_parking_record_history_lot", columnList = "lot_id, check_out_time"),
+        // Archived records checked out within a period (billing runs)
+        @Index(name = "idx_parking_record_history_check_out", columnList = "check_out_time")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ParkingRecordHistory {
+
+    @Id
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "vehicle_id", nullable = false)
+    private Vehicle vehicle;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "lot_id", nullable = false)
+    private ParkingLot parkingLot;
+
+    @Column(nullable = false)
+    private LocalDateTime checkInTime;
+
+    @Column(nullable = false)
+    private LocalDateTime checkOutTime;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal fee;
+}
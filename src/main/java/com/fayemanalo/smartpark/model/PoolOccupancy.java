@@ -0,0 +1,16 @@
+package com.fayemanalo.smartpark.model;
+
+/**
+ * The occupancy of the spaces a vehicle type can use in a parking lot: either its own pool, or the
+ * spaces shared by every vehicle type without one.
+ */
+public record PoolOccupancy(
+        int capacity,
+        int occupiedSpaces,
+        boolean dedicated
+) {
+
+    public int availableSpaces() {
+        return Math.max(0, capacity - occupiedSpaces);
+    }
+}
@@ -0,0 +1,9 @@
+package com.fayemanalo.smartpark.model;
+
+public enum ReservationStatus {
+    // Holds a space for its time range
+    BOOKED,
+    // The vehicle checked in; its space is counted as occupied instead
+    FULFILLED,
+    CANCELLED
+}
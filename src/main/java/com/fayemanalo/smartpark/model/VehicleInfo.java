@@ -0,0 +1,15 @@
+package com.fayemanalo.smartpark.model;
+
+/**
+ * The attributes of a vehicle that do not change after registration.
+ */
+public record VehicleInfo(
+        String licensePlate,
+        VehicleType type,
+        String ownerName
+) {
+
+    public static VehicleInfo from(Vehicle vehicle) {
+        return new VehicleInfo(vehicle.getLicensePlate(), vehicle.getType(), vehicle.getOwnerName());
+    }
+}
@@ -0,0 +1,7 @@
+package com.fayemanalo.smartpark.repository;
+
+import com.fayemanalo.smartpark.model.JournalCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface JournalCheckpointRepository extends JpaRepository<JournalCheckpoint, Integer> {
+}
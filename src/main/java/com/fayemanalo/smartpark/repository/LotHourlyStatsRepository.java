@@ -0,0 +1,19 @@
+package com.fayemanalo.smartpark.repository;
+
+import com.fayemanalo.smartpark.model.LotHour;
+import com.fayemanalo.smartpark.model.LotHourlyStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface LotHourlyStatsRepository extends JpaRepository<LotHourlyStats, LotHour> {
+
+    // Buckets of a lot for the hours in [from, to), in hour order (primary key range scan)
+    List<LotHourlyStats> findByIdLotIdAndIdHourGreaterThanEqualAndIdHourLessThanOrderByIdHour(
+            String lotId, LocalDateTime from, LocalDateTime to);
+
+    // Last bucket of a lot before an hour (its closing occupancy carries over into hours without events)
+    Optional<LotHourlyStats> findFirstByIdLotIdAndIdHourLessThanOrderByIdHourDesc(String lotId, LocalDateTime hour);
+}
@@ -2,6 +2,82 @@ package com.fayemanalo.smartpark.repository;
 
 import com.fayemanalo.smartpark.model.ParkingLot;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 public interface ParkingLotRepository extends JpaRepository<ParkingLot, String> {
+
+    // Lots the nearest-lot search can find
+    List<ParkingLot> findByLatitudeIsNotNullAndLongitudeIsNotNull();
+
+    // Overwrite the persisted occupancy of a lot without loading it first
+    @Transactional
+    @Modifying
+    @Query("update ParkingLot l set l.occupiedSpaces = :occupiedSpaces where l.lotId = :lotId")
+    int updateOccupiedSpaces(@Param("lotId") String lotId, @Param("occupiedSpaces") int occupiedSpaces);
+
+    // Overwrite the persisted occupancy of one capacity pool of a lot; JPQL cannot update element collections
+    @Transactional
+    @Modifying
+    @Query(value = "update parking_lot_pool set occupied_spaces = :occupiedSpaces "
+            + "where lot_id = :lotId and vehicle_type = :vehicleType", nativeQuery = true)
+    int updatePoolOccupiedSpaces(@Param("lotId") String lotId, @Param("vehicleType") String vehicleType,
+                                 @Param("occupiedSpaces") int occupiedSpaces);
+
+    // The queries below take and free spaces in the database, for the concurrency modes of LotCapacityGuard;
+    // every change of the lot's occupancy bumps its version
+
+    @Query("select l.version from ParkingLot l where l.lotId = :lotId")
+    long findVersion(@Param("lotId") String lotId);
+
+    // Lock the lot row until the end of the current transaction
+    @Query(value = "select lot_id from parking_lot where lot_id = :lotId for update", nativeQuery = true)
+    String lockById(@Param("lotId") String lotId);
+
+    @Query(value = "select l.occupied_spaces - coalesce((select sum(p.occupied_spaces) from parking_lot_pool p "
+            + "where p.lot_id = l.lot_id), 0) from parking_lot l where l.lot_id = :lotId", nativeQuery = true)
+    int findSharedOccupiedSpaces(@Param("lotId") String lotId);
+
+    @Query(value = "select occupied_spaces from parking_lot_pool where lot_id = :lotId and vehicle_type = :vehicleType",
+            nativeQuery = true)
+    int findPoolOccupiedSpaces(@Param("lotId") String lotId, @Param("vehicleType") String vehicleType);
+
+    @Transactional
+    @Modifying
+    @Query("update ParkingLot l set l.occupiedSpaces = l.occupiedSpaces + :delta, l.version = l.version + 1 "
+            + "where l.lotId = :lotId and l.occupiedSpaces + :delta >= 0")
+    int addOccupiedSpaces(@Param("lotId") String lotId, @Param("delta") int delta);
+
+    @Transactional
+    @Modifying
+    @Query("update ParkingLot l set l.occupiedSpaces = l.occupiedSpaces + 1, l.version = l.version + 1 "
+            + "where l.lotId = :lotId and l.version = :version")
+    int addOccupiedSpacesIfVersion(@Param("lotId") String lotId, @Param("version") long version);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update parking_lot_pool set occupied_spaces = occupied_spaces + :delta "
+            + "where lot_id = :lotId and vehicle_type = :vehicleType and occupied_spaces + :delta >= 0", nativeQuery = true)
+    int addPoolOccupiedSpaces(@Param("lotId") String lotId, @Param("vehicleType") String vehicleType,
+                              @Param("delta") int delta);
+
+    // Take a shared space only while fewer than the given number are occupied
+    @Transactional
+    @Modifying
+    @Query(value = "update parking_lot set occupied_spaces = occupied_spaces + 1, version = version + 1 "
+            + "where lot_id = :lotId and occupied_spaces - coalesce((select sum(p.occupied_spaces) "
+            + "from parking_lot_pool p where p.lot_id = :lotId), 0) < :spaces", nativeQuery = true)
+    int addSharedSpaceIfAvailable(@Param("lotId") String lotId, @Param("spaces") int spaces);
+
+    // Take a space of a capacity pool only while fewer than the given number are occupied
+    @Transactional
+    @Modifying
+    @Query(value = "update parking_lot_pool set occupied_spaces = occupied_spaces + 1 "
+            + "where lot_id = :lotId and vehicle_type = :vehicleType and occupied_spaces < :spaces", nativeQuery = true)
+    int addPoolSpaceIfAvailable(@Param("lotId") String lotId, @Param("vehicleType") String vehicleType,
+                                @Param("spaces") int spaces);
 }
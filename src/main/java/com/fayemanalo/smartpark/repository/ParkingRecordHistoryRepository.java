@@ -0,0 +1,43 @@
+package com.fayemanalo.smartpark.repository;
+
+import com.fayemanalo.smartpark.model.ClosedSession;
+import com.fayemanalo.smartpark.model.ParkingRecordHistory;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ParkingRecordHistoryRepository extends JpaRepository<ParkingRecordHistory, Long> {
+
+    // Archived records of a vehicle, most recent check-out first
+    Page<ParkingRecordHistory> findByVehicleLicensePlateOrderByCheckOutTimeDesc(String licensePlate, Pageable pageable);
+
+    // Archived records of a lot checked out within [from, to)
+    Page<ParkingRecordHistory> findByParkingLotLotIdAndCheckOutTimeGreaterThanEqualAndCheckOutTimeLessThan(
+            String lotId, LocalDateTime from, LocalDateTime to, Pageable pageable);
+
+    // Next page of archived records checked out within [afterTime, to), continuing after (afterTime, afterId),
+    // with what is needed to rate them; pass the start of the range and ID 0 for the first page
+    @Query("select new com.fayemanalo.smartpark.model.ClosedSession(h.id, h.parkingLot.lotId, v.type, h.checkInTime, h.checkOutTime) "
+            + "from ParkingRecordHistory h join h.vehicle v "
+            + "where h.checkOutTime >= :afterTime and h.checkOutTime < :to "
+            + "and (h.checkOutTime > :afterTime or h.id > :afterId) "
+            + "order by h.checkOutTime, h.id")
+    List<ClosedSession> findClosedSessionsAfter(@Param("afterTime") LocalDateTime afterTime,
+                                                @Param("afterId") long afterId,
+                                                @Param("to") LocalDateTime to,
+                                                Limit limit);
+
+    // Copy parking records into the history table in one INSERT ... SELECT, keeping their IDs
+    @Modifying
+    @Query("insert into ParkingRecordHistory (id, vehicle, parkingLot, checkInTime, checkOutTime, fee) "
+            + "select r.id, r.vehicle, r.parkingLot, r.checkInTime, r.checkOutTime, r.fee "
+            + "from ParkingRecord r where r.id in :ids")
+    int copyFromParkingRecords(@Param("ids") List<Long> ids);
+}
@@ -1,20 +1,100 @@
 package com.fayemanalo.smartpark.repository;
 
+import com.fayemanalo.smartpark.dto.VehiclesInLotDto;
+import com.fayemanalo.smartpark.model.ActiveSession;
+import com.fayemanalo.smartpark.model.ClosedSession;
+import com.fayemanalo.smartpark.model.ParkedVehicles;
 import com.fayemanalo.smartpark.model.ParkingLot;
 import com.fayemanalo.smartpark.model.ParkingRecord;
 import com.fayemanalo.smartpark.model.Vehicle;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ParkingRecordRepository extends JpaRepository<ParkingRecord, Long> {
 
-    // Checks if there is an active ParkingRecord for a given vehicle
-    boolean existsByVehicleAndCheckOutTimeIsNull(Vehicle vehicle);
-
-    // Find the active parking record for a vehicle (used for message with lot info)
-    Optional<ParkingRecord> findByVehicleAndCheckOutTimeIsNull(Vehicle vehicle);
-
     // Find the active parking record for a vehicle in a specific lot
     Optional<ParkingRecord> findByVehicleAndParkingLotAndCheckOutTimeIsNull(Vehicle vehicle, ParkingLot parkingLot);
+
+    // Count the vehicles currently parked in a lot (used to restore occupancy after a journal replay)
+    long countByParkingLotAndCheckOutTimeIsNull(ParkingLot parkingLot);
+
+    // Count the vehicles currently parked per lot and vehicle type (used to restore the occupancy of capacity pools)
+    @Query("select new com.fayemanalo.smartpark.model.ParkedVehicles(r.parkingLot.lotId, v.type, count(r)) "
+            + "from ParkingRecord r join r.vehicle v "
+            + "where r.checkOutTime is null "
+            + "group by r.parkingLot.lotId, v.type")
+    List<ParkedVehicles> countParkedVehiclesByLotAndType();
+
+    // Load every active session without materializing the ParkingRecord entities (used to rebuild the index)
+    @Query("select new com.fayemanalo.smartpark.model.ActiveSession(r.vehicle.licensePlate, r.parkingLot.lotId, r.checkInTime, r.id) "
+            + "from ParkingRecord r where r.checkOutTime is null")
+    List<ActiveSession> findActiveSessions();
+
+    // Active sessions that started at or after a point in time (replayed on top of a snapshot)
+    @Query("select new com.fayemanalo.smartpark.model.ActiveSession(r.vehicle.licensePlate, r.parkingLot.lotId, r.checkInTime, r.id) "
+            + "from ParkingRecord r where r.checkOutTime is null and r.checkInTime >= :since")
+    List<ActiveSession> findActiveSessionsCheckedInSince(@Param("since") LocalDateTime since);
+
+    // Sessions that ended at or after a point in time (removed from a snapshot before it is used)
+    @Query("select new com.fayemanalo.smartpark.model.ActiveSession(r.vehicle.licensePlate, r.parkingLot.lotId, r.checkInTime, r.id) "
+            + "from ParkingRecord r where r.checkOutTime >= :since")
+    List<ActiveSession> findSessionsCheckedOutSince(@Param("since") LocalDateTime since);
+
+    // IDs of records checked out before a cutoff, oldest first (selected for archiving)
+    @Query("select r.id from ParkingRecord r where r.checkOutTime < :cutoff order by r.checkOutTime")
+    List<Long> findIdsCheckedOutBefore(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    // Next page of records checked out within [afterTime, to), continuing after (afterTime, afterId), with what
+    // is needed to rate them; pass the start of the range and ID 0 for the first page
+    @Query("select new com.fayemanalo.smartpark.model.ClosedSession(r.id, r.parkingLot.lotId, v.type, r.checkInTime, r.checkOutTime) "
+            + "from ParkingRecord r join r.vehicle v "
+            + "where r.checkOutTime >= :afterTime and r.checkOutTime < :to "
+            + "and (r.checkOutTime > :afterTime or r.id > :afterId) "
+            + "order by r.checkOutTime, r.id")
+    List<ClosedSession> findClosedSessionsAfter(@Param("afterTime") LocalDateTime afterTime,
+                                                @Param("afterId") long afterId,
+                                                @Param("to") LocalDateTime to,
+                                                Limit limit);
+
+    // Delete records by ID in one statement, without loading them (after they have been archived)
+    @Modifying
+    @Query("delete from ParkingRecord r where r.id in :ids")
+    int deleteAllByIdIn(@Param("ids") List<Long> ids);
+
+    // First page of vehicles currently parked in a lot, joined with their vehicle in one statement
+    @Query("select new com.fayemanalo.smartpark.dto.VehiclesInLotDto(v.licensePlate, v.type, v.ownerName, r.checkInTime) "
+            + "from ParkingRecord r join r.vehicle v "
+            + "where r.parkingLot.lotId = :lotId and r.checkOutTime is null "
+            + "order by r.checkInTime, v.licensePlate")
+    List<VehiclesInLotDto> findVehiclesInLot(@Param("lotId") String lotId, Limit limit);
+
+    // Next page of vehicles currently parked in a lot, continuing after (checkInTime, licensePlate)
+    @Query("select new com.fayemanalo.smartpark.dto.VehiclesInLotDto(v.licensePlate, v.type, v.ownerName, r.checkInTime) "
+            + "from ParkingRecord r join r.vehicle v "
+            + "where r.parkingLot.lotId = :lotId and r.checkOutTime is null "
+            + "and (r.checkInTime > :afterTime or (r.checkInTime = :afterTime and v.licensePlate > :afterPlate)) "
+            + "order by r.checkInTime, v.licensePlate")
+    List<VehiclesInLotDto> findVehiclesInLotAfter(@Param("lotId") String lotId,
+                                                  @Param("afterTime") LocalDateTime afterTime,
+                                                  @Param("afterPlate") String afterPlate,
+                                                  Limit limit);
+
+    // All vehicles currently parked in a lot, read from a database cursor in chunks of the fetch size
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.fayemanalo.smartpark.dto.VehiclesInLotDto(v.licensePlate, v.type, v.ownerName, r.checkInTime) "
+            + "from ParkingRecord r join r.vehicle v "
+            + "where r.parkingLot.lotId = :lotId and r.checkOutTime is null "
+            + "order by r.checkInTime, v.licensePlate")
+    Stream<VehiclesInLotDto> streamVehiclesInLot(@Param("lotId") String lotId);
 }
@@ -0,0 +1,25 @@
+package com.fayemanalo.smartpark.repository;
+
+import com.fayemanalo.smartpark.model.BookedReservation;
+import com.fayemanalo.smartpark.model.Reservation;
+import com.fayemanalo.smartpark.model.ReservationStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ReservationRepository extends JpaRepository<Reservation, Long> {
+
+    // Reservations that still hold a space after a point in time, without loading vehicles and lots
+    @Query("select new com.fayemanalo.smartpark.model.BookedReservation(r.id, r.vehicle.licensePlate, r.parkingLot.lotId, r.startTime, r.endTime) "
+            + "from Reservation r where r.status = com.fayemanalo.smartpark.model.ReservationStatus.BOOKED and r.endTime > :after")
+    List<BookedReservation> findBookedEndingAfter(@Param("after") LocalDateTime after);
+
+    // Change the status of a reservation without loading it (when its vehicle checks in)
+    @Modifying
+    @Query("update Reservation r set r.status = :status where r.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") ReservationStatus status);
+}
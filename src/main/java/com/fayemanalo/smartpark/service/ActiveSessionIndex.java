@@ -0,0 +1,186 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.ActiveSession;
+import com.fayemanalo.smartpark.model.OccupancySnapshot;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import static com.fayemanalo.smartpark.service.TransactionCallbacks.onRollback;
+
+/**
+ * In-memory index of active parking sessions keyed by license plate.
+ *
+ * Rebuilt from the open ParkingRecords at startup and kept in sync by {@link ParkingRecordService},
+ * so "is this vehicle parked, and where" is answered without querying parking_record.
+ *
+ * With an {@link OccupancySnapshotStore}, startup loads the latest snapshot instead and only reads back the
+ * records opened or closed since it was taken.
+ */
+@Component
+public class ActiveSessionIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ActiveSessionIndex.class);
+
+    private final ParkingRecordRepository parkingRecordRepository;
+    private final OccupancySnapshotStore snapshotStore;
+    private final ConcurrentMap<String, ActiveSession> sessions = new ConcurrentHashMap<>();
+
+    public ActiveSessionIndex(ParkingRecordRepository parkingRecordRepository,
+                              Optional<OccupancySnapshotStore> snapshotStore) {
+        this.parkingRecordRepository = parkingRecordRepository;
+        this.snapshotStore = snapshotStore.orElse(null);
+    }
+
+    /**
+     * Loads the index from the latest snapshot if there is one, otherwise from the database.
+     */
+    @PostConstruct
+    public void load() {
+        long start = System.nanoTime();
+        Optional<OccupancySnapshot> snapshot = snapshotStore != null ? snapshotStore.read() : Optional.empty();
+        if (snapshot.isPresent()) {
+            restore(snapshot.get());
+            log.info("Restored {} active sessions from snapshot in {} ms (replayed changes since {})",
+                    sessions.size(), (System.nanoTime() - start) / 1_000_000, snapshot.get().replayFrom());
+        } else {
+            rebuild();
+            log.info("Loaded {} active sessions from the database in {} ms",
+                    sessions.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    /**
+     * Reloads the index from every ParkingRecord that has not been checked out.
+     */
+    public void rebuild() {
+        sessions.clear();
+        for (ActiveSession session : parkingRecordRepository.findActiveSessions()) {
+            sessions.put(session.licensePlate(), session);
+        }
+    }
+
+    /**
+     * Finds the active session of a vehicle.
+     *
+     * @param licensePlate the license plate of the vehicle
+     * @return the active session, or empty if the vehicle is not parked
+     */
+    public Optional<ActiveSession> find(String licensePlate) {
+        return Optional.ofNullable(sessions.get(licensePlate));
+    }
+
+    /**
+     * Atomically registers a new session unless the vehicle already has one.
+     *
+     * If called inside a transaction, the session is removed again when that transaction rolls back.
+     *
+     * @param session the session to register
+     * @return the existing session if the vehicle is already parked, otherwise null
+     */
+    public ActiveSession claim(ActiveSession session) {
+        ActiveSession existing = sessions.putIfAbsent(session.licensePlate(), session);
+        if (existing == null) {
+            onRollback(() -> unclaim(session));
+        }
+        return existing;
+    }
+
+    /**
+     * Removes a session registered by {@link #claim(ActiveSession)} that did not go ahead.
+     *
+     * @param session the claimed session
+     */
+    public void unclaim(ActiveSession session) {
+        sessions.computeIfPresent(session.licensePlate(),
+                (plate, current) -> current.isSameSession(session) ? null : current);
+    }
+
+    /**
+     * Records the ID of the ParkingRecord saved for a claimed session.
+     *
+     * @param session  the claimed session
+     * @param recordId the ID of the saved ParkingRecord
+     */
+    public void attachRecord(ActiveSession session, Long recordId) {
+        sessions.computeIfPresent(session.licensePlate(),
+                (plate, current) -> current.isSameSession(session) ? current.withRecordId(recordId) : current);
+    }
+
+    /**
+     * Atomically ends a session.
+     *
+     * If called inside a transaction, the session is restored when that transaction rolls back.
+     *
+     * @param session the session to end
+     * @return true if the session was removed, false if it had already ended
+     */
+    public boolean end(ActiveSession session) {
+        boolean removed = sessions.remove(session.licensePlate(), session);
+        if (removed) {
+            onRollback(() -> sessions.putIfAbsent(session.licensePlate(), session));
+        }
+        return removed;
+    }
+
+    /**
+     * Reloads the index from a snapshot plus the sessions started or ended since the snapshot's replay time.
+     *
+     * @param snapshot the snapshot to load
+     */
+    public void restore(OccupancySnapshot snapshot) {
+        sessions.clear();
+        for (ActiveSession session : snapshot.sessions()) {
+            sessions.put(session.licensePlate(), session);
+        }
+
+        for (ActiveSession ended : parkingRecordRepository.findSessionsCheckedOutSince(snapshot.replayFrom())) {
+            sessions.computeIfPresent(ended.licensePlate(),
+                    (plate, current) -> isEndedBy(current, ended) ? null : current);
+        }
+        for (ActiveSession started : parkingRecordRepository.findActiveSessionsCheckedInSince(snapshot.replayFrom())) {
+            sessions.put(started.licensePlate(), started);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the sessions whose ParkingRecord has been saved.
+     *
+     * @param replayFrom the time from which changes are to be replayed on restore; sessions started or ended
+     *                   after it may or may not be in the snapshot
+     * @return the snapshot
+     */
+    public OccupancySnapshot snapshot(LocalDateTime replayFrom) {
+        List<ActiveSession> saved = sessions.values().stream()
+                .filter(session -> session.recordId() != null)
+                .toList();
+        return new OccupancySnapshot(replayFrom, saved);
+    }
+
+    /**
+     * Counts the active sessions per lot.
+     *
+     * @return the number of parked vehicles by lot ID; lots without any are absent
+     */
+    public Map<String, Long> countByLot() {
+        return sessions.values().stream()
+                .collect(Collectors.groupingBy(ActiveSession::lotId, Collectors.counting()));
+    }
+
+    // A session of the same vehicle that started no later than the ended one is that session, or stale.
+    // The database may round the check-in time to microseconds, hence the tolerance.
+    private static boolean isEndedBy(ActiveSession current, ActiveSession ended) {
+        return current.lotId().equals(ended.lotId())
+                && !current.checkInTime().isAfter(ended.checkInTime().plusNanos(1_000));
+    }
+}
@@ -0,0 +1,145 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.BillingRunDto;
+import com.fayemanalo.smartpark.model.ClosedSession;
+import com.fayemanalo.smartpark.repository.ParkingRecordHistoryRepository;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Rates closed parking records in bulk, e.g. every night for the billing export, or again after a tariff change.
+ *
+ * The records are read in pages by keyset on (checkOutTime, id), each page in a short read of its own. Each
+ * page is rated in parallel on the common fork-join pool, and the fees are written back as one JDBC batch in
+ * a transaction of their own, so a run over millions of records holds neither the entities nor a transaction
+ * across pages, and never more than one connection.
+ *
+ * Records already moved to parking_record_history by the archiver are rated too. parking_record is read
+ * first: a record archived during the run has then either been rated already or is found in the history.
+ */
+@Service
+public class BillingRunService {
+
+    private static final Logger log = LoggerFactory.getLogger(BillingRunService.class);
+
+    // Marks a record no tariff applies to
+    private static final long UNRATED = -1;
+
+    private final ParkingRecordRepository parkingRecordRepository;
+    private final ParkingRecordHistoryRepository parkingRecordHistoryRepository;
+    private final TariffService tariffService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate writeTransaction;
+    private final int chunkSize;
+
+    public BillingRunService(ParkingRecordRepository parkingRecordRepository,
+                             ParkingRecordHistoryRepository parkingRecordHistoryRepository,
+                             TariffService tariffService, JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${smartpark.billing.chunk-size:1000}") int chunkSize) {
+        this.parkingRecordRepository = parkingRecordRepository;
+        this.parkingRecordHistoryRepository = parkingRecordHistoryRepository;
+        this.tariffService = tariffService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Calculates and stores the fee of every record checked out within [from, to), archived or not.
+     *
+     * @param from start of the range; defaults to the start of yesterday
+     * @param to   end of the range, exclusive; defaults to the start of today
+     * @return how many records were rated and the sum of their fees
+     * @throws ResponseStatusException if {@code from} is not before {@code to}
+     */
+    public BillingRunDto run(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime end = to != null ? to : LocalDate.now().atStartOfDay();
+        LocalDateTime start = from != null ? from : end.toLocalDate().minusDays(1).atStartOfDay();
+        if (!start.isBefore(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' must be before 'to'");
+        }
+
+        long startNanos = System.nanoTime();
+        long[] totals = new long[3]; // rated, unrated, total fees in cents
+
+        bill(parkingRecordRepository::findClosedSessionsAfter, "parking_record", start, end, totals);
+        bill(parkingRecordHistoryRepository::findClosedSessionsAfter, "parking_record_history", start, end, totals);
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        log.info("Billing run {} - {}: rated {} parking records ({} without a tariff) in {} ms",
+                start, end, totals[0], totals[1], elapsedMillis);
+        return new BillingRunDto(start, end, totals[0], totals[1], BigDecimal.valueOf(totals[2], 2), elapsedMillis);
+    }
+
+    /**
+     * Rates closed sessions in parallel.
+     *
+     * @param sessions the sessions to rate
+     * @return the fee of each session in cents, in the same order; -1 where no tariff applies
+     */
+    public long[] rate(List<ClosedSession> sessions) {
+        long[] fees = new long[sessions.size()];
+        IntStream.range(0, fees.length).parallel().forEach(i -> {
+            ClosedSession session = sessions.get(i);
+            fees[i] = tariffService.findTariff(session.lotId(), session.vehicleType())
+                    .map(tariff -> tariff.feeInCents(session.checkInTime(), session.checkOutTime()))
+                    .orElse(UNRATED);
+        });
+        return fees;
+    }
+
+    private void bill(PageQuery pages, String table, LocalDateTime start, LocalDateTime end, long[] totals) {
+        LocalDateTime afterTime = start;
+        long afterId = 0;
+        List<ClosedSession> chunk;
+        do {
+            chunk = pages.find(afterTime, afterId, end, Limit.of(chunkSize));
+            if (chunk.isEmpty()) {
+                return;
+            }
+            write(table, chunk, rate(chunk), totals);
+            ClosedSession last = chunk.get(chunk.size() - 1);
+            afterTime = last.checkOutTime();
+            afterId = last.recordId();
+        } while (chunk.size() == chunkSize);
+    }
+
+    private void write(String table, List<ClosedSession> chunk, long[] fees, long[] totals) {
+        List<Object[]> updates = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            if (fees[i] == UNRATED) {
+                updates.add(new Object[]{null, chunk.get(i).recordId()});
+                totals[1]++;
+            } else {
+                updates.add(new Object[]{BigDecimal.valueOf(fees[i], 2), chunk.get(i).recordId()});
+                totals[0]++;
+                totals[2] += fees[i];
+            }
+        }
+        writeTransaction.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate("update " + table + " set fee = ? where id = ?", updates));
+    }
+
+    // findClosedSessionsAfter of the live or the archived records
+    @FunctionalInterface
+    private interface PageQuery {
+        List<ClosedSession> find(LocalDateTime afterTime, long afterId, LocalDateTime to, Limit limit);
+    }
+}
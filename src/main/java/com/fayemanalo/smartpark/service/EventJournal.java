@@ -0,0 +1,388 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.JournalEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of gate events in memory-mapped segment files.
+ *
+ * Each segment starts with the sequence number of its first event, followed by records of the form
+ * {@code [payload length][CRC32C of payload][payload]}; the length is written last, so a record
+ * torn by a crash is recognized by its checksum and ignored. A full segment ends with a marker and writing
+ * continues in the next file. Records are durable once written to the mapping as far as a JVM crash is
+ * concerned; surviving an OS crash or power loss depends on the {@link FsyncPolicy}.
+ *
+ * The journal is only read by {@link JournalDrainer}, which writes the events to the database and then
+ * {@link #release releases} the segments it has drained.
+ */
+@Component
+@ConditionalOnProperty(name = "smartpark.journal.enabled", havingValue = "true")
+public class EventJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(EventJournal.class);
+
+    private static final int SEGMENT_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int END_OF_SEGMENT = -1;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+
+    private final ConcurrentNavigableMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+    private final Object writeLock = new Object();
+
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private long nextSequence = 1;
+    private volatile Position end;
+    private volatile boolean unsynced;
+
+    public EventJournal(@Value("${smartpark.journal.directory:data/journal}") Path directory,
+                        @Value("${smartpark.journal.segment-size:64MB}") DataSize segmentSize,
+                        @Value("${smartpark.journal.fsync:interval}") FsyncPolicy fsyncPolicy) {
+        this.directory = directory;
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    /**
+     * Maps the existing segments and finds the end of the journal.
+     *
+     * Scanning stops at the first record that is incomplete or fails its checksum; whatever follows it in the
+     * last segment is cleared, so it is overwritten by the next append.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        for (Path file : listSegmentFiles()) {
+            segments.put(segmentNumber(file), map(file));
+        }
+        if (segments.isEmpty()) {
+            MappedByteBuffer first = map(segmentFile(1));
+            first.putLong(0, 1);
+            segments.put(1L, first);
+        }
+
+        Position position = new Position(segments.firstKey(), SEGMENT_HEADER_SIZE);
+        long lastSequence = segments.firstEntry().getValue().getLong(0) - 1;
+        while (true) {
+            ByteBuffer buffer = segments.get(position.segment()).duplicate();
+            int length = buffer.getInt(position.offset());
+            if (length == END_OF_SEGMENT && segments.containsKey(position.segment() + 1)) {
+                position = new Position(position.segment() + 1, SEGMENT_HEADER_SIZE);
+                continue;
+            }
+            JournalEvent event = decode(buffer, position.offset());
+            if (event == null) {
+                break;
+            }
+            lastSequence = event.sequence();
+            position = new Position(position.segment(), position.offset() + RECORD_HEADER_SIZE + length);
+        }
+
+        if (position.segment() != segments.lastKey()) {
+            throw new IllegalStateException("Corrupt journal segment " + segmentFile(position.segment())
+                    + " at offset " + position.offset());
+        }
+
+        writeSegment = position.segment();
+        writeBuffer = segments.get(writeSegment);
+        // A crash right after creating the segment leaves its header unwritten
+        writeBuffer.putLong(0, lastSequence + 1 - countRecords(writeBuffer, position.offset()));
+        clear(writeBuffer, position.offset());
+        writeBuffer.position(position.offset());
+        nextSequence = lastSequence + 1;
+        end = position;
+
+        log.info("Opened event journal in {} at segment {} offset {} (fsync {})",
+                directory, writeSegment, position.offset(), fsyncPolicy);
+    }
+
+    /**
+     * Appends an event to the journal.
+     *
+     * @param event the event to append; its sequence is ignored
+     * @return the sequence number assigned to the event
+     * @throws UncheckedIOException if a new segment cannot be created
+     */
+    public long append(JournalEvent event) {
+        synchronized (writeLock) {
+            long sequence = nextSequence;
+            byte[] payload = encode(event.withSequence(sequence));
+            int recordSize = RECORD_HEADER_SIZE + payload.length;
+
+            // Keep room for the end-of-segment marker
+            if (writeBuffer.position() + recordSize + Integer.BYTES > segmentSize) {
+                roll();
+            }
+
+            int offset = writeBuffer.position();
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            writeBuffer.put(offset + RECORD_HEADER_SIZE, payload);
+            writeBuffer.putInt(offset + Integer.BYTES, (int) crc.getValue());
+            writeBuffer.putInt(offset, payload.length);
+            writeBuffer.position(offset + recordSize);
+
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                writeBuffer.force(offset, recordSize);
+            } else {
+                unsynced = true;
+            }
+
+            nextSequence++;
+            end = new Position(writeSegment, offset + recordSize);
+            return sequence;
+        }
+    }
+
+    /**
+     * Reads events in journal order.
+     *
+     * @param from      the position to start reading at
+     * @param maxEvents the maximum number of events to read
+     * @param consumer  receives each event
+     * @return the position just after the last event read
+     */
+    public Position read(Position from, int maxEvents, Consumer<JournalEvent> consumer) {
+        Position limit = end;
+        Position position = from;
+        int count = 0;
+
+        while (count < maxEvents && position.compareTo(limit) < 0) {
+            MappedByteBuffer segment = segments.get(position.segment());
+            if (segment == null) {
+                throw new IllegalStateException("Journal segment " + position.segment() + " has been released");
+            }
+
+            ByteBuffer buffer = segment.duplicate();
+            int length = buffer.getInt(position.offset());
+            if (length == END_OF_SEGMENT) {
+                position = new Position(position.segment() + 1, SEGMENT_HEADER_SIZE);
+                continue;
+            }
+
+            consumer.accept(decode(buffer, position.offset()));
+            position = new Position(position.segment(), position.offset() + RECORD_HEADER_SIZE + length);
+            count++;
+        }
+        return position;
+    }
+
+    /**
+     * Returns the position of the oldest event still in the journal.
+     */
+    public Position getStart() {
+        return new Position(segments.firstKey(), SEGMENT_HEADER_SIZE);
+    }
+
+    /**
+     * Returns the position just after the newest event.
+     */
+    public Position getEnd() {
+        return end;
+    }
+
+    /**
+     * Deletes every segment that lies entirely before the given position.
+     *
+     * @param drained the position up to which all events have been written to the database
+     */
+    public void release(Position drained) {
+        for (Long segment : List.copyOf(segments.headMap(drained.segment()).keySet())) {
+            segments.remove(segment);
+            try {
+                Files.deleteIfExists(segmentFile(segment));
+            } catch (IOException ex) {
+                log.warn("Could not delete drained journal segment {}", segmentFile(segment), ex);
+            }
+        }
+    }
+
+    /**
+     * Forces appended events to disk, when the fsync policy is {@link FsyncPolicy#INTERVAL}.
+     */
+    @Scheduled(fixedDelayString = "${smartpark.journal.fsync-interval-ms:100}")
+    public void sync() {
+        if (fsyncPolicy == FsyncPolicy.INTERVAL && unsynced) {
+            unsynced = false;
+            synchronized (writeLock) {
+                writeBuffer.force();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            synchronized (writeLock) {
+                writeBuffer.force();
+            }
+        }
+    }
+
+    // Called with the write lock held
+    private void roll() {
+        writeBuffer.putInt(writeBuffer.position(), END_OF_SEGMENT);
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            writeBuffer.force();
+        }
+
+        try {
+            MappedByteBuffer next = map(segmentFile(writeSegment + 1));
+            next.putLong(0, nextSequence);
+            next.position(SEGMENT_HEADER_SIZE);
+            writeSegment++;
+            segments.put(writeSegment, next);
+            writeBuffer = next;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not create journal segment " + segmentFile(writeSegment + 1), ex);
+        }
+    }
+
+    private static int countRecords(ByteBuffer segment, int end) {
+        int count = 0;
+        for (int offset = SEGMENT_HEADER_SIZE; offset < end; offset += RECORD_HEADER_SIZE + segment.getInt(offset)) {
+            count++;
+        }
+        return count;
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = Math.max(channel.size(), segmentSize);
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private List<Path> listSegmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentFile(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static void clear(ByteBuffer buffer, int from) {
+        byte[] zeros = new byte[8192];
+        for (int offset = from; offset < buffer.capacity(); offset += zeros.length) {
+            buffer.put(offset, zeros, 0, Math.min(zeros.length, buffer.capacity() - offset));
+        }
+    }
+
+    private static byte[] encode(JournalEvent event) {
+        byte[] plate = event.licensePlate().getBytes(StandardCharsets.UTF_8);
+        byte[] lotId = event.lotId().getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + 1 + Long.BYTES + Integer.BYTES
+                + Short.BYTES + plate.length + Short.BYTES + lotId.length);
+        buffer.putLong(event.sequence());
+        buffer.put((byte) event.type().ordinal());
+        buffer.putLong(event.time().toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(event.time().getNano());
+        buffer.putShort((short) plate.length).put(plate);
+        buffer.putShort((short) lotId.length).put(lotId);
+        return buffer.array();
+    }
+
+    // Returns null if there is no complete, intact record at the offset
+    private static JournalEvent decode(ByteBuffer segment, int offset) {
+        if (offset + RECORD_HEADER_SIZE > segment.capacity()) {
+            return null;
+        }
+        int length = segment.getInt(offset);
+        if (length <= 0 || offset + RECORD_HEADER_SIZE + length > segment.capacity()) {
+            return null;
+        }
+
+        byte[] payload = new byte[length];
+        segment.get(offset + RECORD_HEADER_SIZE, payload);
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        if ((int) crc.getValue() != segment.getInt(offset + Integer.BYTES)) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long sequence = buffer.getLong();
+        JournalEvent.Type type = JournalEvent.Type.values()[buffer.get()];
+        LocalDateTime time = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+        String plate = readString(buffer);
+        String lotId = readString(buffer);
+        return new JournalEvent(sequence, type, plate, lotId, time);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * When appended events are forced from the mapping to the disk.
+     */
+    public enum FsyncPolicy {
+        // Before every append returns: survives power loss, slowest
+        ALWAYS,
+        // Every smartpark.journal.fsync-interval-ms: may lose that much on power loss
+        INTERVAL,
+        // Left to the operating system: survives a JVM crash, not an OS crash
+        NEVER
+    }
+
+    /**
+     * A position in the journal.
+     *
+     * @param segment the segment number
+     * @param offset  the byte offset within the segment
+     */
+    public record Position(long segment, int offset) implements Comparable<Position> {
+
+        @Override
+        public int compareTo(Position other) {
+            int bySegment = Long.compare(segment, other.segment);
+            return bySegment != 0 ? bySegment : Integer.compare(offset, other.offset);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.CacheStatsDto;
+import com.fayemanalo.smartpark.dto.ParkingRecordDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Results of check-ins and check-outs by the Idempotency-Key they were submitted with.
+ *
+ * A gate that retries a request with the same key gets the original result from memory, without the
+ * operation running again. A duplicate that arrives while the original is still running waits for it and
+ * shares its outcome. Only successful results are kept, so a request that failed can be retried with the
+ * same key. Entries are bounded in number and expire after a fixed time.
+ */
+@Component
+public class IdempotencyCache {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final Cache<String, Entry> results;
+
+    public IdempotencyCache(@Value("${smartpark.idempotency.maximum-size:100000}") long maximumSize,
+                            @Value("${smartpark.idempotency.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Runs an operation once per idempotency key, answering later submissions with the same key from memory.
+     *
+     * @param key       the Idempotency-Key of the request, or null to always run the operation
+     * @param request   the request body; a key can only be reused with an equal request
+     * @param operation the operation to run on the first submission
+     * @return the result of the first submission with this key
+     * @throws ResponseStatusException if the key is blank or too long, or was used for a different request
+     */
+    public ParkingRecordDto execute(String key, Object request, Supplier<ParkingRecordDto> operation) {
+        if (key == null) {
+            return operation.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        Entry entry = new Entry(request, new CompletableFuture<>());
+        Entry existing = results.get(key, k -> entry);
+        if (existing != entry) {
+            return replay(existing, request);
+        }
+
+        try {
+            ParkingRecordDto result = operation.get();
+            entry.result().complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            // Let the key be retried; duplicates already waiting get the same error
+            results.asMap().remove(key, entry);
+            entry.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns hit, miss and eviction statistics of the cached results.
+     */
+    public CacheStatsDto getStats() {
+        CacheStats stats = results.stats();
+        return new CacheStatsDto(
+                "idempotencyKeys",
+                results.estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.evictionCount()
+        );
+    }
+
+    private static ParkingRecordDto replay(Entry entry, Object request) {
+        if (!entry.request().equals(request)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key was already used for a different request");
+        }
+        try {
+            return entry.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record Entry(Object request, CompletableFuture<ParkingRecordDto> result) {}
+}
@@ -0,0 +1,233 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.ActiveSession;
+import com.fayemanalo.smartpark.model.JournalCheckpoint;
+import com.fayemanalo.smartpark.model.JournalEvent;
+import com.fayemanalo.smartpark.model.ParkedVehicles;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.ParkingRecord;
+import com.fayemanalo.smartpark.model.Vehicle;
+import com.fayemanalo.smartpark.model.VehicleInfo;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.repository.JournalCheckpointRepository;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import com.fayemanalo.smartpark.repository.VehicleRepository;
+import com.fayemanalo.smartpark.service.EventJournal.Position;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Background writer that applies the {@link EventJournal} to the database.
+ *
+ * Events are read in batches and written as ParkingRecord inserts and updates in one transaction per batch,
+ * together with the {@link JournalCheckpoint}, so every event is applied exactly once even if the
+ * application stops half-way. Occupancy is not touched here: {@link LotOccupancyTracker} already writes it
+ * back on its own schedule.
+ *
+ * At startup, everything after the checkpoint is replayed before the application serves requests. The
+ * occupancy of the replayed lots and of their capacity pools is then recounted and the
+ * {@link ActiveSessionIndex} rebuilt, because both may have been persisted before the crash with a state
+ * older than the journal's.
+ */
+@Component
+@ConditionalOnProperty(name = "smartpark.journal.enabled", havingValue = "true")
+public class JournalDrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalDrainer.class);
+
+    private final EventJournal eventJournal;
+    private final ParkingRecordRepository parkingRecordRepository;
+    private final VehicleRepository vehicleRepository;
+    private final ParkingLotRepository parkingLotRepository;
+    private final JournalCheckpointRepository journalCheckpointRepository;
+    private final ActiveSessionIndex activeSessionIndex;
+    private final ReferenceDataCache referenceDataCache;
+    private final TariffService tariffService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    private Position drained;
+
+    public JournalDrainer(EventJournal eventJournal, ParkingRecordRepository parkingRecordRepository,
+                          VehicleRepository vehicleRepository, ParkingLotRepository parkingLotRepository,
+                          JournalCheckpointRepository journalCheckpointRepository,
+                          ActiveSessionIndex activeSessionIndex, ReferenceDataCache referenceDataCache,
+                          TariffService tariffService, PlatformTransactionManager transactionManager,
+                          @Value("${smartpark.journal.batch-size:1000}") int batchSize) {
+        this.eventJournal = eventJournal;
+        this.parkingRecordRepository = parkingRecordRepository;
+        this.vehicleRepository = vehicleRepository;
+        this.parkingLotRepository = parkingLotRepository;
+        this.journalCheckpointRepository = journalCheckpointRepository;
+        this.activeSessionIndex = activeSessionIndex;
+        this.referenceDataCache = referenceDataCache;
+        this.tariffService = tariffService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Applies every event the database has not seen yet, then brings occupancy and the active-session index
+     * in line with the result.
+     */
+    @PostConstruct
+    public void replay() {
+        drained = loadCheckpoint();
+
+        Set<String> replayedLots = new HashSet<>();
+        int replayed = 0;
+        int applied;
+        while ((applied = drainBatch(replayedLots)) > 0) {
+            replayed += applied;
+        }
+
+        if (replayed > 0) {
+            transactionTemplate.executeWithoutResult(status -> recountOccupancy(replayedLots));
+            activeSessionIndex.rebuild();
+            log.info("Replayed {} journal events into {} parking lots", replayed, replayedLots.size());
+        }
+    }
+
+    // Sets the occupancy of each lot, and of each of its capacity pools, to the vehicles parked in it
+    private void recountOccupancy(Set<String> lotIds) {
+        Map<String, Map<VehicleType, Integer>> countsByType =
+                ParkedVehicles.byLot(parkingRecordRepository.countParkedVehiclesByLotAndType());
+
+        for (String lotId : lotIds) {
+            parkingLotRepository.findById(lotId).ifPresent(lot -> {
+                parkingLotRepository.updateOccupiedSpaces(
+                        lotId, (int) parkingRecordRepository.countByParkingLotAndCheckOutTimeIsNull(lot));
+                Map<VehicleType, Integer> parked = countsByType.getOrDefault(lotId, Map.of());
+                for (VehicleType poolType : lot.getCapacityPools().keySet()) {
+                    parkingLotRepository.updatePoolOccupiedSpaces(lotId, poolType.name(), parked.getOrDefault(poolType, 0));
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes all events appended since the last drain to the database.
+     */
+    @Scheduled(fixedDelayString = "${smartpark.journal.drain-interval-ms:200}")
+    @PreDestroy
+    public synchronized void drain() {
+        while (drainBatch(new HashSet<>()) > 0) {
+            // Keep going until the journal is caught up
+        }
+    }
+
+    // Applies up to batchSize events in one transaction and returns how many were applied
+    private synchronized int drainBatch(Set<String> touchedLots) {
+        List<JournalEvent> events = new ArrayList<>();
+        Position next = eventJournal.read(drained, batchSize, events::add);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        List<ActiveSession> opened = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            opened.addAll(apply(events));
+            saveCheckpoint(next, events.get(events.size() - 1).sequence());
+        });
+
+        drained = next;
+        eventJournal.release(drained);
+        // Until now the index knew these sessions by their journal sequence number
+        opened.forEach(session -> activeSessionIndex.attachRecord(session, session.recordId()));
+        events.forEach(event -> touchedLots.add(event.lotId()));
+        return events.size();
+    }
+
+    // Returns the sessions opened by the events, with the IDs of their saved records
+    private List<ActiveSession> apply(List<JournalEvent> events) {
+        // Records opened in this batch are not in the database yet
+        Map<String, ParkingRecord> openedInBatch = new HashMap<>();
+        List<ActiveSession> opened = new ArrayList<>();
+
+        for (JournalEvent event : events) {
+            Vehicle vehicle = vehicleRepository.getReferenceById(event.licensePlate());
+            ParkingLot lot = parkingLotRepository.getReferenceById(event.lotId());
+
+            if (event.type() == JournalEvent.Type.CHECK_IN) {
+                ParkingRecord record = ParkingRecord.builder()
+                        .vehicle(vehicle)
+                        .parkingLot(lot)
+                        .checkInTime(event.time())
+                        .build();
+                ParkingRecord saved = parkingRecordRepository.save(record);
+                openedInBatch.put(event.licensePlate(), saved);
+                opened.add(new ActiveSession(event.licensePlate(), event.lotId(), event.time(), saved.getId()));
+                continue;
+            }
+
+            ParkingRecord record = openedInBatch.remove(event.licensePlate());
+            if (record == null) {
+                record = parkingRecordRepository.findByVehicleAndParkingLotAndCheckOutTimeIsNull(vehicle, lot)
+                        .orElse(null);
+            }
+            if (record == null) {
+                log.warn("Skipping journal event {}: {} has no open record in lot {}",
+                        event.sequence(), event.licensePlate(), event.lotId());
+                continue;
+            }
+            record.setCheckOutTime(event.time());
+            // Same tariff and times as when the check-out was acknowledged, so the same fee
+            VehicleType vehicleType = referenceDataCache.findVehicle(event.licensePlate())
+                    .map(VehicleInfo::type)
+                    .orElse(null);
+            record.setFee(tariffService.calculateFee(event.lotId(), vehicleType, record.getCheckInTime(), event.time())
+                    .orElse(null));
+        }
+        return opened;
+    }
+
+    private Position loadCheckpoint() {
+        Position start = eventJournal.getStart();
+        Position end = eventJournal.getEnd();
+
+        Optional<JournalCheckpoint> saved = journalCheckpointRepository.findById(JournalCheckpoint.ID);
+        if (saved.isEmpty()) {
+            // A checkpoint is saved as soon as the journal is first used with this database, so without one
+            // the events were written against another database (e.g. an in-memory one that is gone)
+            if (!start.equals(end)) {
+                log.warn("Database has no journal checkpoint; skipping the journal events before {}", end);
+            }
+            saveCheckpoint(end, 0);
+            return end;
+        }
+
+        Position checkpoint = new Position(saved.get().getSegmentNumber(), saved.get().getSegmentOffset());
+        if (checkpoint.compareTo(end) > 0) {
+            // The database is ahead of the journal, e.g. the journal directory was replaced
+            log.warn("Journal checkpoint {} is past the end of the journal {}; draining from the start", checkpoint, end);
+            return start;
+        }
+        return checkpoint.compareTo(start) < 0 ? start : checkpoint;
+    }
+
+    private void saveCheckpoint(Position position, long lastSequence) {
+        journalCheckpointRepository.save(JournalCheckpoint.builder()
+                .id(JournalCheckpoint.ID)
+                .segmentNumber(position.segment())
+                .segmentOffset(position.offset())
+                .lastSequence(lastSequence)
+                .build());
+    }
+}
@@ -0,0 +1,141 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Takes and frees spaces in the database rows of a lot, so the database rather than the in-memory counters
+ * decides whether a lot is full.
+ *
+ * Every change runs in the caller's transaction, so it is undone when that transaction rolls back. How
+ * concurrent check-ins into one lot are kept from overshooting its capacity depends on the
+ * {@link ConcurrencyMode}. A space of a capacity pool also counts towards the lot's total, and the lot row
+ * is always written before the pool row, so the modes never wait for each other's locks in opposite order.
+ *
+ * This only keeps a lot's capacity from being overshot. It does not make several instances sharing one
+ * database correct: active sessions, reservations and idempotency keys stay per instance, and snapshot
+ * reconciliation at startup overwrites the occupancy with the local count.
+ *
+ * Only created when {@code smartpark.occupancy.concurrency-mode} is not {@code in-memory}; see
+ * {@link LotOccupancyTracker}.
+ */
+@Component
+@ConditionalOnExpression("!'${smartpark.occupancy.concurrency-mode:in-memory}'.replace('_', '-').equalsIgnoreCase('in-memory')")
+public class LotCapacityGuard {
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final ConcurrencyMode mode;
+    private final int optimisticAttempts;
+
+    public LotCapacityGuard(ParkingLotRepository parkingLotRepository,
+                            @Value("${smartpark.occupancy.concurrency-mode}") ConcurrencyMode mode,
+                            @Value("${smartpark.occupancy.optimistic-attempts:10}") int optimisticAttempts) {
+        if (mode == ConcurrencyMode.IN_MEMORY) {
+            throw new IllegalArgumentException("The in-memory mode does not use the database");
+        }
+        this.parkingLotRepository = parkingLotRepository;
+        this.mode = mode;
+        this.optimisticAttempts = optimisticAttempts;
+    }
+
+    public ConcurrencyMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Takes a space in the database if the pool has one left.
+     *
+     * @param lotId    the ID of the parking lot
+     * @param poolType the vehicle type whose capacity pool to use, or null for the shared spaces
+     * @param spaces   how many spaces of the pool may be occupied, after leaving held spaces free
+     * @return true if a space was taken, false if the pool has no space left
+     * @throws ResponseStatusException with 409 if optimistic attempts keep conflicting with other check-ins
+     */
+    public boolean tryTake(String lotId, VehicleType poolType, int spaces) {
+        return switch (mode) {
+            case OPTIMISTIC -> tryTakeOptimistically(lotId, poolType, spaces);
+            case PESSIMISTIC -> tryTakePessimistically(lotId, poolType, spaces);
+            case ATOMIC_UPDATE -> tryTakeAtomically(lotId, poolType, spaces);
+            case IN_MEMORY -> throw new IllegalStateException();
+        };
+    }
+
+    /**
+     * Frees a space in the database.
+     *
+     * @param lotId    the ID of the parking lot
+     * @param poolType the vehicle type whose capacity pool the space belongs to, or null for the shared spaces
+     */
+    public void free(String lotId, VehicleType poolType) {
+        parkingLotRepository.addOccupiedSpaces(lotId, -1);
+        if (poolType != null) {
+            parkingLotRepository.addPoolOccupiedSpaces(lotId, poolType.name(), -1);
+        }
+    }
+
+    // Read the version, then the occupancy, and write only if the version is still the same; any change
+    // in between bumps the version, so a stale decision is never written
+    private boolean tryTakeOptimistically(String lotId, VehicleType poolType, int spaces) {
+        for (int attempt = 0; attempt < optimisticAttempts; attempt++) {
+            long version = parkingLotRepository.findVersion(lotId);
+            if (occupiedSpaces(lotId, poolType) >= spaces) {
+                return false;
+            }
+            if (parkingLotRepository.addOccupiedSpacesIfVersion(lotId, version) == 1) {
+                if (poolType != null) {
+                    parkingLotRepository.addPoolOccupiedSpaces(lotId, poolType.name(), 1);
+                }
+                return true;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.CONFLICT, "Parking lot is busy, please try again");
+    }
+
+    // The lot row stays locked until the transaction ends, so nobody else changes the lot in between
+    private boolean tryTakePessimistically(String lotId, VehicleType poolType, int spaces) {
+        parkingLotRepository.lockById(lotId);
+        if (occupiedSpaces(lotId, poolType) >= spaces) {
+            return false;
+        }
+        parkingLotRepository.addOccupiedSpaces(lotId, 1);
+        if (poolType != null) {
+            parkingLotRepository.addPoolOccupiedSpaces(lotId, poolType.name(), 1);
+        }
+        return true;
+    }
+
+    // The database checks and changes the count in one statement
+    private boolean tryTakeAtomically(String lotId, VehicleType poolType, int spaces) {
+        if (poolType == null) {
+            return parkingLotRepository.addSharedSpaceIfAvailable(lotId, spaces) == 1;
+        }
+        parkingLotRepository.addOccupiedSpaces(lotId, 1);
+        if (parkingLotRepository.addPoolSpaceIfAvailable(lotId, poolType.name(), spaces) == 1) {
+            return true;
+        }
+        parkingLotRepository.addOccupiedSpaces(lotId, -1);
+        return false;
+    }
+
+    private int occupiedSpaces(String lotId, VehicleType poolType) {
+        return poolType != null
+                ? parkingLotRepository.findPoolOccupiedSpaces(lotId, poolType.name())
+                : parkingLotRepository.findSharedOccupiedSpaces(lotId);
+    }
+
+    public enum ConcurrencyMode {
+        // Counters in memory decide, and are written back asynchronously
+        IN_MEMORY,
+        // Conditional update on the lot's version, retried up to smartpark.occupancy.optimistic-attempts times
+        OPTIMISTIC,
+        // SELECT ... FOR UPDATE on the lot row for the rest of the check-in
+        PESSIMISTIC,
+        // UPDATE ... SET occupied_spaces = occupied_spaces + 1 WHERE there is space left
+        ATOMIC_UPDATE
+    }
+}
@@ -0,0 +1,441 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.CapacityPool;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.PoolOccupancy;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.fayemanalo.smartpark.service.TransactionCallbacks.onRollback;
+
+/**
+ * In-memory occupancy counters for parking lots.
+ *
+ * Each lot gets an atomic counter seeded from the database on first use. Capacity is reserved
+ * with a compare-and-set loop, so the "lot full" decision never needs a database round trip and
+ * concurrent check-ins can never overshoot the capacity. Changed lots are written back to the
+ * database asynchronously by {@link #flush()}.
+ *
+ * Every change also bumps a per-lot version number, so callers can tell whether a lot changed
+ * since they last looked without reading its occupancy from the database.
+ *
+ * A lot's counter is striped by capacity pool: each vehicle type with spaces set aside (see
+ * {@link ParkingLot#getCapacityPools()}) has its own counter, and the other types share one for the
+ * remaining spaces. Check-ins of different pools never contend on the same counter; the lot's occupancy
+ * and version are the sums over its stripes.
+ *
+ * With a {@link LotCapacityGuard}, the database decides whether a lot is full instead, within the caller's
+ * transaction. The database then also holds the occupancy and version of every lot: the counters only keep
+ * the capacities, the getters read the lot's row, and the methods that never read the database find nothing.
+ */
+@Component
+public class LotOccupancyTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(LotOccupancyTracker.class);
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final LotCapacityGuard capacityGuard;
+    private final ConcurrentMap<String, LotCounter> counters = new ConcurrentHashMap<>();
+    private final Set<String> dirtyLots = ConcurrentHashMap.newKeySet();
+    // Concurrent first uses of a lot share one query
+    private final SingleFlight<String, ParkingLot> lotLoads = new SingleFlight<>();
+
+    // Versions restart at zero with every instance; the epoch keeps tags from two instances apart
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    public LotOccupancyTracker(ParkingLotRepository parkingLotRepository, Optional<LotCapacityGuard> capacityGuard) {
+        this.parkingLotRepository = parkingLotRepository;
+        this.capacityGuard = capacityGuard.orElse(null);
+    }
+
+    /**
+     * Atomically reserves one of the shared spaces in the given lot.
+     *
+     * If called inside a transaction, the reservation is released again when that transaction rolls back.
+     *
+     * @param lotId the ID of the parking lot
+     * @return true if a space was reserved, false if the lot is full
+     * @throws ResponseStatusException if the parking lot does not exist
+     */
+    public boolean tryReserve(String lotId) {
+        return tryReserve(lotId, null, 0);
+    }
+
+    /**
+     * Atomically reserves one space for a vehicle type in the given lot.
+     *
+     * The space comes from the type's own pool if the lot has one, otherwise from the shared spaces. Held
+     * spaces are shared spaces kept free for others, so they do not apply to a type with its own pool.
+     * If called inside a transaction, the reservation is released again when that transaction rolls back.
+     *
+     * @param lotId       the ID of the parking lot
+     * @param vehicleType the type of the vehicle, or null for the shared spaces
+     * @param heldSpaces  shared spaces that must stay free, e.g. for vehicles with a reservation
+     * @return true if a space was reserved, false if the lot has no space left for the type
+     * @throws ResponseStatusException if the parking lot does not exist, or with 409 if the
+     *                                 {@link LotCapacityGuard} keeps conflicting with other check-ins
+     */
+    public boolean tryReserve(String lotId, VehicleType vehicleType, int heldSpaces) {
+        LotCounter counter = counter(lotId);
+        Stripe stripe = counter.stripe(vehicleType);
+        int spaces = stripe.capacity - (stripe == counter.shared ? heldSpaces : 0);
+        if (capacityGuard != null) {
+            // Undone with the caller's transaction
+            return capacityGuard.tryTake(lotId, counter.poolType(stripe, vehicleType), spaces);
+        }
+        if (!stripe.tryIncrement(spaces)) {
+            return false;
+        }
+
+        dirtyLots.add(lotId);
+        onRollback(() -> {
+            stripe.decrement();
+            dirtyLots.add(lotId);
+        });
+        return true;
+    }
+
+    /**
+     * Releases one of the shared spaces in the given lot.
+     *
+     * If called inside a transaction, the space is taken again when that transaction rolls back.
+     *
+     * @param lotId the ID of the parking lot
+     * @throws ResponseStatusException if the parking lot does not exist
+     */
+    public void release(String lotId) {
+        release(lotId, null);
+    }
+
+    /**
+     * Releases one space taken by a vehicle type in the given lot.
+     *
+     * If called inside a transaction, the space is taken again when that transaction rolls back.
+     *
+     * @param lotId       the ID of the parking lot
+     * @param vehicleType the type of the vehicle, or null for the shared spaces
+     * @throws ResponseStatusException if the parking lot does not exist
+     */
+    public void release(String lotId, VehicleType vehicleType) {
+        LotCounter counter = counter(lotId);
+        Stripe stripe = counter.stripe(vehicleType);
+        if (capacityGuard != null) {
+            capacityGuard.free(lotId, counter.poolType(stripe, vehicleType));
+            return;
+        }
+        stripe.decrement();
+
+        dirtyLots.add(lotId);
+        onRollback(() -> {
+            stripe.forceIncrement();
+            dirtyLots.add(lotId);
+        });
+    }
+
+    /**
+     * Tells whether the database decides if a lot is full, see {@link LotCapacityGuard}.
+     *
+     * @return true if reserving and releasing spaces runs statements in the caller's transaction
+     */
+    public boolean hasCapacityGuard() {
+        return capacityGuard != null;
+    }
+
+    /**
+     * Returns the current number of occupied spaces in the given lot.
+     *
+     * @param lotId the ID of the parking lot
+     * @return the number of occupied spaces
+     * @throws ResponseStatusException if the parking lot does not exist
+     */
+    public int getOccupiedSpaces(String lotId) {
+        return current(lotId).occupied();
+    }
+
+    /**
+     * Returns the occupancy of the spaces a vehicle type can use in the given lot.
+     *
+     * @param lotId       the ID of the parking lot
+     * @param vehicleType the type of the vehicle, or null for the shared spaces
+     * @return the capacity and occupancy of the type's pool, or of the shared spaces if it has none
+     * @throws ResponseStatusException if the parking lot does not exist
+     */
+    public PoolOccupancy getPoolOccupancy(String lotId, VehicleType vehicleType) {
+        LotCounter counter = current(lotId);
+        Stripe stripe = counter.stripe(vehicleType);
+        return new PoolOccupancy(stripe.capacity, stripe.occupied.get(), stripe != counter.shared);
+    }
+
+    /**
+     * Returns the occupancy of the spaces each vehicle type can use in the given lot.
+     *
+     * @param lotId the ID of the parking lot
+     * @return the pool occupancy of every vehicle type; types without a pool share the same numbers
+     * @throws ResponseStatusException if the parking lot does not exist
+     */
+    public Map<VehicleType, PoolOccupancy> getOccupancyByType(String lotId) {
+        return current(lotId).occupancyByType();
+    }
+
+    /**
+     * Returns the occupancy of the spaces each vehicle type can use, if the lot's counter is already in memory.
+     *
+     * @param lotId the ID of the parking lot
+     * @return the pool occupancy of every vehicle type, or empty if the lot is not tracked yet
+     * @see #findOccupiedSpaces(String)
+     */
+    public Optional<Map<VehicleType, PoolOccupancy>> findOccupancyByType(String lotId) {
+        return Optional.ofNullable(tracked(lotId)).map(LotCounter::occupancyByType);
+    }
+
+    /**
+     * Returns the occupancy of the spaces a vehicle type can use, if the lot's counter is already in memory.
+     *
+     * @param lotId       the ID of the parking lot
+     * @param vehicleType the type of the vehicle, or null for the shared spaces
+     * @return the capacity and occupancy of the type's pool, or empty if the lot is not tracked yet
+     * @see #findOccupiedSpaces(String)
+     */
+    public Optional<PoolOccupancy> findPoolOccupancy(String lotId, VehicleType vehicleType) {
+        LotCounter counter = tracked(lotId);
+        if (counter == null) {
+            return Optional.empty();
+        }
+        Stripe stripe = counter.stripe(vehicleType);
+        return Optional.of(new PoolOccupancy(stripe.capacity, stripe.occupied.get(), stripe != counter.shared));
+    }
+
+    /**
+     * Computes the occupancy of the spaces each vehicle type can use from a lot's persisted state.
+     *
+     * @param lot the parking lot
+     * @return the pool occupancy of every vehicle type; types without a pool share the same numbers
+     */
+    public static Map<VehicleType, PoolOccupancy> occupancyByType(ParkingLot lot) {
+        return new LotCounter(lot).occupancyByType();
+    }
+
+    /**
+     * Returns the number of occupied spaces in the given lot if its counter is already in memory.
+     *
+     * Unlike {@link #getOccupiedSpaces(String)}, this never reads the database. A lot without a counter
+     * has not changed since startup, so its persisted occupancy is current. With a {@link LotCapacityGuard}
+     * only the database knows the occupancy, so nothing is found.
+     *
+     * @param lotId the ID of the parking lot
+     * @return the number of occupied spaces, or empty if the lot is not tracked yet
+     */
+    public OptionalInt findOccupiedSpaces(String lotId) {
+        LotCounter counter = tracked(lotId);
+        return counter != null ? OptionalInt.of(counter.occupied()) : OptionalInt.empty();
+    }
+
+    /**
+     * Returns a tag that changes whenever the occupancy of the given lot changes.
+     *
+     * The tag is read before the occupancy, so a tag paired with a concurrently read occupancy
+     * is at worst older than that occupancy, never newer.
+     *
+     * @param lotId the ID of the parking lot
+     * @return an opaque version tag, unique to this lot's current occupancy within this instance, or from the
+     *         lot's version column with a {@link LotCapacityGuard}
+     * @throws ResponseStatusException if the parking lot does not exist
+     */
+    public String getVersionTag(String lotId) {
+        LotCounter counter = counter(lotId);
+        if (capacityGuard != null) {
+            // The guard bumps the lot's version with every change of its occupancy
+            return "db-" + parkingLotRepository.findVersion(lotId);
+        }
+        return epoch + "-" + counter.version();
+    }
+
+    /**
+     * Returns the IDs of the lots whose occupancy is held in memory.
+     *
+     * Lots not in this set have not changed since startup.
+     *
+     * @return a live, unmodifiable view of the tracked lot IDs
+     */
+    public Set<String> getTrackedLotIds() {
+        return Collections.unmodifiableSet(counters.keySet());
+    }
+
+    /**
+     * Writes the occupancy of every lot changed since the last flush back to the database.
+     *
+     * A lot whose write fails stays changed and is written again by the next flush; the other lots are
+     * still written.
+     */
+    @Scheduled(fixedDelayString = "${smartpark.occupancy.flush-interval-ms:1000}")
+    @PreDestroy
+    public void flush() {
+        for (String lotId : dirtyLots) {
+            // Remove before reading, so a change racing with this write marks the lot dirty again
+            dirtyLots.remove(lotId);
+            LotCounter counter = counters.get(lotId);
+            try {
+                parkingLotRepository.updateOccupiedSpaces(lotId, counter.occupied());
+                counter.dedicated.forEach((vehicleType, stripe) -> parkingLotRepository.updatePoolOccupiedSpaces(
+                        lotId, vehicleType.name(), stripe.occupied.get()));
+            } catch (RuntimeException ex) {
+                dirtyLots.add(lotId);
+                log.warn("Could not write the occupancy of parking lot {}; retrying on the next flush", lotId, ex);
+            }
+        }
+    }
+
+    // The counter if it holds the lot's occupancy
+    private LotCounter tracked(String lotId) {
+        return capacityGuard == null ? counters.get(lotId) : null;
+    }
+
+    // The counter with the lot's current occupancy, read from the database when the guard keeps it there
+    private LotCounter current(String lotId) {
+        LotCounter counter = counter(lotId);
+        if (capacityGuard == null) {
+            return counter;
+        }
+        Map<VehicleType, Integer> poolOccupied = new EnumMap<>(VehicleType.class);
+        counter.dedicated.keySet().forEach(vehicleType -> poolOccupied.put(vehicleType,
+                parkingLotRepository.findPoolOccupiedSpaces(lotId, vehicleType.name())));
+        return counter.withOccupancy(parkingLotRepository.findSharedOccupiedSpaces(lotId), poolOccupied);
+    }
+
+    private LotCounter counter(String lotId) {
+        LotCounter counter = counters.get(lotId);
+        if (counter != null) {
+            return counter;
+        }
+
+        ParkingLot lot = lotLoads.execute(lotId, () -> parkingLotRepository.findById(lotId)
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "Parking lot not found")));
+
+        return counters.computeIfAbsent(lotId, id -> new LotCounter(lot));
+    }
+
+    // The stripes of one lot: one per capacity pool, and one for the shared spaces
+    private static final class LotCounter {
+
+        private final Stripe shared;
+        private final Map<VehicleType, Stripe> dedicated = new EnumMap<>(VehicleType.class);
+
+        private LotCounter(ParkingLot lot) {
+            int pooledCapacity = 0;
+            int pooledOccupied = 0;
+            for (Map.Entry<VehicleType, CapacityPool> pool : lot.getCapacityPools().entrySet()) {
+                dedicated.put(pool.getKey(), new Stripe(pool.getValue().getCapacity(), pool.getValue().getOccupiedSpaces()));
+                pooledCapacity += pool.getValue().getCapacity();
+                pooledOccupied += pool.getValue().getOccupiedSpaces();
+            }
+            // The shared spaces have no row of their own, so their count is what the pools leave of the total
+            this.shared = new Stripe(lot.getCapacity() - pooledCapacity, Math.max(0, lot.getOccupiedSpaces() - pooledOccupied));
+        }
+
+        private LotCounter(Stripe shared) {
+            this.shared = shared;
+        }
+
+        // A copy with the same capacities and the given occupancy
+        private LotCounter withOccupancy(int sharedOccupied, Map<VehicleType, Integer> poolOccupied) {
+            LotCounter copy = new LotCounter(new Stripe(shared.capacity, sharedOccupied));
+            dedicated.forEach((vehicleType, stripe) -> copy.dedicated.put(vehicleType,
+                    new Stripe(stripe.capacity, poolOccupied.get(vehicleType))));
+            return copy;
+        }
+
+        private Stripe stripe(VehicleType vehicleType) {
+            Stripe stripe = vehicleType != null ? dedicated.get(vehicleType) : null;
+            return stripe != null ? stripe : shared;
+        }
+
+        // The capacity pool a stripe stands for in the database, or null for the shared spaces
+        private VehicleType poolType(Stripe stripe, VehicleType vehicleType) {
+            return stripe == shared ? null : vehicleType;
+        }
+
+        private int occupied() {
+            int occupied = shared.occupied.get();
+            for (Stripe stripe : dedicated.values()) {
+                occupied += stripe.occupied.get();
+            }
+            return occupied;
+        }
+
+        // Every stripe's version only grows, so the sum changes whenever any stripe does
+        private long version() {
+            long version = shared.version.get();
+            for (Stripe stripe : dedicated.values()) {
+                version += stripe.version.get();
+            }
+            return version;
+        }
+
+        private Map<VehicleType, PoolOccupancy> occupancyByType() {
+            Map<VehicleType, PoolOccupancy> occupancy = new EnumMap<>(VehicleType.class);
+            PoolOccupancy sharedOccupancy = new PoolOccupancy(shared.capacity, shared.occupied.get(), false);
+            for (VehicleType vehicleType : VehicleType.values()) {
+                Stripe stripe = dedicated.get(vehicleType);
+                occupancy.put(vehicleType, stripe != null
+                        ? new PoolOccupancy(stripe.capacity, stripe.occupied.get(), true)
+                        : sharedOccupancy);
+            }
+            return occupancy;
+        }
+    }
+
+    // A counter for one capacity pool of a lot
+    private static final class Stripe {
+
+        private final int capacity;
+        private final AtomicInteger occupied;
+        private final AtomicLong version = new AtomicLong();
+
+        private Stripe(int capacity, int occupied) {
+            this.capacity = capacity;
+            this.occupied = new AtomicInteger(occupied);
+        }
+
+        private boolean tryIncrement(int spaces) {
+            while (true) {
+                int current = occupied.get();
+                if (current >= spaces) {
+                    return false;
+                }
+                if (occupied.compareAndSet(current, current + 1)) {
+                    version.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+
+        private void forceIncrement() {
+            occupied.incrementAndGet();
+            version.incrementAndGet();
+        }
+
+        private void decrement() {
+            occupied.updateAndGet(current -> current > 0 ? current - 1 : 0);
+            version.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.NearestLotDto;
+import com.fayemanalo.smartpark.model.LocatedLot;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * In-memory grid of the parking lots with coordinates, for finding the nearest lots with space.
+ *
+ * The globe is divided into cells of {@code smartpark.nearest.cell-size} degrees of latitude and longitude.
+ * A search visits the cells in rings around the searched position, nearest ring first, and stops as soon as
+ * no lot beyond the visited rings can be closer than the k-th lot found. Only lots in the visited cells are
+ * measured, so the cost depends on how many lots are nearby, not on how many there are. Lots are compared by
+ * the straight-line distance between their points on the unit sphere, precomputed at indexing, which orders
+ * them like the great-circle distance without any trigonometry per lot.
+ *
+ * Near the poles a ring adds little longitude, so rings would have to grow far before their bound stops the
+ * search. Once the rows visited cover the search radius, the remaining rows are searched sideways instead, only
+ * as far in longitude as the radius reaches at their latitude; across a pole that is the whole row.
+ *
+ * Cells are replaced rather than modified, so searches need no locking while lots are registered.
+ */
+@Component
+public class LotSpatialIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(LotSpatialIndex.class);
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final double cellSize;
+    private final int latitudeCells;
+    private final int longitudeCells;
+    private final ConcurrentMap<Long, Entry[]> cells = new ConcurrentHashMap<>();
+
+    public LotSpatialIndex(ParkingLotRepository parkingLotRepository,
+                           @Value("${smartpark.nearest.cell-size:0.05}") double cellSize) {
+        if (!(cellSize > 0 && cellSize <= 90)) {
+            throw new IllegalArgumentException("Cell size must be between 0 and 90 degrees: " + cellSize);
+        }
+        this.parkingLotRepository = parkingLotRepository;
+        this.cellSize = cellSize;
+        this.latitudeCells = (int) Math.ceil(180 / cellSize);
+        this.longitudeCells = (int) Math.ceil(360 / cellSize);
+    }
+
+    /**
+     * Indexes every parking lot with coordinates.
+     */
+    @PostConstruct
+    public void load() {
+        List<ParkingLot> lots = parkingLotRepository.findByLatitudeIsNotNullAndLongitudeIsNotNull();
+        lots.forEach(this::add);
+        if (!lots.isEmpty()) {
+            log.info("Indexed {} parking lots in {} cells", lots.size(), cells.size());
+        }
+    }
+
+    /**
+     * Adds a parking lot to the index. Lots without coordinates are ignored.
+     *
+     * @param lot the parking lot, with its persisted occupancy
+     */
+    public void add(ParkingLot lot) {
+        if (lot.getLatitude() == null || lot.getLongitude() == null) {
+            return;
+        }
+        LocatedLot located = new LocatedLot(lot.getLotId(), lot.getLocation(), lot.getLatitude(), lot.getLongitude(),
+                lot.getCapacity(), lot.getOccupiedSpaces(), LotOccupancyTracker.occupancyByType(lot));
+        long cell = cell(latitudeCell(located.latitude()), longitudeCell(located.longitude()));
+        cells.merge(cell, new Entry[]{Entry.of(located)}, (lots, added) -> {
+            Entry[] merged = Arrays.copyOf(lots, lots.length + 1);
+            merged[lots.length] = added[0];
+            return merged;
+        });
+    }
+
+    /**
+     * Finds the nearest parking lots with space.
+     *
+     * @param latitude        the latitude of the searched position, in degrees
+     * @param longitude       the longitude of the searched position, in degrees
+     * @param k               the number of lots to return at most
+     * @param maxDistanceKm   lots further away are not returned
+     * @param availableSpaces the free spaces of a lot; only lots with free spaces are returned. Called only
+     *                        for lots close enough to make the result
+     * @return up to k lots, nearest first
+     */
+    public List<NearestLotDto> findNearest(double latitude, double longitude, int k, double maxDistanceKm,
+                                           ToIntFunction<LocatedLot> availableSpaces) {
+        // The furthest of the best k found so far is at the head
+        PriorityQueue<Candidate> nearest = new PriorityQueue<>(
+                Comparator.comparingDouble(Candidate::chordSquared).reversed());
+        Entry position = Entry.at(null, latitude, longitude);
+        double maxChordSquared = chordSquared(maxDistanceKm);
+
+        int centerLatitude = latitudeCell(latitude);
+        int centerLongitude = longitudeCell(longitude);
+        int maxRing = Math.max(latitudeCells, longitudeCells / 2);
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int dLatitude = -ring; dLatitude <= ring; dLatitude++) {
+                int latitudeCell = centerLatitude + dLatitude;
+                if (latitudeCell < 0 || latitudeCell >= latitudeCells) {
+                    continue;
+                }
+                // Inner rows of the ring only have its left and right edge
+                int step = Math.abs(dLatitude) == ring ? 1 : Math.max(1, 2 * ring);
+                for (int dLongitude = -ring; dLongitude <= ring; dLongitude += step) {
+                    // Narrow grids wrap around; do not visit a column twice
+                    if (2 * ring + 1 > longitudeCells && (dLongitude < -longitudeCells / 2 || dLongitude >= longitudeCells - longitudeCells / 2)) {
+                        continue;
+                    }
+                    Entry[] lots = cells.get(cell(latitudeCell, Math.floorMod(centerLongitude + dLongitude, longitudeCells)));
+                    if (lots != null) {
+                        for (Entry lot : lots) {
+                            consider(lot, position, k, maxChordSquared, availableSpaces, nearest);
+                        }
+                    }
+                }
+            }
+
+            double beyond = minDistanceBeyondRing(ring, latitude);
+            if (beyond > maxDistanceKm || (nearest.size() == k && chordSquared(beyond) >= nearest.peek().chordSquared())) {
+                break;
+            }
+            // Lots in rows beyond the ring are at least ring * cellSize degrees of latitude away
+            double radiusChordSquared = nearest.size() == k ? nearest.peek().chordSquared() : maxChordSquared;
+            if (chordSquared(EARTH_RADIUS_KM * Math.toRadians(ring * cellSize)) > radiusChordSquared) {
+                searchRows(ring, latitude, centerLatitude, centerLongitude, position, k, maxChordSquared,
+                        radiusChordSquared, availableSpaces, nearest);
+                break;
+            }
+        }
+
+        List<Candidate> result = new ArrayList<>(nearest);
+        result.sort(Comparator.comparingDouble(Candidate::chordSquared));
+        return result.stream()
+                .map(candidate -> {
+                    LocatedLot lot = candidate.lot();
+                    double distance = 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(candidate.chordSquared()) / 2));
+                    return new NearestLotDto(lot.lotId(), lot.location(), lot.latitude(), lot.longitude(),
+                            Math.round(distance * 1000) / 1000.0, candidate.availableSpaces());
+                })
+                .toList();
+    }
+
+    /*
+     * Visits the cells of the rows within the ring that lie beyond it in longitude but within the radius. By the
+     * haversine formula, hav(d) = hav(dPhi) + cos(phi1) * cos(phi2) * hav(dLambda), so a lot within the radius
+     * has hav(dLambda) <= (hav(radius) - hav(minDPhi)) / (cos(phi1) * minCosPhi2) over its row, and
+     * hav(radius) is a quarter of the radius' squared chord. Lots in column offset o are at least (o - 1) cells
+     * away in longitude. If the cells to visit outnumber the indexed cells, the indexed cells are walked instead.
+     */
+    private void searchRows(int ring, double latitude, int centerLatitude, int centerLongitude, Entry position,
+                            int k, double maxChordSquared, double radiusChordSquared,
+                            ToIntFunction<LocatedLot> availableSpaces, PriorityQueue<Candidate> nearest) {
+        int halfRow = longitudeCells / 2;
+        int[] columns = new int[2 * ring + 1];
+        long toVisit = 0;
+        for (int dLatitude = -ring; dLatitude <= ring; dLatitude++) {
+            int latitudeCell = centerLatitude + dLatitude;
+            if (latitudeCell < 0 || latitudeCell >= latitudeCells) {
+                continue;
+            }
+            double south = latitudeCell * cellSize - 90;
+            double north = Math.min(90, south + cellSize);
+            double minDPhi = Math.toRadians(Math.max(0, Math.max(south - latitude, latitude - north)));
+            double minCosPhi = Math.cos(Math.toRadians(Math.max(Math.abs(south), Math.abs(north))));
+            double sinHalfDPhi = Math.sin(minDPhi / 2);
+            double haversine = radiusChordSquared / 4 - sinHalfDPhi * sinHalfDPhi;
+            if (haversine < 0) {
+                continue;
+            }
+            double ratio = haversine / (Math.cos(Math.toRadians(latitude)) * minCosPhi);
+            int reach = ratio >= 1 || Double.isNaN(ratio) ? halfRow
+                    : (int) Math.min(halfRow, Math.floor(Math.toDegrees(2 * Math.asin(Math.sqrt(ratio))) / cellSize) + 1);
+            columns[dLatitude + ring] = reach;
+            toVisit += Math.max(0, 2L * (reach - ring));
+        }
+
+        if (toVisit > cells.size()) {
+            cells.forEach((cell, lots) -> {
+                int dLatitude = (int) (cell / longitudeCells) - centerLatitude;
+                if (Math.abs(dLatitude) > ring) {
+                    return;
+                }
+                int offset = Math.floorMod((int) (cell % longitudeCells) - centerLongitude, longitudeCells);
+                offset = Math.min(offset, longitudeCells - offset);
+                if (offset > ring && offset <= columns[dLatitude + ring]) {
+                    for (Entry lot : lots) {
+                        consider(lot, position, k, maxChordSquared, availableSpaces, nearest);
+                    }
+                }
+            });
+            return;
+        }
+
+        for (int dLatitude = -ring; dLatitude <= ring; dLatitude++) {
+            int latitudeCell = centerLatitude + dLatitude;
+            for (int offset = ring + 1; offset <= columns[dLatitude + ring]; offset++) {
+                visit(cell(latitudeCell, Math.floorMod(centerLongitude + offset, longitudeCells)),
+                        position, k, maxChordSquared, availableSpaces, nearest);
+                // Half-way round an even grid, both directions reach the same column
+                if (2 * offset != longitudeCells) {
+                    visit(cell(latitudeCell, Math.floorMod(centerLongitude - offset, longitudeCells)),
+                            position, k, maxChordSquared, availableSpaces, nearest);
+                }
+            }
+        }
+    }
+
+    private void visit(long cell, Entry position, int k, double maxChordSquared,
+                       ToIntFunction<LocatedLot> availableSpaces, PriorityQueue<Candidate> nearest) {
+        Entry[] lots = cells.get(cell);
+        if (lots != null) {
+            for (Entry lot : lots) {
+                consider(lot, position, k, maxChordSquared, availableSpaces, nearest);
+            }
+        }
+    }
+
+    private static void consider(Entry lot, Entry position, int k, double maxChordSquared,
+                                 ToIntFunction<LocatedLot> availableSpaces, PriorityQueue<Candidate> nearest) {
+        double dx = lot.x() - position.x();
+        double dy = lot.y() - position.y();
+        double dz = lot.z() - position.z();
+        double chordSquared = dx * dx + dy * dy + dz * dz;
+        if (chordSquared > maxChordSquared || (nearest.size() == k && chordSquared >= nearest.peek().chordSquared())) {
+            return;
+        }
+        int available = availableSpaces.applyAsInt(lot.lot());
+        if (available <= 0) {
+            return;
+        }
+        if (nearest.size() == k) {
+            nearest.poll();
+        }
+        nearest.add(new Candidate(lot.lot(), chordSquared, available));
+    }
+
+    // The squared straight-line distance, on the unit sphere, between two points a great-circle distance apart
+    private static double chordSquared(double distanceKm) {
+        if (distanceKm >= Math.PI * EARTH_RADIUS_KM) {
+            return 4;
+        }
+        double chord = 2 * Math.sin(distanceKm / (2 * EARTH_RADIUS_KM));
+        return chord * chord;
+    }
+
+    /*
+     * A lower bound on the distance to any lot outside the first rings. Such a lot is at least ring * cellSize
+     * degrees away in latitude, or in longitude while within (ring + 1) * cellSize degrees of latitude. By the
+     * haversine formula, d >= R * dPhi in the first case, and sin(d / 2R) >= cos(maxPhi) * sin(dLambda / 2) in
+     * the second.
+     */
+    private double minDistanceBeyondRing(int ring, double latitude) {
+        double offset = Math.toRadians(ring * cellSize);
+        if (offset >= Math.PI) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double maxPhi = Math.min(Math.PI / 2, Math.toRadians(Math.abs(latitude) + (ring + 1) * cellSize));
+        double byLatitude = EARTH_RADIUS_KM * offset;
+        double byLongitude = 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.cos(maxPhi) * Math.sin(offset / 2)));
+        return Math.min(byLatitude, byLongitude);
+    }
+
+    private int latitudeCell(double latitude) {
+        return Math.min(latitudeCells - 1, (int) Math.floor((latitude + 90) / cellSize));
+    }
+
+    private int longitudeCell(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / cellSize), longitudeCells);
+    }
+
+    private long cell(int latitudeCell, int longitudeCell) {
+        return (long) latitudeCell * longitudeCells + longitudeCell;
+    }
+
+    // A lot and its point on the unit sphere
+    private record Entry(LocatedLot lot, double x, double y, double z) {
+
+        private static Entry of(LocatedLot lot) {
+            return at(lot, lot.latitude(), lot.longitude());
+        }
+
+        private static Entry at(LocatedLot lot, double latitude, double longitude) {
+            double phi = Math.toRadians(latitude);
+            double lambda = Math.toRadians(longitude);
+            return new Entry(lot, Math.cos(phi) * Math.cos(lambda), Math.cos(phi) * Math.sin(lambda), Math.sin(phi));
+        }
+    }
+
+    private record Candidate(LocatedLot lot, double chordSquared, int availableSpaces) {
+    }
+}
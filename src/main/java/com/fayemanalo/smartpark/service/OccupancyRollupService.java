@@ -0,0 +1,249 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.LotHourlyStatsDto;
+import com.fayemanalo.smartpark.model.LotHour;
+import com.fayemanalo.smartpark.model.LotHourlyStats;
+import com.fayemanalo.smartpark.repository.LotHourlyStatsRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+import static com.fayemanalo.smartpark.service.TransactionCallbacks.afterCommit;
+
+/**
+ * Hourly occupancy statistics per parking lot.
+ *
+ * Every committed check-in and check-out updates the in-memory bucket of its lot and hour; the buckets
+ * are added to the lot_hourly_stats table by {@link #flush()}. Reports are read from that table, plus
+ * whatever has not been flushed yet, so they never touch parking_record.
+ */
+@Service
+public class OccupancyRollupService {
+
+    static final int MAX_STATS_HOURS = 366 * 24;
+
+    private final LotHourlyStatsRepository lotHourlyStatsRepository;
+    private final ReferenceDataCache referenceDataCache;
+    private final TransactionTemplate transactionTemplate;
+
+    // Changes since the last flush, per lot and hour
+    private final ConcurrentMap<LotHour, Bucket> pending = new ConcurrentHashMap<>();
+
+    public OccupancyRollupService(LotHourlyStatsRepository lotHourlyStatsRepository,
+                                  ReferenceDataCache referenceDataCache,
+                                  PlatformTransactionManager transactionManager) {
+        this.lotHourlyStatsRepository = lotHourlyStatsRepository;
+        this.referenceDataCache = referenceDataCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Counts a check-in once the current transaction commits.
+     *
+     * @param lotId          the ID of the parking lot
+     * @param checkInTime    when the vehicle checked in
+     * @param occupiedSpaces the occupancy of the lot after the check-in
+     */
+    public void recordCheckIn(String lotId, LocalDateTime checkInTime, int occupiedSpaces) {
+        afterCommit(() -> update(lotId, checkInTime, bucket -> {
+            bucket.entries++;
+            bucket.peakOccupancy = Math.max(bucket.peakOccupancy, occupiedSpaces);
+            bucket.closingOccupancy = occupiedSpaces;
+        }));
+    }
+
+    /**
+     * Counts a check-out once the current transaction commits.
+     *
+     * @param lotId          the ID of the parking lot
+     * @param checkInTime    when the vehicle checked in
+     * @param checkOutTime   when the vehicle checked out
+     * @param occupiedSpaces the occupancy of the lot after the check-out
+     */
+    public void recordCheckOut(String lotId, LocalDateTime checkInTime, LocalDateTime checkOutTime,
+                               int occupiedSpaces) {
+        long dwellMinutes = Duration.between(checkInTime, checkOutTime).toMinutes();
+        afterCommit(() -> update(lotId, checkOutTime, bucket -> {
+            bucket.exits++;
+            // The lot held one more vehicle just before, possibly the hour's first event
+            bucket.peakOccupancy = Math.max(bucket.peakOccupancy, occupiedSpaces + 1);
+            bucket.closingOccupancy = occupiedSpaces;
+            bucket.dwellMinutes += dwellMinutes;
+        }));
+    }
+
+    /**
+     * Returns the hourly statistics of a lot for every hour in a range.
+     *
+     * Hours without check-ins or check-outs are included, with the occupancy carried over from the last
+     * hour that had any as their peak.
+     *
+     * @param lotId the ID of the parking lot
+     * @param from  start of the range (truncated to the hour); defaults to 24 hours before {@code to}
+     * @param to    end of the range, exclusive (rounded up to the hour); defaults to the end of the current hour
+     * @return one entry per hour, in order
+     * @throws ResponseStatusException if the lot does not exist or the range is empty or longer than a year
+     */
+    public List<LotHourlyStatsDto> getHourlyStats(String lotId, LocalDateTime from, LocalDateTime to) {
+        referenceDataCache.findLot(lotId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Parking lot not found"));
+
+        LocalDateTime end = to != null ? ceilToHour(to) : hourOf(LocalDateTime.now()).plusHours(1);
+        LocalDateTime start = from != null ? hourOf(from) : end.minusHours(24);
+        if (!start.isBefore(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' must be before 'to'");
+        }
+        if (ChronoUnit.HOURS.between(start, end) > MAX_STATS_HOURS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_STATS_HOURS + " hours can be requested at once");
+        }
+
+        Map<LocalDateTime, LotHourlyStats> byHour = new HashMap<>();
+        for (LotHourlyStats stats : lotHourlyStatsRepository
+                .findByIdLotIdAndIdHourGreaterThanEqualAndIdHourLessThanOrderByIdHour(lotId, start, end)) {
+            byHour.put(stats.getId().getHour(), stats);
+        }
+        // Add what has not been flushed yet
+        for (LotHour key : pending.keySet()) {
+            if (key.getLotId().equals(lotId) && !key.getHour().isBefore(start) && key.getHour().isBefore(end)) {
+                Bucket bucket = copyOf(key);
+                if (bucket != null) {
+                    byHour.put(key.getHour(), bucket.addTo(byHour.getOrDefault(key.getHour(), empty(key))));
+                }
+            }
+        }
+
+        int carriedOccupancy = lotHourlyStatsRepository
+                .findFirstByIdLotIdAndIdHourLessThanOrderByIdHourDesc(lotId, start)
+                .map(LotHourlyStats::getClosingOccupancy)
+                .orElse(0);
+
+        List<LotHourlyStatsDto> result = new ArrayList<>();
+        for (LocalDateTime hour = start; hour.isBefore(end); hour = hour.plusHours(1)) {
+            LotHourlyStats stats = byHour.get(hour);
+            if (stats == null) {
+                result.add(new LotHourlyStatsDto(hour, 0, 0, carriedOccupancy, 0));
+                continue;
+            }
+            result.add(new LotHourlyStatsDto(hour, stats.getEntries(), stats.getExits(),
+                    stats.getPeakOccupancy(), stats.getDwellMinutes()));
+            carriedOccupancy = stats.getClosingOccupancy();
+        }
+        return result;
+    }
+
+    /**
+     * Adds the changes since the last flush to the lot_hourly_stats table, in one transaction.
+     */
+    @Scheduled(fixedDelayString = "${smartpark.rollup.flush-interval-ms:5000}")
+    @PreDestroy
+    public void flush() {
+        Map<LotHour, Bucket> flushed = new HashMap<>();
+        for (LotHour key : pending.keySet()) {
+            // Removing the bucket atomically hands it over; later updates start a new one
+            Bucket bucket = pending.remove(key);
+            if (bucket != null) {
+                flushed.put(key, bucket);
+            }
+        }
+        if (flushed.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<LotHour, LotHourlyStats> existing = new HashMap<>();
+                lotHourlyStatsRepository.findAllById(flushed.keySet())
+                        .forEach(stats -> existing.put(stats.getId(), stats));
+
+                List<LotHourlyStats> updated = new ArrayList<>(flushed.size());
+                flushed.forEach((key, bucket) ->
+                        updated.add(bucket.addTo(existing.getOrDefault(key, empty(key)))));
+                lotHourlyStatsRepository.saveAll(updated);
+            });
+        } catch (RuntimeException ex) {
+            // Keep the changes for the next flush
+            flushed.forEach((key, bucket) -> pending.merge(key, bucket, Bucket::merge));
+            throw ex;
+        }
+    }
+
+    private void update(String lotId, LocalDateTime time, Consumer<Bucket> change) {
+        pending.compute(new LotHour(lotId, hourOf(time)), (key, bucket) -> {
+            Bucket updated = bucket != null ? bucket : new Bucket();
+            change.accept(updated);
+            return updated;
+        });
+    }
+
+    // Copies a pending bucket under the map's lock, so concurrent updates are not seen half-done
+    private Bucket copyOf(LotHour key) {
+        Bucket[] copy = new Bucket[1];
+        pending.computeIfPresent(key, (k, bucket) -> {
+            copy[0] = Bucket.merge(bucket, new Bucket());
+            return bucket;
+        });
+        return copy[0];
+    }
+
+    private static LotHourlyStats empty(LotHour key) {
+        return LotHourlyStats.builder().id(new LotHour(key.getLotId(), key.getHour())).build();
+    }
+
+    private static LocalDateTime hourOf(LocalDateTime time) {
+        return time.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private static LocalDateTime ceilToHour(LocalDateTime time) {
+        LocalDateTime hour = hourOf(time);
+        return hour.equals(time) ? hour : hour.plusHours(1);
+    }
+
+    // Mutated only inside ConcurrentHashMap.compute, or after being removed from the map
+    private static final class Bucket {
+
+        private int entries;
+        private int exits;
+        private int peakOccupancy;
+        private int closingOccupancy;
+        private long dwellMinutes;
+
+        // Applies these changes on top of the persisted stats of the same hour, returning a new object
+        private LotHourlyStats addTo(LotHourlyStats stats) {
+            return LotHourlyStats.builder()
+                    .id(stats.getId())
+                    .entries(stats.getEntries() + entries)
+                    .exits(stats.getExits() + exits)
+                    .peakOccupancy(Math.max(stats.getPeakOccupancy(), peakOccupancy))
+                    .closingOccupancy(closingOccupancy)
+                    .dwellMinutes(stats.getDwellMinutes() + dwellMinutes)
+                    .build();
+        }
+
+        // Combines an older bucket with a newer one of the same hour
+        private static Bucket merge(Bucket newer, Bucket older) {
+            Bucket merged = new Bucket();
+            merged.entries = older.entries + newer.entries;
+            merged.exits = older.exits + newer.exits;
+            merged.peakOccupancy = Math.max(older.peakOccupancy, newer.peakOccupancy);
+            merged.closingOccupancy = newer.closingOccupancy;
+            merged.dwellMinutes = older.dwellMinutes + newer.dwellMinutes;
+            return merged;
+        }
+    }
+}
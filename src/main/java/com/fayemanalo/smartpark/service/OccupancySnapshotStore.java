@@ -0,0 +1,162 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.ActiveSession;
+import com.fayemanalo.smartpark.model.OccupancySnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes the {@link OccupancySnapshot} file.
+ *
+ * The format is a header (magic, version, replay time), a table of the distinct lot IDs, then one entry per
+ * session holding the plate, the index of its lot in that table, the check-in time and the record ID,
+ * followed by a CRC32C of everything before it. A new snapshot is written to a temporary file and moved
+ * over the old one, so a crash while writing leaves the previous snapshot in place.
+ */
+@Component
+@ConditionalOnProperty(name = "smartpark.snapshot.enabled", havingValue = "true")
+public class OccupancySnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(OccupancySnapshotStore.class);
+
+    private static final int MAGIC = 0x53504f53; // "SPOS"
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "occupancy.snapshot";
+
+    private final Path directory;
+
+    public OccupancySnapshotStore(@Value("${smartpark.snapshot.directory:data/snapshot}") Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Replaces the stored snapshot.
+     *
+     * @param snapshot the snapshot to store
+     * @throws UncheckedIOException if the snapshot cannot be written
+     */
+    public void write(OccupancySnapshot snapshot) {
+        Path file = directory.resolve(FILE_NAME);
+        Path temporary = directory.resolve(FILE_NAME + ".tmp");
+
+        try {
+            Files.createDirectories(directory);
+            CRC32C crc = new CRC32C();
+            try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary), 64 * 1024), crc))) {
+                writeSnapshot(out, snapshot);
+                out.writeInt((int) crc.getValue());
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not write occupancy snapshot " + file, ex);
+        }
+    }
+
+    /**
+     * Reads the stored snapshot.
+     *
+     * @return the snapshot, or empty if there is none or it cannot be read
+     */
+    public Optional<OccupancySnapshot> read() {
+        Path file = directory.resolve(FILE_NAME);
+
+        CRC32C crc = new CRC32C();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 64 * 1024), crc))) {
+            OccupancySnapshot snapshot = readSnapshot(in);
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) {
+                log.warn("Ignoring occupancy snapshot {}: checksum mismatch", file);
+                return Optional.empty();
+            }
+            return Optional.of(snapshot);
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Ignoring unreadable occupancy snapshot {}", file, ex);
+            return Optional.empty();
+        }
+    }
+
+    private static void writeSnapshot(DataOutputStream out, OccupancySnapshot snapshot) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        writeTime(out, snapshot.replayFrom());
+
+        // Lot IDs repeat across sessions, so each is written once and referred to by index
+        Map<String, Integer> lotIndexes = new HashMap<>();
+        List<String> lotIds = new ArrayList<>();
+        for (ActiveSession session : snapshot.sessions()) {
+            lotIndexes.computeIfAbsent(session.lotId(), lotId -> {
+                lotIds.add(lotId);
+                return lotIds.size() - 1;
+            });
+        }
+
+        out.writeInt(lotIds.size());
+        for (String lotId : lotIds) {
+            out.writeUTF(lotId);
+        }
+
+        out.writeInt(snapshot.sessions().size());
+        for (ActiveSession session : snapshot.sessions()) {
+            out.writeUTF(session.licensePlate());
+            out.writeInt(lotIndexes.get(session.lotId()));
+            writeTime(out, session.checkInTime());
+            out.writeLong(session.recordId());
+        }
+    }
+
+    private static OccupancySnapshot readSnapshot(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+            throw new IOException("Not an occupancy snapshot, or written by an incompatible version");
+        }
+        LocalDateTime replayFrom = readTime(in);
+
+        String[] lotIds = new String[in.readInt()];
+        for (int i = 0; i < lotIds.length; i++) {
+            lotIds[i] = in.readUTF();
+        }
+
+        int sessionCount = in.readInt();
+        List<ActiveSession> sessions = new ArrayList<>(sessionCount);
+        for (int i = 0; i < sessionCount; i++) {
+            sessions.add(new ActiveSession(in.readUTF(), lotIds[in.readInt()], readTime(in), in.readLong()));
+        }
+        return new OccupancySnapshot(replayFrom, sessions);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+}
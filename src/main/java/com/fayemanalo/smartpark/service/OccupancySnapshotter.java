@@ -0,0 +1,115 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.CapacityPool;
+import com.fayemanalo.smartpark.model.OccupancySnapshot;
+import com.fayemanalo.smartpark.model.ParkedVehicles;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Periodically snapshots the {@link ActiveSessionIndex}, so a restart does not have to read every active
+ * ParkingRecord back from the database.
+ *
+ * At startup, after the index has been restored, the persisted occupancy of every lot is corrected to the
+ * number of sessions in it, and that of every capacity pool to the number of open records of its vehicle
+ * type. The occupancy is written back asynchronously by {@link LotOccupancyTracker}, so after a crash it can
+ * lag behind the parking records.
+ */
+@Component
+@ConditionalOnProperty(name = "smartpark.snapshot.enabled", havingValue = "true")
+public class OccupancySnapshotter {
+
+    private static final Logger log = LoggerFactory.getLogger(OccupancySnapshotter.class);
+
+    private final ActiveSessionIndex activeSessionIndex;
+    private final OccupancySnapshotStore snapshotStore;
+    private final ParkingLotRepository parkingLotRepository;
+    private final ParkingRecordRepository parkingRecordRepository;
+    private final Duration replayMargin;
+
+    public OccupancySnapshotter(ActiveSessionIndex activeSessionIndex, OccupancySnapshotStore snapshotStore,
+                                ParkingLotRepository parkingLotRepository,
+                                ParkingRecordRepository parkingRecordRepository,
+                                @Value("${smartpark.snapshot.replay-margin:1m}") Duration replayMargin) {
+        this.activeSessionIndex = activeSessionIndex;
+        this.snapshotStore = snapshotStore;
+        this.parkingLotRepository = parkingLotRepository;
+        this.parkingRecordRepository = parkingRecordRepository;
+        this.replayMargin = replayMargin;
+    }
+
+    /**
+     * Sets the persisted occupancy of every lot to the number of active sessions in it, and that of every
+     * capacity pool to the number of vehicles of its type parked in the lot.
+     */
+    @PostConstruct
+    public void reconcileOccupancy() {
+        Map<String, Long> counts = activeSessionIndex.countByLot();
+        List<ParkingLot> lots = parkingLotRepository.findAll();
+
+        // The index does not know vehicle types, so pools are recounted from the records, if there are any
+        Map<String, Map<VehicleType, Integer>> countsByType = lots.stream().anyMatch(lot -> !lot.getCapacityPools().isEmpty())
+                ? ParkedVehicles.byLot(parkingRecordRepository.countParkedVehiclesByLotAndType())
+                : Map.of();
+
+        int corrected = 0;
+        for (ParkingLot lot : lots) {
+            boolean stale = false;
+            int occupied = counts.getOrDefault(lot.getLotId(), 0L).intValue();
+            if (lot.getOccupiedSpaces() != occupied) {
+                parkingLotRepository.updateOccupiedSpaces(lot.getLotId(), occupied);
+                stale = true;
+            }
+
+            Map<VehicleType, Integer> parked = countsByType.getOrDefault(lot.getLotId(), Map.of());
+            for (Map.Entry<VehicleType, CapacityPool> pool : lot.getCapacityPools().entrySet()) {
+                int poolOccupied = parked.getOrDefault(pool.getKey(), 0);
+                if (pool.getValue().getOccupiedSpaces() != poolOccupied) {
+                    parkingLotRepository.updatePoolOccupiedSpaces(lot.getLotId(), pool.getKey().name(), poolOccupied);
+                    stale = true;
+                }
+            }
+
+            if (stale) {
+                corrected++;
+            }
+        }
+
+        if (corrected > 0) {
+            log.info("Corrected the persisted occupancy of {} parking lots", corrected);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the active sessions.
+     *
+     * Check-ins and check-outs committed shortly after the snapshot started may or may not be in it, so it
+     * asks for the changes of the last {@code smartpark.snapshot.replay-margin} to be replayed on restore.
+     */
+    @Scheduled(fixedDelayString = "${smartpark.snapshot.interval-ms:60000}",
+            initialDelayString = "${smartpark.snapshot.interval-ms:60000}")
+    @PreDestroy
+    public void writeSnapshot() {
+        long start = System.nanoTime();
+        OccupancySnapshot snapshot = activeSessionIndex.snapshot(LocalDateTime.now().minus(replayMargin));
+        snapshotStore.write(snapshot);
+
+        log.debug("Wrote occupancy snapshot of {} sessions in {} ms",
+                snapshot.sessions().size(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+}
@@ -0,0 +1,220 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.ParkingLotStatusDto;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes parking lot status changes to Server-Sent Events subscribers.
+ *
+ * Changes are detected by comparing each lot's occupancy version with the last one published, once per
+ * interval, so a burst of check-ins within one interval results in a single event per lot. Each subscriber
+ * has a bounded buffer, drained on the application task executor, that holds only the latest undelivered
+ * status of each lot. A subscriber with more lots waiting than the buffer allows is disconnected instead of
+ * buffering without limit, and can reconnect to receive the current status.
+ */
+@Service
+public class OccupancyStreamService {
+
+    // Subscription key for subscribers of every lot
+    private static final String ALL_LOTS = "*";
+
+    private static final String EVENT_NAME = "status";
+
+    private final ParkingLotService parkingLotService;
+    private final LotOccupancyTracker lotOccupancyTracker;
+    private final TaskExecutor taskExecutor;
+    private final int bufferSize;
+    private final Duration timeout;
+
+    private final ConcurrentMap<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> publishedVersions = new ConcurrentHashMap<>();
+
+    public OccupancyStreamService(ParkingLotService parkingLotService,
+                                  LotOccupancyTracker lotOccupancyTracker,
+                                  @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                                  TaskExecutor taskExecutor,
+                                  @Value("${smartpark.occupancy.stream-buffer-size:1024}") int bufferSize,
+                                  @Value("${smartpark.occupancy.stream-timeout:30m}") Duration timeout) {
+        this.parkingLotService = parkingLotService;
+        this.lotOccupancyTracker = lotOccupancyTracker;
+        this.taskExecutor = taskExecutor;
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Subscribes to status changes of one parking lot.
+     *
+     * The current status is sent immediately, followed by one event per interval in which the lot changed.
+     *
+     * @param lotId the ID of the parking lot
+     * @return the emitter the events are sent through
+     * @throws org.springframework.web.server.ResponseStatusException if the parking lot does not exist
+     */
+    public SseEmitter subscribe(String lotId) {
+        String version = lotOccupancyTracker.getVersionTag(lotId);
+        ParkingLotStatusDto status = parkingLotService.getStatus(lotId);
+
+        Subscriber subscriber = register(lotId);
+        subscriber.offer(status);
+        publishedVersions.putIfAbsent(lotId, version);
+        return subscriber.emitter;
+    }
+
+    /**
+     * Subscribes to status changes of every parking lot.
+     *
+     * The current status of every lot that has changed since startup is sent immediately, followed by
+     * one event per lot and interval in which that lot changed.
+     *
+     * @return the emitter the events are sent through
+     */
+    public SseEmitter subscribeAll() {
+        Subscriber subscriber = register(ALL_LOTS);
+        for (String lotId : lotOccupancyTracker.getTrackedLotIds()) {
+            subscriber.offer(parkingLotService.getStatus(lotId));
+        }
+        return subscriber.emitter;
+    }
+
+    /**
+     * Sends one event for every subscribed lot whose occupancy changed since the last call.
+     */
+    @Scheduled(fixedDelayString = "${smartpark.occupancy.stream-interval-ms:1000}")
+    public void publishChanges() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        Collection<String> lotIds = subscribers.containsKey(ALL_LOTS)
+                ? lotOccupancyTracker.getTrackedLotIds()
+                : new HashSet<>(subscribers.keySet());
+
+        for (String lotId : lotIds) {
+            if (lotId.equals(ALL_LOTS)) {
+                continue;
+            }
+
+            // Read the version before the status, so a change racing with this publish is sent next time
+            String version = lotOccupancyTracker.getVersionTag(lotId);
+            if (version.equals(publishedVersions.put(lotId, version))) {
+                continue;
+            }
+
+            ParkingLotStatusDto status = parkingLotService.getStatus(lotId);
+            offerAll(subscribers.get(lotId), status);
+            offerAll(subscribers.get(ALL_LOTS), status);
+        }
+    }
+
+    // Number of open subscriptions, for tests
+    int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    // Overridden in tests to capture the sent events
+    SseEmitter createEmitter() {
+        return new SseEmitter(timeout.toMillis());
+    }
+
+    private Subscriber register(String key) {
+        Subscriber subscriber = new Subscriber(key, createEmitter());
+        subscriber.emitter.onCompletion(subscriber::unregister);
+        subscriber.emitter.onTimeout(subscriber::unregister);
+        subscriber.emitter.onError(ex -> subscriber.unregister());
+
+        // compute() rather than computeIfAbsent().add(), so a concurrent unregister cannot drop the new set
+        subscribers.compute(key, (k, set) -> {
+            Set<Subscriber> target = set != null ? set : ConcurrentHashMap.newKeySet();
+            target.add(subscriber);
+            return target;
+        });
+        return subscriber;
+    }
+
+    private static void offerAll(Set<Subscriber> targets, ParkingLotStatusDto status) {
+        if (targets != null) {
+            targets.forEach(subscriber -> subscriber.offer(status));
+        }
+    }
+
+    private final class Subscriber {
+
+        private final String key;
+        private final SseEmitter emitter;
+        // Latest undelivered status per lot; a newer status replaces an older one still waiting
+        private final ConcurrentMap<String, ParkingLotStatusDto> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(String key, SseEmitter emitter) {
+            this.key = key;
+            this.emitter = emitter;
+        }
+
+        private void offer(ParkingLotStatusDto status) {
+            if (pending.size() >= bufferSize && !pending.containsKey(status.lotId())) {
+                // The client is not reading fast enough; drop it rather than grow the buffer
+                unregister();
+                pending.clear();
+                emitter.complete();
+                return;
+            }
+            pending.put(status.lotId(), status);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                taskExecutor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                for (String lotId : pending.keySet()) {
+                    ParkingLotStatusDto status = pending.remove(lotId);
+                    if (status != null) {
+                        emitter.send(SseEmitter.event()
+                                .name(EVENT_NAME)
+                                .data(status, MediaType.APPLICATION_JSON));
+                    }
+                }
+            } catch (IOException | IllegalStateException ex) {
+                // The client went away or the emitter was already completed
+                unregister();
+                pending.clear();
+                return;
+            } finally {
+                draining.set(false);
+            }
+
+            // A status offered after the last removal but before the flag was reset would otherwise wait
+            if (!pending.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        private void unregister() {
+            subscribers.computeIfPresent(key, (k, set) -> {
+                set.remove(this);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+}
@@ -1,28 +1,78 @@
 package com.fayemanalo.smartpark.service;
 
+import com.fayemanalo.smartpark.dto.NearestLotDto;
 import com.fayemanalo.smartpark.dto.ParkingLotDto;
 import com.fayemanalo.smartpark.dto.ParkingLotStatusDto;
+import com.fayemanalo.smartpark.dto.VehicleTypeAvailabilityDto;
 import com.fayemanalo.smartpark.dto.VehiclesInLotDto;
+import com.fayemanalo.smartpark.dto.VehiclesInLotPageDto;
 import com.fayemanalo.smartpark.mapper.ParkingLotMapper;
+import com.fayemanalo.smartpark.model.CapacityPool;
+import com.fayemanalo.smartpark.model.LocatedLot;
+import com.fayemanalo.smartpark.model.LotInfo;
 import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.PoolOccupancy;
+import com.fayemanalo.smartpark.model.VehicleType;
 import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class ParkingLotService {
 
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_STATUS_IDS = 1000;
+    public static final int DEFAULT_NEAREST = 5;
+    public static final int MAX_NEAREST = 100;
+
+    // Separates check-in time and license plate in a page cursor; plates cannot contain it
+    private static final String CURSOR_SEPARATOR = ",";
+
     private final ParkingLotRepository parkingLotRepository;
+    private final ParkingRecordRepository parkingRecordRepository;
     private final ParkingLotMapper parkingLotMapper;
+    private final LotOccupancyTracker lotOccupancyTracker;
+    private final ReferenceDataCache referenceDataCache;
+    private final ParkingMetrics parkingMetrics;
+    private final LotSpatialIndex lotSpatialIndex;
+    private final double nearestMaxDistanceKm;
 
-    public ParkingLotService(ParkingLotRepository parkingLotRepository, ParkingLotMapper parkingLotMapper) {
+    // Concurrent identical reads that need the database share one query and its result
+    private final SingleFlight<String, ParkingLotStatusDto> statusLoads = new SingleFlight<>();
+    private final SingleFlight<PageKey, VehiclesInLotPageDto> pageLoads = new SingleFlight<>();
+
+    public ParkingLotService(ParkingLotRepository parkingLotRepository, ParkingRecordRepository parkingRecordRepository,
+                             ParkingLotMapper parkingLotMapper, LotOccupancyTracker lotOccupancyTracker,
+                             ReferenceDataCache referenceDataCache, ParkingMetrics parkingMetrics,
+                             LotSpatialIndex lotSpatialIndex,
+                             @Value("${smartpark.nearest.max-distance-km:50}") double nearestMaxDistanceKm) {
         this.parkingLotRepository = parkingLotRepository;
+        this.parkingRecordRepository = parkingRecordRepository;
         this.parkingLotMapper = parkingLotMapper;
+        this.lotOccupancyTracker = lotOccupancyTracker;
+        this.referenceDataCache = referenceDataCache;
+        this.parkingMetrics = parkingMetrics;
+        this.lotSpatialIndex = lotSpatialIndex;
+        this.nearestMaxDistanceKm = nearestMaxDistanceKm;
     }
 
     /**
@@ -30,7 +80,8 @@ public class ParkingLotService {
      *
      * @param parkingLotDto the DTO containing parking lot information to be saved
      * @return the saved ParkingLotDto reflecting the persisted entity
-     * @throws ResponseStatusException if a parking lot with the same ID already exists
+     * @throws ResponseStatusException if a parking lot with the same ID already exists, its capacity
+     *         pools add up to more than its capacity, or only one of its coordinates is given
      */
     public ParkingLotDto save(ParkingLotDto parkingLotDto) {
         var parkingLot = parkingLotMapper.toEntity(parkingLotDto);
@@ -43,7 +94,24 @@ public class ParkingLotService {
             );
         }
 
+        if ((parkingLot.getLatitude() == null) != (parkingLot.getLongitude() == null)) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "Latitude and longitude must be given together"
+            );
+        }
+
+        int pooledCapacity = parkingLot.getCapacityPools().values().stream().mapToInt(CapacityPool::getCapacity).sum();
+        if (pooledCapacity > parkingLot.getCapacity()) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "Capacity pools exceed the capacity of the parking lot"
+            );
+        }
+
         var savedLot = parkingLotRepository.save(parkingLot);
+        parkingMetrics.registerLot(savedLot.getLotId(), savedLot.getCapacity());
+        lotSpatialIndex.add(savedLot);
         return parkingLotMapper.toDto(savedLot);
     }
 
@@ -51,7 +119,10 @@ public class ParkingLotService {
      * Retrieves the status of a parking lot by its ID.
      *
      * The status includes the lot ID, location, total capacity, number of occupied spaces,
-     * and the number of available spaces.
+     * the number of available spaces, and the spaces each vehicle type can still use.
+     *
+     * A lot that is cached and tracked in memory is answered without the database. Otherwise concurrent
+     * calls for the same lot share one load, so a burst of reads of a cold or unknown lot makes one query.
      *
      * @param lotId the ID of the parking lot to retrieve
      * @return a {@link ParkingLotStatusDto} containing the parking lot's status information
@@ -59,48 +130,261 @@ public class ParkingLotService {
      *         returning HTTP status 404 (NOT_FOUND)
      */
     public ParkingLotStatusDto getStatus(String lotId) {
+        var cachedLot = referenceDataCache.findCachedLot(lotId);
+        var occupiedSpaces = lotOccupancyTracker.findOccupiedSpaces(lotId);
+        var occupancyByType = lotOccupancyTracker.findOccupancyByType(lotId);
+        if (cachedLot.isPresent() && occupiedSpaces.isPresent() && occupancyByType.isPresent()) {
+            return toStatus(cachedLot.get(), occupiedSpaces.getAsInt(), occupancyByType.get());
+        }
+
+        return statusLoads.execute(lotId, () -> loadStatus(lotId));
+    }
 
-        var lot = parkingLotRepository.findById(lotId)
+    private ParkingLotStatusDto loadStatus(String lotId) {
+        var lot = referenceDataCache.findLot(lotId)
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND,
                         "Parking lot not found"
                 ));
 
-        int availableSpaces = lot.getCapacity() - lot.getOccupiedSpaces();
+        // The persisted value may lag behind, so read occupancy from the in-memory counter
+        return toStatus(lot, lotOccupancyTracker.getOccupiedSpaces(lotId), lotOccupancyTracker.getOccupancyByType(lotId));
+    }
 
-        return new ParkingLotStatusDto(
-                lot.getLotId(),
-                lot.getLocation(),
-                lot.getCapacity(),
-                lot.getOccupiedSpaces(),
-                availableSpaces
-        );
+    /**
+     * Retrieves the status of several parking lots at once.
+     *
+     * Lots that are cached and already tracked in memory are answered without the database; all others
+     * are loaded with a single query. When no IDs are given, every lot is returned, also from a single query.
+     * Unknown IDs are left out of the result.
+     *
+     * @param lotIds the IDs of the parking lots, or null or empty for every lot
+     * @return the status of each existing lot, in the order requested (or by lot ID for every lot)
+     * @throws ResponseStatusException if more than {@value #MAX_STATUS_IDS} IDs are given
+     */
+    public List<ParkingLotStatusDto> getStatuses(List<String> lotIds) {
+        if (lotIds == null || lotIds.isEmpty()) {
+            return parkingLotRepository.findAll(Sort.by("lotId")).stream()
+                    .map(this::toStatus)
+                    .toList();
+        }
+
+        if (lotIds.size() > MAX_STATUS_IDS) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_STATUS_IDS + " lot IDs can be requested at once"
+            );
+        }
+
+        Map<String, ParkingLotStatusDto> statuses = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (String lotId : lotIds) {
+            var lot = referenceDataCache.findCachedLot(lotId);
+            var occupiedSpaces = lotOccupancyTracker.findOccupiedSpaces(lotId);
+            var occupancyByType = lotOccupancyTracker.findOccupancyByType(lotId);
+            if (lot.isPresent() && occupiedSpaces.isPresent() && occupancyByType.isPresent()) {
+                statuses.put(lotId, toStatus(lot.get(), occupiedSpaces.getAsInt(), occupancyByType.get()));
+            } else {
+                missing.add(lotId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            parkingLotRepository.findAllById(missing)
+                    .forEach(lot -> statuses.put(lot.getLotId(), toStatus(lot)));
+        }
+
+        return lotIds.stream()
+                .distinct()
+                .map(statuses::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Finds the parking lots nearest to a position that have space for a vehicle type.
+     *
+     * The lots come from {@link LotSpatialIndex} and their free spaces from the in-memory occupancy counters
+     * (or the persisted occupancy of lots that have not changed since startup), so no database query is made.
+     * Only with a {@link LotCapacityGuard}, where the database holds the occupancy, the free spaces of each
+     * candidate lot are read from it.
+     * Lots further away than {@code smartpark.nearest.max-distance-km} and lots without coordinates are not
+     * returned.
+     *
+     * @param latitude    the latitude of the position, in degrees
+     * @param longitude   the longitude of the position, in degrees
+     * @param vehicleType the type of the vehicle, or null for a lot with any free space
+     * @param k           the number of lots to return at most, between 1 and {@value #MAX_NEAREST}
+     * @return up to k lots with space, nearest first
+     * @throws ResponseStatusException if the position or k is out of range
+     */
+    public List<NearestLotDto> findNearest(double latitude, double longitude, VehicleType vehicleType, int k) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "Latitude must be between -90 and 90 and longitude between -180 and 180"
+            );
+        }
+        if (k < 1 || k > MAX_NEAREST) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "K must be between 1 and " + MAX_NEAREST
+            );
+        }
+
+        return lotSpatialIndex.findNearest(latitude, longitude, k, nearestMaxDistanceKm,
+                lot -> availableSpaces(lot, vehicleType));
     }
 
     /**
-     * Retrieves a list of vehicles currently parked in the specified parking lot.
+     * Returns the entity tag of the current status of a parking lot.
      *
-     * This method only includes vehicles that have checked in and have not yet checked out.
+     * The tag changes whenever the lot's occupancy changes and is computed from memory only (from the lot's
+     * version column with a {@link LotCapacityGuard}), so an unchanged status can be confirmed without
+     * building it. Read the tag before calling
+     * {@link #getStatus(String)}, so the tag is never newer than the status it is sent with.
+     *
+     * @param lotId the ID of the parking lot
+     * @return a quoted entity tag suitable for the ETag header
+     * @throws ResponseStatusException if the parking lot with the given ID is not found
+     */
+    public String getStatusETag(String lotId) {
+        return "\"" + lotOccupancyTracker.getVersionTag(lotId) + "\"";
+    }
+
+    /**
+     * Retrieves one page of vehicles currently parked in the specified parking lot.
+     *
+     * This method only includes vehicles that have checked in and have not yet checked out. Vehicles are
+     * ordered by check-in time (then license plate), and pages are fetched with keyset pagination, so the
+     * cost of a page does not depend on the lot's history or on how deep the client has paged. Concurrent
+     * calls for the same page share one query and its result.
      *
      * @param lotId the ID of the parking lot to query
-     * @return a list of VehiclesInLotDto representing the vehicles currently in the parking lot
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the maximum number of vehicles to return, between 1 and {@value #MAX_PAGE_SIZE}
+     * @return a page of VehiclesInLotDto and the cursor of the next page
+     * @throws ResponseStatusException if the parking lot with the given ID does not exist,
+     *         or if the cursor or limit is invalid
+     */
+    public VehiclesInLotPageDto getVehiclesInLot(String lotId, String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + MAX_PAGE_SIZE
+            );
+        }
+
+        return pageLoads.execute(new PageKey(lotId, after, limit), () -> loadVehiclesInLot(lotId, after, limit));
+    }
+
+    private VehiclesInLotPageDto loadVehiclesInLot(String lotId, String after, int limit) {
+        checkLotExists(lotId);
+
+        List<VehiclesInLotDto> vehicles;
+        if (after == null || after.isBlank()) {
+            vehicles = parkingRecordRepository.findVehiclesInLot(lotId, Limit.of(limit));
+        } else {
+            int separator = after.lastIndexOf(CURSOR_SEPARATOR);
+            LocalDateTime afterTime = parseCursorTime(after, separator);
+            String afterPlate = after.substring(separator + 1);
+            vehicles = parkingRecordRepository.findVehiclesInLotAfter(lotId, afterTime, afterPlate, Limit.of(limit));
+        }
+
+        // A full page may have more behind it; the cursor points at its last row
+        String nextCursor = null;
+        if (vehicles.size() == limit) {
+            VehiclesInLotDto last = vehicles.get(vehicles.size() - 1);
+            nextCursor = last.checkInTime() + CURSOR_SEPARATOR + last.licensePlate();
+        }
+
+        return new VehiclesInLotPageDto(vehicles, nextCursor);
+    }
+
+    /**
+     * Streams every vehicle currently parked in the specified parking lot, ordered by check-in time.
+     *
+     * Rows are read from a database cursor and handed to the consumer one at a time, without building
+     * a list, so memory use does not grow with the size of the lot. The read-only transaction stays
+     * open until the last row has been consumed.
+     *
+     * @param lotId    the ID of the parking lot to query
+     * @param consumer receives each vehicle in order
+     */
+    @Transactional(readOnly = true)
+    public void streamVehiclesInLot(String lotId, Consumer<VehiclesInLotDto> consumer) {
+        try (Stream<VehiclesInLotDto> vehicles = parkingRecordRepository.streamVehiclesInLot(lotId)) {
+            vehicles.forEach(consumer);
+        }
+    }
+
+    /**
+     * Verifies that a parking lot exists.
+     *
+     * @param lotId the ID of the parking lot
      * @throws ResponseStatusException if the parking lot with the given ID does not exist
      */
-    public List<VehiclesInLotDto> getVehiclesInLot(String lotId) {
-        ParkingLot lot = parkingLotRepository.findById(lotId)
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Parking lot not found"
-                ));
+    public void checkLotExists(String lotId) {
+        if (referenceDataCache.findLot(lotId).isEmpty()) {
+            throw new ResponseStatusException(
+                    HttpStatus.NOT_FOUND,
+                    "Parking lot not found"
+            );
+        }
+    }
 
-        return lot.getParkingRecords().stream()
-                .filter(record -> record.getCheckOutTime() == null)
-                .map(record -> new VehiclesInLotDto(
-                        record.getVehicle().getLicensePlate(),
-                        record.getVehicle().getType(),
-                        record.getVehicle().getOwnerName(),
-                        record.getCheckInTime()
-                ))
-                .collect(Collectors.toList());
+    private ParkingLotStatusDto toStatus(ParkingLot lot) {
+        // The in-memory counter wins when present; otherwise the persisted value is current
+        int occupiedSpaces = lotOccupancyTracker.findOccupiedSpaces(lot.getLotId())
+                .orElse(lot.getOccupiedSpaces());
+        Map<VehicleType, PoolOccupancy> occupancyByType = lotOccupancyTracker.findOccupancyByType(lot.getLotId())
+                .orElseGet(() -> LotOccupancyTracker.occupancyByType(lot));
+        return toStatus(LotInfo.from(lot), occupiedSpaces, occupancyByType);
     }
+
+    private static ParkingLotStatusDto toStatus(LotInfo lot, int occupiedSpaces,
+                                                Map<VehicleType, PoolOccupancy> occupancyByType) {
+        Map<VehicleType, VehicleTypeAvailabilityDto> availabilityByType = new EnumMap<>(VehicleType.class);
+        occupancyByType.forEach((vehicleType, pool) -> availabilityByType.put(vehicleType,
+                new VehicleTypeAvailabilityDto(pool.capacity(), pool.occupiedSpaces(), pool.availableSpaces(),
+                        pool.dedicated())));
+        return new ParkingLotStatusDto(
+                lot.lotId(),
+                lot.location(),
+                lot.capacity(),
+                occupiedSpaces,
+                lot.capacity() - occupiedSpaces,
+                availabilityByType
+        );
+    }
+
+    // The in-memory counter wins when present; otherwise the occupancy indexed with the lot is current, unless
+    // the database decides and holds it
+    private int availableSpaces(LocatedLot lot, VehicleType vehicleType) {
+        if (lotOccupancyTracker.hasCapacityGuard()) {
+            return vehicleType == null
+                    ? lot.capacity() - lotOccupancyTracker.getOccupiedSpaces(lot.lotId())
+                    : lotOccupancyTracker.getPoolOccupancy(lot.lotId(), vehicleType).availableSpaces();
+        }
+        if (vehicleType == null) {
+            int occupiedSpaces = lotOccupancyTracker.findOccupiedSpaces(lot.lotId()).orElse(lot.occupiedSpaces());
+            return lot.capacity() - occupiedSpaces;
+        }
+        return lotOccupancyTracker.findPoolOccupancy(lot.lotId(), vehicleType)
+                .orElseGet(() -> lot.occupancyByType().get(vehicleType))
+                .availableSpaces();
+    }
+
+    private static LocalDateTime parseCursorTime(String cursor, int separator) {
+        try {
+            if (separator <= 0) {
+                throw new DateTimeParseException("Missing separator", cursor, 0);
+            }
+            return LocalDateTime.parse(cursor.substring(0, separator));
+        } catch (DateTimeParseException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    private record PageKey(String lotId, String after, int limit) {}
 }
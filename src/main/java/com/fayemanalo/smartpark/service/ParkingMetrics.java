@@ -0,0 +1,91 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Application-specific Micrometer metrics.
+ *
+ * Counts rejected check-ins and check-outs by reason ({@code smartpark.parking.rejections}) and exposes
+ * the occupied and available spaces of every lot as gauges ({@code smartpark.lot.occupied.spaces},
+ * {@code smartpark.lot.available.spaces}). Gauges read the in-memory occupancy counters, so a scrape
+ * does not query the database once a lot's counter is loaded.
+ */
+@Component
+public class ParkingMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final LotOccupancyTracker lotOccupancyTracker;
+    private final ParkingLotRepository parkingLotRepository;
+    private final Map<Rejection, Counter> rejections = new EnumMap<>(Rejection.class);
+
+    public ParkingMetrics(MeterRegistry meterRegistry, LotOccupancyTracker lotOccupancyTracker,
+                          ParkingLotRepository parkingLotRepository) {
+        this.meterRegistry = meterRegistry;
+        this.lotOccupancyTracker = lotOccupancyTracker;
+        this.parkingLotRepository = parkingLotRepository;
+
+        // Registered up front, so every reason is reported (as zero) before it first happens
+        for (Rejection reason : Rejection.values()) {
+            rejections.put(reason, Counter.builder("smartpark.parking.rejections")
+                    .description("Check-ins and check-outs rejected by business rules")
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Counts one rejected check-in or check-out.
+     *
+     * @param reason why the operation was rejected
+     */
+    public void countRejection(Rejection reason) {
+        rejections.get(reason).increment();
+    }
+
+    /**
+     * Registers the occupancy gauges of a parking lot. Registering the same lot again has no effect.
+     *
+     * @param lotId    the ID of the parking lot
+     * @param capacity the lot's total number of spaces
+     */
+    public void registerLot(String lotId, int capacity) {
+        Gauge.builder("smartpark.lot.occupied.spaces", lotOccupancyTracker,
+                        tracker -> tracker.getOccupiedSpaces(lotId))
+                .description("Occupied spaces in a parking lot")
+                .tag("lot", lotId)
+                .register(meterRegistry);
+        Gauge.builder("smartpark.lot.available.spaces", lotOccupancyTracker,
+                        tracker -> capacity - tracker.getOccupiedSpaces(lotId))
+                .description("Available spaces in a parking lot")
+                .tag("lot", lotId)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers the occupancy gauges of every lot that exists at startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerExistingLots() {
+        for (ParkingLot lot : parkingLotRepository.findAll()) {
+            registerLot(lot.getLotId(), lot.getCapacity());
+        }
+    }
+
+    public enum Rejection {
+        VEHICLE_NOT_FOUND,
+        LOT_NOT_FOUND,
+        ALREADY_CHECKED_IN,
+        LOT_FULL,
+        NOT_CHECKED_IN
+    }
+}
@@ -0,0 +1,90 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.repository.ParkingRecordHistoryRepository;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves closed parking records out of parking_record into parking_record_history.
+ *
+ * Records checked out longer ago than the retention window are copied and deleted in chunks, one
+ * transaction per chunk, so parking_record holds little more than the active sessions and the archiver
+ * never locks many rows at once. Archived records stay queryable through
+ * {@link ParkingRecordHistoryRepository}.
+ *
+ * The retention must be longer than the occupancy snapshot interval plus its replay margin, because a
+ * restored snapshot only learns about check-outs from parking_record.
+ */
+@Component
+@ConditionalOnProperty(name = "smartpark.archive.enabled", havingValue = "true")
+public class ParkingRecordArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(ParkingRecordArchiver.class);
+
+    private final ParkingRecordRepository parkingRecordRepository;
+    private final ParkingRecordHistoryRepository parkingRecordHistoryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+    private final int chunkSize;
+
+    public ParkingRecordArchiver(ParkingRecordRepository parkingRecordRepository,
+                                 ParkingRecordHistoryRepository parkingRecordHistoryRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${smartpark.archive.retention:30d}") Duration retention,
+                                 @Value("${smartpark.archive.chunk-size:1000}") int chunkSize) {
+        this.parkingRecordRepository = parkingRecordRepository;
+        this.parkingRecordHistoryRepository = parkingRecordHistoryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retention = retention;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Archives every record checked out before now minus the retention window.
+     *
+     * @return the number of records archived
+     */
+    @Scheduled(fixedDelayString = "${smartpark.archive.interval-ms:600000}")
+    public int archive() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        long start = System.nanoTime();
+
+        int archived = 0;
+        int moved;
+        do {
+            moved = archiveChunk(cutoff);
+            archived += moved;
+        } while (moved == chunkSize);
+
+        if (archived > 0) {
+            log.info("Archived {} parking records checked out before {} in {} ms",
+                    archived, cutoff, Duration.ofNanos(System.nanoTime() - start).toMillis());
+        }
+        return archived;
+    }
+
+    private int archiveChunk(LocalDateTime cutoff) {
+        Integer moved = transactionTemplate.execute(status -> {
+            List<Long> ids = parkingRecordRepository.findIdsCheckedOutBefore(cutoff, Limit.of(chunkSize));
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            parkingRecordHistoryRepository.copyFromParkingRecords(ids);
+            parkingRecordRepository.deleteAllByIdIn(ids);
+            return ids.size();
+        });
+        return moved != null ? moved : 0;
+    }
+}
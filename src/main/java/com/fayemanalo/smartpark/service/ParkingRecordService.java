@@ -1,26 +1,44 @@
 package com.fayemanalo.smartpark.service;
 
+import com.fayemanalo.smartpark.dto.BatchOperationDto;
+import com.fayemanalo.smartpark.dto.BatchOperationType;
+import com.fayemanalo.smartpark.dto.BatchResultDto;
 import com.fayemanalo.smartpark.dto.CheckInDto;
 import com.fayemanalo.smartpark.dto.CheckOutDto;
 import com.fayemanalo.smartpark.dto.ParkingRecordDto;
 import com.fayemanalo.smartpark.mapper.ParkingRecordMapper;
-import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.ActiveSession;
+import com.fayemanalo.smartpark.model.JournalEvent;
+import com.fayemanalo.smartpark.model.LotInfo;
 import com.fayemanalo.smartpark.model.ParkingRecord;
-import com.fayemanalo.smartpark.model.Vehicle;
+import com.fayemanalo.smartpark.model.VehicleInfo;
 import com.fayemanalo.smartpark.repository.ParkingLotRepository;
 import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
 import com.fayemanalo.smartpark.repository.VehicleRepository;
+import com.fayemanalo.smartpark.service.ParkingMetrics.Rejection;
 import jakarta.transaction.Transactional;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 /**
  * Service class for handling parking operations such as check-in and check-out.
  * Responsible for managing ParkingRecords, updating occupied spaces, and enforcing business rules.
+ *
+ * Occupied spaces are reserved and released through {@link LotOccupancyTracker}, which keeps
+ * the counters in memory and writes them back to the database asynchronously. Whether a vehicle
+ * is parked is answered by the {@link ActiveSessionIndex} instead of scanning parking_record, and
+ * vehicles and lots are looked up in the {@link ReferenceDataCache}, so the only database work on
+ * the hot path is the ParkingRecord write.
+ *
+ * When the {@link EventJournal} is enabled, even that write is deferred: the event is appended to the
+ * journal and acknowledged, and {@link JournalDrainer} writes the ParkingRecord shortly afterwards.
  */
 @Service
 @Transactional
@@ -30,14 +48,34 @@ public class ParkingRecordService {
     private final VehicleRepository vehicleRepository;
     private final ParkingLotRepository parkingLotRepository;
     private final ParkingRecordMapper parkingRecordMapper;
+    private final LotOccupancyTracker lotOccupancyTracker;
+    private final ActiveSessionIndex activeSessionIndex;
+    private final ReferenceDataCache referenceDataCache;
+    private final ParkingMetrics parkingMetrics;
+    private final OccupancyRollupService occupancyRollupService;
+    private final TariffService tariffService;
+    private final ReservationService reservationService;
+    private final EventJournal eventJournal;
 
     public ParkingRecordService(ParkingRecordRepository parkingRecordRepository,
                                 VehicleRepository vehicleRepository,
-                                ParkingLotRepository parkingLotRepository, ParkingRecordMapper parkingRecordMapper) {
+                                ParkingLotRepository parkingLotRepository, ParkingRecordMapper parkingRecordMapper,
+                                LotOccupancyTracker lotOccupancyTracker, ActiveSessionIndex activeSessionIndex,
+                                ReferenceDataCache referenceDataCache, ParkingMetrics parkingMetrics,
+                                OccupancyRollupService occupancyRollupService, TariffService tariffService,
+                                ReservationService reservationService, Optional<EventJournal> eventJournal) {
         this.parkingRecordRepository = parkingRecordRepository;
         this.vehicleRepository = vehicleRepository;
         this.parkingLotRepository = parkingLotRepository;
         this.parkingRecordMapper = parkingRecordMapper;
+        this.lotOccupancyTracker = lotOccupancyTracker;
+        this.activeSessionIndex = activeSessionIndex;
+        this.referenceDataCache = referenceDataCache;
+        this.parkingMetrics = parkingMetrics;
+        this.occupancyRollupService = occupancyRollupService;
+        this.tariffService = tariffService;
+        this.reservationService = reservationService;
+        this.eventJournal = eventJournal.orElse(null);
     }
 
     /**
@@ -47,7 +85,8 @@ public class ParkingRecordService {
      * 1. Vehicle must exist.
      * 2. Parking lot must exist.
      * 3. Vehicle cannot already be checked in another lot.
-     * 4. Parking lot must have available spaces.
+     * 4. Parking lot must have available spaces for the vehicle's type: in the type's own capacity pool if the
+     *    lot has one, otherwise among the shared spaces, not counting those held for other vehicles' reservations.
      *
      * @param dto Data transfer object containing license plate and lot ID
      * @return ParkingRecordDto containing check-in information
@@ -55,51 +94,64 @@ public class ParkingRecordService {
      */
     public ParkingRecordDto checkIn(CheckInDto dto) {
 
-        Vehicle vehicle = vehicleRepository.findById(dto.licensePlate())
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.NOT_FOUND, "Vehicle not found"));
+        VehicleInfo vehicle = referenceDataCache.findVehicle(dto.licensePlate())
+                .orElseThrow(() -> rejection(Rejection.VEHICLE_NOT_FOUND, HttpStatus.NOT_FOUND, "Vehicle not found"));
 
-        ParkingLot lot = parkingLotRepository.findById(dto.lotId())
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.NOT_FOUND, "Parking lot not found"));
+        LotInfo lot = referenceDataCache.findLot(dto.lotId())
+                .orElseThrow(() -> rejection(Rejection.LOT_NOT_FOUND, HttpStatus.NOT_FOUND, "Parking lot not found"));
 
-        // Check if vehicle is checked in a parking lot
-        Optional<ParkingRecord> activeRecord = parkingRecordRepository
-                .findByVehicleAndCheckOutTimeIsNull(vehicle);
+        // Claim the plate in the active-session index; an existing session means the vehicle is parked
+        ActiveSession session = new ActiveSession(vehicle.licensePlate(), lot.lotId(), LocalDateTime.now(), null);
+        ActiveSession existingSession = activeSessionIndex.claim(session);
 
         // If vehicle is already checked in, return exception messages
-        if (activeRecord.isPresent()) {
-            ParkingLot currentLot = activeRecord.get().getParkingLot();
-
-            if (currentLot.getLotId().equals(dto.lotId())) {
-                throw new ResponseStatusException(
-                        HttpStatus.BAD_REQUEST,
-                        "Vehicle is already checked in this parking lot"
-                );
+        if (existingSession != null) {
+            if (existingSession.lotId().equals(dto.lotId())) {
+                throw rejection(Rejection.ALREADY_CHECKED_IN, HttpStatus.BAD_REQUEST,
+                        "Vehicle is already checked in this parking lot");
             } else {
-                String currentLotInfo = currentLot.getLotId() + " (" + currentLot.getLocation() + ")";
-                throw new ResponseStatusException(
-                        HttpStatus.BAD_REQUEST,
-                        "Vehicle is already checked in parking lot: " + currentLotInfo
-                );
+                String currentLotInfo = referenceDataCache.findLot(existingSession.lotId())
+                        .map(currentLot -> currentLot.lotId() + " (" + currentLot.location() + ")")
+                        .orElse(existingSession.lotId());
+                throw rejection(Rejection.ALREADY_CHECKED_IN, HttpStatus.BAD_REQUEST,
+                        "Vehicle is already checked in parking lot: " + currentLotInfo);
             }
         }
 
-        if (lot.getOccupiedSpaces() >= lot.getCapacity()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Parking lot is full");
+        // Reserve a space of the vehicle's pool atomically, leaving the spaces held for reservations of other
+        // vehicles free; the counter is released again if this transaction rolls back
+        boolean admitted;
+        try {
+            admitted = reservationService.admit(lot.lotId(), vehicle.licensePlate(), session.checkInTime(),
+                    heldSpaces -> lotOccupancyTracker.tryReserve(lot.lotId(), vehicle.type(), heldSpaces));
+        } catch (ResponseStatusException ex) {
+            // The lot stayed busy; a batch goes on without rolling back, so free the plate here
+            activeSessionIndex.unclaim(session);
+            throw ex;
+        }
+        if (!admitted) {
+            activeSessionIndex.unclaim(session);
+            throw rejection(Rejection.LOT_FULL, HttpStatus.BAD_REQUEST, "Parking lot is full");
+        }
+        occupancyRollupService.recordCheckIn(lot.lotId(), session.checkInTime(),
+                lotOccupancyTracker.getOccupiedSpaces(lot.lotId()));
+
+        if (eventJournal != null) {
+            long sequence = eventJournal.append(
+                    JournalEvent.checkIn(vehicle.licensePlate(), lot.lotId(), session.checkInTime()));
+            activeSessionIndex.attachRecord(session, sequence);
+            return new ParkingRecordDto(vehicle.licensePlate(), lot.lotId(), session.checkInTime(), null, null);
         }
 
+        // References only carry the foreign keys, so building the record does not load the entities
         ParkingRecord record = ParkingRecord.builder()
-                .vehicle(vehicle)
-                .parkingLot(lot)
-                .checkInTime(LocalDateTime.now())
+                .vehicle(vehicleRepository.getReferenceById(vehicle.licensePlate()))
+                .parkingLot(parkingLotRepository.getReferenceById(lot.lotId()))
+                .checkInTime(session.checkInTime())
                 .build();
 
-        // Update lot occupied spaces
-        lot.setOccupiedSpaces(lot.getOccupiedSpaces() + 1);
-        parkingLotRepository.save(lot);
-
         ParkingRecord savedRecord = parkingRecordRepository.save(record);
+        activeSessionIndex.attachRecord(session, savedRecord.getId());
 
         return parkingRecordMapper.toDto(savedRecord);
     }
@@ -113,33 +165,105 @@ public class ParkingRecordService {
      * 3. Vehicle must be actively checked in to the specified lot.
      *
      * @param dto Data transfer object containing license plate and lot ID
-     * @return ParkingRecordDto containing check-out information
+     * @return ParkingRecordDto containing check-out information and the fee from {@link TariffService}
      * @throws ResponseStatusException if any validation fails (e.g., vehicle not checked in)
      */
     public ParkingRecordDto checkOut(CheckOutDto dto) {
-        Vehicle vehicle = vehicleRepository.findById(dto.licensePlate())
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.NOT_FOUND, "Vehicle not found"));
+        VehicleInfo vehicle = referenceDataCache.findVehicle(dto.licensePlate())
+                .orElseThrow(() -> rejection(Rejection.VEHICLE_NOT_FOUND, HttpStatus.NOT_FOUND, "Vehicle not found"));
+
+        LotInfo lot = referenceDataCache.findLot(dto.lotId())
+                .orElseThrow(() -> rejection(Rejection.LOT_NOT_FOUND, HttpStatus.NOT_FOUND, "Parking lot not found"));
+
+        // Find vehicle's active session in the specified lot and end it atomically
+        ActiveSession session = activeSessionIndex.find(vehicle.licensePlate())
+                .filter(activeSession -> activeSession.lotId().equals(lot.lotId()))
+                .filter(activeSession -> activeSession.recordId() != null) // check-in still in flight
+                .filter(activeSessionIndex::end)
+                .orElseThrow(() -> rejection(Rejection.NOT_CHECKED_IN, HttpStatus.BAD_REQUEST,
+                        "Vehicle is not currently checked in this parking lot"));
 
-        ParkingLot lot = parkingLotRepository.findById(dto.lotId())
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.NOT_FOUND, "Parking lot not found"));
+        if (eventJournal != null) {
+            LocalDateTime checkOutTime = LocalDateTime.now();
+            eventJournal.append(JournalEvent.checkOut(vehicle.licensePlate(), lot.lotId(), checkOutTime));
+            lotOccupancyTracker.release(lot.lotId(), vehicle.type());
+            recordCheckOut(session, checkOutTime);
+            // JournalDrainer rates the stay again when it writes the record, with the same result
+            BigDecimal fee = tariffService.calculateFee(lot.lotId(), vehicle.type(), session.checkInTime(), checkOutTime)
+                    .orElse(null);
+            return new ParkingRecordDto(vehicle.licensePlate(), lot.lotId(), session.checkInTime(), checkOutTime, fee);
+        }
 
-        // Find vehicle's active record in the specified lot
-        ParkingRecord activeRecord = parkingRecordRepository
-                .findByVehicleAndParkingLotAndCheckOutTimeIsNull(vehicle, lot)
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.BAD_REQUEST, "Vehicle is not currently checked in this parking lot"));
+        // The session's record ID may be stale, e.g. a journal sequence number restored from a snapshot, so only
+        // trust it for the open record of this vehicle in this lot
+        ParkingRecord activeRecord = parkingRecordRepository.findById(session.recordId())
+                .filter(record -> isOpenRecordOf(record, vehicle, lot))
+                .or(() -> parkingRecordRepository.findByVehicleAndParkingLotAndCheckOutTimeIsNull(
+                        vehicleRepository.getReferenceById(vehicle.licensePlate()),
+                        parkingLotRepository.getReferenceById(lot.lotId())))
+                .orElseThrow(() -> rejection(Rejection.NOT_CHECKED_IN, HttpStatus.BAD_REQUEST,
+                        "Vehicle is not currently checked in this parking lot"));
 
-        // Set check-out time
+        // Set check-out time and charge the stay
         activeRecord.setCheckOutTime(LocalDateTime.now());
+        activeRecord.setFee(tariffService.calculateFee(lot.lotId(), vehicle.type(),
+                activeRecord.getCheckInTime(), activeRecord.getCheckOutTime()).orElse(null));
         ParkingRecord savedRecord = parkingRecordRepository.save(activeRecord);
 
-        // Update lot occupied spaces
-        lot.setOccupiedSpaces(lot.getOccupiedSpaces() - 1);
-        parkingLotRepository.save(lot);
+        // Free the space; the tracker persists the new occupancy asynchronously
+        lotOccupancyTracker.release(lot.lotId(), vehicle.type());
+        recordCheckOut(session, activeRecord.getCheckOutTime());
 
         return parkingRecordMapper.toDto(savedRecord);
     }
 
+    /**
+     * Processes a mixed list of check-in and check-out operations in a single transaction.
+     *
+     * Each operation is applied in order with the same business rules as {@link #checkIn(CheckInDto)}
+     * and {@link #checkOut(CheckOutDto)}. A rejected operation does not affect the others; its HTTP status
+     * and reason are reported in its result instead. The ParkingRecord inserts and updates are flushed
+     * together at commit, so Hibernate sends them as JDBC batches.
+     *
+     * @param operations the operations to apply, in order
+     * @return one result per operation, in the same order
+     */
+    public List<BatchResultDto> processBatch(List<BatchOperationDto> operations) {
+        List<BatchResultDto> results = new ArrayList<>(operations.size());
+
+        for (int i = 0; i < operations.size(); i++) {
+            BatchOperationDto operation = operations.get(i);
+
+            try {
+                if (operation.operation() == BatchOperationType.CHECK_IN) {
+                    ParkingRecordDto record = checkIn(new CheckInDto(operation.licensePlate(), operation.lotId()));
+                    results.add(new BatchResultDto(i, operation.operation(), HttpStatus.CREATED.value(), record, null));
+                } else {
+                    ParkingRecordDto record = checkOut(new CheckOutDto(operation.licensePlate(), operation.lotId()));
+                    results.add(new BatchResultDto(i, operation.operation(), HttpStatus.OK.value(), record, null));
+                }
+            } catch (ResponseStatusException ex) {
+                results.add(new BatchResultDto(i, operation.operation(), ex.getStatusCode().value(), null, ex.getReason()));
+            }
+        }
+
+        return results;
+    }
+
+
+    private static boolean isOpenRecordOf(ParkingRecord record, VehicleInfo vehicle, LotInfo lot) {
+        return record.getCheckOutTime() == null
+                && vehicle.licensePlate().equals(record.getVehicle().getLicensePlate())
+                && lot.lotId().equals(record.getParkingLot().getLotId());
+    }
+
+    private void recordCheckOut(ActiveSession session, LocalDateTime checkOutTime) {
+        occupancyRollupService.recordCheckOut(session.lotId(), session.checkInTime(), checkOutTime,
+                lotOccupancyTracker.getOccupiedSpaces(session.lotId()));
+    }
+
+    private ResponseStatusException rejection(Rejection reason, HttpStatus status, String message) {
+        parkingMetrics.countRejection(reason);
+        return new ResponseStatusException(status, message);
+    }
 }
@@ -0,0 +1,102 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.CacheStatsDto;
+import com.fayemanalo.smartpark.model.LotInfo;
+import com.fayemanalo.smartpark.model.VehicleInfo;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.repository.VehicleRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-through cache of vehicle and parking lot attributes.
+ *
+ * Vehicles and lots are effectively immutable once registered, so the check-in/check-out hot path reads
+ * them from here instead of the database. Entries are bounded in number and expire after a fixed time.
+ * Only existing entries are cached; a lookup for an unknown plate or lot always goes to the database,
+ * so a newly registered vehicle or lot is visible immediately.
+ */
+@Component
+public class ReferenceDataCache {
+
+    private final VehicleRepository vehicleRepository;
+    private final ParkingLotRepository parkingLotRepository;
+    private final Cache<String, VehicleInfo> vehicles;
+    private final Cache<String, LotInfo> lots;
+
+    public ReferenceDataCache(VehicleRepository vehicleRepository,
+                              ParkingLotRepository parkingLotRepository,
+                              @Value("${smartpark.cache.maximum-size:100000}") long maximumSize,
+                              @Value("${smartpark.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.vehicleRepository = vehicleRepository;
+        this.parkingLotRepository = parkingLotRepository;
+        this.vehicles = newCache(maximumSize, expireAfterWrite);
+        this.lots = newCache(maximumSize, expireAfterWrite);
+    }
+
+    /**
+     * Finds a vehicle by license plate, loading it from the database on a cache miss.
+     *
+     * @param licensePlate the license plate of the vehicle
+     * @return the vehicle's attributes, or empty if no such vehicle exists
+     */
+    public Optional<VehicleInfo> findVehicle(String licensePlate) {
+        return Optional.ofNullable(vehicles.get(licensePlate,
+                plate -> vehicleRepository.findById(plate).map(VehicleInfo::from).orElse(null)));
+    }
+
+    /**
+     * Finds a parking lot by ID, loading it from the database on a cache miss.
+     *
+     * @param lotId the ID of the parking lot
+     * @return the lot's attributes, or empty if no such lot exists
+     */
+    public Optional<LotInfo> findLot(String lotId) {
+        return Optional.ofNullable(lots.get(lotId,
+                id -> parkingLotRepository.findById(id).map(LotInfo::from).orElse(null)));
+    }
+
+    /**
+     * Returns a parking lot only if it is already cached, without going to the database.
+     *
+     * @param lotId the ID of the parking lot
+     * @return the lot's attributes, or empty if the lot is not cached
+     */
+    public Optional<LotInfo> findCachedLot(String lotId) {
+        return Optional.ofNullable(lots.getIfPresent(lotId));
+    }
+
+    /**
+     * Returns hit, miss and eviction statistics for both caches.
+     */
+    public List<CacheStatsDto> getStats() {
+        return List.of(stats("vehicles", vehicles), stats("parkingLots", lots));
+    }
+
+    private static <V> Cache<String, V> newCache(long maximumSize, Duration expireAfterWrite) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    private static CacheStatsDto stats(String name, Cache<String, ?> cache) {
+        CacheStats stats = cache.stats();
+        return new CacheStatsDto(
+                name,
+                cache.estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.evictionCount()
+        );
+    }
+}
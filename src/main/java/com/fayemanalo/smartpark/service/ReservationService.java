@@ -0,0 +1,448 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.LotAvailabilityDto;
+import com.fayemanalo.smartpark.dto.ReservationDto;
+import com.fayemanalo.smartpark.dto.ReservationRequestDto;
+import com.fayemanalo.smartpark.mapper.ReservationMapper;
+import com.fayemanalo.smartpark.model.BookedReservation;
+import com.fayemanalo.smartpark.model.LotInfo;
+import com.fayemanalo.smartpark.model.PoolOccupancy;
+import com.fayemanalo.smartpark.model.Reservation;
+import com.fayemanalo.smartpark.model.ReservationStatus;
+import com.fayemanalo.smartpark.model.VehicleInfo;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.repository.ReservationRepository;
+import com.fayemanalo.smartpark.repository.VehicleRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntPredicate;
+
+import static com.fayemanalo.smartpark.service.TransactionCallbacks.onRollback;
+
+/**
+ * Service class for booking parking spaces ahead of time.
+ *
+ * Time is divided into slots (15 minutes by default). Every lot with reservations keeps a
+ * {@link SlotSegmentTree} counting the spaces held per slot, so checking the capacity of a time range,
+ * booking it and cancelling it all take O(log n) in the number of slots. The trees cover the booking
+ * horizon from the current slot and are rebuilt from the lot's reservations once time has moved on by
+ * a horizon. Lots that never had a reservation have no tree and cost nothing at check-in.
+ *
+ * Check-in consults {@link #admit}: a vehicle without a reservation may not take a space held for a
+ * reservation, and a vehicle with one uses its held space.
+ *
+ * Reservations hold shared spaces only, so they cannot be booked for a vehicle type with its own pool in
+ * the lot: the vehicle would park in its pool and leave the held shared space empty.
+ */
+@Service
+@Transactional
+public class ReservationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationService.class);
+
+    private final ReservationRepository reservationRepository;
+    private final VehicleRepository vehicleRepository;
+    private final ParkingLotRepository parkingLotRepository;
+    private final ReservationMapper reservationMapper;
+    private final ReferenceDataCache referenceDataCache;
+    private final LotOccupancyTracker lotOccupancyTracker;
+    private final long slotSeconds;
+    private final int horizonSlots;
+
+    private final ConcurrentMap<String, LotReservations> lots = new ConcurrentHashMap<>();
+
+    public ReservationService(ReservationRepository reservationRepository, VehicleRepository vehicleRepository,
+                              ParkingLotRepository parkingLotRepository, ReservationMapper reservationMapper,
+                              ReferenceDataCache referenceDataCache, LotOccupancyTracker lotOccupancyTracker,
+                              @Value("${smartpark.reservation.slot-length:15m}") Duration slotLength,
+                              @Value("${smartpark.reservation.horizon:30d}") Duration horizon) {
+        this.reservationRepository = reservationRepository;
+        this.vehicleRepository = vehicleRepository;
+        this.parkingLotRepository = parkingLotRepository;
+        this.reservationMapper = reservationMapper;
+        this.referenceDataCache = referenceDataCache;
+        this.lotOccupancyTracker = lotOccupancyTracker;
+        this.slotSeconds = slotLength.toSeconds();
+        this.horizonSlots = (int) (horizon.toSeconds() / slotSeconds);
+    }
+
+    /**
+     * Loads the reservations that still hold a space.
+     */
+    @PostConstruct
+    public void load() {
+        LocalDateTime now = LocalDateTime.now();
+        List<BookedReservation> booked = reservationRepository.findBookedEndingAfter(now);
+        for (BookedReservation reservation : booked) {
+            LotReservations lot = lotReservations(reservation.lotId());
+            if (lot != null) {
+                synchronized (lot) {
+                    lot.prepare(slotOf(now));
+                    lot.add(reservation);
+                }
+            }
+        }
+        if (!booked.isEmpty()) {
+            log.info("Loaded {} reservations for {} parking lots", booked.size(), lots.size());
+        }
+    }
+
+    /**
+     * Books a space in a lot for a vehicle and a time range.
+     *
+     * Business rules enforced:
+     * 1. Vehicle and parking lot must exist, and the vehicle's type must not have its own pool in the lot.
+     * 2. The range must start in the future, end after it starts and lie within the booking horizon.
+     * 3. The vehicle cannot have another reservation in this lot that overlaps the range.
+     * 4. Every slot of the range must have a space left that is not held by another reservation, and a
+     *    range starting in the current slot must also leave room for the vehicles parked right now.
+     *
+     * @param dto the vehicle, lot and time range
+     * @return the booked reservation
+     * @throws ResponseStatusException if any validation fails (e.g. vehicle not found, no capacity left)
+     */
+    public ReservationDto book(ReservationRequestDto dto) {
+        VehicleInfo vehicle = referenceDataCache.findVehicle(dto.licensePlate())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Vehicle not found"));
+        LotInfo lotInfo = referenceDataCache.findLot(dto.lotId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Parking lot not found"));
+        if (lotOccupancyTracker.getPoolOccupancy(lotInfo.lotId(), vehicle.type()).dedicated()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Vehicles of type " + vehicle.type() + " park in their own spaces and cannot be booked ahead");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (dto.startTime().isBefore(now)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Reservations must start in the future");
+        }
+        if (!dto.startTime().isBefore(dto.endTime())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'startTime' must be before 'endTime'");
+        }
+        checkWithinHorizon(now, dto.endTime());
+
+        Reservation reservation = reservationRepository.save(Reservation.builder()
+                .vehicle(vehicleRepository.getReferenceById(vehicle.licensePlate()))
+                .parkingLot(parkingLotRepository.getReferenceById(lotInfo.lotId()))
+                .startTime(dto.startTime())
+                .endTime(dto.endTime())
+                .status(ReservationStatus.BOOKED)
+                .build());
+        BookedReservation booked = new BookedReservation(reservation.getId(), vehicle.licensePlate(),
+                lotInfo.lotId(), dto.startTime(), dto.endTime());
+
+        LotReservations lot = lots.computeIfAbsent(lotInfo.lotId(),
+                id -> new LotReservations(lotOccupancyTracker.getPoolOccupancy(id, null).capacity()));
+        synchronized (lot) {
+            long currentSlot = slotOf(now);
+            lot.prepare(currentSlot);
+            if (lot.overlapsReservationOf(vehicle.licensePlate(), dto.startTime(), dto.endTime())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Vehicle already has a reservation in this parking lot at that time");
+            }
+            int reserved = lot.reservedSpaces(slotOf(dto.startTime()), endSlotOf(dto.endTime()));
+            int occupied = slotOf(dto.startTime()) == currentSlot ? sharedOccupiedSpaces(lotInfo.lotId()) : 0;
+            if (reserved + occupied >= lot.capacity) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Parking lot has no space left to book at that time");
+            }
+            lot.add(booked);
+        }
+        onRollback(() -> {
+            synchronized (lot) {
+                lot.remove(booked.id(), slotOf(LocalDateTime.now()));
+            }
+        });
+
+        return reservationMapper.toDto(reservation);
+    }
+
+    /**
+     * Cancels a reservation, releasing its space.
+     *
+     * @param id the ID of the reservation
+     * @return the cancelled reservation
+     * @throws ResponseStatusException if the reservation does not exist or no longer holds a space
+     */
+    public ReservationDto cancel(Long id) {
+        Reservation reservation = reservationRepository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Reservation not found"));
+        if (reservation.getStatus() != ReservationStatus.BOOKED) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Reservation is already " + reservation.getStatus().name().toLowerCase());
+        }
+        reservation.setStatus(ReservationStatus.CANCELLED);
+
+        LotReservations lot = lots.get(reservation.getParkingLot().getLotId());
+        if (lot != null) {
+            BookedReservation booked;
+            long fromSlot;
+            synchronized (lot) {
+                fromSlot = slotOf(LocalDateTime.now());
+                booked = lot.remove(id, fromSlot);
+            }
+            if (booked != null) {
+                onRollback(() -> {
+                    synchronized (lot) {
+                        lot.restore(booked, fromSlot);
+                    }
+                });
+            }
+        }
+
+        return reservationMapper.toDto(reservation);
+    }
+
+    /**
+     * Returns how many shared spaces of a lot can still be booked throughout a time range.
+     *
+     * @param lotId the ID of the parking lot
+     * @param from  start of the range; defaults to now, and a start in the past is moved to now
+     * @param to    end of the range, exclusive; defaults to one slot after {@code from}
+     * @return the capacity, the spaces held by reservations and the spaces still free
+     * @throws ResponseStatusException if the lot does not exist, or the range is empty or beyond the horizon
+     */
+    public LotAvailabilityDto getAvailability(String lotId, LocalDateTime from, LocalDateTime to) {
+        referenceDataCache.findLot(lotId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Parking lot not found"));
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime start = from == null || from.isBefore(now) ? now : from;
+        LocalDateTime end = to != null ? to : start.plusSeconds(slotSeconds);
+        if (!start.isBefore(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' must be before 'to' and 'to' in the future");
+        }
+        checkWithinHorizon(now, end);
+
+        long currentSlot = slotOf(now);
+        int reserved = 0;
+        LotReservations lot = lots.get(lotId);
+        if (lot != null) {
+            synchronized (lot) {
+                lot.prepare(currentSlot);
+                reserved = lot.reservedSpaces(slotOf(start), endSlotOf(end));
+            }
+        }
+        PoolOccupancy shared = lotOccupancyTracker.getPoolOccupancy(lotId, null);
+        int occupied = slotOf(start) == currentSlot ? shared.occupiedSpaces() : 0;
+        int available = Math.max(0, shared.capacity() - reserved - occupied);
+        return new LotAvailabilityDto(lotId, start, end, shared.capacity(), reserved, occupied, available);
+    }
+
+    /**
+     * Takes a space for a vehicle checking in, honoring the spaces held for reservations.
+     *
+     * A vehicle with a reservation for this lot that has started (or starts within the next slot) uses it:
+     * the reservation is marked as fulfilled and its remaining slots released, since the vehicle now counts
+     * as occupied. Any other vehicle must leave the spaces held for the current slot free.
+     *
+     * With a {@link LotCapacityGuard}, the space is taken after the lot's monitor is released: the guard may
+     * wait for the lot's row lock, which a batch transaction waiting for the monitor may already hold. The
+     * arriving reservation is claimed beforehand, so no other check-in uses it in between.
+     *
+     * @param lotId        the ID of the parking lot
+     * @param licensePlate the vehicle checking in
+     * @param time         the check-in time
+     * @param reserveSpace takes a space if that leaves the given number of spaces free, see
+     *                     {@link LotOccupancyTracker#tryReserve(String, VehicleType, int)}
+     * @return whether a space was taken
+     */
+    public boolean admit(String lotId, String licensePlate, LocalDateTime time, IntPredicate reserveSpace) {
+        LotReservations lot = lots.get(lotId);
+        if (lot == null) {
+            return reserveSpace.test(0);
+        }
+
+        long slot = slotOf(time);
+        boolean inMemory = !lotOccupancyTracker.hasCapacityGuard();
+        BookedReservation arriving;
+        int held;
+        boolean admitted = false;
+        synchronized (lot) {
+            lot.prepare(slot);
+            held = lot.reservedSpaces(slot, slot + 1);
+            arriving = lot.findArriving(licensePlate, time, slotSeconds);
+            if (arriving != null) {
+                // Its own space is among the held ones, unless it arrives before its first slot
+                if (slotOf(arriving.startTime()) <= slot) {
+                    held--;
+                }
+                lot.remove(arriving.id(), slot);
+            }
+            // The counters take no locks, so the space is taken atomically with the count of held spaces
+            if (inMemory) {
+                admitted = takeSpace(lot, arriving, slot, held, reserveSpace);
+            }
+        }
+        if (!inMemory) {
+            admitted = takeSpace(lot, arriving, slot, held, reserveSpace);
+        }
+        if (!admitted || arriving == null) {
+            return admitted;
+        }
+
+        onRollback(() -> {
+            synchronized (lot) {
+                lot.restore(arriving, slot);
+            }
+        });
+        reservationRepository.updateStatus(arriving.id(), ReservationStatus.FULFILLED);
+        return true;
+    }
+
+    // Takes a space, giving the claimed reservation back if none is taken
+    private boolean takeSpace(LotReservations lot, BookedReservation arriving, long slot, int held,
+                              IntPredicate reserveSpace) {
+        boolean taken = false;
+        try {
+            taken = reserveSpace.test(held);
+            return taken;
+        } finally {
+            if (!taken && arriving != null) {
+                synchronized (lot) {
+                    lot.restore(arriving, slot);
+                }
+            }
+        }
+    }
+
+    private void checkWithinHorizon(LocalDateTime now, LocalDateTime end) {
+        if (end.isAfter(now.plusSeconds(horizonSlots * slotSeconds))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Reservations can be made at most " + Duration.ofSeconds(horizonSlots * slotSeconds).toDays()
+                            + " days ahead");
+        }
+    }
+
+    private LotReservations lotReservations(String lotId) {
+        return referenceDataCache.findLot(lotId)
+                .map(lotInfo -> lots.computeIfAbsent(lotId,
+                        id -> new LotReservations(lotOccupancyTracker.getPoolOccupancy(id, null).capacity())))
+                .orElse(null);
+    }
+
+    private int sharedOccupiedSpaces(String lotId) {
+        return lotOccupancyTracker.getPoolOccupancy(lotId, null).occupiedSpaces();
+    }
+
+    private long slotOf(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), slotSeconds);
+    }
+
+    // First slot after the one the (exclusive) end time falls in, unless it falls on a slot boundary
+    private long endSlotOf(LocalDateTime time) {
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        long slot = Math.floorDiv(seconds, slotSeconds);
+        return slot * slotSeconds == seconds && time.getNano() == 0 ? slot : slot + 1;
+    }
+
+    // The reservations of one lot; guarded by its own monitor
+    private final class LotReservations {
+
+        private final int capacity;
+        private final Map<Long, BookedReservation> byId = new HashMap<>();
+        private final Map<String, List<BookedReservation>> byPlate = new HashMap<>();
+        private SlotSegmentTree tree;
+        private long baseSlot;
+
+        private LotReservations(int capacity) {
+            this.capacity = capacity;
+        }
+
+        // Makes sure the tree covers the booking horizon from the current slot, rebuilding it if needed
+        private void prepare(long currentSlot) {
+            if (tree != null && currentSlot - baseSlot <= horizonSlots) {
+                return;
+            }
+            baseSlot = currentSlot;
+            tree = new SlotSegmentTree(2 * horizonSlots + 2);
+            for (BookedReservation reservation : new ArrayList<>(byId.values())) {
+                if (endSlotOf(reservation.endTime()) <= currentSlot) {
+                    remove(reservation.id(), currentSlot);
+                } else {
+                    count(reservation, currentSlot, 1);
+                }
+            }
+        }
+
+        private int reservedSpaces(long fromSlot, long toSlot) {
+            return tree.max(index(fromSlot), index(toSlot));
+        }
+
+        private boolean overlapsReservationOf(String licensePlate, LocalDateTime start, LocalDateTime end) {
+            for (BookedReservation reservation : byPlate.getOrDefault(licensePlate, List.of())) {
+                if (reservation.startTime().isBefore(end) && start.isBefore(reservation.endTime())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // A reservation of the vehicle that has started, or starts within one slot
+        private BookedReservation findArriving(String licensePlate, LocalDateTime time, long earlySeconds) {
+            for (BookedReservation reservation : byPlate.getOrDefault(licensePlate, List.of())) {
+                if (!time.plusSeconds(earlySeconds).isBefore(reservation.startTime())
+                        && time.isBefore(reservation.endTime())) {
+                    return reservation;
+                }
+            }
+            return null;
+        }
+
+        private void add(BookedReservation reservation) {
+            byId.put(reservation.id(), reservation);
+            byPlate.computeIfAbsent(reservation.licensePlate(), plate -> new ArrayList<>()).add(reservation);
+            count(reservation, baseSlot, 1);
+        }
+
+        // Forgets a reservation and releases its slots from the given one on
+        private BookedReservation remove(Long id, long fromSlot) {
+            BookedReservation reservation = byId.remove(id);
+            if (reservation == null) {
+                return null;
+            }
+            List<BookedReservation> ofVehicle = byPlate.get(reservation.licensePlate());
+            ofVehicle.remove(reservation);
+            if (ofVehicle.isEmpty()) {
+                byPlate.remove(reservation.licensePlate());
+            }
+            count(reservation, fromSlot, -1);
+            return reservation;
+        }
+
+        // Undoes remove(id, fromSlot)
+        private void restore(BookedReservation reservation, long fromSlot) {
+            byId.put(reservation.id(), reservation);
+            byPlate.computeIfAbsent(reservation.licensePlate(), plate -> new ArrayList<>()).add(reservation);
+            count(reservation, fromSlot, 1);
+        }
+
+        private void count(BookedReservation reservation, long fromSlot, int delta) {
+            long from = Math.max(Math.max(slotOf(reservation.startTime()), fromSlot), baseSlot);
+            long to = endSlotOf(reservation.endTime());
+            if (from < to) {
+                tree.add(index(from), index(to), delta);
+            }
+        }
+
+        private int index(long slot) {
+            return (int) Math.min(Math.max(slot - baseSlot, 0), tree.size());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.fayemanalo.smartpark.service;
+
+/**
+ * A count per time slot, with adding to a range of slots and the maximum over a range of slots both in
+ * O(log n).
+ *
+ * Each node stores the maximum of its subtree and what was added to the whole subtree; additions are not
+ * pushed down to the children, the query adds them up on the way down instead. Not thread-safe.
+ */
+final class SlotSegmentTree {
+
+    private final int size;
+    private final int[] max;
+    private final int[] added;
+
+    /**
+     * @param slots the number of slots, numbered from 0
+     */
+    SlotSegmentTree(int slots) {
+        this.size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.max = new int[2 * size];
+        this.added = new int[2 * size];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds a delta to every slot in [from, to). Slots outside the tree are ignored.
+     */
+    void add(int from, int to, int delta) {
+        add(1, 0, size, Math.max(from, 0), Math.min(to, size), delta);
+    }
+
+    /**
+     * Returns the largest count in [from, to), or 0 for an empty range.
+     */
+    int max(int from, int to) {
+        int result = max(1, 0, size, Math.max(from, 0), Math.min(to, size));
+        return result == Integer.MIN_VALUE ? 0 : result;
+    }
+
+    private void add(int node, int nodeFrom, int nodeTo, int from, int to, int delta) {
+        if (to <= nodeFrom || nodeTo <= from) {
+            return;
+        }
+        if (from <= nodeFrom && nodeTo <= to) {
+            added[node] += delta;
+            max[node] += delta;
+            return;
+        }
+        int middle = (nodeFrom + nodeTo) >>> 1;
+        add(2 * node, nodeFrom, middle, from, to, delta);
+        add(2 * node + 1, middle, nodeTo, from, to, delta);
+        max[node] = added[node] + Math.max(max[2 * node], max[2 * node + 1]);
+    }
+
+    private int max(int node, int nodeFrom, int nodeTo, int from, int to) {
+        if (to <= nodeFrom || nodeTo <= from) {
+            return Integer.MIN_VALUE;
+        }
+        if (from <= nodeFrom && nodeTo <= to) {
+            return max[node];
+        }
+        int middle = (nodeFrom + nodeTo) >>> 1;
+        int children = Math.max(max(2 * node, nodeFrom, middle, from, to), max(2 * node + 1, middle, nodeTo, from, to));
+        return children == Integer.MIN_VALUE ? children : added[node] + children;
+    }
+}
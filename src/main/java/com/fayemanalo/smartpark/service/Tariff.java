@@ -0,0 +1,125 @@
+package com.fayemanalo.smartpark.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A parking tariff: hourly rates by time of day, and an optional cap per day of parking.
+ *
+ * Every started minute is charged at the rate of the band it falls in. A stay is split into 24-hour periods
+ * from check-in, and each period costs at most the daily cap. The cost of every minute of the day is
+ * precomputed, so rating a stay takes the same time however long it is.
+ */
+public final class Tariff {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    // Cost in cent-minutes (cents per hour times minutes) from midnight up to each minute of the day
+    private final long[] costUntil = new long[MINUTES_PER_DAY + 1];
+    private final long dailyCapCents;
+
+    private Tariff(int[] ratesPerMinuteOfDay, long dailyCapCents) {
+        for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+            costUntil[minute + 1] = costUntil[minute] + ratesPerMinuteOfDay[minute];
+        }
+        this.dailyCapCents = dailyCapCents;
+    }
+
+    /**
+     * Creates a tariff from its time-of-day bands.
+     *
+     * @param bands    comma-separated {@code HH:mm=rate} pairs, e.g. {@code "07:00=2.50, 19:00=1.00"}; each rate
+     *                 per hour applies from its start time until the next band starts, wrapping around midnight
+     * @param dailyCap the most a 24-hour period can cost, or null for no cap
+     * @throws IllegalArgumentException if the bands cannot be parsed, or an amount has more than two decimals
+     */
+    public static Tariff of(String bands, BigDecimal dailyCap) {
+        TreeMap<Integer, Integer> rateByStart = new TreeMap<>();
+        for (String band : bands == null ? new String[0] : bands.split(",")) {
+            String[] parts = band.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid tariff band '" + band.trim() + "', expected HH:mm=rate");
+            }
+            int start;
+            try {
+                LocalTime time = LocalTime.parse(parts[0].trim());
+                start = time.getHour() * 60 + time.getMinute();
+            } catch (DateTimeParseException ex) {
+                throw new IllegalArgumentException("Invalid start time in tariff band '" + band.trim() + "'", ex);
+            }
+            if (rateByStart.put(start, (int) toCents(new BigDecimal(parts[1].trim()))) != null) {
+                throw new IllegalArgumentException("Two tariff bands start at " + parts[0].trim());
+            }
+        }
+        if (rateByStart.isEmpty()) {
+            throw new IllegalArgumentException("A tariff needs at least one band");
+        }
+
+        int[] rates = new int[MINUTES_PER_DAY];
+        for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+            // Minutes before the first band belong to the last one of the previous day
+            Map.Entry<Integer, Integer> band = rateByStart.floorEntry(minute);
+            rates[minute] = (band != null ? band : rateByStart.lastEntry()).getValue();
+        }
+        return new Tariff(rates, dailyCap != null ? toCents(dailyCap) : Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the fee for a stay.
+     *
+     * @param checkInTime  when the vehicle checked in
+     * @param checkOutTime when the vehicle checked out
+     * @return the fee, with two decimals; zero if the stay did not last
+     */
+    public BigDecimal fee(LocalDateTime checkInTime, LocalDateTime checkOutTime) {
+        return BigDecimal.valueOf(feeInCents(checkInTime, checkOutTime), 2);
+    }
+
+    /**
+     * Returns the fee for a stay in cents. Used by batch rating, which avoids creating a BigDecimal per stay.
+     */
+    public long feeInCents(LocalDateTime checkInTime, LocalDateTime checkOutTime) {
+        Duration stay = Duration.between(checkInTime, checkOutTime);
+        if (stay.isNegative() || stay.isZero()) {
+            return 0;
+        }
+        long seconds = stay.getSeconds();
+        long minutes = seconds / 60 + (seconds % 60 > 0 || stay.getNano() > 0 ? 1 : 0);
+
+        // Every full period covers each minute of the day exactly once, wherever it starts
+        int start = checkInTime.getHour() * 60 + checkInTime.getMinute();
+        long fullDays = minutes / MINUTES_PER_DAY;
+        int rest = (int) (minutes % MINUTES_PER_DAY);
+        return fullDays * capped(costUntil[MINUTES_PER_DAY]) + capped(cost(start, rest));
+    }
+
+    // Cost of the given number of minutes (at most a day) from a minute of the day, wrapping around midnight
+    private long cost(int start, int minutes) {
+        int end = start + minutes;
+        if (end <= MINUTES_PER_DAY) {
+            return costUntil[end] - costUntil[start];
+        }
+        return costUntil[MINUTES_PER_DAY] - costUntil[start] + costUntil[end - MINUTES_PER_DAY];
+    }
+
+    // Rounds cent-minutes to cents (half up) and applies the daily cap
+    private long capped(long centMinutes) {
+        return Math.min((centMinutes + 30) / 60, dailyCapCents);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        if (amount.signum() < 0) {
+            throw new IllegalArgumentException("Tariff amounts cannot be negative: " + amount);
+        }
+        try {
+            return amount.movePointRight(2).longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Tariff amounts have at most two decimals: " + amount, ex);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.VehicleType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * The configured tariffs ({@code smartpark.tariff.tariffs[n].*}).
+ *
+ * @param tariffs the tariffs; the most specific one matching a lot and vehicle type is used
+ */
+@ConfigurationProperties(prefix = "smartpark.tariff")
+public record TariffProperties(List<Entry> tariffs) {
+
+    public TariffProperties {
+        tariffs = tariffs != null ? tariffs : List.of();
+    }
+
+    /**
+     * @param lotId       the lot this tariff applies to, or null for all lots
+     * @param vehicleType the vehicle type this tariff applies to, or null for all types
+     * @param bands       the hourly rates by time of day, see {@link Tariff#of}
+     * @param dailyCap    the most a 24-hour period can cost, or null for no cap
+     */
+    public record Entry(String lotId, VehicleType vehicleType, String bands, BigDecimal dailyCap) {}
+}
@@ -0,0 +1,82 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.VehicleType;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Looks up the tariff of a lot and vehicle type, and calculates parking fees with it.
+ *
+ * Tariffs are configured per lot, per vehicle type, or both; the most specific match wins, in the order
+ * lot and type, lot, type, and finally the tariff with neither. Stays without a matching tariff are not charged.
+ */
+@Service
+@EnableConfigurationProperties(TariffProperties.class)
+public class TariffService {
+
+    private final Map<TariffKey, Tariff> tariffs = new HashMap<>();
+
+    public TariffService(TariffProperties properties) {
+        for (TariffProperties.Entry entry : properties.tariffs()) {
+            TariffKey key = new TariffKey(entry.lotId(), entry.vehicleType());
+            Tariff tariff;
+            try {
+                tariff = Tariff.of(entry.bands(), entry.dailyCap());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Invalid tariff for " + key + ": " + ex.getMessage(), ex);
+            }
+            if (tariffs.put(key, tariff) != null) {
+                throw new IllegalArgumentException("More than one tariff configured for " + key);
+            }
+        }
+    }
+
+    /**
+     * Finds the tariff that applies to a vehicle type in a lot.
+     *
+     * @param lotId       the ID of the parking lot
+     * @param vehicleType the type of the vehicle (may be null)
+     * @return the most specific configured tariff, or empty if none applies
+     */
+    public Optional<Tariff> findTariff(String lotId, VehicleType vehicleType) {
+        Tariff tariff = tariffs.get(new TariffKey(lotId, vehicleType));
+        if (tariff == null) {
+            tariff = tariffs.get(new TariffKey(lotId, null));
+        }
+        if (tariff == null) {
+            tariff = tariffs.get(new TariffKey(null, vehicleType));
+        }
+        if (tariff == null) {
+            tariff = tariffs.get(new TariffKey(null, null));
+        }
+        return Optional.ofNullable(tariff);
+    }
+
+    /**
+     * Calculates the fee of a stay.
+     *
+     * @param lotId        the ID of the parking lot
+     * @param vehicleType  the type of the vehicle (may be null)
+     * @param checkInTime  when the vehicle checked in
+     * @param checkOutTime when the vehicle checked out
+     * @return the fee, or empty if no tariff applies
+     */
+    public Optional<BigDecimal> calculateFee(String lotId, VehicleType vehicleType,
+                                             LocalDateTime checkInTime, LocalDateTime checkOutTime) {
+        return findTariff(lotId, vehicleType).map(tariff -> tariff.fee(checkInTime, checkOutTime));
+    }
+
+    private record TariffKey(String lotId, VehicleType vehicleType) {
+
+        @Override
+        public String toString() {
+            return "lot " + (lotId != null ? lotId : "*") + ", vehicle type " + (vehicleType != null ? vehicleType : "*");
+        }
+    }
+}
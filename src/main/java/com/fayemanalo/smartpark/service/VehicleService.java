@@ -1,6 +1,7 @@
 package com.fayemanalo.smartpark.service;
 
 import com.fayemanalo.smartpark.dto.VehicleDto;
+import com.fayemanalo.smartpark.dto.VehicleLocationDto;
 import com.fayemanalo.smartpark.mapper.VehicleMapper;
 import com.fayemanalo.smartpark.model.Vehicle;
 import com.fayemanalo.smartpark.repository.VehicleRepository;
@@ -13,10 +14,13 @@ public class VehicleService {
 
     private final VehicleRepository vehicleRepository;
     private final VehicleMapper vehicleMapper;
+    private final ActiveSessionIndex activeSessionIndex;
 
-    public VehicleService(VehicleRepository vehicleRepository, VehicleMapper vehicleMapper) {
+    public VehicleService(VehicleRepository vehicleRepository, VehicleMapper vehicleMapper,
+                          ActiveSessionIndex activeSessionIndex) {
         this.vehicleRepository = vehicleRepository;
         this.vehicleMapper = vehicleMapper;
+        this.activeSessionIndex = activeSessionIndex;
     }
 
     /**
@@ -41,4 +45,26 @@ public class VehicleService {
         var savedVehicle = vehicleRepository.save(vehicle);
         return vehicleMapper.toDto(savedVehicle);
     }
+
+    /**
+     * Finds the parking lot a vehicle is currently parked in.
+     *
+     * Answered from the in-memory active-session index without querying the database.
+     *
+     * @param licensePlate the license plate of the vehicle
+     * @return the lot ID and check-in time of the vehicle's active session
+     * @throws ResponseStatusException if the vehicle is not currently parked
+     */
+    public VehicleLocationDto getLocation(String licensePlate) {
+        return activeSessionIndex.find(licensePlate)
+                .map(session -> new VehicleLocationDto(
+                        session.licensePlate(),
+                        session.lotId(),
+                        session.checkInTime()
+                ))
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND,
+                        "Vehicle is not currently parked"
+                ));
+    }
 }
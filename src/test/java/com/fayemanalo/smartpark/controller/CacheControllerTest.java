@@ -0,0 +1,51 @@
+package com.fayemanalo.smartpark.controller;
+
+import com.fayemanalo.smartpark.dto.CacheStatsDto;
+import com.fayemanalo.smartpark.service.IdempotencyCache;
+import com.fayemanalo.smartpark.service.ReferenceDataCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CacheControllerTest {
+
+    private ReferenceDataCache referenceDataCache;
+    private IdempotencyCache idempotencyCache;
+    private CacheController cacheController;
+
+    @BeforeEach
+    void setUp() {
+        referenceDataCache = mock(ReferenceDataCache.class);
+        idempotencyCache = mock(IdempotencyCache.class);
+        cacheController = new CacheController(referenceDataCache, idempotencyCache);
+    }
+
+    @Test
+    void getStats_shouldReturnOkResponse() {
+        // Given
+        List<CacheStatsDto> stats = List.of(
+                new CacheStatsDto("vehicles", 2, 10, 2, 0.83, 0),
+                new CacheStatsDto("parkingLots", 1, 5, 1, 0.83, 0)
+        );
+        CacheStatsDto idempotencyKeys = new CacheStatsDto("idempotencyKeys", 3, 1, 3, 0.25, 0);
+
+        when(referenceDataCache.getStats()).thenReturn(stats);
+        when(idempotencyCache.getStats()).thenReturn(idempotencyKeys);
+
+        // When
+        ResponseEntity<List<CacheStatsDto>> response = cacheController.getStats();
+
+        // Then
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of(stats.get(0), stats.get(1), idempotencyKeys), response.getBody());
+        verify(referenceDataCache, times(1)).getStats();
+    }
+
+}
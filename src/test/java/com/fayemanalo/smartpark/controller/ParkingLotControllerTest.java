@@ -1,17 +1,32 @@
 package com.fayemanalo.smartpark.controller;
 
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fayemanalo.smartpark.dto.LotAvailabilityDto;
+import com.fayemanalo.smartpark.dto.LotHourlyStatsDto;
+import com.fayemanalo.smartpark.dto.NearestLotDto;
 import com.fayemanalo.smartpark.dto.ParkingLotDto;
 import com.fayemanalo.smartpark.dto.ParkingLotStatusDto;
 import com.fayemanalo.smartpark.dto.VehiclesInLotDto;
+import com.fayemanalo.smartpark.dto.VehiclesInLotPageDto;
 import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.service.OccupancyRollupService;
+import com.fayemanalo.smartpark.service.OccupancyStreamService;
 import com.fayemanalo.smartpark.service.ParkingLotService;
+import com.fayemanalo.smartpark.service.ReservationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -19,12 +34,19 @@ import static org.mockito.Mockito.*;
 class ParkingLotControllerTest {
 
     private ParkingLotService parkingLotService;
+    private OccupancyStreamService occupancyStreamService;
+    private OccupancyRollupService occupancyRollupService;
+    private ReservationService reservationService;
     private ParkingLotController parkingLotController;
 
     @BeforeEach
     void setUp() {
         parkingLotService = mock(ParkingLotService.class);
-        parkingLotController = new ParkingLotController(parkingLotService);
+        occupancyStreamService = mock(OccupancyStreamService.class);
+        occupancyRollupService = mock(OccupancyRollupService.class);
+        reservationService = mock(ReservationService.class);
+        parkingLotController = new ParkingLotController(parkingLotService, occupancyStreamService, occupancyRollupService,
+                reservationService, JsonMapper.builder().findAndAddModules().build());
     }
 
     // ===============================
@@ -79,35 +101,124 @@ class ParkingLotControllerTest {
     void getStatus_shouldReturnOkResponse_whenLotExists() {
         // Given
         String lotId = "LOT1";
-        ParkingLotStatusDto statusDto = new ParkingLotStatusDto(lotId, "Main Street", 10, 2, 8);
+        ParkingLotStatusDto statusDto = new ParkingLotStatusDto(lotId, "Main Street", 10, 2, 8, Map.of());
 
+        when(parkingLotService.getStatusETag(lotId)).thenReturn("\"abc-3\"");
         when(parkingLotService.getStatus(lotId)).thenReturn(statusDto);
 
         // When
-        ResponseEntity<ParkingLotStatusDto> response = parkingLotController.getStatus(lotId);
+        ResponseEntity<ParkingLotStatusDto> response = parkingLotController.getStatus(lotId, null);
 
         // Then
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(statusDto, response.getBody());
+        assertEquals("\"abc-3\"", response.getHeaders().getETag());
         verify(parkingLotService, times(1)).getStatus(lotId);
     }
 
+    @Test
+    void getStatus_shouldReturnNotModified_whenETagMatches() {
+        // Given
+        String lotId = "LOT1";
+        when(parkingLotService.getStatusETag(lotId)).thenReturn("\"abc-3\"");
+
+        // When
+        ResponseEntity<ParkingLotStatusDto> response = parkingLotController.getStatus(lotId, "\"abc-2\", W/\"abc-3\"");
+
+        // Then
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals("\"abc-3\"", response.getHeaders().getETag());
+        verify(parkingLotService, never()).getStatus(any());
+    }
+
+    @Test
+    void getStatus_shouldReturnOkResponse_whenETagIsStale() {
+        // Given
+        String lotId = "LOT1";
+        ParkingLotStatusDto statusDto = new ParkingLotStatusDto(lotId, "Main Street", 10, 3, 7, Map.of());
+
+        when(parkingLotService.getStatusETag(lotId)).thenReturn("\"abc-4\"");
+        when(parkingLotService.getStatus(lotId)).thenReturn(statusDto);
+
+        // When
+        ResponseEntity<ParkingLotStatusDto> response = parkingLotController.getStatus(lotId, "\"abc-3\"");
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(statusDto, response.getBody());
+        assertEquals("\"abc-4\"", response.getHeaders().getETag());
+    }
+
     @Test
     void getStatus_shouldPropagateException_whenServiceThrows() {
         String lotId = "LOT1";
 
+        when(parkingLotService.getStatusETag(lotId)).thenReturn("\"abc-0\"");
         when(parkingLotService.getStatus(lotId)).thenThrow(new IllegalArgumentException("Lot not found"));
 
         IllegalArgumentException thrown = assertThrows(
                 IllegalArgumentException.class,
-                () -> parkingLotController.getStatus(lotId)
+                () -> parkingLotController.getStatus(lotId, null)
         );
 
         assertEquals("Lot not found", thrown.getMessage());
         verify(parkingLotService, times(1)).getStatus(lotId);
     }
 
+    // ========================
+    // Tests for getStatuses()
+    // ========================
+    @Test
+    void getStatuses_shouldReturnOkResponse_withStatusesFromService() {
+        // Given
+        List<String> ids = List.of("LOT1", "LOT2");
+        List<ParkingLotStatusDto> statuses = List.of(
+                new ParkingLotStatusDto("LOT1", "Main Street", 10, 2, 8, Map.of()),
+                new ParkingLotStatusDto("LOT2", "Side Street", 5, 5, 0, Map.of())
+        );
+        when(parkingLotService.getStatuses(ids)).thenReturn(statuses);
+
+        // When
+        ResponseEntity<List<ParkingLotStatusDto>> response = parkingLotController.getStatuses(ids);
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(statuses, response.getBody());
+        verify(parkingLotService, times(1)).getStatuses(ids);
+    }
+
+    // ========================
+    // Tests for streamStatus()
+    // ========================
+    @Test
+    void streamStatus_shouldReturnEmitterFromService() {
+        // Given
+        SseEmitter emitter = new SseEmitter();
+        when(occupancyStreamService.subscribe("LOT1")).thenReturn(emitter);
+
+        // When
+        SseEmitter result = parkingLotController.streamStatus("LOT1");
+
+        // Then
+        assertSame(emitter, result);
+        verify(occupancyStreamService, times(1)).subscribe("LOT1");
+    }
+
+    @Test
+    void streamAllStatuses_shouldReturnEmitterFromService() {
+        // Given
+        SseEmitter emitter = new SseEmitter();
+        when(occupancyStreamService.subscribeAll()).thenReturn(emitter);
+
+        // When
+        SseEmitter result = parkingLotController.streamAllStatuses();
+
+        // Then
+        assertSame(emitter, result);
+    }
+
     // ========================
     // Tests for getVehiclesInLot()
     // ========================
@@ -118,31 +229,159 @@ class ParkingLotControllerTest {
         VehiclesInLotDto vehicleDto = new VehiclesInLotDto("ABC-123", VehicleType.CAR, "John Doe", LocalDateTime.now());
         List<VehiclesInLotDto> vehicles = List.of(vehicleDto);
 
-        when(parkingLotService.getVehiclesInLot(lotId)).thenReturn(vehicles);
+        when(parkingLotService.getVehiclesInLot(lotId, null, 100))
+                .thenReturn(new VehiclesInLotPageDto(vehicles, null));
 
         // When
-        ResponseEntity<List<VehiclesInLotDto>> response = parkingLotController.getVehiclesInLot(lotId);
+        ResponseEntity<List<VehiclesInLotDto>> response = parkingLotController.getVehiclesInLot(lotId, null, 100);
 
         // Then
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(vehicles, response.getBody());
-        verify(parkingLotService, times(1)).getVehiclesInLot(lotId);
+        assertFalse(response.getHeaders().containsKey("X-Next-Cursor"));
+        verify(parkingLotService, times(1)).getVehiclesInLot(lotId, null, 100);
+    }
+
+    @Test
+    void getVehiclesInLot_shouldReturnNextCursorHeader_whenMorePagesExist() {
+        // Given
+        String lotId = "LOT1";
+        List<VehiclesInLotDto> vehicles = List.of(
+                new VehiclesInLotDto("ABC-123", VehicleType.CAR, "John Doe", LocalDateTime.now()));
+
+        when(parkingLotService.getVehiclesInLot(lotId, null, 1))
+                .thenReturn(new VehiclesInLotPageDto(vehicles, "2025-11-08T09:28:44,ABC-123"));
+
+        // When
+        ResponseEntity<List<VehiclesInLotDto>> response = parkingLotController.getVehiclesInLot(lotId, null, 1);
+
+        // Then
+        assertEquals("2025-11-08T09:28:44,ABC-123", response.getHeaders().getFirst("X-Next-Cursor"));
     }
 
     @Test
     void getVehiclesInLot_shouldPropagateException_whenServiceThrows() {
         String lotId = "LOT1";
 
-        when(parkingLotService.getVehiclesInLot(lotId)).thenThrow(new IllegalArgumentException("Lot not found"));
+        when(parkingLotService.getVehiclesInLot(lotId, null, 100))
+                .thenThrow(new IllegalArgumentException("Lot not found"));
+
+        IllegalArgumentException thrown = assertThrows(
+                IllegalArgumentException.class,
+                () -> parkingLotController.getVehiclesInLot(lotId, null, 100)
+        );
+
+        assertEquals("Lot not found", thrown.getMessage());
+        verify(parkingLotService, times(1)).getVehiclesInLot(lotId, null, 100);
+    }
+
+    // ========================
+    // Tests for streamVehiclesInLot()
+    // ========================
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamVehiclesInLot_shouldWriteOneJsonObjectPerLine() throws Exception {
+        // Given
+        String lotId = "LOT1";
+        LocalDateTime checkIn = LocalDateTime.of(2025, 11, 8, 21, 28, 44);
+        VehiclesInLotDto first = new VehiclesInLotDto("ABC-123", VehicleType.CAR, "John Doe", checkIn);
+        VehiclesInLotDto second = new VehiclesInLotDto("XYZ-456", VehicleType.TRUCK, "Robert Brown", checkIn);
+
+        doAnswer(invocation -> {
+            Consumer<VehiclesInLotDto> consumer = invocation.getArgument(1);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(parkingLotService).streamVehiclesInLot(eq(lotId), any(Consumer.class));
+
+        // When
+        ResponseEntity<StreamingResponseBody> response = parkingLotController.streamVehiclesInLot(lotId);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"licensePlate\":\"ABC-123\""));
+        assertTrue(lines[0].contains("\"checkInTime\":\"2025-11-08 09:28:44 PM Sat\""));
+        assertTrue(lines[1].contains("\"licensePlate\":\"XYZ-456\""));
+        verify(parkingLotService, times(1)).checkLotExists(lotId);
+    }
+
+    @Test
+    void streamVehiclesInLot_shouldPropagateException_beforeStreaming_whenLotNotFound() {
+        String lotId = "LOT1";
+
+        doThrow(new IllegalArgumentException("Lot not found")).when(parkingLotService).checkLotExists(lotId);
 
         IllegalArgumentException thrown = assertThrows(
                 IllegalArgumentException.class,
-                () -> parkingLotController.getVehiclesInLot(lotId)
+                () -> parkingLotController.streamVehiclesInLot(lotId)
         );
 
         assertEquals("Lot not found", thrown.getMessage());
-        verify(parkingLotService, times(1)).getVehiclesInLot(lotId);
+        verify(parkingLotService, never()).streamVehiclesInLot(any(), any());
+    }
+
+    // ========================
+    // Tests for findNearest()
+    // ========================
+    @Test
+    void findNearest_shouldReturnOkResponse_withLotsFromService() {
+        // Given
+        List<NearestLotDto> lots = List.of(new NearestLotDto("LOT1", "Main Street", 14.55, 121.0, 0.42, 3));
+        when(parkingLotService.findNearest(14.55, 121.01, VehicleType.CAR, 5)).thenReturn(lots);
+
+        // When
+        ResponseEntity<List<NearestLotDto>> response = parkingLotController.findNearest(14.55, 121.01, VehicleType.CAR, 5);
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(lots, response.getBody());
+    }
+
+    // ========================
+    // Tests for getHourlyStats()
+    // ========================
+    @Test
+    void getHourlyStats_shouldReturnOkResponse_withStatsFromService() {
+        // Given
+        LocalDateTime from = LocalDateTime.of(2025, 11, 8, 8, 0);
+        LocalDateTime to = from.plusHours(2);
+        List<LotHourlyStatsDto> stats = List.of(
+                new LotHourlyStatsDto(from, 3, 1, 12, 45),
+                new LotHourlyStatsDto(from.plusHours(1), 0, 0, 11, 0)
+        );
+        when(occupancyRollupService.getHourlyStats("LOT1", from, to)).thenReturn(stats);
+
+        // When
+        ResponseEntity<List<LotHourlyStatsDto>> response = parkingLotController.getHourlyStats("LOT1", from, to);
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(stats, response.getBody());
     }
 
-}
\ No newline at end of file
+    // ========================
+    // Tests for getAvailability()
+    // ========================
+    @Test
+    void getAvailability_shouldReturnOkResponse_withAvailabilityFromService() {
+        // Given
+        LocalDateTime from = LocalDateTime.of(2025, 11, 8, 8, 0);
+        LocalDateTime to = from.plusHours(2);
+        LotAvailabilityDto availability = new LotAvailabilityDto("LOT1", from, to, 10, 3, 0, 7);
+        when(reservationService.getAvailability("LOT1", from, to)).thenReturn(availability);
+
+        // When
+        ResponseEntity<LotAvailabilityDto> response = parkingLotController.getAvailability("LOT1", from, to);
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(availability, response.getBody());
+    }
+}
@@ -1,28 +1,44 @@
 package com.fayemanalo.smartpark.controller;
 
+import com.fayemanalo.smartpark.dto.BatchOperationDto;
+import com.fayemanalo.smartpark.dto.BatchOperationType;
+import com.fayemanalo.smartpark.dto.BatchRequestDto;
+import com.fayemanalo.smartpark.dto.BatchResultDto;
+import com.fayemanalo.smartpark.dto.BillingRunDto;
 import com.fayemanalo.smartpark.dto.CheckInDto;
 import com.fayemanalo.smartpark.dto.CheckOutDto;
 import com.fayemanalo.smartpark.dto.ParkingRecordDto;
+import com.fayemanalo.smartpark.service.BillingRunService;
+import com.fayemanalo.smartpark.service.IdempotencyCache;
 import com.fayemanalo.smartpark.service.ParkingRecordService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 class ParkingRecordControllerTest {
 
     private ParkingRecordService parkingRecordService;
+    private BillingRunService billingRunService;
     private ParkingRecordController parkingRecordController;
 
     @BeforeEach
     void setUp() {
         parkingRecordService = mock(ParkingRecordService.class);
-        parkingRecordController = new ParkingRecordController(parkingRecordService);
+        billingRunService = mock(BillingRunService.class);
+        parkingRecordController = new ParkingRecordController(parkingRecordService, billingRunService,
+                new IdempotencyCache(1000, Duration.ofMinutes(10)));
     }
 
     // =======================
@@ -32,13 +48,13 @@ class ParkingRecordControllerTest {
     void checkIn_shouldReturnCreatedResponse_whenCheckInSucceeds() {
         // Given
         CheckInDto checkInDto = new CheckInDto("ABC-123", "LOT1");
-        ParkingRecordDto recordDto = new ParkingRecordDto("ABC-123", "LOT1", LocalDateTime.now(), null);
+        ParkingRecordDto recordDto = new ParkingRecordDto("ABC-123", "LOT1", LocalDateTime.now(), null, null);
 
         // Mock
         when(parkingRecordService.checkIn(checkInDto)).thenReturn(recordDto);
 
         // When
-        ResponseEntity<ParkingRecordDto> response = parkingRecordController.checkIn(checkInDto);
+        ResponseEntity<ParkingRecordDto> response = parkingRecordController.checkIn(null, checkInDto);
 
         // Then
         assertNotNull(response);
@@ -56,13 +72,48 @@ class ParkingRecordControllerTest {
 
         IllegalArgumentException thrown = assertThrows(
                 IllegalArgumentException.class,
-                () -> parkingRecordController.checkIn(checkInDto)
+                () -> parkingRecordController.checkIn(null, checkInDto)
         );
 
         assertEquals("Invalid check-in", thrown.getMessage());
         verify(parkingRecordService, times(1)).checkIn(checkInDto);
     }
 
+    @Test
+    void checkIn_shouldReplayOriginalRecord_whenIdempotencyKeyIsReused() {
+        // Given
+        CheckInDto checkInDto = new CheckInDto("ABC-123", "LOT1");
+        ParkingRecordDto recordDto = new ParkingRecordDto("ABC-123", "LOT1", LocalDateTime.now(), null, null);
+
+        when(parkingRecordService.checkIn(checkInDto)).thenReturn(recordDto);
+
+        // When
+        ResponseEntity<ParkingRecordDto> first = parkingRecordController.checkIn("gate-1-0001", checkInDto);
+        ResponseEntity<ParkingRecordDto> retry = parkingRecordController.checkIn("gate-1-0001", checkInDto);
+
+        // Then
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals(first.getBody(), retry.getBody());
+        verify(parkingRecordService, times(1)).checkIn(checkInDto);
+    }
+
+    @Test
+    void checkIn_shouldReturnUnprocessableEntity_whenIdempotencyKeyWasUsedForAnotherRequest() {
+        // Given
+        CheckInDto checkInDto = new CheckInDto("ABC-123", "LOT1");
+        when(parkingRecordService.checkIn(checkInDto))
+                .thenReturn(new ParkingRecordDto("ABC-123", "LOT1", LocalDateTime.now(), null, null));
+        parkingRecordController.checkIn("gate-1-0001", checkInDto);
+
+        // When
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> parkingRecordController.checkOut("gate-1-0001", new CheckOutDto("ABC-123", "LOT1")));
+
+        // Then
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ex.getStatusCode());
+        verify(parkingRecordService, never()).checkOut(any());
+    }
+
 
     // =======================
     // Tests for checkOut()
@@ -71,12 +122,12 @@ class ParkingRecordControllerTest {
     void checkOut_shouldReturnOkResponse_whenCheckOutSucceeds() {
         // Given
         CheckOutDto checkOutDto = new CheckOutDto("ABC-123", "LOT1");
-        ParkingRecordDto recordDto = new ParkingRecordDto("ABC-123", "LOT1", LocalDateTime.now().minusHours(2), LocalDateTime.now());
+        ParkingRecordDto recordDto = new ParkingRecordDto("ABC-123", "LOT1", LocalDateTime.now().minusHours(2), LocalDateTime.now(), new BigDecimal("5.00"));
 
         when(parkingRecordService.checkOut(checkOutDto)).thenReturn(recordDto);
 
         // When
-        ResponseEntity<ParkingRecordDto> response = parkingRecordController.checkOut(checkOutDto);
+        ResponseEntity<ParkingRecordDto> response = parkingRecordController.checkOut(null, checkOutDto);
 
         // Then
         assertNotNull(response);
@@ -96,11 +147,63 @@ class ParkingRecordControllerTest {
 
         IllegalArgumentException thrown = assertThrows(
                 IllegalArgumentException.class,
-                () -> parkingRecordController.checkOut(checkOutDto)
+                () -> parkingRecordController.checkOut(null, checkOutDto)
         );
 
         assertEquals("Invalid check-out", thrown.getMessage());
         verify(parkingRecordService, times(1)).checkOut(checkOutDto);
     }
 
-}
\ No newline at end of file
+    // =======================
+    // Tests for batch()
+    // =======================
+    @Test
+    void batch_shouldReturnOkResponseWithResultPerOperation() {
+        // Given
+        BatchOperationDto checkIn = new BatchOperationDto(BatchOperationType.CHECK_IN, "ABC-123", "LOT1");
+        BatchOperationDto checkOut = new BatchOperationDto(BatchOperationType.CHECK_OUT, "XYZ-987", "LOT1");
+        BatchRequestDto request = new BatchRequestDto(List.of(checkIn, checkOut));
+
+        List<BatchResultDto> results = List.of(
+                new BatchResultDto(0, BatchOperationType.CHECK_IN, 201,
+                        new ParkingRecordDto("ABC-123", "LOT1", LocalDateTime.now(), null, null), null),
+                new BatchResultDto(1, BatchOperationType.CHECK_OUT, 400,
+                        null, "Vehicle is not currently checked in this parking lot")
+        );
+
+        when(parkingRecordService.processBatch(request.operations())).thenReturn(results);
+
+        // When
+        ResponseEntity<List<BatchResultDto>> response = parkingRecordController.batch(request);
+
+        // Then
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(results, response.getBody());
+        verify(parkingRecordService, times(1)).processBatch(request.operations());
+    }
+
+    // =======================
+    // Tests for billing()
+    // =======================
+    @Test
+    void billing_shouldReturnOkResponseWithRunSummary() throws Exception {
+        // Given
+        LocalDateTime from = LocalDateTime.of(2025, 11, 7, 0, 0);
+        LocalDateTime to = from.plusDays(1);
+        BillingRunDto run = new BillingRunDto(from, to, 120, 3, new BigDecimal("845.50"), 42);
+
+        when(billingRunService.run(from, to)).thenReturn(run);
+
+        // When
+        Callable<ResponseEntity<BillingRunDto>> billing = parkingRecordController.billing(from, to);
+
+        // Then: nothing runs until the async executor calls it
+        verifyNoInteractions(billingRunService);
+        ResponseEntity<BillingRunDto> response = billing.call();
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(run, response.getBody());
+        verify(billingRunService, times(1)).run(from, to);
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.fayemanalo.smartpark.controller;
+
+import com.fayemanalo.smartpark.dto.ReservationDto;
+import com.fayemanalo.smartpark.dto.ReservationRequestDto;
+import com.fayemanalo.smartpark.model.ReservationStatus;
+import com.fayemanalo.smartpark.service.ReservationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReservationControllerTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 11, 8, 8, 0);
+
+    private ReservationService reservationService;
+    private ReservationController reservationController;
+
+    @BeforeEach
+    void setUp() {
+        reservationService = mock(ReservationService.class);
+        reservationController = new ReservationController(reservationService);
+    }
+
+    @Test
+    void book_shouldReturnCreatedResponse_withReservationFromService() {
+        // Given
+        ReservationRequestDto request = new ReservationRequestDto("ABC-123", "LOT1", START, START.plusHours(2));
+        ReservationDto reservation = new ReservationDto(1L, "ABC-123", "LOT1", START, START.plusHours(2),
+                ReservationStatus.BOOKED);
+        when(reservationService.book(request)).thenReturn(reservation);
+
+        // When
+        ResponseEntity<ReservationDto> response = reservationController.book(request);
+
+        // Then
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(reservation, response.getBody());
+    }
+
+    @Test
+    void cancel_shouldReturnOkResponse_withCancelledReservation() {
+        // Given
+        ReservationDto reservation = new ReservationDto(1L, "ABC-123", "LOT1", START, START.plusHours(2),
+                ReservationStatus.CANCELLED);
+        when(reservationService.cancel(1L)).thenReturn(reservation);
+
+        // When
+        ResponseEntity<ReservationDto> response = reservationController.cancel(1L);
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(reservation, response.getBody());
+    }
+
+    @Test
+    void cancel_shouldPropagateServiceException() {
+        // Given
+        when(reservationService.cancel(1L))
+                .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "Reservation not found"));
+
+        // When / Then
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> reservationController.cancel(1L));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+    }
+}
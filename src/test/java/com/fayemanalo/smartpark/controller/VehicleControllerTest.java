@@ -1,6 +1,7 @@
 package com.fayemanalo.smartpark.controller;
 
 import com.fayemanalo.smartpark.dto.VehicleDto;
+import com.fayemanalo.smartpark.dto.VehicleLocationDto;
 import com.fayemanalo.smartpark.model.VehicleType;
 import com.fayemanalo.smartpark.service.VehicleService;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,6 +9,8 @@ import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.time.LocalDateTime;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -66,4 +69,21 @@ class VehicleControllerTest {
         verify(vehicleService, times(1)).save(requestDto);
     }
 
-}
\ No newline at end of file
+    @Test
+    void getLocation_shouldReturnOkResponse_whenVehicleIsParked() {
+        // Given
+        VehicleLocationDto location = new VehicleLocationDto("ABC-123", "LOT1", LocalDateTime.now());
+
+        when(vehicleService.getLocation("ABC-123")).thenReturn(location);
+
+        // When
+        ResponseEntity<VehicleLocationDto> response = vehicleController.getLocation("ABC-123");
+
+        // Then
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(location, response.getBody());
+        verify(vehicleService, times(1)).getLocation("ABC-123");
+    }
+
+}
@@ -1,10 +1,14 @@
 package com.fayemanalo.smartpark.mapper;
 
 import com.fayemanalo.smartpark.dto.ParkingLotDto;
+import com.fayemanalo.smartpark.model.CapacityPool;
 import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.VehicleType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ParkingLotMapperTest {
@@ -39,6 +43,23 @@ class ParkingLotMapperTest {
         assertEquals(2, entity.getOccupiedSpaces());
     }
 
+    @Test
+    void toEntity_shouldMapCapacityPools_asEmptyPools() {
+        // Given
+        ParkingLotDto dto = ParkingLotDto.builder()
+                .lotId("LOT1")
+                .capacity(10)
+                .capacityPools(Map.of(VehicleType.MOTORCYCLE, 3))
+                .build();
+
+        // When
+        ParkingLot entity = mapper.toEntity(dto);
+
+        // Then
+        assertEquals(Map.of(VehicleType.MOTORCYCLE, new CapacityPool(3, 0)), entity.getCapacityPools());
+        assertEquals(Map.of(VehicleType.MOTORCYCLE, 3), mapper.toDto(entity).capacityPools());
+    }
+
     @Test
     void toEntity_shouldReturnNull_whenDtoIsNull() {
         // When
@@ -0,0 +1,52 @@
+package com.fayemanalo.smartpark.repository;
+
+import com.fayemanalo.smartpark.model.LotHour;
+import com.fayemanalo.smartpark.model.LotHourlyStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the rollup queries against H2, on the composite (lot, hour) key.
+ */
+@DataJpaTest
+class LotHourlyStatsRepositoryTest {
+
+    @Autowired
+    private LotHourlyStatsRepository lotHourlyStatsRepository;
+
+    private final LocalDateTime eight = LocalDateTime.of(2025, 6, 1, 8, 0);
+
+    private LotHourlyStats stats(String lotId, LocalDateTime hour, int closingOccupancy) {
+        return new LotHourlyStats(new LotHour(lotId, hour), 1, 0, closingOccupancy, closingOccupancy, 0);
+    }
+
+    @Test
+    void rollupQueries_shouldFindHoursInRange_andLastHourBefore_perLot() {
+        // Given
+        lotHourlyStatsRepository.saveAll(List.of(
+                stats("LOT1", eight.minusHours(3), 3),
+                stats("LOT1", eight, 4),
+                stats("LOT1", eight.plusHours(2), 5),
+                stats("LOT1", eight.plusHours(3), 6),
+                stats("LOT2", eight.plusHours(1), 9)));
+        lotHourlyStatsRepository.flush();
+
+        // When
+        List<LotHourlyStats> inRange = lotHourlyStatsRepository
+                .findByIdLotIdAndIdHourGreaterThanEqualAndIdHourLessThanOrderByIdHour("LOT1", eight, eight.plusHours(3));
+        LotHourlyStats before = lotHourlyStatsRepository
+                .findFirstByIdLotIdAndIdHourLessThanOrderByIdHourDesc("LOT1", eight)
+                .orElseThrow();
+
+        // Then
+        assertEquals(List.of(eight, eight.plusHours(2)),
+                inRange.stream().map(stats -> stats.getId().getHour()).toList());
+        assertEquals(3, before.getClosingOccupancy());
+    }
+}
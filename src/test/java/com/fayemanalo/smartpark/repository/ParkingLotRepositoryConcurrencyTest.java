@@ -0,0 +1,126 @@
+package com.fayemanalo.smartpark.repository;
+
+import com.fayemanalo.smartpark.model.CapacityPool;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.service.LotCapacityGuard;
+import com.fayemanalo.smartpark.service.LotCapacityGuard.ConcurrencyMode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the capacity statements of every database concurrency mode against H2, with concurrent transactions
+ * taking more spaces than a lot has. Each check-in commits on its own, so nothing is rolled back after a test.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ParkingLotRepositoryConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private ParkingLotRepository parkingLotRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void optimistic_shouldNeverOvershootCapacity() throws Exception {
+        assertNoOvershoot("OPTIMISTIC-LOT", ConcurrencyMode.OPTIMISTIC);
+    }
+
+    @Test
+    void pessimistic_shouldNeverOvershootCapacity() throws Exception {
+        assertNoOvershoot("PESSIMISTIC-LOT", ConcurrencyMode.PESSIMISTIC);
+    }
+
+    @Test
+    void atomicUpdate_shouldNeverOvershootCapacity() throws Exception {
+        assertNoOvershoot("ATOMIC-LOT", ConcurrencyMode.ATOMIC_UPDATE);
+    }
+
+    // 8 shared spaces and 2 motorcycle bays, and four times as many check-ins of each
+    private void assertNoOvershoot(String lotId, ConcurrencyMode mode) throws Exception {
+        // Given
+        ParkingLot lot = ParkingLot.builder().lotId(lotId).location("Main Street").capacity(10).build();
+        lot.getCapacityPools().put(VehicleType.MOTORCYCLE, new CapacityPool(2, 0));
+        parkingLotRepository.save(lot);
+
+        // Enough attempts that no optimistic check-in gives up
+        LotCapacityGuard guard = new LotCapacityGuard(parkingLotRepository, mode, 1000);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        // When
+        int sharedTaken = takeConcurrently(32, () -> transactionTemplate.execute(status -> guard.tryTake(lotId, null, 8)));
+        int bayTaken = takeConcurrently(8,
+                () -> transactionTemplate.execute(status -> guard.tryTake(lotId, VehicleType.MOTORCYCLE, 2)));
+
+        // Then
+        assertEquals(8, sharedTaken);
+        assertEquals(2, bayTaken);
+        assertEquals(10, occupiedSpaces(lotId));
+        assertEquals(2, poolOccupiedSpaces(lotId));
+
+        // A freed space can be taken again, by one check-in only
+        transactionTemplate.executeWithoutResult(status -> guard.free(lotId, null));
+        assertEquals(1, takeConcurrently(4, () -> transactionTemplate.execute(status -> guard.tryTake(lotId, null, 8))));
+        assertEquals(10, occupiedSpaces(lotId));
+    }
+
+    private static int takeConcurrently(int checkIns, TakeAttempt attempt) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < checkIns; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return attempt.take();
+                }));
+            }
+            start.countDown();
+
+            int taken = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(30, TimeUnit.SECONDS)) {
+                    taken++;
+                }
+            }
+            return taken;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int occupiedSpaces(String lotId) {
+        return jdbcTemplate.queryForObject("select occupied_spaces from parking_lot where lot_id = ?", Integer.class, lotId);
+    }
+
+    private int poolOccupiedSpaces(String lotId) {
+        return jdbcTemplate.queryForObject("select sum(occupied_spaces) from parking_lot_pool where lot_id = ?",
+                Integer.class, lotId);
+    }
+
+    private interface TakeAttempt {
+        boolean take();
+    }
+}
@@ -0,0 +1,137 @@
+package com.fayemanalo.smartpark.repository;
+
+import com.fayemanalo.smartpark.model.ClosedSession;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.ParkingRecord;
+import com.fayemanalo.smartpark.model.ParkingRecordHistory;
+import com.fayemanalo.smartpark.model.Vehicle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the archiving statements against H2: select closed records, copy them to the history table, delete them.
+ */
+@DataJpaTest
+class ParkingRecordHistoryRepositoryTest {
+
+    @Autowired
+    private ParkingRecordRepository parkingRecordRepository;
+
+    @Autowired
+    private ParkingRecordHistoryRepository parkingRecordHistoryRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private ParkingLotRepository parkingLotRepository;
+
+    private final LocalDateTime now = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    private Vehicle vehicle;
+    private ParkingLot lot;
+
+    @BeforeEach
+    void setUp() {
+        vehicle = vehicleRepository.save(Vehicle.builder().licensePlate("ABC-123").ownerName("John Doe").build());
+        lot = parkingLotRepository.save(ParkingLot.builder().lotId("LOT1").location("Main Street").capacity(10).build());
+    }
+
+    private ParkingRecord record(LocalDateTime checkInTime, LocalDateTime checkOutTime) {
+        return parkingRecordRepository.save(ParkingRecord.builder()
+                .vehicle(vehicle)
+                .parkingLot(lot)
+                .checkInTime(checkInTime)
+                .checkOutTime(checkOutTime)
+                .build());
+    }
+
+    @Test
+    void archivingStatements_shouldMoveOnlyRecordsClosedBeforeCutoff() {
+        // Given
+        ParkingRecord old = record(now.minusDays(40).minusHours(2), now.minusDays(40));
+        old.setFee(new BigDecimal("5.00"));
+        ParkingRecord older = record(now.minusDays(50).minusHours(2), now.minusDays(50));
+        ParkingRecord recent = record(now.minusDays(1).minusHours(2), now.minusDays(1));
+        ParkingRecord active = record(now.minusHours(1), null);
+        parkingRecordRepository.flush();
+
+        // When
+        List<Long> ids = parkingRecordRepository.findIdsCheckedOutBefore(now.minusDays(30), Limit.of(10));
+        int copied = parkingRecordHistoryRepository.copyFromParkingRecords(ids);
+        int deleted = parkingRecordRepository.deleteAllByIdIn(ids);
+
+        // Then
+        assertEquals(List.of(older.getId(), old.getId()), ids);
+        assertEquals(2, copied);
+        assertEquals(2, deleted);
+
+        assertEquals(2, parkingRecordRepository.count());
+        assertTrue(parkingRecordRepository.existsById(recent.getId()));
+        assertTrue(parkingRecordRepository.existsById(active.getId()));
+
+        ParkingRecordHistory archived = parkingRecordHistoryRepository.findById(old.getId()).orElseThrow();
+        assertEquals(old.getCheckInTime(), archived.getCheckInTime());
+        assertEquals(old.getCheckOutTime(), archived.getCheckOutTime());
+        assertEquals(new BigDecimal("5.00"), archived.getFee());
+        assertEquals("LOT1", archived.getParkingLot().getLotId());
+    }
+
+    @Test
+    void historyQueries_shouldFindArchivedRecordsByVehicleAndByLot() {
+        // Given
+        ParkingRecord old = record(now.minusDays(40).minusHours(2), now.minusDays(40));
+        ParkingRecord older = record(now.minusDays(50).minusHours(2), now.minusDays(50));
+        parkingRecordRepository.flush();
+        parkingRecordHistoryRepository.copyFromParkingRecords(List.of(old.getId(), older.getId()));
+
+        // When
+        List<ParkingRecordHistory> byVehicle = parkingRecordHistoryRepository
+                .findByVehicleLicensePlateOrderByCheckOutTimeDesc("ABC-123", PageRequest.of(0, 10))
+                .getContent();
+        List<ParkingRecordHistory> byLot = parkingRecordHistoryRepository
+                .findByParkingLotLotIdAndCheckOutTimeGreaterThanEqualAndCheckOutTimeLessThan(
+                        "LOT1", now.minusDays(45), now, PageRequest.of(0, 10))
+                .getContent();
+
+        // Then
+        assertEquals(List.of(old.getId(), older.getId()), byVehicle.stream().map(ParkingRecordHistory::getId).toList());
+        assertEquals(List.of(old.getId()), byLot.stream().map(ParkingRecordHistory::getId).toList());
+    }
+
+    @Test
+    void findClosedSessionsAfter_shouldPageArchivedRecordsByCheckOutTimeAndId() {
+        // Given: two records checked out at the same time, and one outside the range
+        ParkingRecord first = record(now.minusDays(40).minusHours(2), now.minusDays(40));
+        ParkingRecord tied = record(now.minusDays(40).minusHours(1), now.minusDays(40));
+        ParkingRecord outside = record(now.minusDays(50).minusHours(2), now.minusDays(50));
+        parkingRecordRepository.flush();
+        parkingRecordHistoryRepository.copyFromParkingRecords(List.of(first.getId(), tied.getId(), outside.getId()));
+        LocalDateTime from = now.minusDays(45);
+
+        // When
+        List<ClosedSession> firstPage = parkingRecordHistoryRepository.findClosedSessionsAfter(from, 0, now, Limit.of(1));
+        ClosedSession last = firstPage.get(0);
+        List<ClosedSession> secondPage = parkingRecordHistoryRepository.findClosedSessionsAfter(
+                last.checkOutTime(), last.recordId(), now, Limit.of(1));
+        List<ClosedSession> thirdPage = parkingRecordHistoryRepository.findClosedSessionsAfter(
+                secondPage.get(0).checkOutTime(), secondPage.get(0).recordId(), now, Limit.of(1));
+
+        // Then
+        assertEquals(first.getId(), last.recordId());
+        assertEquals("LOT1", last.lotId());
+        assertEquals(first.getCheckInTime(), last.checkInTime());
+        assertEquals(List.of(tied.getId()), secondPage.stream().map(ClosedSession::recordId).toList());
+        assertTrue(thirdPage.isEmpty());
+    }
+}
@@ -0,0 +1,154 @@
+package com.fayemanalo.smartpark.repository;
+
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.Vehicle;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Query-plan regression test for parking_record.
+ *
+ * Runs every ParkingRecordRepository query, captures the SQL Hibernate generated for it, and asks
+ * H2 to EXPLAIN it. Fails if any of them reads parking_record with a table scan instead of an index.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.fayemanalo.smartpark.repository.ParkingRecordRepositoryQueryPlanTest$CapturingInspector")
+class ParkingRecordRepositoryQueryPlanTest {
+
+    @Autowired
+    private ParkingRecordRepository parkingRecordRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private ParkingLotRepository parkingLotRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Vehicle vehicle;
+    private ParkingLot lot;
+
+    @BeforeEach
+    void setUp() {
+        vehicle = vehicleRepository.save(Vehicle.builder().licensePlate("ABC-123").ownerName("John Doe").build());
+        lot = parkingLotRepository.save(ParkingLot.builder().lotId("LOT1").location("Main Street").capacity(10).build());
+        parkingLotRepository.flush();
+        CapturingInspector.STATEMENTS.clear();
+    }
+
+    @Test
+    void findByVehicleAndParkingLotAndCheckOutTimeIsNull_shouldUseIndex() {
+        assertIndexedPlan(() -> parkingRecordRepository.findByVehicleAndParkingLotAndCheckOutTimeIsNull(vehicle, lot));
+    }
+
+    @Test
+    void countByParkingLotAndCheckOutTimeIsNull_shouldUseIndex() {
+        assertIndexedPlan(() -> parkingRecordRepository.countByParkingLotAndCheckOutTimeIsNull(lot));
+    }
+
+    @Test
+    void countParkedVehiclesByLotAndType_shouldUseIndex() {
+        assertIndexedPlan(() -> parkingRecordRepository.countParkedVehiclesByLotAndType());
+    }
+
+    @Test
+    void findActiveSessions_shouldUseIndex() {
+        assertIndexedPlan(() -> parkingRecordRepository.findActiveSessions());
+    }
+
+    @Test
+    void findActiveSessionsCheckedInSince_shouldUseIndex() {
+        assertIndexedPlan(() -> parkingRecordRepository.findActiveSessionsCheckedInSince(LocalDateTime.now()));
+    }
+
+    @Test
+    void findSessionsCheckedOutSince_shouldUseIndex() {
+        assertIndexedPlan(() -> parkingRecordRepository.findSessionsCheckedOutSince(LocalDateTime.now()));
+    }
+
+    @Test
+    void findIdsCheckedOutBefore_shouldUseIndex() {
+        assertIndexedPlan(() -> parkingRecordRepository.findIdsCheckedOutBefore(LocalDateTime.now(), Limit.of(100)));
+    }
+
+    @Test
+    void findClosedSessionsAfter_shouldUseIndex() {
+        assertIndexedPlan(() -> parkingRecordRepository.findClosedSessionsAfter(
+                LocalDateTime.now().minusDays(1), 0, LocalDateTime.now(), Limit.of(100)));
+    }
+
+    @Test
+    void findVehiclesInLot_shouldUseIndex() {
+        assertIndexedPlan(() -> parkingRecordRepository.findVehiclesInLot("LOT1", Limit.of(10)));
+    }
+
+    @Test
+    void findVehiclesInLotAfter_shouldUseIndex() {
+        assertIndexedPlan(() -> parkingRecordRepository.findVehiclesInLotAfter(
+                "LOT1", LocalDateTime.now(), "ABC-123", Limit.of(10)));
+    }
+
+    @Test
+    void streamVehiclesInLot_shouldUseIndex() {
+        assertIndexedPlan(() -> parkingRecordRepository.streamVehiclesInLot("LOT1").close());
+    }
+
+    private void assertIndexedPlan(Runnable query) {
+        query.run();
+
+        List<String> statements = CapturingInspector.STATEMENTS.stream()
+                .filter(sql -> sql.toLowerCase().contains("parking_record"))
+                .toList();
+        assertFalse(statements.isEmpty(), "No statement against parking_record was captured");
+
+        for (String sql : statements) {
+            String plan = explain(sql);
+            assertFalse(plan.toLowerCase().contains("parking_record.tablescan"),
+                    "Table scan on parking_record for:\n" + sql + "\nPlan:\n" + plan);
+        }
+    }
+
+    // EXPLAIN the statement with every parameter bound to NULL; H2 picks the index from the predicate shape
+    private String explain(String sql) {
+        return jdbcTemplate.execute((java.sql.Connection connection) -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                ParameterMetaData parameters = statement.getParameterMetaData();
+                for (int i = 1; i <= parameters.getParameterCount(); i++) {
+                    statement.setObject(i, null);
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getString(1);
+                }
+            }
+        });
+    }
+
+    public static class CapturingInspector implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.ActiveSession;
+import com.fayemanalo.smartpark.model.OccupancySnapshot;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ActiveSessionIndexTest {
+
+    private ParkingRecordRepository parkingRecordRepository;
+    private ActiveSessionIndex index;
+
+    @BeforeEach
+    void setUp() {
+        parkingRecordRepository = mock(ParkingRecordRepository.class);
+        index = new ActiveSessionIndex(parkingRecordRepository, Optional.empty());
+    }
+
+    @Test
+    void rebuild_shouldLoadActiveSessionsFromDatabase() {
+        // Given
+        ActiveSession session = new ActiveSession("ABC-123", "LOT1", LocalDateTime.now(), 1L);
+        when(parkingRecordRepository.findActiveSessions()).thenReturn(List.of(session));
+
+        // When
+        index.rebuild();
+
+        // Then
+        assertEquals(session, index.find("ABC-123").orElseThrow());
+        assertTrue(index.find("XYZ-987").isEmpty());
+    }
+
+    @Test
+    void claim_shouldReturnExistingSession_whenVehicleAlreadyParked() {
+        // Given
+        ActiveSession first = new ActiveSession("ABC-123", "LOT1", LocalDateTime.now(), null);
+        ActiveSession second = new ActiveSession("ABC-123", "LOT2", LocalDateTime.now(), null);
+
+        // When / Then
+        assertNull(index.claim(first));
+        assertEquals(first, index.claim(second));
+        assertEquals("LOT1", index.find("ABC-123").orElseThrow().lotId());
+    }
+
+    @Test
+    void attachRecord_shouldSetRecordId_andUnclaimShouldRemoveSession() {
+        // Given
+        ActiveSession session = new ActiveSession("ABC-123", "LOT1", LocalDateTime.now(), null);
+        index.claim(session);
+
+        // When
+        index.attachRecord(session, 7L);
+
+        // Then
+        assertEquals(7L, index.find("ABC-123").orElseThrow().recordId());
+
+        // When
+        index.unclaim(session);
+
+        // Then
+        assertTrue(index.find("ABC-123").isEmpty());
+    }
+
+    @Test
+    void end_shouldRemoveSessionOnlyOnce() {
+        // Given
+        ActiveSession session = new ActiveSession("ABC-123", "LOT1", LocalDateTime.now(), 1L);
+        index.claim(session);
+
+        // When / Then
+        assertTrue(index.end(session));
+        assertFalse(index.end(session));
+        assertTrue(index.find("ABC-123").isEmpty());
+    }
+
+    @Test
+    void restore_shouldApplySessionsEndedAndStartedSinceSnapshot() {
+        // Given
+        LocalDateTime replayFrom = LocalDateTime.now().minusMinutes(1);
+        ActiveSession stillParked = new ActiveSession("ABC-123", "LOT1", replayFrom.minusHours(2), 1L);
+        ActiveSession checkedOut = new ActiveSession("XYZ-987", "LOT1", replayFrom.minusHours(1), 2L);
+        ActiveSession checkedIn = new ActiveSession("NEW-111", "LOT2", replayFrom.plusSeconds(5), 3L);
+
+        when(parkingRecordRepository.findSessionsCheckedOutSince(replayFrom)).thenReturn(List.of(checkedOut));
+        when(parkingRecordRepository.findActiveSessionsCheckedInSince(replayFrom)).thenReturn(List.of(checkedIn));
+
+        // When
+        index.restore(new OccupancySnapshot(replayFrom, List.of(stillParked, checkedOut)));
+
+        // Then
+        assertEquals(stillParked, index.find("ABC-123").orElseThrow());
+        assertTrue(index.find("XYZ-987").isEmpty());
+        assertEquals(checkedIn, index.find("NEW-111").orElseThrow());
+        verify(parkingRecordRepository, never()).findActiveSessions();
+    }
+
+    @Test
+    void restore_shouldKeepLaterSession_whenEarlierSessionOfSameVehicleEnded() {
+        // Given
+        LocalDateTime replayFrom = LocalDateTime.now().minusMinutes(1);
+        ActiveSession earlier = new ActiveSession("ABC-123", "LOT1", replayFrom.minusHours(1), 1L);
+        ActiveSession later = new ActiveSession("ABC-123", "LOT1", replayFrom.plusSeconds(10), 2L);
+
+        // The later session is both in the snapshot and read back as started since
+        when(parkingRecordRepository.findSessionsCheckedOutSince(replayFrom)).thenReturn(List.of(earlier));
+        when(parkingRecordRepository.findActiveSessionsCheckedInSince(replayFrom)).thenReturn(List.of());
+
+        // When
+        index.restore(new OccupancySnapshot(replayFrom, List.of(later)));
+
+        // Then
+        assertEquals(later, index.find("ABC-123").orElseThrow());
+    }
+
+    @Test
+    void snapshot_shouldSkipSessionsWithoutRecord_andCountByLotShouldGroupSessions() {
+        // Given
+        index.claim(new ActiveSession("ABC-123", "LOT1", LocalDateTime.now(), 1L));
+        index.claim(new ActiveSession("XYZ-987", "LOT1", LocalDateTime.now(), 2L));
+        index.claim(new ActiveSession("NEW-111", "LOT2", LocalDateTime.now(), null));
+
+        // When
+        OccupancySnapshot snapshot = index.snapshot(LocalDateTime.now());
+
+        // Then
+        assertEquals(2, snapshot.sessions().size());
+        assertEquals(Map.of("LOT1", 2L, "LOT2", 1L), index.countByLot());
+    }
+
+    @Test
+    void load_shouldRebuildFromDatabase_whenNoSnapshotStore() {
+        // When
+        index.load();
+
+        // Then
+        verify(parkingRecordRepository).findActiveSessions();
+        verify(parkingRecordRepository, never()).findSessionsCheckedOutSince(any());
+    }
+}
@@ -0,0 +1,146 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.BillingRunDto;
+import com.fayemanalo.smartpark.model.ClosedSession;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.repository.ParkingRecordHistoryRepository;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BillingRunServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2025, 11, 7, 0, 0);
+    private static final LocalDateTime TO = FROM.plusDays(1);
+
+    private ParkingRecordRepository parkingRecordRepository;
+    private ParkingRecordHistoryRepository parkingRecordHistoryRepository;
+    private JdbcTemplate jdbcTemplate;
+    private BillingRunService service;
+
+    @BeforeEach
+    void setUp() {
+        parkingRecordRepository = mock(ParkingRecordRepository.class);
+        parkingRecordHistoryRepository = mock(ParkingRecordHistoryRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        // 2.00 per hour in LOT1 only
+        TariffService tariffService = new TariffService(new TariffProperties(List.of(
+                new TariffProperties.Entry("LOT1", null, "00:00=2.00", null))));
+        service = new BillingRunService(parkingRecordRepository, parkingRecordHistoryRepository, tariffService,
+                jdbcTemplate, mock(PlatformTransactionManager.class), 2);
+    }
+
+    private static ClosedSession session(long id, String lotId, int hours) {
+        LocalDateTime checkIn = FROM.plusHours(1);
+        return new ClosedSession(id, lotId, VehicleType.CAR, checkIn, checkIn.plusHours(hours));
+    }
+
+    // =======================
+    // Tests for run()
+    // =======================
+    @Test
+    @SuppressWarnings("unchecked")
+    void run_shouldRateRecordsInChunks_andWriteFeesInBatches() {
+        // Given: two pages of two and one records, read by keyset after the last record of each page
+        ClosedSession first = session(1, "LOT1", 1);
+        ClosedSession second = session(2, "LOT1", 3);
+        when(parkingRecordRepository.findClosedSessionsAfter(FROM, 0, TO, Limit.of(2)))
+                .thenReturn(List.of(first, second));
+        when(parkingRecordRepository.findClosedSessionsAfter(second.checkOutTime(), 2, TO, Limit.of(2)))
+                .thenReturn(List.of(session(3, "LOT2", 1)));
+        when(parkingRecordHistoryRepository.findClosedSessionsAfter(any(), anyLong(), any(), any()))
+                .thenReturn(List.of());
+
+        // When
+        BillingRunDto result = service.run(FROM, TO);
+
+        // Then
+        assertEquals(2, result.rated());
+        assertEquals(1, result.unrated());
+        assertEquals(new BigDecimal("8.00"), result.totalFees());
+
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(eq("update parking_record set fee = ? where id = ?"),
+                batches.capture());
+        List<Object[]> firstBatch = batches.getAllValues().get(0);
+        List<Object[]> secondBatch = batches.getAllValues().get(1);
+        assertArrayEquals(new Object[]{new BigDecimal("2.00"), 1L}, firstBatch.get(0));
+        assertArrayEquals(new Object[]{new BigDecimal("6.00"), 2L}, firstBatch.get(1));
+        // No tariff for LOT2, so its fee is cleared
+        assertArrayEquals(new Object[]{null, 3L}, secondBatch.get(0));
+        // A short page is the last one
+        verify(parkingRecordRepository, times(2)).findClosedSessionsAfter(any(), anyLong(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void run_shouldRateArchivedRecords() {
+        // Given
+        when(parkingRecordRepository.findClosedSessionsAfter(any(), anyLong(), any(), any())).thenReturn(List.of());
+        when(parkingRecordHistoryRepository.findClosedSessionsAfter(FROM, 0, TO, Limit.of(2)))
+                .thenReturn(List.of(session(7, "LOT1", 2)));
+
+        // When
+        BillingRunDto result = service.run(FROM, TO);
+
+        // Then
+        assertEquals(1, result.rated());
+        assertEquals(new BigDecimal("4.00"), result.totalFees());
+
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq("update parking_record_history set fee = ? where id = ?"), batch.capture());
+        assertArrayEquals(new Object[]{new BigDecimal("4.00"), 7L}, batch.getValue().get(0));
+    }
+
+    @Test
+    void run_shouldDefaultToYesterday() {
+        // Given
+        when(parkingRecordRepository.findClosedSessionsAfter(any(), anyLong(), any(), any())).thenReturn(List.of());
+        when(parkingRecordHistoryRepository.findClosedSessionsAfter(any(), anyLong(), any(), any())).thenReturn(List.of());
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+
+        // When
+        BillingRunDto result = service.run(null, null);
+
+        // Then
+        assertEquals(today.minusDays(1), result.from());
+        assertEquals(today, result.to());
+        assertEquals(0, result.rated());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void run_shouldThrowBadRequest_whenRangeIsEmpty() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> service.run(TO, FROM));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(parkingRecordRepository, parkingRecordHistoryRepository);
+    }
+
+    // =======================
+    // Tests for rate()
+    // =======================
+    @Test
+    void rate_shouldReturnFeesInCents_inInputOrder() {
+        assertArrayEquals(new long[]{200, -1, 600},
+                service.rate(List.of(session(1, "LOT1", 1), session(2, "LOT2", 1), session(3, "LOT1", 3))));
+    }
+}
@@ -0,0 +1,172 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.JournalEvent;
+import com.fayemanalo.smartpark.service.EventJournal.FsyncPolicy;
+import com.fayemanalo.smartpark.service.EventJournal.Position;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private EventJournal open(DataSize segmentSize) throws IOException {
+        EventJournal journal = new EventJournal(directory, segmentSize, FsyncPolicy.NEVER);
+        journal.open();
+        return journal;
+    }
+
+    private List<JournalEvent> readAll(EventJournal journal) {
+        List<JournalEvent> events = new ArrayList<>();
+        journal.read(journal.getStart(), Integer.MAX_VALUE, events::add);
+        return events;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    // =======================
+    // Tests for append() and read()
+    // =======================
+    @Test
+    void append_shouldAssignSequences_andReadBackEventsInOrder() throws IOException {
+        // Given
+        EventJournal journal = open(DataSize.ofKilobytes(64));
+        LocalDateTime time = LocalDateTime.of(2025, 1, 1, 8, 30, 15, 123_456_789);
+
+        // When
+        long first = journal.append(JournalEvent.checkIn("ABC-123", "LOT1", time));
+        long second = journal.append(JournalEvent.checkOut("ABC-123", "LOT1", time.plusHours(2)));
+
+        // Then
+        assertEquals(1, first);
+        assertEquals(2, second);
+
+        List<JournalEvent> events = readAll(journal);
+        assertEquals(List.of(
+                new JournalEvent(1, JournalEvent.Type.CHECK_IN, "ABC-123", "LOT1", time),
+                new JournalEvent(2, JournalEvent.Type.CHECK_OUT, "ABC-123", "LOT1", time.plusHours(2))
+        ), events);
+    }
+
+    @Test
+    void read_shouldStopAtMaxEvents_andResumeFromReturnedPosition() throws IOException {
+        // Given
+        EventJournal journal = open(DataSize.ofKilobytes(64));
+        for (int i = 0; i < 5; i++) {
+            journal.append(JournalEvent.checkIn("CAR-" + i, "LOT1", LocalDateTime.now()));
+        }
+
+        // When
+        List<JournalEvent> firstBatch = new ArrayList<>();
+        Position next = journal.read(journal.getStart(), 3, firstBatch::add);
+        List<JournalEvent> secondBatch = new ArrayList<>();
+        Position end = journal.read(next, 3, secondBatch::add);
+
+        // Then
+        assertEquals(3, firstBatch.size());
+        assertEquals(2, secondBatch.size());
+        assertEquals(4, secondBatch.get(0).sequence());
+        assertEquals(journal.getEnd(), end);
+    }
+
+    @Test
+    void append_shouldRollOverToNewSegment_whenSegmentIsFull() throws IOException {
+        // Given
+        EventJournal journal = open(DataSize.ofBytes(256));
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            journal.append(JournalEvent.checkIn("CAR-" + i, "LOT1", LocalDateTime.now()));
+        }
+
+        // Then
+        assertTrue(segmentCount() > 1);
+        assertEquals(20, readAll(journal).size());
+        assertEquals(20, readAll(journal).get(19).sequence());
+    }
+
+    // =======================
+    // Tests for open()
+    // =======================
+    @Test
+    void open_shouldContinueAfterExistingEvents() throws IOException {
+        // Given
+        EventJournal journal = open(DataSize.ofBytes(256));
+        for (int i = 0; i < 10; i++) {
+            journal.append(JournalEvent.checkIn("CAR-" + i, "LOT1", LocalDateTime.now()));
+        }
+        journal.close();
+
+        // When
+        EventJournal reopened = open(DataSize.ofBytes(256));
+        long sequence = reopened.append(JournalEvent.checkIn("CAR-10", "LOT1", LocalDateTime.now()));
+
+        // Then
+        assertEquals(11, sequence);
+        assertEquals(11, readAll(reopened).size());
+    }
+
+    @Test
+    void open_shouldDropTornRecord_atEndOfJournal() throws IOException {
+        // Given
+        EventJournal journal = open(DataSize.ofKilobytes(64));
+        journal.append(JournalEvent.checkIn("ABC-123", "LOT1", LocalDateTime.now()));
+        Position intact = journal.getEnd();
+        journal.append(JournalEvent.checkIn("XYZ-789", "LOT1", LocalDateTime.now()));
+        journal.close();
+
+        // Corrupt the payload of the second record, as if the crash happened while writing it
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve(
+                String.format("journal-%020d.log", intact.segment())).toFile(), "rw")) {
+            file.seek(intact.offset() + 20);
+            file.write(0x7f);
+        }
+
+        // When
+        EventJournal reopened = open(DataSize.ofKilobytes(64));
+
+        // Then
+        List<JournalEvent> events = readAll(reopened);
+        assertEquals(1, events.size());
+        assertEquals("ABC-123", events.get(0).licensePlate());
+        assertEquals(intact, reopened.getEnd());
+        assertEquals(2, reopened.append(JournalEvent.checkIn("XYZ-789", "LOT1", LocalDateTime.now())));
+    }
+
+    // =======================
+    // Tests for release()
+    // =======================
+    @Test
+    void release_shouldDeleteSegmentsBeforePosition_butKeepWriteSegment() throws IOException {
+        // Given
+        EventJournal journal = open(DataSize.ofBytes(256));
+        for (int i = 0; i < 20; i++) {
+            journal.append(JournalEvent.checkIn("CAR-" + i, "LOT1", LocalDateTime.now()));
+        }
+
+        // When
+        journal.release(journal.getEnd());
+
+        // Then
+        assertEquals(1, segmentCount());
+        assertEquals(journal.getEnd().segment(), journal.getStart().segment());
+        assertEquals(21, journal.append(JournalEvent.checkIn("CAR-20", "LOT1", LocalDateTime.now())));
+    }
+}
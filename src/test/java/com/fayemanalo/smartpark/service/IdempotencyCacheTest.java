@@ -0,0 +1,162 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.CacheStatsDto;
+import com.fayemanalo.smartpark.dto.CheckInDto;
+import com.fayemanalo.smartpark.dto.ParkingRecordDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyCacheTest {
+
+    private static final CheckInDto REQUEST = new CheckInDto("ABC-123", "LOT1");
+    private static final ParkingRecordDto RECORD =
+            new ParkingRecordDto("ABC-123", "LOT1", LocalDateTime.of(2025, 11, 8, 9, 0), null, null);
+
+    private IdempotencyCache cache;
+    private AtomicInteger runs;
+
+    @BeforeEach
+    void setUp() {
+        cache = new IdempotencyCache(1000, Duration.ofMinutes(10));
+        runs = new AtomicInteger();
+    }
+
+    private ParkingRecordDto checkIn() {
+        runs.incrementAndGet();
+        return RECORD;
+    }
+
+    // =======================
+    // Tests for execute()
+    // =======================
+    @Test
+    void execute_shouldRunOncePerKey() {
+        // When
+        ParkingRecordDto first = cache.execute("key-1", REQUEST, this::checkIn);
+        ParkingRecordDto retry = cache.execute("key-1", REQUEST, this::checkIn);
+        cache.execute("key-2", REQUEST, this::checkIn);
+
+        // Then
+        assertEquals(RECORD, first);
+        assertEquals(RECORD, retry);
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void execute_shouldAlwaysRun_withoutKey() {
+        cache.execute(null, REQUEST, this::checkIn);
+        cache.execute(null, REQUEST, this::checkIn);
+
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void execute_shouldNotKeepFailures() {
+        // Given
+        ResponseStatusException failure = new ResponseStatusException(HttpStatus.NOT_FOUND, "Parking lot not found");
+
+        // When
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> cache.execute("key-1", REQUEST, () -> { throw failure; }));
+        ParkingRecordDto retry = cache.execute("key-1", REQUEST, this::checkIn);
+
+        // Then
+        assertSame(failure, ex);
+        assertEquals(RECORD, retry);
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void execute_shouldLetDuplicatesWaitForTheRunningOriginal() throws Exception {
+        // Given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            // When
+            Future<ParkingRecordDto> original = executor.submit(() -> cache.execute("key-1", REQUEST, () -> {
+                started.countDown();
+                await(proceed);
+                return checkIn();
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<ParkingRecordDto> duplicate = executor.submit(() -> cache.execute("key-1", REQUEST, this::checkIn));
+            proceed.countDown();
+
+            // Then
+            assertEquals(RECORD, original.get(5, TimeUnit.SECONDS));
+            assertEquals(RECORD, duplicate.get(5, TimeUnit.SECONDS));
+            assertEquals(1, runs.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_shouldThrowUnprocessableEntity_whenKeyWasUsedForAnotherRequest() {
+        // Given
+        cache.execute("key-1", REQUEST, this::checkIn);
+
+        // When
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> cache.execute("key-1", new CheckInDto("XYZ-987", "LOT1"), this::checkIn));
+
+        // Then
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ex.getStatusCode());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void execute_shouldThrowBadRequest_whenKeyIsBlankOrTooLong() {
+        ResponseStatusException blank = assertThrows(ResponseStatusException.class,
+                () -> cache.execute(" ", REQUEST, this::checkIn));
+        ResponseStatusException tooLong = assertThrows(ResponseStatusException.class,
+                () -> cache.execute("k".repeat(IdempotencyCache.MAX_KEY_LENGTH + 1), REQUEST, this::checkIn));
+
+        assertEquals(HttpStatus.BAD_REQUEST, blank.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, tooLong.getStatusCode());
+        assertEquals(0, runs.get());
+    }
+
+    // =======================
+    // Tests for getStats()
+    // =======================
+    @Test
+    void getStats_shouldCountReplaysAsHits() {
+        // Given
+        cache.execute("key-1", REQUEST, this::checkIn);
+        cache.execute("key-1", REQUEST, this::checkIn);
+
+        // When
+        CacheStatsDto stats = cache.getStats();
+
+        // Then
+        assertEquals("idempotencyKeys", stats.name());
+        assertEquals(1, stats.size());
+        assertEquals(1, stats.hitCount());
+        assertEquals(1, stats.missCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.ActiveSession;
+import com.fayemanalo.smartpark.model.CapacityPool;
+import com.fayemanalo.smartpark.model.JournalCheckpoint;
+import com.fayemanalo.smartpark.model.JournalEvent;
+import com.fayemanalo.smartpark.model.ParkedVehicles;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.ParkingRecord;
+import com.fayemanalo.smartpark.model.Vehicle;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.repository.JournalCheckpointRepository;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import com.fayemanalo.smartpark.repository.VehicleRepository;
+import com.fayemanalo.smartpark.service.EventJournal.FsyncPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class JournalDrainerTest {
+
+    @TempDir
+    Path directory;
+
+    private EventJournal eventJournal;
+    private ParkingRecordRepository parkingRecordRepository;
+    private VehicleRepository vehicleRepository;
+    private ParkingLotRepository parkingLotRepository;
+    private JournalCheckpointRepository journalCheckpointRepository;
+    private ActiveSessionIndex activeSessionIndex;
+
+    private JournalDrainer drainer;
+
+    private final Vehicle vehicle = Vehicle.builder().licensePlate("ABC-123").build();
+    private final ParkingLot lot = ParkingLot.builder().lotId("LOT1").capacity(10).build();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        eventJournal = new EventJournal(directory, DataSize.ofKilobytes(64), FsyncPolicy.NEVER);
+        eventJournal.open();
+
+        parkingRecordRepository = mock(ParkingRecordRepository.class);
+        vehicleRepository = mock(VehicleRepository.class);
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        journalCheckpointRepository = mock(JournalCheckpointRepository.class);
+        activeSessionIndex = mock(ActiveSessionIndex.class);
+
+        when(vehicleRepository.getReferenceById("ABC-123")).thenReturn(vehicle);
+        when(parkingLotRepository.getReferenceById("LOT1")).thenReturn(lot);
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
+        when(parkingRecordRepository.save(any(ParkingRecord.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        drainer = new JournalDrainer(eventJournal, parkingRecordRepository, vehicleRepository, parkingLotRepository,
+                journalCheckpointRepository, activeSessionIndex,
+                new ReferenceDataCache(vehicleRepository, parkingLotRepository, 1000, Duration.ofMinutes(10)),
+                new TariffService(new TariffProperties(List.of(new TariffProperties.Entry(null, null, "00:00=2.00", null)))),
+                mock(PlatformTransactionManager.class), 1000);
+    }
+
+    // Saves a checkpoint at the current end of the journal, as a previous run would have
+    private void checkpointAtEnd() {
+        when(journalCheckpointRepository.findById(JournalCheckpoint.ID)).thenReturn(Optional.of(JournalCheckpoint.builder()
+                .id(JournalCheckpoint.ID)
+                .segmentNumber(eventJournal.getEnd().segment())
+                .segmentOffset(eventJournal.getEnd().offset())
+                .build()));
+    }
+
+    // =======================
+    // Tests for drain()
+    // =======================
+    @Test
+    void drain_shouldWriteCheckInAndCheckOut_andSaveCheckpoint() {
+        // Given
+        checkpointAtEnd();
+        drainer.replay();
+
+        LocalDateTime checkInTime = LocalDateTime.now().minusHours(1);
+        LocalDateTime checkOutTime = checkInTime.plusHours(1);
+        eventJournal.append(JournalEvent.checkIn("ABC-123", "LOT1", checkInTime));
+        eventJournal.append(JournalEvent.checkOut("ABC-123", "LOT1", checkOutTime));
+
+        // When
+        drainer.drain();
+
+        // Then
+        ArgumentCaptor<ParkingRecord> record = ArgumentCaptor.forClass(ParkingRecord.class);
+        verify(parkingRecordRepository).save(record.capture());
+        assertEquals(checkInTime, record.getValue().getCheckInTime());
+        // The check-out in the same batch closes the record without querying for it
+        assertEquals(checkOutTime, record.getValue().getCheckOutTime());
+        assertEquals(new BigDecimal("2.00"), record.getValue().getFee());
+        verify(parkingRecordRepository, never()).findByVehicleAndParkingLotAndCheckOutTimeIsNull(any(), any());
+
+        ArgumentCaptor<JournalCheckpoint> checkpoint = ArgumentCaptor.forClass(JournalCheckpoint.class);
+        verify(journalCheckpointRepository).save(checkpoint.capture());
+        assertEquals(2, checkpoint.getValue().getLastSequence());
+        assertEquals(eventJournal.getEnd().offset(), checkpoint.getValue().getSegmentOffset());
+    }
+
+    @Test
+    void drain_shouldGiveTheIndexTheSavedRecordId_insteadOfTheJournalSequence() {
+        // Given
+        checkpointAtEnd();
+        drainer.replay();
+        when(parkingRecordRepository.save(any(ParkingRecord.class))).thenAnswer(invocation -> {
+            ParkingRecord record = invocation.getArgument(0);
+            record.setId(42L);
+            return record;
+        });
+        LocalDateTime checkInTime = LocalDateTime.now();
+        eventJournal.append(JournalEvent.checkIn("ABC-123", "LOT1", checkInTime));
+
+        // When
+        drainer.drain();
+
+        // Then
+        ActiveSession session = new ActiveSession("ABC-123", "LOT1", checkInTime, 42L);
+        verify(activeSessionIndex).attachRecord(session, 42L);
+    }
+
+    @Test
+    void drain_shouldCloseRecordFromEarlierBatch() {
+        // Given
+        checkpointAtEnd();
+        drainer.replay();
+
+        ParkingRecord open = ParkingRecord.builder().vehicle(vehicle).parkingLot(lot).checkInTime(LocalDateTime.now()).build();
+        when(parkingRecordRepository.findByVehicleAndParkingLotAndCheckOutTimeIsNull(vehicle, lot)).thenReturn(Optional.of(open));
+        eventJournal.append(JournalEvent.checkOut("ABC-123", "LOT1", LocalDateTime.now()));
+
+        // When
+        drainer.drain();
+
+        // Then
+        assertNotNull(open.getCheckOutTime());
+    }
+
+    // =======================
+    // Tests for replay()
+    // =======================
+    @Test
+    void replay_shouldApplyEventsAfterCheckpoint_andRestoreOccupancyAndIndex() {
+        // Given
+        checkpointAtEnd();
+        eventJournal.append(JournalEvent.checkIn("ABC-123", "LOT1", LocalDateTime.now()));
+        when(parkingRecordRepository.countByParkingLotAndCheckOutTimeIsNull(lot)).thenReturn(3L);
+
+        // When
+        drainer.replay();
+
+        // Then
+        verify(parkingRecordRepository).save(any(ParkingRecord.class));
+        verify(parkingLotRepository).updateOccupiedSpaces("LOT1", 3);
+        verify(activeSessionIndex).rebuild();
+    }
+
+    @Test
+    void replay_shouldRecountCapacityPools_fromOpenRecords() {
+        // Given: the truck pool row says 2, but only one truck is still parked
+        lot.getCapacityPools().put(VehicleType.TRUCK, new CapacityPool(2, 2));
+        lot.getCapacityPools().put(VehicleType.MOTORCYCLE, new CapacityPool(3, 1));
+        checkpointAtEnd();
+        eventJournal.append(JournalEvent.checkIn("ABC-123", "LOT1", LocalDateTime.now()));
+        when(parkingRecordRepository.countByParkingLotAndCheckOutTimeIsNull(lot)).thenReturn(3L);
+        when(parkingRecordRepository.countParkedVehiclesByLotAndType()).thenReturn(List.of(
+                new ParkedVehicles("LOT1", VehicleType.CAR, 2),
+                new ParkedVehicles("LOT1", VehicleType.TRUCK, 1)
+        ));
+
+        // When
+        drainer.replay();
+
+        // Then
+        verify(parkingLotRepository).updateOccupiedSpaces("LOT1", 3);
+        verify(parkingLotRepository).updatePoolOccupiedSpaces("LOT1", "TRUCK", 1);
+        verify(parkingLotRepository).updatePoolOccupiedSpaces("LOT1", "MOTORCYCLE", 0);
+    }
+
+    @Test
+    void replay_shouldSkipExistingEvents_whenDatabaseHasNoCheckpoint() {
+        // Given
+        eventJournal.append(JournalEvent.checkIn("ABC-123", "LOT1", LocalDateTime.now()));
+        when(journalCheckpointRepository.findById(JournalCheckpoint.ID)).thenReturn(Optional.empty());
+
+        // When
+        drainer.replay();
+
+        // Then
+        verify(parkingRecordRepository, never()).save(any());
+        verify(activeSessionIndex, never()).rebuild();
+
+        ArgumentCaptor<JournalCheckpoint> checkpoint = ArgumentCaptor.forClass(JournalCheckpoint.class);
+        verify(journalCheckpointRepository).save(checkpoint.capture());
+        assertEquals(eventJournal.getEnd().offset(), checkpoint.getValue().getSegmentOffset());
+    }
+}
@@ -0,0 +1,165 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.service.LotCapacityGuard.ConcurrencyMode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class LotCapacityGuardTest {
+
+    private ParkingLotRepository parkingLotRepository;
+
+    @BeforeEach
+    void setUp() {
+        parkingLotRepository = mock(ParkingLotRepository.class);
+    }
+
+    private LotCapacityGuard guard(ConcurrencyMode mode) {
+        return new LotCapacityGuard(parkingLotRepository, mode, 3);
+    }
+
+    // =======================
+    // Tests for tryTake() in OPTIMISTIC mode
+    // =======================
+    @Test
+    void tryTakeOptimistically_shouldRetry_whenVersionChanged() {
+        // Given: another check-in bumps the version between the first read and write
+        when(parkingLotRepository.findVersion("LOT1")).thenReturn(7L, 8L);
+        when(parkingLotRepository.findSharedOccupiedSpaces("LOT1")).thenReturn(4, 5);
+        when(parkingLotRepository.addOccupiedSpacesIfVersion("LOT1", 7L)).thenReturn(0);
+        when(parkingLotRepository.addOccupiedSpacesIfVersion("LOT1", 8L)).thenReturn(1);
+
+        // When
+        boolean taken = guard(ConcurrencyMode.OPTIMISTIC).tryTake("LOT1", null, 10);
+
+        // Then
+        assertTrue(taken);
+        verify(parkingLotRepository, times(2)).addOccupiedSpacesIfVersion(eq("LOT1"), anyLong());
+        verify(parkingLotRepository, never()).addPoolOccupiedSpaces(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    void tryTakeOptimistically_shouldTakePoolSpaceAfterLotVersion() {
+        // Given
+        when(parkingLotRepository.findVersion("LOT1")).thenReturn(7L);
+        when(parkingLotRepository.findPoolOccupiedSpaces("LOT1", "TRUCK")).thenReturn(1);
+        when(parkingLotRepository.addOccupiedSpacesIfVersion("LOT1", 7L)).thenReturn(1);
+
+        // When
+        boolean taken = guard(ConcurrencyMode.OPTIMISTIC).tryTake("LOT1", VehicleType.TRUCK, 2);
+
+        // Then
+        assertTrue(taken);
+        InOrder inOrder = inOrder(parkingLotRepository);
+        inOrder.verify(parkingLotRepository).addOccupiedSpacesIfVersion("LOT1", 7L);
+        inOrder.verify(parkingLotRepository).addPoolOccupiedSpaces("LOT1", "TRUCK", 1);
+    }
+
+    @Test
+    void tryTakeOptimistically_shouldReturnFalse_whenPoolIsFull() {
+        when(parkingLotRepository.findPoolOccupiedSpaces("LOT1", "TRUCK")).thenReturn(2);
+
+        assertFalse(guard(ConcurrencyMode.OPTIMISTIC).tryTake("LOT1", VehicleType.TRUCK, 2));
+        verify(parkingLotRepository, never()).addOccupiedSpacesIfVersion(anyString(), anyLong());
+    }
+
+    @Test
+    void tryTakeOptimistically_shouldThrowConflict_whenAttemptsRunOut() {
+        // Given
+        when(parkingLotRepository.findVersion("LOT1")).thenReturn(7L);
+        when(parkingLotRepository.findSharedOccupiedSpaces("LOT1")).thenReturn(4);
+        when(parkingLotRepository.addOccupiedSpacesIfVersion("LOT1", 7L)).thenReturn(0);
+
+        // When
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> guard(ConcurrencyMode.OPTIMISTIC).tryTake("LOT1", null, 10));
+
+        // Then
+        assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+        verify(parkingLotRepository, times(3)).addOccupiedSpacesIfVersion("LOT1", 7L);
+    }
+
+    // =======================
+    // Tests for tryTake() in PESSIMISTIC mode
+    // =======================
+    @Test
+    void tryTakePessimistically_shouldLockLotBeforeReadingOccupancy() {
+        // Given
+        when(parkingLotRepository.findSharedOccupiedSpaces("LOT1")).thenReturn(9);
+
+        // When
+        boolean taken = guard(ConcurrencyMode.PESSIMISTIC).tryTake("LOT1", null, 10);
+
+        // Then
+        assertTrue(taken);
+        InOrder inOrder = inOrder(parkingLotRepository);
+        inOrder.verify(parkingLotRepository).lockById("LOT1");
+        inOrder.verify(parkingLotRepository).findSharedOccupiedSpaces("LOT1");
+        inOrder.verify(parkingLotRepository).addOccupiedSpaces("LOT1", 1);
+    }
+
+    @Test
+    void tryTakePessimistically_shouldReturnFalse_whenFull() {
+        when(parkingLotRepository.findSharedOccupiedSpaces("LOT1")).thenReturn(10);
+
+        assertFalse(guard(ConcurrencyMode.PESSIMISTIC).tryTake("LOT1", null, 10));
+        verify(parkingLotRepository, never()).addOccupiedSpaces(anyString(), anyInt());
+    }
+
+    // =======================
+    // Tests for tryTake() in ATOMIC_UPDATE mode
+    // =======================
+    @Test
+    void tryTakeAtomically_shouldUseOneConditionalUpdate_forSharedSpaces() {
+        when(parkingLotRepository.addSharedSpaceIfAvailable("LOT1", 10)).thenReturn(1, 0);
+
+        LotCapacityGuard guard = guard(ConcurrencyMode.ATOMIC_UPDATE);
+
+        assertTrue(guard.tryTake("LOT1", null, 10));
+        assertFalse(guard.tryTake("LOT1", null, 10));
+        verify(parkingLotRepository, never()).addOccupiedSpaces(anyString(), anyInt());
+    }
+
+    @Test
+    void tryTakeAtomically_shouldGiveBackLotSpace_whenPoolIsFull() {
+        // Given
+        when(parkingLotRepository.addPoolSpaceIfAvailable("LOT1", "TRUCK", 2)).thenReturn(0);
+
+        // When
+        boolean taken = guard(ConcurrencyMode.ATOMIC_UPDATE).tryTake("LOT1", VehicleType.TRUCK, 2);
+
+        // Then
+        assertFalse(taken);
+        InOrder inOrder = inOrder(parkingLotRepository);
+        inOrder.verify(parkingLotRepository).addOccupiedSpaces("LOT1", 1);
+        inOrder.verify(parkingLotRepository).addPoolSpaceIfAvailable("LOT1", "TRUCK", 2);
+        inOrder.verify(parkingLotRepository).addOccupiedSpaces("LOT1", -1);
+    }
+
+    // =======================
+    // Tests for free()
+    // =======================
+    @Test
+    void free_shouldDecrementLotBeforePool() {
+        guard(ConcurrencyMode.ATOMIC_UPDATE).free("LOT1", VehicleType.TRUCK);
+
+        InOrder inOrder = inOrder(parkingLotRepository);
+        inOrder.verify(parkingLotRepository).addOccupiedSpaces("LOT1", -1);
+        inOrder.verify(parkingLotRepository).addPoolOccupiedSpaces("LOT1", "TRUCK", -1);
+    }
+
+    @Test
+    void constructor_shouldRejectInMemoryMode() {
+        assertThrows(IllegalArgumentException.class, () -> guard(ConcurrencyMode.IN_MEMORY));
+    }
+}
@@ -0,0 +1,365 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.CapacityPool;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.PoolOccupancy;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LotOccupancyTrackerTest {
+
+    private ParkingLotRepository parkingLotRepository;
+    private LotOccupancyTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        tracker = new LotOccupancyTracker(parkingLotRepository, Optional.empty());
+    }
+
+    private void givenLot(String lotId, int capacity, int occupiedSpaces) {
+        ParkingLot lot = ParkingLot.builder()
+                .lotId(lotId)
+                .location("Main Street")
+                .capacity(capacity)
+                .occupiedSpaces(occupiedSpaces)
+                .build();
+        when(parkingLotRepository.findById(lotId)).thenReturn(Optional.of(lot));
+    }
+
+    // 2 motorcycle bays and 8 shared spaces
+    private void givenLotWithMotorcycleBays(int sharedOccupied, int motorcyclesParked) {
+        ParkingLot lot = ParkingLot.builder()
+                .lotId("LOT1")
+                .location("Main Street")
+                .capacity(10)
+                .occupiedSpaces(sharedOccupied + motorcyclesParked)
+                .build();
+        lot.getCapacityPools().put(VehicleType.MOTORCYCLE, new CapacityPool(2, motorcyclesParked));
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
+    }
+
+    // =======================
+    // Tests for tryReserve()
+    // =======================
+    @Test
+    void tryReserve_shouldSeedCounterFromDatabaseOnce() {
+        // Given
+        givenLot("LOT1", 10, 4);
+
+        // When
+        assertTrue(tracker.tryReserve("LOT1"));
+        assertTrue(tracker.tryReserve("LOT1"));
+
+        // Then
+        assertEquals(6, tracker.getOccupiedSpaces("LOT1"));
+        verify(parkingLotRepository, times(1)).findById("LOT1");
+    }
+
+    @Test
+    void tryReserve_shouldReturnFalse_whenLotIsFull() {
+        // Given
+        givenLot("LOT1", 1, 1);
+
+        // When / Then
+        assertFalse(tracker.tryReserve("LOT1"));
+        assertEquals(1, tracker.getOccupiedSpaces("LOT1"));
+    }
+
+    @Test
+    void tryReserve_shouldLeaveHeldSpacesFree() {
+        // Given
+        givenLot("LOT1", 3, 1);
+
+        // When / Then: one of the two free spaces is held
+        assertTrue(tracker.tryReserve("LOT1", null, 1));
+        assertFalse(tracker.tryReserve("LOT1", null, 1));
+        assertTrue(tracker.tryReserve("LOT1", null, 0));
+        assertEquals(3, tracker.getOccupiedSpaces("LOT1"));
+    }
+
+    @Test
+    void tryReserve_shouldThrowException_whenLotNotFound() {
+        // Mock
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.empty());
+
+        // When
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> tracker.tryReserve("LOT1"));
+
+        // Then
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        assertEquals("Parking lot not found", exception.getReason());
+    }
+
+    @Test
+    void tryReserve_shouldNeverExceedCapacity_whenCalledConcurrently() throws InterruptedException {
+        // Given
+        givenLot("LOT1", 50, 0);
+        int threads = 64;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger reserved = new AtomicInteger();
+
+        // When
+        for (int i = 0; i < threads * 10; i++) {
+            executor.submit(() -> {
+                start.await();
+                if (tracker.tryReserve("LOT1")) {
+                    reserved.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Then
+        assertEquals(50, reserved.get());
+        assertEquals(50, tracker.getOccupiedSpaces("LOT1"));
+    }
+
+    @Test
+    void tryReserve_shouldTakeSpacesFromTheVehicleTypesPool() {
+        // Given
+        givenLotWithMotorcycleBays(7, 1);
+
+        // When / Then: motorcycles only use their bays, everyone else the shared spaces
+        assertTrue(tracker.tryReserve("LOT1", VehicleType.MOTORCYCLE, 0));
+        assertFalse(tracker.tryReserve("LOT1", VehicleType.MOTORCYCLE, 0));
+        assertTrue(tracker.tryReserve("LOT1", VehicleType.CAR, 0));
+        assertFalse(tracker.tryReserve("LOT1", VehicleType.TRUCK, 0));
+
+        assertEquals(10, tracker.getOccupiedSpaces("LOT1"));
+        assertEquals(new PoolOccupancy(2, 2, true), tracker.getPoolOccupancy("LOT1", VehicleType.MOTORCYCLE));
+        assertEquals(new PoolOccupancy(8, 8, false), tracker.getPoolOccupancy("LOT1", VehicleType.CAR));
+    }
+
+    @Test
+    void tryReserve_shouldApplyHeldSpaces_toSharedSpacesOnly() {
+        // Given
+        givenLotWithMotorcycleBays(7, 0);
+
+        // When / Then
+        assertFalse(tracker.tryReserve("LOT1", VehicleType.CAR, 1));
+        assertTrue(tracker.tryReserve("LOT1", VehicleType.MOTORCYCLE, 1));
+    }
+
+    // =======================
+    // Tests for release()
+    // =======================
+    @Test
+    void release_shouldNotGoBelowZero() {
+        // Given
+        givenLot("LOT1", 10, 0);
+
+        // When
+        tracker.release("LOT1");
+
+        // Then
+        assertEquals(0, tracker.getOccupiedSpaces("LOT1"));
+    }
+
+    @Test
+    void release_shouldFreeASpaceInTheVehicleTypesPool() {
+        // Given
+        givenLotWithMotorcycleBays(3, 2);
+
+        // When
+        tracker.release("LOT1", VehicleType.MOTORCYCLE);
+
+        // Then
+        assertEquals(new PoolOccupancy(2, 1, true), tracker.getPoolOccupancy("LOT1", VehicleType.MOTORCYCLE));
+        assertEquals(3, tracker.getPoolOccupancy("LOT1", null).occupiedSpaces());
+        assertEquals(4, tracker.getOccupiedSpaces("LOT1"));
+    }
+
+    // =======================
+    // Tests for getVersionTag()
+    // =======================
+    @Test
+    void getVersionTag_shouldChangeOnEveryOccupancyChange() {
+        // Given
+        givenLot("LOT1", 1, 0);
+        String initial = tracker.getVersionTag("LOT1");
+
+        // When
+        tracker.tryReserve("LOT1");
+        String afterReserve = tracker.getVersionTag("LOT1");
+        tracker.release("LOT1");
+        String afterRelease = tracker.getVersionTag("LOT1");
+
+        // Then
+        assertNotEquals(initial, afterReserve);
+        assertNotEquals(afterReserve, afterRelease);
+        assertNotEquals(initial, afterRelease);
+    }
+
+    @Test
+    void getVersionTag_shouldNotChange_whenReservationIsRejected() {
+        // Given
+        givenLot("LOT1", 1, 1);
+        String initial = tracker.getVersionTag("LOT1");
+
+        // When
+        assertFalse(tracker.tryReserve("LOT1"));
+
+        // Then
+        assertEquals(initial, tracker.getVersionTag("LOT1"));
+        verify(parkingLotRepository, times(1)).findById("LOT1");
+    }
+
+    @Test
+    void getVersionTag_shouldSeedCounterOnce_forConcurrentFirstCalls() throws Exception {
+        // Given: the seeding query is slow, and every caller arrives while it runs
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ParkingLot lot = ParkingLot.builder().lotId("LOT1").location("Main Street").capacity(10).build();
+        when(parkingLotRepository.findById("LOT1")).thenAnswer(invocation -> {
+            entered.countDown();
+            SingleFlightTest.await(release);
+            return Optional.of(lot);
+        });
+
+        // When
+        var tags = SingleFlightTest.executeConcurrently(() -> tracker.getVersionTag("LOT1"), entered, release);
+
+        // Then
+        assertEquals(1, tags.stream().distinct().count());
+        verify(parkingLotRepository, times(1)).findById("LOT1");
+    }
+
+    // =======================
+    // Tests for flush()
+    // =======================
+    @Test
+    void flush_shouldPersistChangedLotsOnlyOnce() {
+        // Given
+        givenLot("LOT1", 10, 2);
+        givenLot("LOT2", 10, 0);
+        tracker.tryReserve("LOT1");
+        tracker.getOccupiedSpaces("LOT2");
+
+        // When
+        tracker.flush();
+        tracker.flush();
+
+        // Then
+        verify(parkingLotRepository, times(1)).updateOccupiedSpaces("LOT1", 3);
+        verify(parkingLotRepository, never()).updateOccupiedSpaces(eq("LOT2"), anyInt());
+    }
+
+    @Test
+    void flush_shouldPersistTheOccupancyOfEveryPool() {
+        // Given
+        givenLotWithMotorcycleBays(3, 0);
+        tracker.tryReserve("LOT1", VehicleType.MOTORCYCLE, 0);
+
+        // When
+        tracker.flush();
+
+        // Then
+        verify(parkingLotRepository).updateOccupiedSpaces("LOT1", 4);
+        verify(parkingLotRepository).updatePoolOccupiedSpaces("LOT1", "MOTORCYCLE", 1);
+    }
+
+    @Test
+    void flush_shouldWriteAgain_whenTheWriteFailed() {
+        // Given
+        givenLot("LOT1", 10, 2);
+        givenLot("LOT2", 10, 0);
+        tracker.tryReserve("LOT1");
+        tracker.tryReserve("LOT2");
+        when(parkingLotRepository.updateOccupiedSpaces("LOT1", 3))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(1);
+
+        // When
+        tracker.flush();
+        tracker.flush();
+        tracker.flush();
+
+        // Then: the other lot was written regardless, and only once
+        verify(parkingLotRepository, times(2)).updateOccupiedSpaces("LOT1", 3);
+        verify(parkingLotRepository, times(1)).updateOccupiedSpaces("LOT2", 1);
+    }
+
+    // =======================
+    // Tests with a LotCapacityGuard
+    // =======================
+    @Test
+    void tryReserve_shouldLetTheGuardDecide_withTheStripesSpaces() {
+        // Given
+        LotCapacityGuard guard = mock(LotCapacityGuard.class);
+        tracker = new LotOccupancyTracker(parkingLotRepository, Optional.of(guard));
+        givenLotWithMotorcycleBays(7, 2);
+        when(guard.tryTake("LOT1", null, 7)).thenReturn(true);
+        when(guard.tryTake("LOT1", VehicleType.MOTORCYCLE, 2)).thenReturn(true);
+
+        // When: the counters are full, but another instance freed spaces in the database
+        boolean car = tracker.tryReserve("LOT1", VehicleType.CAR, 1);
+        boolean motorcycle = tracker.tryReserve("LOT1", VehicleType.MOTORCYCLE, 1);
+
+        // Then
+        assertTrue(car);
+        assertTrue(motorcycle);
+    }
+
+    @Test
+    void release_shouldFreeTheSpaceThroughTheGuard_andNeverFlush() {
+        // Given
+        LotCapacityGuard guard = mock(LotCapacityGuard.class);
+        tracker = new LotOccupancyTracker(parkingLotRepository, Optional.of(guard));
+        givenLotWithMotorcycleBays(3, 2);
+
+        // When
+        tracker.release("LOT1", VehicleType.MOTORCYCLE);
+        tracker.release("LOT1", VehicleType.TRUCK);
+        tracker.flush();
+
+        // Then
+        verify(guard).free("LOT1", VehicleType.MOTORCYCLE);
+        verify(guard).free("LOT1", null);
+        verify(parkingLotRepository, never()).updateOccupiedSpaces(anyString(), anyInt());
+    }
+
+    @Test
+    void getOccupancy_shouldReadTheDatabase_whenGuarded() {
+        // Given: other instances have parked 6 shared vehicles and 1 motorcycle since the counter was seeded
+        tracker = new LotOccupancyTracker(parkingLotRepository, Optional.of(mock(LotCapacityGuard.class)));
+        givenLotWithMotorcycleBays(3, 2);
+        when(parkingLotRepository.findSharedOccupiedSpaces("LOT1")).thenReturn(6);
+        when(parkingLotRepository.findPoolOccupiedSpaces("LOT1", "MOTORCYCLE")).thenReturn(1);
+        when(parkingLotRepository.findVersion("LOT1")).thenReturn(42L);
+
+        // When
+        int occupied = tracker.getOccupiedSpaces("LOT1");
+        PoolOccupancy motorcycle = tracker.getPoolOccupancy("LOT1", VehicleType.MOTORCYCLE);
+
+        // Then
+        assertEquals(7, occupied);
+        assertEquals(new PoolOccupancy(2, 1, true), motorcycle);
+        assertEquals(new PoolOccupancy(8, 6, false), tracker.getOccupancyByType("LOT1").get(VehicleType.CAR));
+        assertEquals("db-42", tracker.getVersionTag("LOT1"));
+        // Only the database knows, so nothing is answered from memory
+        assertTrue(tracker.findOccupiedSpaces("LOT1").isEmpty());
+        assertTrue(tracker.findOccupancyByType("LOT1").isEmpty());
+        assertTrue(tracker.findPoolOccupancy("LOT1", VehicleType.CAR).isEmpty());
+    }
+}
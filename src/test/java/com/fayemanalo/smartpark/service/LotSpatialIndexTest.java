@@ -0,0 +1,172 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.NearestLotDto;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LotSpatialIndexTest {
+
+    private ParkingLotRepository parkingLotRepository;
+    private LotSpatialIndex index;
+
+    @BeforeEach
+    void setUp() {
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        index = new LotSpatialIndex(parkingLotRepository, 0.05);
+    }
+
+    private static ParkingLot lot(String lotId, double latitude, double longitude) {
+        return ParkingLot.builder().lotId(lotId).latitude(latitude).longitude(longitude).capacity(10).build();
+    }
+
+    private static List<String> lotIds(List<NearestLotDto> lots) {
+        return lots.stream().map(NearestLotDto::lotId).toList();
+    }
+
+    // =======================
+    // Tests for findNearest()
+    // =======================
+    @Test
+    void findNearest_shouldMatchBruteForce_forRandomLots() {
+        // Given: lots spread over a region of about 200 x 200 km
+        Random random = new Random(11);
+        List<ParkingLot> lots = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            ParkingLot lot = lot("LOT" + i, 14 + random.nextDouble() * 2, 120 + random.nextDouble() * 2);
+            lots.add(lot);
+            index.add(lot);
+        }
+
+        for (int query = 0; query < 50; query++) {
+            double latitude = 14 + random.nextDouble() * 2;
+            double longitude = 120 + random.nextDouble() * 2;
+
+            // When: every third lot is full
+            List<NearestLotDto> nearest = index.findNearest(latitude, longitude, 5, 1000,
+                    lot -> Integer.parseInt(lot.lotId().substring(3)) % 3 == 0 ? 0 : 1);
+
+            // Then
+            List<String> expected = lots.stream()
+                    .filter(lot -> Integer.parseInt(lot.getLotId().substring(3)) % 3 != 0)
+                    .sorted(Comparator.comparingDouble(lot -> distance(latitude, longitude, lot)))
+                    .limit(5)
+                    .map(ParkingLot::getLotId)
+                    .toList();
+            assertEquals(expected, lotIds(nearest));
+        }
+    }
+
+    @Test
+    void findNearest_shouldMatchBruteForce_nearThePoles() {
+        // Given: lots all around both polar caps
+        Random random = new Random(7);
+        List<ParkingLot> lots = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            double latitude = (i % 2 == 0 ? 1 : -1) * (85 + random.nextDouble() * 5);
+            ParkingLot lot = lot("LOT" + i, latitude, random.nextDouble() * 360 - 180);
+            lots.add(lot);
+            index.add(lot);
+        }
+
+        for (int query = 0; query < 50; query++) {
+            double latitude = (query % 2 == 0 ? 1 : -1) * (query < 10 ? 90 : 86 + random.nextDouble() * 4);
+            double longitude = random.nextDouble() * 360 - 180;
+
+            // When
+            List<NearestLotDto> nearest = index.findNearest(latitude, longitude, 5, 300, lot -> 1);
+
+            // Then
+            List<String> expected = lots.stream()
+                    .filter(lot -> distance(latitude, longitude, lot) <= 300)
+                    .sorted(Comparator.comparingDouble(lot -> distance(latitude, longitude, lot)))
+                    .limit(5)
+                    .map(ParkingLot::getLotId)
+                    .toList();
+            assertEquals(expected, lotIds(nearest));
+        }
+    }
+
+    @Test
+    void findNearest_shouldStopEarly_nearThePolesWithoutNearbyLots() {
+        // Given: the only lots are far from the poles
+        index.add(lot("LOT1", 14.55, 121.0));
+        index.add(lot("LOT2", -33.9, 18.4));
+
+        // When / Then: every query used to walk all 3600 rings, hundreds of milliseconds each
+        assertTimeout(Duration.ofSeconds(1), () -> {
+            for (int query = 0; query < 100; query++) {
+                double latitude = (query % 2 == 0 ? 1 : -1) * (80 + query % 11);
+                assertTrue(index.findNearest(latitude, query * 3.6 - 180, 5, 50, lot -> 1).isEmpty());
+            }
+        });
+    }
+
+    @Test
+    void findNearest_shouldSearchAcrossTheAntimeridian() {
+        // Given
+        index.add(lot("EAST", 0, 179.99));
+        index.add(lot("WEST", 0, -179.9));
+
+        // When
+        List<NearestLotDto> nearest = index.findNearest(0, -179.99, 2, 100, lot -> 1);
+
+        // Then
+        assertEquals(List.of("EAST", "WEST"), lotIds(nearest));
+        assertEquals(2.224, nearest.get(0).distanceKm(), 0.001);
+    }
+
+    @Test
+    void findNearest_shouldLeaveOutLotsBeyondMaxDistance() {
+        // Given
+        index.add(lot("NEAR", 14.55, 121.0));
+        index.add(lot("FAR", 15.55, 121.0));
+
+        // When / Then
+        assertEquals(List.of("NEAR"), lotIds(index.findNearest(14.55, 121.0, 5, 50, lot -> 1)));
+        assertEquals(List.of(), lotIds(index.findNearest(-14.55, 121.0, 5, 50, lot -> 1)));
+    }
+
+    @Test
+    void add_shouldIgnoreLotsWithoutCoordinates() {
+        // When
+        index.add(ParkingLot.builder().lotId("LOT1").capacity(10).build());
+
+        // Then
+        assertTrue(index.findNearest(0, 0, 5, 20_000, lot -> 1).isEmpty());
+    }
+
+    // =======================
+    // Tests for load()
+    // =======================
+    @Test
+    void load_shouldIndexLotsWithCoordinates() {
+        // Given
+        when(parkingLotRepository.findByLatitudeIsNotNullAndLongitudeIsNotNull())
+                .thenReturn(List.of(lot("LOT1", 14.55, 121.0)));
+
+        // When
+        index.load();
+
+        // Then
+        assertEquals(List.of("LOT1"), lotIds(index.findNearest(14.5, 121.0, 5, 50, lot -> 1)));
+    }
+
+    private static double distance(double latitude, double longitude, ParkingLot lot) {
+        double dPhi = Math.toRadians(lot.getLatitude() - latitude);
+        double dLambda = Math.toRadians(lot.getLongitude() - longitude);
+        double h = Math.pow(Math.sin(dPhi / 2), 2)
+                + Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(lot.getLatitude())) * Math.pow(Math.sin(dLambda / 2), 2);
+        return 2 * 6371.0 * Math.asin(Math.sqrt(h));
+    }
+}
@@ -0,0 +1,148 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.LotHourlyStatsDto;
+import com.fayemanalo.smartpark.model.LotHour;
+import com.fayemanalo.smartpark.model.LotHourlyStats;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.repository.LotHourlyStatsRepository;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.repository.VehicleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class OccupancyRollupServiceTest {
+
+    private static final LocalDateTime EIGHT = LocalDateTime.of(2025, 11, 8, 8, 0);
+
+    private LotHourlyStatsRepository lotHourlyStatsRepository;
+    private ParkingLotRepository parkingLotRepository;
+    private OccupancyRollupService service;
+
+    @BeforeEach
+    void setUp() {
+        lotHourlyStatsRepository = mock(LotHourlyStatsRepository.class);
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(
+                ParkingLot.builder().lotId("LOT1").location("Main Street").capacity(10).build()));
+        when(lotHourlyStatsRepository.findByIdLotIdAndIdHourGreaterThanEqualAndIdHourLessThanOrderByIdHour(
+                anyString(), any(), any())).thenReturn(List.of());
+        when(lotHourlyStatsRepository.findFirstByIdLotIdAndIdHourLessThanOrderByIdHourDesc(anyString(), any()))
+                .thenReturn(Optional.empty());
+
+        service = new OccupancyRollupService(lotHourlyStatsRepository,
+                new ReferenceDataCache(mock(VehicleRepository.class), parkingLotRepository, 1000, Duration.ofMinutes(10)),
+                mock(PlatformTransactionManager.class));
+    }
+
+    private LotHourlyStats stats(LocalDateTime hour, int entries, int exits, int peak, int closing, long dwell) {
+        return new LotHourlyStats(new LotHour("LOT1", hour), entries, exits, peak, closing, dwell);
+    }
+
+    // =======================
+    // Tests for recordCheckIn() / recordCheckOut()
+    // =======================
+    @Test
+    void record_shouldAccumulateEntriesExitsPeakAndDwell_perHour() {
+        // Given
+        service.recordCheckIn("LOT1", EIGHT.plusMinutes(5), 1);
+        service.recordCheckIn("LOT1", EIGHT.plusMinutes(10), 2);
+        service.recordCheckOut("LOT1", EIGHT.plusMinutes(5), EIGHT.plusMinutes(50), 1);
+        // The next hour starts with one vehicle parked; its peak comes from the check-out alone
+        service.recordCheckOut("LOT1", EIGHT.plusMinutes(10), EIGHT.plusMinutes(70), 0);
+
+        // When
+        List<LotHourlyStatsDto> result = service.getHourlyStats("LOT1", EIGHT, EIGHT.plusHours(3));
+
+        // Then
+        assertEquals(List.of(
+                new LotHourlyStatsDto(EIGHT, 2, 1, 2, 45),
+                new LotHourlyStatsDto(EIGHT.plusHours(1), 0, 1, 1, 60),
+                new LotHourlyStatsDto(EIGHT.plusHours(2), 0, 0, 0, 0)
+        ), result);
+    }
+
+    // =======================
+    // Tests for getHourlyStats()
+    // =======================
+    @Test
+    void getHourlyStats_shouldFillHoursWithoutEvents_withCarriedOccupancy() {
+        // Given
+        when(lotHourlyStatsRepository.findFirstByIdLotIdAndIdHourLessThanOrderByIdHourDesc("LOT1", EIGHT))
+                .thenReturn(Optional.of(stats(EIGHT.minusHours(5), 1, 0, 4, 4, 0)));
+        when(lotHourlyStatsRepository.findByIdLotIdAndIdHourGreaterThanEqualAndIdHourLessThanOrderByIdHour(
+                "LOT1", EIGHT, EIGHT.plusHours(3)))
+                .thenReturn(List.of(stats(EIGHT.plusHours(1), 2, 0, 6, 6, 0)));
+
+        // When
+        List<LotHourlyStatsDto> result = service.getHourlyStats("LOT1", EIGHT.plusMinutes(30), EIGHT.plusHours(2).plusMinutes(1));
+
+        // Then
+        assertEquals(List.of(
+                new LotHourlyStatsDto(EIGHT, 0, 0, 4, 0),
+                new LotHourlyStatsDto(EIGHT.plusHours(1), 2, 0, 6, 0),
+                new LotHourlyStatsDto(EIGHT.plusHours(2), 0, 0, 6, 0)
+        ), result);
+    }
+
+    @Test
+    void getHourlyStats_shouldThrowNotFound_whenLotDoesNotExist() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.getHourlyStats("NOPE", null, null));
+
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+    }
+
+    @Test
+    void getHourlyStats_shouldThrowBadRequest_whenRangeIsEmptyOrTooLong() {
+        ResponseStatusException empty = assertThrows(ResponseStatusException.class,
+                () -> service.getHourlyStats("LOT1", EIGHT, EIGHT));
+        ResponseStatusException tooLong = assertThrows(ResponseStatusException.class,
+                () -> service.getHourlyStats("LOT1", EIGHT, EIGHT.plusDays(400)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, empty.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, tooLong.getStatusCode());
+    }
+
+    @Test
+    void getHourlyStats_shouldDefaultToLast24Hours() {
+        assertEquals(24, service.getHourlyStats("LOT1", null, null).size());
+    }
+
+    // =======================
+    // Tests for flush()
+    // =======================
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_shouldAddPendingChangesToPersistedStats_andClearThem() {
+        // Given
+        when(lotHourlyStatsRepository.findAllById(any()))
+                .thenReturn(List.of(stats(EIGHT, 5, 2, 7, 6, 90)));
+        service.recordCheckIn("LOT1", EIGHT.plusMinutes(20), 8);
+
+        // When
+        service.flush();
+
+        // Then
+        ArgumentCaptor<List<LotHourlyStats>> saved = ArgumentCaptor.forClass(List.class);
+        verify(lotHourlyStatsRepository).saveAll(saved.capture());
+        assertEquals(List.of(stats(EIGHT, 6, 2, 8, 8, 90)), saved.getValue());
+
+        // Nothing is left to flush
+        service.flush();
+        verify(lotHourlyStatsRepository, times(1)).saveAll(any());
+    }
+}
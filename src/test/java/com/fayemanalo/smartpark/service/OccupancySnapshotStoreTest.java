@@ -0,0 +1,66 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.ActiveSession;
+import com.fayemanalo.smartpark.model.OccupancySnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OccupancySnapshotStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private OccupancySnapshotStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new OccupancySnapshotStore(directory);
+    }
+
+    @Test
+    void read_shouldReturnEmpty_whenNoSnapshotWritten() {
+        assertTrue(store.read().isEmpty());
+    }
+
+    @Test
+    void write_shouldRoundTripSnapshot() {
+        // Given
+        LocalDateTime now = LocalDateTime.of(2025, 3, 1, 12, 0, 0, 123_456_000);
+        OccupancySnapshot snapshot = new OccupancySnapshot(now, List.of(
+                new ActiveSession("ABC-123", "LOT1", now.minusHours(1), 1L),
+                new ActiveSession("XYZ-987", "LOT2", now.minusMinutes(5), 2L),
+                new ActiveSession("NEW-111", "LOT1", now.minusSeconds(30), 3L)
+        ));
+
+        // When
+        store.write(snapshot);
+        store.write(snapshot); // replaces the previous snapshot
+
+        // Then
+        assertEquals(snapshot, store.read().orElseThrow());
+    }
+
+    @Test
+    void read_shouldReturnEmpty_whenSnapshotIsCorrupt() throws IOException {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        store.write(new OccupancySnapshot(now, List.of(new ActiveSession("ABC-123", "LOT1", now, 1L))));
+
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("occupancy.snapshot").toFile(), "rw")) {
+            file.seek(file.length() - 6);
+            file.write(0x7f);
+        }
+
+        // When / Then
+        assertTrue(store.read().isEmpty());
+    }
+}
@@ -0,0 +1,116 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.ActiveSession;
+import com.fayemanalo.smartpark.model.CapacityPool;
+import com.fayemanalo.smartpark.model.OccupancySnapshot;
+import com.fayemanalo.smartpark.model.ParkedVehicles;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class OccupancySnapshotterTest {
+
+    @TempDir
+    Path directory;
+
+    private ParkingLotRepository parkingLotRepository;
+    private ParkingRecordRepository parkingRecordRepository;
+    private ActiveSessionIndex activeSessionIndex;
+    private OccupancySnapshotStore snapshotStore;
+    private OccupancySnapshotter snapshotter;
+
+    @BeforeEach
+    void setUp() {
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        parkingRecordRepository = mock(ParkingRecordRepository.class);
+        snapshotStore = new OccupancySnapshotStore(directory);
+        activeSessionIndex = new ActiveSessionIndex(parkingRecordRepository, Optional.of(snapshotStore));
+        snapshotter = new OccupancySnapshotter(activeSessionIndex, snapshotStore, parkingLotRepository,
+                parkingRecordRepository, Duration.ofMinutes(1));
+    }
+
+    // =======================
+    // Tests for reconcileOccupancy()
+    // =======================
+    @Test
+    void reconcileOccupancy_shouldCorrectLotsWhoseOccupancyDiffersFromSessions() {
+        // Given
+        activeSessionIndex.claim(new ActiveSession("ABC-123", "LOT1", LocalDateTime.now(), 1L));
+        activeSessionIndex.claim(new ActiveSession("XYZ-987", "LOT1", LocalDateTime.now(), 2L));
+
+        when(parkingLotRepository.findAll()).thenReturn(List.of(
+                ParkingLot.builder().lotId("LOT1").capacity(10).occupiedSpaces(1).build(),
+                ParkingLot.builder().lotId("LOT2").capacity(10).occupiedSpaces(3).build(),
+                ParkingLot.builder().lotId("LOT3").capacity(10).occupiedSpaces(0).build()
+        ));
+
+        // When
+        snapshotter.reconcileOccupancy();
+
+        // Then
+        verify(parkingLotRepository).updateOccupiedSpaces("LOT1", 2);
+        verify(parkingLotRepository).updateOccupiedSpaces("LOT2", 0);
+        verify(parkingLotRepository, never()).updateOccupiedSpaces(eq("LOT3"), anyInt());
+        verify(parkingRecordRepository, never()).countParkedVehiclesByLotAndType();
+    }
+
+    @Test
+    void reconcileOccupancy_shouldRecountCapacityPools_whenPoolRowIsStale() {
+        // Given: the total is right, but one of the two parked motorcycles never reached its pool row
+        activeSessionIndex.claim(new ActiveSession("ABC-123", "LOT1", LocalDateTime.now(), 1L));
+        activeSessionIndex.claim(new ActiveSession("MOTO-1", "LOT1", LocalDateTime.now(), 2L));
+        activeSessionIndex.claim(new ActiveSession("MOTO-2", "LOT1", LocalDateTime.now(), 3L));
+
+        ParkingLot lot = ParkingLot.builder().lotId("LOT1").capacity(10).occupiedSpaces(3).build();
+        lot.getCapacityPools().put(VehicleType.MOTORCYCLE, new CapacityPool(2, 1));
+        lot.getCapacityPools().put(VehicleType.TRUCK, new CapacityPool(1, 0));
+        when(parkingLotRepository.findAll()).thenReturn(List.of(lot));
+        when(parkingRecordRepository.countParkedVehiclesByLotAndType()).thenReturn(List.of(
+                new ParkedVehicles("LOT1", VehicleType.CAR, 1),
+                new ParkedVehicles("LOT1", VehicleType.MOTORCYCLE, 2)
+        ));
+
+        // When
+        snapshotter.reconcileOccupancy();
+
+        // Then
+        verify(parkingLotRepository).updatePoolOccupiedSpaces("LOT1", "MOTORCYCLE", 2);
+        verify(parkingLotRepository, never()).updatePoolOccupiedSpaces(eq("LOT1"), eq("TRUCK"), anyInt());
+        verify(parkingLotRepository, never()).updateOccupiedSpaces(eq("LOT1"), anyInt());
+    }
+
+    // =======================
+    // Tests for writeSnapshot()
+    // =======================
+    @Test
+    void writeSnapshot_shouldStoreSavedSessions_withReplayTimeBeforeNow() {
+        // Given
+        ActiveSession session = new ActiveSession("ABC-123", "LOT1", LocalDateTime.now(), 1L);
+        activeSessionIndex.claim(session);
+        LocalDateTime before = LocalDateTime.now();
+
+        // When
+        snapshotter.writeSnapshot();
+
+        // Then
+        OccupancySnapshot snapshot = snapshotStore.read().orElseThrow();
+        assertEquals(List.of(session), snapshot.sessions());
+        assertFalse(snapshot.replayFrom().isAfter(before.minusMinutes(1).plusSeconds(5)));
+        assertTrue(snapshot.replayFrom().isBefore(before));
+    }
+}
@@ -0,0 +1,219 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.ParkingLotStatusDto;
+import com.fayemanalo.smartpark.mapper.ParkingLotMapper;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import com.fayemanalo.smartpark.repository.VehicleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class OccupancyStreamServiceTest {
+
+    private ParkingLotRepository parkingLotRepository;
+    private LotOccupancyTracker lotOccupancyTracker;
+    private ParkingLotService parkingLotService;
+
+    @BeforeEach
+    void setUp() {
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        lotOccupancyTracker = new LotOccupancyTracker(parkingLotRepository, Optional.empty());
+        parkingLotService = new ParkingLotService(parkingLotRepository, mock(ParkingRecordRepository.class),
+                mock(ParkingLotMapper.class), lotOccupancyTracker,
+                new ReferenceDataCache(mock(VehicleRepository.class), parkingLotRepository, 1000, Duration.ofMinutes(10)),
+                new ParkingMetrics(new SimpleMeterRegistry(), lotOccupancyTracker, parkingLotRepository),
+                new LotSpatialIndex(parkingLotRepository, 0.05), 50);
+    }
+
+    private void givenLot(String lotId, int capacity) {
+        ParkingLot lot = ParkingLot.builder().lotId(lotId).location("Main Street").capacity(capacity).build();
+        when(parkingLotRepository.findById(lotId)).thenReturn(Optional.of(lot));
+    }
+
+    private TestService service(TaskExecutor taskExecutor, int bufferSize) {
+        return new TestService(parkingLotService, lotOccupancyTracker, taskExecutor, bufferSize);
+    }
+
+    // =======================
+    // Tests for subscribe()
+    // =======================
+    @Test
+    void subscribe_shouldSendCurrentStatus() {
+        // Given
+        givenLot("LOT1", 10);
+        lotOccupancyTracker.tryReserve("LOT1");
+        TestService service = service(new SyncTaskExecutor(), 16);
+
+        // When
+        service.subscribe("LOT1");
+
+        // Then
+        CapturingEmitter emitter = service.emitters.get(0);
+        assertEquals(1, emitter.sent.size());
+        assertEquals(1, emitter.sent.get(0).occupiedSpaces());
+        assertEquals(1, service.getSubscriberCount());
+    }
+
+    @Test
+    void subscribe_shouldThrowException_whenLotNotFound() {
+        // Given
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.empty());
+        TestService service = service(new SyncTaskExecutor(), 16);
+
+        // When
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> service.subscribe("LOT1"));
+
+        // Then
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        assertEquals(0, service.getSubscriberCount());
+    }
+
+    // =======================
+    // Tests for publishChanges()
+    // =======================
+    @Test
+    void publishChanges_shouldCoalesceBurstIntoOneEvent() {
+        // Given
+        givenLot("LOT1", 100);
+        TestService service = service(new SyncTaskExecutor(), 16);
+        service.subscribe("LOT1");
+        CapturingEmitter emitter = service.emitters.get(0);
+
+        // When
+        for (int i = 0; i < 50; i++) {
+            lotOccupancyTracker.tryReserve("LOT1");
+        }
+        service.publishChanges();
+        service.publishChanges();
+
+        // Then: the initial status plus one update
+        assertEquals(2, emitter.sent.size());
+        assertEquals(50, emitter.sent.get(1).occupiedSpaces());
+    }
+
+    @Test
+    void publishChanges_shouldNotSendEvent_whenNothingChanged() {
+        // Given
+        givenLot("LOT1", 10);
+        TestService service = service(new SyncTaskExecutor(), 16);
+        service.subscribe("LOT1");
+
+        // When
+        service.publishChanges();
+
+        // Then
+        assertEquals(1, service.emitters.get(0).sent.size());
+    }
+
+    @Test
+    void publishChanges_shouldSendChangesOfEveryLot_toAllLotsSubscriber() {
+        // Given
+        givenLot("LOT1", 10);
+        givenLot("LOT2", 10);
+        TestService service = service(new SyncTaskExecutor(), 16);
+        service.subscribeAll();
+        CapturingEmitter emitter = service.emitters.get(0);
+
+        // When
+        lotOccupancyTracker.tryReserve("LOT1");
+        lotOccupancyTracker.tryReserve("LOT2");
+        service.publishChanges();
+
+        // Then
+        assertEquals(List.of("LOT1", "LOT2"),
+                emitter.sent.stream().map(ParkingLotStatusDto::lotId).sorted().toList());
+    }
+
+    @Test
+    void publishChanges_shouldKeepOnlyLatestStatus_whileSubscriberIsBehind() {
+        // Given: an executor that never runs the drain, like a client that stopped reading
+        givenLot("LOT1", 10);
+        List<Runnable> queued = new ArrayList<>();
+        TestService service = service(queued::add, 16);
+        service.subscribe("LOT1");
+        CapturingEmitter emitter = service.emitters.get(0);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            lotOccupancyTracker.tryReserve("LOT1");
+            service.publishChanges();
+        }
+        queued.forEach(Runnable::run);
+
+        // Then
+        assertEquals(1, emitter.sent.size());
+        assertEquals(5, emitter.sent.get(0).occupiedSpaces());
+    }
+
+    @Test
+    void publishChanges_shouldDisconnectSubscriber_whenBufferIsFull() {
+        // Given
+        givenLot("LOT1", 10);
+        givenLot("LOT2", 10);
+        TestService service = service(task -> { }, 1);
+        service.subscribeAll();
+        CapturingEmitter emitter = service.emitters.get(0);
+
+        // When
+        lotOccupancyTracker.tryReserve("LOT1");
+        lotOccupancyTracker.tryReserve("LOT2");
+        service.publishChanges();
+
+        // Then
+        assertTrue(emitter.completed);
+        assertEquals(0, service.getSubscriberCount());
+    }
+
+    private static final class TestService extends OccupancyStreamService {
+
+        private final List<CapturingEmitter> emitters = new ArrayList<>();
+
+        private TestService(ParkingLotService parkingLotService, LotOccupancyTracker lotOccupancyTracker,
+                            TaskExecutor taskExecutor, int bufferSize) {
+            super(parkingLotService, lotOccupancyTracker, taskExecutor, bufferSize, Duration.ofMinutes(1));
+        }
+
+        @Override
+        SseEmitter createEmitter() {
+            CapturingEmitter emitter = new CapturingEmitter();
+            emitters.add(emitter);
+            return emitter;
+        }
+    }
+
+    private static final class CapturingEmitter extends SseEmitter {
+
+        private final List<ParkingLotStatusDto> sent = new ArrayList<>();
+        private boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(ParkingLotStatusDto.class::isInstance)
+                    .map(ParkingLotStatusDto.class::cast)
+                    .forEach(sent::add);
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+}
@@ -1,23 +1,38 @@
 package com.fayemanalo.smartpark.service;
 
+import com.fayemanalo.smartpark.dto.NearestLotDto;
 import com.fayemanalo.smartpark.dto.ParkingLotDto;
 import com.fayemanalo.smartpark.dto.ParkingLotStatusDto;
+import com.fayemanalo.smartpark.dto.VehicleTypeAvailabilityDto;
 import com.fayemanalo.smartpark.dto.VehiclesInLotDto;
+import com.fayemanalo.smartpark.dto.VehiclesInLotPageDto;
 import com.fayemanalo.smartpark.mapper.ParkingLotMapper;
+import com.fayemanalo.smartpark.model.CapacityPool;
 import com.fayemanalo.smartpark.model.ParkingLot;
-import com.fayemanalo.smartpark.model.ParkingRecord;
-import com.fayemanalo.smartpark.model.Vehicle;
 import com.fayemanalo.smartpark.model.VehicleType;
 import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import com.fayemanalo.smartpark.repository.VehicleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -25,14 +40,37 @@ import static org.mockito.Mockito.*;
 class ParkingLotServiceTest {
 
     private ParkingLotRepository parkingLotRepository;
+    private ParkingRecordRepository parkingRecordRepository;
     private ParkingLotMapper parkingLotMapper;
+    private LotOccupancyTracker lotOccupancyTracker;
     private ParkingLotService parkingLotService;
 
     @BeforeEach
     void setUp() {
         parkingLotRepository = mock(ParkingLotRepository.class);
+        parkingRecordRepository = mock(ParkingRecordRepository.class);
         parkingLotMapper = mock(ParkingLotMapper.class);
-        parkingLotService = new ParkingLotService(parkingLotRepository, parkingLotMapper);
+        lotOccupancyTracker = new LotOccupancyTracker(parkingLotRepository, Optional.empty());
+        parkingLotService = newService();
+    }
+
+    private ParkingLotService newService() {
+        return new ParkingLotService(parkingLotRepository, parkingRecordRepository, parkingLotMapper,
+                lotOccupancyTracker,
+                new ReferenceDataCache(mock(VehicleRepository.class), parkingLotRepository, 1000, Duration.ofMinutes(10)),
+                new ParkingMetrics(new SimpleMeterRegistry(), lotOccupancyTracker, parkingLotRepository),
+                new LotSpatialIndex(parkingLotRepository, 0.05), 50);
+    }
+
+    private static ParkingLot lot() {
+        return ParkingLot.builder().lotId("LOT1").location("Main Street").capacity(50).build();
+    }
+
+    // Every vehicle type shares all spaces of a lot without capacity pools
+    private static Map<VehicleType, VehicleTypeAvailabilityDto> shared(int capacity, int occupiedSpaces) {
+        VehicleTypeAvailabilityDto availability =
+                new VehicleTypeAvailabilityDto(capacity, occupiedSpaces, capacity - occupiedSpaces, false);
+        return Map.of(VehicleType.CAR, availability, VehicleType.MOTORCYCLE, availability, VehicleType.TRUCK, availability);
     }
 
     // =======================
@@ -41,7 +79,7 @@ class ParkingLotServiceTest {
     @Test
     void save_shouldReturnParkingLotDto_whenParkingLotDoesNotExist() {
         // Given
-        ParkingLotDto dto = new ParkingLotDto("LOT1", "Main Street", 10, 0);
+        ParkingLotDto dto = new ParkingLotDto("LOT1", "Main Street", null, null, 10, 0, null);
 
         ParkingLot entity = new ParkingLot();
         entity.setLotId("LOT1");
@@ -72,7 +110,7 @@ class ParkingLotServiceTest {
     @Test
     void save_shouldThrowException_whenParkingLotAlreadyExists() {
         // Given
-        ParkingLotDto dto = new ParkingLotDto("LOT1", "Main Street", 10, 0);
+        ParkingLotDto dto = new ParkingLotDto("LOT1", "Main Street", null, null, 10, 0, null);
 
         ParkingLot entity = new ParkingLot();
         entity.setLotId("LOT1");
@@ -93,6 +131,122 @@ class ParkingLotServiceTest {
         verify(parkingLotMapper, never()).toDto(any());
     }
 
+    @Test
+    void save_shouldThrowException_whenCapacityPoolsExceedCapacity() {
+        // Given
+        ParkingLotDto dto = new ParkingLotDto("LOT1", "Main Street", null, null, 10, 0,
+                Map.of(VehicleType.MOTORCYCLE, 6, VehicleType.TRUCK, 5));
+        ParkingLot entity = lot();
+        entity.setCapacity(10);
+        entity.getCapacityPools().put(VehicleType.MOTORCYCLE, new CapacityPool(6, 0));
+        entity.getCapacityPools().put(VehicleType.TRUCK, new CapacityPool(5, 0));
+
+        when(parkingLotMapper.toEntity(dto)).thenReturn(entity);
+
+        // When
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> parkingLotService.save(dto));
+
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        assertEquals("Capacity pools exceed the capacity of the parking lot", exception.getReason());
+        verify(parkingLotRepository, never()).save(any());
+    }
+
+    @Test
+    void save_shouldThrowException_whenOnlyOneCoordinateIsGiven() {
+        // Given
+        ParkingLotDto dto = new ParkingLotDto("LOT1", "Main Street", 14.55, null, 10, 0, null);
+        ParkingLot entity = lot();
+        entity.setLatitude(14.55);
+
+        when(parkingLotMapper.toEntity(dto)).thenReturn(entity);
+
+        // When
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> parkingLotService.save(dto));
+
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        assertEquals("Latitude and longitude must be given together", exception.getReason());
+        verify(parkingLotRepository, never()).save(any());
+    }
+
+    // =======================
+    // Tests for findNearest()
+    // =======================
+    private ParkingLot savedLot(String lotId, double latitude, double longitude, int capacity, int occupiedSpaces) {
+        ParkingLot lot = ParkingLot.builder().lotId(lotId).location(lotId + " Street")
+                .latitude(latitude).longitude(longitude).capacity(capacity).occupiedSpaces(occupiedSpaces).build();
+        ParkingLotDto dto = ParkingLotDto.builder().lotId(lotId).build();
+        when(parkingLotMapper.toEntity(dto)).thenReturn(lot);
+        when(parkingLotRepository.save(lot)).thenReturn(lot);
+        when(parkingLotRepository.findById(lotId)).thenReturn(Optional.of(lot));
+        parkingLotService.save(dto);
+        return lot;
+    }
+
+    @Test
+    void findNearest_shouldReturnNearestLotsWithSpace_nearestFirst() {
+        // Given: about 1.1 km apart along a meridian
+        savedLot("FAR", 14.57, 121.0, 10, 0);
+        savedLot("NEAR", 14.56, 121.0, 10, 0);
+        savedLot("FULL", 14.551, 121.0, 10, 10);
+        savedLot("OTHER_CITY", 15.5, 121.0, 10, 0);
+
+        // When
+        List<NearestLotDto> nearest = parkingLotService.findNearest(14.55, 121.0, null, 5);
+
+        // Then
+        assertEquals(List.of("NEAR", "FAR"), nearest.stream().map(NearestLotDto::lotId).toList());
+        assertEquals(1.112, nearest.get(0).distanceKm(), 0.001);
+        assertEquals(10, nearest.get(0).availableSpaces());
+        assertEquals(1, parkingLotService.findNearest(14.55, 121.0, null, 1).size());
+    }
+
+    @Test
+    void findNearest_shouldUseLiveOccupancy_ofTheVehicleTypesPool() {
+        // Given: NEAR has space, but not for trucks
+        ParkingLot near = savedLot("NEAR", 14.56, 121.0, 10, 0);
+        near.getCapacityPools().put(VehicleType.TRUCK, new CapacityPool(1, 0));
+        savedLot("FAR", 14.57, 121.0, 10, 0);
+        lotOccupancyTracker.tryReserve("NEAR", VehicleType.TRUCK, 0);
+
+        // When
+        List<NearestLotDto> nearest = parkingLotService.findNearest(14.55, 121.0, VehicleType.TRUCK, 5);
+
+        // Then
+        assertEquals(List.of("FAR"), nearest.stream().map(NearestLotDto::lotId).toList());
+        assertEquals(9, parkingLotService.findNearest(14.55, 121.0, VehicleType.CAR, 1).get(0).availableSpaces());
+    }
+
+    @Test
+    void findNearest_shouldReadOccupancyFromDatabase_whenGuarded() {
+        // Given: another instance filled NEAR after it was indexed
+        lotOccupancyTracker = new LotOccupancyTracker(parkingLotRepository, Optional.of(mock(LotCapacityGuard.class)));
+        parkingLotService = newService();
+        savedLot("NEAR", 14.56, 121.0, 10, 0);
+        savedLot("FAR", 14.57, 121.0, 10, 0);
+        when(parkingLotRepository.findSharedOccupiedSpaces("NEAR")).thenReturn(10);
+        when(parkingLotRepository.findSharedOccupiedSpaces("FAR")).thenReturn(4);
+
+        // When
+        List<NearestLotDto> nearest = parkingLotService.findNearest(14.55, 121.0, null, 5);
+
+        // Then
+        assertEquals(List.of("FAR"), nearest.stream().map(NearestLotDto::lotId).toList());
+        assertEquals(6, nearest.get(0).availableSpaces());
+    }
+
+    @Test
+    void findNearest_shouldThrowException_whenArgumentsOutOfRange() {
+        assertThrows(ResponseStatusException.class, () -> parkingLotService.findNearest(91, 0, null, 5));
+        assertThrows(ResponseStatusException.class, () -> parkingLotService.findNearest(0, -181, null, 5));
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> parkingLotService.findNearest(0, 0, null, 101));
+        assertEquals("K must be between 1 and 100", exception.getReason());
+    }
+
     // =======================
     // Tests for getStatus()
     // =======================
@@ -119,6 +273,44 @@ class ParkingLotServiceTest {
         assertEquals(40, status.availableSpaces()); // capacity - occupiedSpaces
     }
 
+    @Test
+    void getStatus_shouldReportAvailabilityPerVehicleType() {
+        // Given: 5 of the 50 spaces are motorcycle bays
+        ParkingLot lot = lot();
+        lot.setOccupiedSpaces(12);
+        lot.getCapacityPools().put(VehicleType.MOTORCYCLE, new CapacityPool(5, 2));
+
+        // Mock
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
+
+        // When
+        ParkingLotStatusDto status = parkingLotService.getStatus("LOT1");
+
+        // Then
+        assertEquals(38, status.availableSpaces());
+        assertEquals(new VehicleTypeAvailabilityDto(5, 2, 3, true), status.availabilityByType().get(VehicleType.MOTORCYCLE));
+        assertEquals(new VehicleTypeAvailabilityDto(45, 10, 35, false), status.availabilityByType().get(VehicleType.CAR));
+        assertEquals(status.availabilityByType().get(VehicleType.CAR), status.availabilityByType().get(VehicleType.TRUCK));
+    }
+
+    @Test
+    void getStatus_shouldReadLotFromCache_onRepeatedCalls() {
+        // Given
+        ParkingLot lot = lot();
+        lot.setOccupiedSpaces(10);
+
+        // Mock
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
+
+        // When
+        parkingLotService.getStatus("LOT1");
+        parkingLotService.getStatus("LOT1");
+        parkingLotService.getStatus("LOT1");
+
+        // Then: one load for the cache, one to seed the occupancy counter
+        verify(parkingLotRepository, times(2)).findById("LOT1");
+    }
+
     @Test
     void getStatus_shouldThrowException_whenLotNotFound() {
         // Mock
@@ -133,48 +325,310 @@ class ParkingLotServiceTest {
         assertEquals("Parking lot not found", exception.getReason());
     }
 
+    @Test
+    void getStatus_shouldLoadColdLotOnce_forConcurrentCalls() throws Exception {
+        // Given: the first query is slow, and every caller arrives while it runs
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger queries = new AtomicInteger();
+
+        // Mock
+        when(parkingLotRepository.findById("LOT1")).thenAnswer(invocation -> {
+            if (queries.getAndIncrement() == 0) {
+                entered.countDown();
+                SingleFlightTest.await(release);
+            }
+            return Optional.of(lot());
+        });
+
+        // When
+        List<ParkingLotStatusDto> statuses = SingleFlightTest.executeConcurrently(
+                () -> parkingLotService.getStatus("LOT1"), entered, release);
+
+        // Then: one load for the cache, one to seed the occupancy counter
+        assertEquals(SingleFlightTest.CALLERS, statuses.size());
+        statuses.forEach(status -> assertEquals(50, status.availableSpaces()));
+        verify(parkingLotRepository, times(2)).findById("LOT1");
+    }
+
+    @Test
+    void getStatus_shouldQueryUnknownLotOnce_forConcurrentCalls() throws Exception {
+        // Given
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Mock
+        when(parkingLotRepository.findById("NOPE")).thenAnswer(invocation -> {
+            entered.countDown();
+            SingleFlightTest.await(release);
+            return Optional.empty();
+        });
+
+        // When
+        List<HttpStatus> statusCodes = SingleFlightTest.executeConcurrently(() -> {
+            try {
+                parkingLotService.getStatus("NOPE");
+                return HttpStatus.OK;
+            } catch (ResponseStatusException ex) {
+                return HttpStatus.valueOf(ex.getStatusCode().value());
+            }
+        }, entered, release);
+
+        // Then
+        statusCodes.forEach(statusCode -> assertEquals(HttpStatus.NOT_FOUND, statusCode));
+        verify(parkingLotRepository, times(1)).findById("NOPE");
+    }
+
+    // =======================
+    // Tests for getStatuses()
+    // =======================
+    @Test
+    void getStatuses_shouldReturnEveryLot_whenNoIdsGiven() {
+        // Given
+        ParkingLot lot1 = lot();
+        lot1.setOccupiedSpaces(5);
+        ParkingLot lot2 = ParkingLot.builder().lotId("LOT2").location("Side Street").capacity(20).occupiedSpaces(20).build();
+
+        // Mock
+        when(parkingLotRepository.findAll(any(Sort.class))).thenReturn(List.of(lot1, lot2));
+
+        // When
+        List<ParkingLotStatusDto> statuses = parkingLotService.getStatuses(null);
+
+        // Then
+        assertEquals(List.of(
+                new ParkingLotStatusDto("LOT1", "Main Street", 50, 5, 45, shared(50, 5)),
+                new ParkingLotStatusDto("LOT2", "Side Street", 20, 20, 0, shared(20, 20))
+        ), statuses);
+    }
+
+    @Test
+    void getStatuses_shouldPreferInMemoryOccupancy_overPersistedValue() {
+        // Given: LOT1 has a check-in that has not been flushed yet
+        ParkingLot lot = lot();
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
+        lotOccupancyTracker.tryReserve("LOT1");
+
+        // Mock
+        when(parkingLotRepository.findAll(any(Sort.class))).thenReturn(List.of(lot));
+
+        // When
+        List<ParkingLotStatusDto> statuses = parkingLotService.getStatuses(List.of());
+
+        // Then
+        assertEquals(1, statuses.get(0).occupiedSpaces());
+    }
+
+    @Test
+    void getStatuses_shouldLoadUncachedLotsInOneQuery_andSkipUnknownIds() {
+        // Given
+        ParkingLot lot1 = lot();
+        ParkingLot lot2 = ParkingLot.builder().lotId("LOT2").location("Side Street").capacity(20).occupiedSpaces(3).build();
+
+        // Mock
+        when(parkingLotRepository.findAllById(any())).thenReturn(List.of(lot2, lot1));
+
+        // When
+        List<ParkingLotStatusDto> statuses = parkingLotService.getStatuses(List.of("LOT2", "NOPE", "LOT1"));
+
+        // Then
+        assertEquals(List.of("LOT2", "LOT1"), statuses.stream().map(ParkingLotStatusDto::lotId).toList());
+        assertEquals(3, statuses.get(0).occupiedSpaces());
+        verify(parkingLotRepository, times(1)).findAllById(Set.of("LOT1", "LOT2", "NOPE"));
+        verify(parkingLotRepository, never()).findById(any());
+    }
+
+    @Test
+    void getStatuses_shouldNotQueryDatabase_whenLotsAreCachedAndTracked() {
+        // Given
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot()));
+        parkingLotService.getStatus("LOT1");
+
+        // When
+        List<ParkingLotStatusDto> statuses = parkingLotService.getStatuses(List.of("LOT1"));
+
+        // Then
+        assertEquals(1, statuses.size());
+        verify(parkingLotRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void getStatuses_shouldThrowException_whenTooManyIds() {
+        // Given
+        List<String> lotIds = IntStream.rangeClosed(0, ParkingLotService.MAX_STATUS_IDS)
+                .mapToObj(i -> "LOT" + i)
+                .toList();
+
+        // When
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> parkingLotService.getStatuses(lotIds));
+
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+    }
+
+    // =======================
+    // Tests for getStatusETag()
+    // =======================
+    @Test
+    void getStatusETag_shouldChange_whenOccupancyChanges() {
+        // Given
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot()));
+        String before = parkingLotService.getStatusETag("LOT1");
+
+        // When
+        lotOccupancyTracker.tryReserve("LOT1");
+        String after = parkingLotService.getStatusETag("LOT1");
+
+        // Then
+        assertTrue(before.startsWith("\"") && before.endsWith("\""));
+        assertNotEquals(before, after);
+        assertEquals(after, parkingLotService.getStatusETag("LOT1"));
+        verify(parkingLotRepository, times(1)).findById("LOT1");
+    }
+
+    @Test
+    void getStatusETag_shouldThrowException_whenLotNotFound() {
+        // Mock
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.empty());
+
+        // When
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> parkingLotService.getStatusETag("LOT1"));
+
+        // Then
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+    }
+
     // =======================
     // Tests for getVehiclesInLot()
     // =======================
     @Test
-    void getVehiclesInLot_shouldReturnVehicles_whenLotHasActiveRecords() {
+    void getVehiclesInLot_shouldReturnFirstPage_whenNoCursorGiven() {
         // Given
-        ParkingLot lot = new ParkingLot();
-        lot.setLotId("LOT1");
+        LocalDateTime checkIn = LocalDateTime.of(2025, 11, 8, 9, 28, 44);
+        List<VehiclesInLotDto> vehicles = List.of(
+                new VehiclesInLotDto("ABC-123", VehicleType.CAR, "John Doe", checkIn),
+                new VehiclesInLotDto("DEF-456", VehicleType.CAR, "Emily Brown", checkIn.plusMinutes(1))
+        );
+
+        // Mock
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot()));
+        when(parkingRecordRepository.findVehiclesInLot("LOT1", Limit.of(10))).thenReturn(vehicles);
+
+        // When
+        VehiclesInLotPageDto page = parkingLotService.getVehiclesInLot("LOT1", null, 10);
 
-        Vehicle vehicle1 = new Vehicle();
-        vehicle1.setLicensePlate("ABC-123");
-        vehicle1.setType(VehicleType.CAR);
-        vehicle1.setOwnerName("John Doe");
+        // Then
+        assertEquals(2, page.vehicles().size());
+        assertEquals("ABC-123", page.vehicles().get(0).licensePlate());
+        assertEquals("DEF-456", page.vehicles().get(1).licensePlate());
+        assertNull(page.nextCursor()); // fewer rows than the limit means this is the last page
+    }
 
-        Vehicle vehicle2 = new Vehicle();
-        vehicle2.setLicensePlate("DEF-456");
-        vehicle2.setType(VehicleType.CAR);
-        vehicle2.setOwnerName("Emily Brown");
+    @Test
+    void getVehiclesInLot_shouldReturnCursor_whenPageIsFull() {
+        // Given
+        LocalDateTime checkIn = LocalDateTime.of(2025, 11, 8, 9, 28, 44);
+        List<VehiclesInLotDto> vehicles = List.of(
+                new VehiclesInLotDto("ABC-123", VehicleType.CAR, "John Doe", checkIn)
+        );
 
-        ParkingRecord activeRecord1 = new ParkingRecord();
-        activeRecord1.setVehicle(vehicle1);
-        activeRecord1.setCheckInTime(LocalDateTime.now());
+        // Mock
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot()));
+        when(parkingRecordRepository.findVehiclesInLot("LOT1", Limit.of(1))).thenReturn(vehicles);
 
-        ParkingRecord activeRecord2 = new ParkingRecord();
-        activeRecord2.setVehicle(vehicle2);
-        activeRecord2.setCheckInTime(LocalDateTime.now());
+        // When
+        VehiclesInLotPageDto page = parkingLotService.getVehiclesInLot("LOT1", null, 1);
 
-        List<ParkingRecord> records = new ArrayList<>();
-        records.add(activeRecord1);
-        records.add(activeRecord2);
-        lot.setParkingRecords(records);
+        // Then
+        assertEquals("2025-11-08T09:28:44,ABC-123", page.nextCursor());
+    }
+
+    @Test
+    void getVehiclesInLot_shouldContinueAfterCursor() {
+        // Given
+        LocalDateTime checkIn = LocalDateTime.of(2025, 11, 8, 9, 28, 44);
+        List<VehiclesInLotDto> vehicles = List.of(
+                new VehiclesInLotDto("DEF-456", VehicleType.CAR, "Emily Brown", checkIn)
+        );
 
         // Mock
-        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot()));
+        when(parkingRecordRepository.findVehiclesInLotAfter("LOT1", checkIn, "ABC-123", Limit.of(10)))
+                .thenReturn(vehicles);
+
+        // When
+        VehiclesInLotPageDto page = parkingLotService.getVehiclesInLot("LOT1", "2025-11-08T09:28:44,ABC-123", 10);
+
+        // Then
+        assertEquals(vehicles, page.vehicles());
+        verify(parkingRecordRepository, never()).findVehiclesInLot(any(), any());
+    }
+
+    @Test
+    void getVehiclesInLot_shouldThrowException_whenCursorIsInvalid() {
+        // Mock
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot()));
+
+        // When
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> parkingLotService.getVehiclesInLot("LOT1", "not-a-cursor", 10));
+
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        assertEquals("Invalid cursor", exception.getReason());
+    }
+
+    @Test
+    void getVehiclesInLot_shouldThrowException_whenLimitOutOfRange() {
+        // When
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> parkingLotService.getVehiclesInLot("LOT1", null, 0));
+
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        verifyNoInteractions(parkingRecordRepository);
+    }
+
+    @Test
+    void getVehiclesInLot_shouldQueryOnce_forConcurrentCallsForSamePage() throws Exception {
+        // Given
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<VehiclesInLotDto> vehicles = List.of(
+                new VehiclesInLotDto("ABC-123", VehicleType.CAR, "John Doe", LocalDateTime.of(2025, 11, 8, 9, 28, 44)));
+
+        // Mock
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot()));
+        when(parkingRecordRepository.findVehiclesInLot("LOT1", Limit.of(10))).thenAnswer(invocation -> {
+            entered.countDown();
+            SingleFlightTest.await(release);
+            return vehicles;
+        });
 
         // When
-        List<VehiclesInLotDto> vehicles = parkingLotService.getVehiclesInLot("LOT1");
+        List<VehiclesInLotPageDto> pages = SingleFlightTest.executeConcurrently(
+                () -> parkingLotService.getVehiclesInLot("LOT1", null, 10), entered, release);
 
         // Then
-        assertEquals(2, vehicles.size());
-        assertEquals("ABC-123", vehicles.get(0).licensePlate());
-        assertEquals("DEF-456", vehicles.get(1).licensePlate());
+        pages.forEach(page -> assertEquals(vehicles, page.vehicles()));
+        verify(parkingRecordRepository, times(1)).findVehiclesInLot("LOT1", Limit.of(10));
+    }
+
+    @Test
+    void getVehiclesInLot_shouldQueryEachPage_whenCallsDiffer() {
+        // Mock
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot()));
+
+        // When
+        parkingLotService.getVehiclesInLot("LOT1", null, 10);
+        parkingLotService.getVehiclesInLot("LOT1", null, 20);
+        parkingLotService.getVehiclesInLot("LOT1", null, 10);
+
+        // Then: nothing is kept once a query has finished
+        verify(parkingRecordRepository, times(2)).findVehiclesInLot("LOT1", Limit.of(10));
+        verify(parkingRecordRepository).findVehiclesInLot("LOT1", Limit.of(20));
     }
 
     @Test
@@ -184,10 +638,36 @@ class ParkingLotServiceTest {
 
         // When
         ResponseStatusException exception = assertThrows(ResponseStatusException.class,
-                () -> parkingLotService.getVehiclesInLot("LOT1"));
+                () -> parkingLotService.getVehiclesInLot("LOT1", null, 10));
 
         // Then
         assertEquals("Parking lot not found", exception.getReason());
     }
 
-}
\ No newline at end of file
+    // =======================
+    // Tests for streamVehiclesInLot()
+    // =======================
+    @Test
+    void streamVehiclesInLot_shouldPassEveryRowToConsumer_andCloseStream() {
+        // Given
+        LocalDateTime checkIn = LocalDateTime.now();
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<VehiclesInLotDto> rows = Stream.of(
+                new VehiclesInLotDto("ABC-123", VehicleType.CAR, "John Doe", checkIn),
+                new VehiclesInLotDto("DEF-456", VehicleType.CAR, "Emily Brown", checkIn)
+        ).onClose(() -> closed.set(true));
+
+        // Mock
+        when(parkingRecordRepository.streamVehiclesInLot("LOT1")).thenReturn(rows);
+
+        // When
+        List<VehiclesInLotDto> received = new ArrayList<>();
+        parkingLotService.streamVehiclesInLot("LOT1", received::add);
+
+        // Then
+        assertEquals(2, received.size());
+        assertEquals("DEF-456", received.get(1).licensePlate());
+        assertTrue(closed.get());
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.service.ParkingMetrics.Rejection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ParkingMetricsTest {
+
+    private ParkingLotRepository parkingLotRepository;
+    private LotOccupancyTracker lotOccupancyTracker;
+    private MeterRegistry meterRegistry;
+    private ParkingMetrics parkingMetrics;
+
+    @BeforeEach
+    void setUp() {
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        lotOccupancyTracker = new LotOccupancyTracker(parkingLotRepository, Optional.empty());
+        meterRegistry = new SimpleMeterRegistry();
+        parkingMetrics = new ParkingMetrics(meterRegistry, lotOccupancyTracker, parkingLotRepository);
+    }
+
+    private ParkingLot lot(String lotId, int capacity) {
+        ParkingLot lot = ParkingLot.builder().lotId(lotId).location("Main Street").capacity(capacity).build();
+        when(parkingLotRepository.findById(lotId)).thenReturn(Optional.of(lot));
+        return lot;
+    }
+
+    // =======================
+    // Tests for countRejection()
+    // =======================
+    @Test
+    void countRejection_shouldIncrementCounterOfThatReasonOnly() {
+        // When
+        parkingMetrics.countRejection(Rejection.LOT_FULL);
+        parkingMetrics.countRejection(Rejection.LOT_FULL);
+
+        // Then
+        assertEquals(2.0, meterRegistry.get("smartpark.parking.rejections").tag("reason", "lot_full").counter().count());
+        assertEquals(0.0, meterRegistry.get("smartpark.parking.rejections").tag("reason", "not_checked_in").counter().count());
+    }
+
+    // =======================
+    // Tests for registerLot()
+    // =======================
+    @Test
+    void registerLot_shouldExposeOccupiedAndAvailableSpaces() {
+        // Given
+        lot("LOT1", 10);
+        parkingMetrics.registerLot("LOT1", 10);
+
+        // When
+        lotOccupancyTracker.tryReserve("LOT1");
+        lotOccupancyTracker.tryReserve("LOT1");
+
+        // Then
+        assertEquals(2.0, meterRegistry.get("smartpark.lot.occupied.spaces").tag("lot", "LOT1").gauge().value());
+        assertEquals(8.0, meterRegistry.get("smartpark.lot.available.spaces").tag("lot", "LOT1").gauge().value());
+    }
+
+    // =======================
+    // Tests for registerExistingLots()
+    // =======================
+    @Test
+    void registerExistingLots_shouldRegisterGaugesForEveryLot() {
+        // Given
+        List<ParkingLot> lots = List.of(lot("LOT1", 10), lot("LOT2", 5));
+        when(parkingLotRepository.findAll()).thenReturn(lots);
+
+        // When
+        parkingMetrics.registerExistingLots();
+
+        // Then
+        assertEquals(2, meterRegistry.get("smartpark.lot.occupied.spaces").gauges().size());
+        assertEquals(5.0, meterRegistry.get("smartpark.lot.available.spaces").tag("lot", "LOT2").gauge().value());
+    }
+}
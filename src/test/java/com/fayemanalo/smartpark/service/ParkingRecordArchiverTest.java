@@ -0,0 +1,71 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.repository.ParkingRecordHistoryRepository;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ParkingRecordArchiverTest {
+
+    private ParkingRecordRepository parkingRecordRepository;
+    private ParkingRecordHistoryRepository parkingRecordHistoryRepository;
+    private PlatformTransactionManager transactionManager;
+    private ParkingRecordArchiver archiver;
+
+    @BeforeEach
+    void setUp() {
+        parkingRecordRepository = mock(ParkingRecordRepository.class);
+        parkingRecordHistoryRepository = mock(ParkingRecordHistoryRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        archiver = new ParkingRecordArchiver(parkingRecordRepository, parkingRecordHistoryRepository,
+                transactionManager, Duration.ofDays(30), 2);
+    }
+
+    @Test
+    void archive_shouldMoveChunksInSeparateTransactions_untilChunkIsNotFull() {
+        // Given
+        when(parkingRecordRepository.findIdsCheckedOutBefore(any(), eq(Limit.of(2))))
+                .thenReturn(List.of(1L, 2L))
+                .thenReturn(List.of(3L));
+
+        // When
+        int archived = archiver.archive();
+
+        // Then
+        assertEquals(3, archived);
+        verify(parkingRecordHistoryRepository).copyFromParkingRecords(List.of(1L, 2L));
+        verify(parkingRecordRepository).deleteAllByIdIn(List.of(1L, 2L));
+        verify(parkingRecordHistoryRepository).copyFromParkingRecords(List.of(3L));
+        verify(parkingRecordRepository).deleteAllByIdIn(List.of(3L));
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void archive_shouldUseRetentionForCutoff_andDoNothing_whenNoRecordsQualify() {
+        // Given
+        when(parkingRecordRepository.findIdsCheckedOutBefore(any(), any())).thenReturn(List.of());
+        LocalDateTime before = LocalDateTime.now();
+
+        // When
+        int archived = archiver.archive();
+
+        // Then
+        assertEquals(0, archived);
+        verify(parkingRecordRepository).findIdsCheckedOutBefore(
+                argThat(cutoff -> !cutoff.isBefore(before.minusDays(30))), eq(Limit.of(2)));
+        verifyNoInteractions(parkingRecordHistoryRepository);
+        verify(parkingRecordRepository, never()).deleteAllByIdIn(any());
+    }
+}
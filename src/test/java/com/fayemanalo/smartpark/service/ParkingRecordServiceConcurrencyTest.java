@@ -0,0 +1,98 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.BatchOperationDto;
+import com.fayemanalo.smartpark.dto.BatchOperationType;
+import com.fayemanalo.smartpark.dto.BatchResultDto;
+import com.fayemanalo.smartpark.dto.ParkingLotDto;
+import com.fayemanalo.smartpark.dto.ReservationRequestDto;
+import com.fayemanalo.smartpark.dto.VehicleDto;
+import com.fayemanalo.smartpark.model.VehicleType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs concurrent batches into one lot with reservations while the database decides whether it is full, so
+ * each batch transaction keeps the lot row locked from its first check-in until it commits.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:batch-pessimistic;LOCK_TIMEOUT=5000",
+        "smartpark.occupancy.concurrency-mode=pessimistic"
+})
+class ParkingRecordServiceConcurrencyTest {
+
+    private static final int BATCHES = 8;
+    private static final int CHECK_INS_PER_BATCH = 4;
+
+    @Autowired
+    private ParkingRecordService parkingRecordService;
+
+    @Autowired
+    private ParkingLotService parkingLotService;
+
+    @Autowired
+    private VehicleService vehicleService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void processBatch_shouldNotDeadlock_whenPessimisticBatchesShareALotWithReservations() throws Exception {
+        // Given: one space of the lot is booked for tomorrow, so check-ins consult its reservations
+        parkingLotService.save(new ParkingLotDto("LOT1", "Main Street", null, null, 100, 0, null));
+        vehicleService.save(new VehicleDto("BOOKED-1", VehicleType.CAR, "John Doe"));
+        LocalDateTime tomorrow = LocalDateTime.now().plusDays(1);
+        reservationService.book(new ReservationRequestDto("BOOKED-1", "LOT1", tomorrow, tomorrow.plusHours(2)));
+
+        List<List<BatchOperationDto>> batches = new ArrayList<>();
+        for (int batch = 0; batch < BATCHES; batch++) {
+            List<BatchOperationDto> operations = new ArrayList<>();
+            for (int i = 0; i < CHECK_INS_PER_BATCH; i++) {
+                String plate = "GATE-" + batch + "-" + i;
+                vehicleService.save(new VehicleDto(plate, VehicleType.CAR, "John Doe"));
+                operations.add(new BatchOperationDto(BatchOperationType.CHECK_IN, plate, "LOT1"));
+            }
+            batches.add(operations);
+        }
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(BATCHES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<BatchResultDto> results = new ArrayList<>();
+        try {
+            List<Future<List<BatchResultDto>>> futures = new ArrayList<>();
+            for (List<BatchOperationDto> operations : batches) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return parkingRecordService.processBatch(operations);
+                }));
+            }
+            start.countDown();
+            for (Future<List<BatchResultDto>> future : futures) {
+                results.addAll(future.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then
+        results.forEach(result -> assertEquals(201, result.status(), result.message()));
+        assertEquals(BATCHES * CHECK_INS_PER_BATCH, jdbcTemplate.queryForObject(
+                "select occupied_spaces from parking_lot where lot_id = 'LOT1'", Integer.class));
+    }
+}
@@ -1,20 +1,36 @@
 package com.fayemanalo.smartpark.service;
 
+import com.fayemanalo.smartpark.dto.BatchOperationDto;
+import com.fayemanalo.smartpark.dto.BatchOperationType;
+import com.fayemanalo.smartpark.dto.BatchResultDto;
 import com.fayemanalo.smartpark.dto.CheckInDto;
 import com.fayemanalo.smartpark.dto.CheckOutDto;
 import com.fayemanalo.smartpark.dto.ParkingRecordDto;
 import com.fayemanalo.smartpark.mapper.ParkingRecordMapper;
+import com.fayemanalo.smartpark.mapper.ReservationMapper;
+import com.fayemanalo.smartpark.model.ActiveSession;
+import com.fayemanalo.smartpark.model.CapacityPool;
+import com.fayemanalo.smartpark.model.JournalEvent;
 import com.fayemanalo.smartpark.model.ParkingLot;
 import com.fayemanalo.smartpark.model.ParkingRecord;
 import com.fayemanalo.smartpark.model.Vehicle;
+import com.fayemanalo.smartpark.model.VehicleType;
 import com.fayemanalo.smartpark.repository.ParkingLotRepository;
 import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
+import com.fayemanalo.smartpark.repository.ReservationRepository;
 import com.fayemanalo.smartpark.repository.VehicleRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -27,6 +43,12 @@ class ParkingRecordServiceTest {
     private VehicleRepository vehicleRepository;
     private ParkingLotRepository parkingLotRepository;
     private ParkingRecordMapper parkingRecordMapper;
+    private LotOccupancyTracker lotOccupancyTracker;
+    private ActiveSessionIndex activeSessionIndex;
+    private MeterRegistry meterRegistry;
+    private OccupancyRollupService occupancyRollupService;
+    private TariffService tariffService;
+    private ReservationService reservationService;
 
     private ParkingRecordService service;
 
@@ -37,12 +59,36 @@ class ParkingRecordServiceTest {
         vehicleRepository = mock(VehicleRepository.class);
         parkingLotRepository = mock(ParkingLotRepository.class);
         parkingRecordMapper = mock(ParkingRecordMapper.class);
+        lotOccupancyTracker = new LotOccupancyTracker(parkingLotRepository, Optional.empty());
+        activeSessionIndex = new ActiveSessionIndex(parkingRecordRepository, Optional.empty());
+        meterRegistry = new SimpleMeterRegistry();
+        occupancyRollupService = mock(OccupancyRollupService.class);
+        // A flat 2.00 per hour, without a cap
+        tariffService = new TariffService(new TariffProperties(List.of(
+                new TariffProperties.Entry(null, null, "00:00=2.00", null))));
+        service = newService();
+    }
+
+    private ParkingRecordService newService() {
+        // No reservations, so check-in only depends on the occupancy counter
+        reservationService = new ReservationService(mock(ReservationRepository.class), vehicleRepository,
+                parkingLotRepository, new ReservationMapper(),
+                new ReferenceDataCache(vehicleRepository, parkingLotRepository, 1000, Duration.ofMinutes(10)),
+                lotOccupancyTracker, Duration.ofMinutes(15), Duration.ofDays(30));
 
-        service = new ParkingRecordService(
+        return new ParkingRecordService(
                 parkingRecordRepository,
                 vehicleRepository,
                 parkingLotRepository,
-                parkingRecordMapper
+                parkingRecordMapper,
+                lotOccupancyTracker,
+                activeSessionIndex,
+                new ReferenceDataCache(vehicleRepository, parkingLotRepository, 1000, Duration.ofMinutes(10)),
+                new ParkingMetrics(meterRegistry, lotOccupancyTracker, parkingLotRepository),
+                occupancyRollupService,
+                tariffService,
+                reservationService,
+                Optional.empty()
         );
     }
 
@@ -71,13 +117,14 @@ class ParkingRecordServiceTest {
         // Mock repository lookups and mapper
         when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.of(vehicle));
         when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
-        when(parkingRecordRepository.findByVehicleAndCheckOutTimeIsNull(vehicle)).thenReturn(Optional.empty());
 
+        savedRecord.setId(1L);
         when(parkingRecordRepository.save(any(ParkingRecord.class))).thenReturn(savedRecord);
         when(parkingRecordMapper.toDto(savedRecord)).thenReturn(new ParkingRecordDto(
                 "ABC-123",
                 "LOT1",
                 savedRecord.getCheckInTime(),
+                null,
                 null
         ));
 
@@ -88,11 +135,20 @@ class ParkingRecordServiceTest {
         assertEquals("ABC-123", result.licensePlate());
         assertEquals("LOT1", result.lotId());
         assertNull(result.checkOutTime());
-        assertEquals(1, lot.getOccupiedSpaces());
+        assertEquals(1, lotOccupancyTracker.getOccupiedSpaces("LOT1"));
 
-        verify(parkingLotRepository).save(lot);
+        // Occupancy is persisted asynchronously by the tracker, not by the check-in itself
+        verify(parkingLotRepository, never()).save(any());
         verify(parkingRecordRepository).save(any(ParkingRecord.class));
 
+        // The vehicle is now in the active-session index with its record ID
+        ActiveSession session = activeSessionIndex.find("ABC-123").orElseThrow();
+        assertEquals("LOT1", session.lotId());
+        assertEquals(1L, session.recordId());
+
+        // The check-in is counted in the hourly rollup with the new occupancy
+        verify(occupancyRollupService).recordCheckIn("LOT1", session.checkInTime(), 1);
+
     }
 
     @Test
@@ -144,19 +200,17 @@ class ParkingRecordServiceTest {
         ParkingLot lot = new ParkingLot();
         lot.setLotId("LOT1");
 
-        ParkingRecord activeRecord = new ParkingRecord();
-        activeRecord.setVehicle(vehicle);
-        activeRecord.setParkingLot(lot);
+        activeSessionIndex.claim(new ActiveSession("ABC-123", "LOT1", LocalDateTime.now(), 1L));
 
         // Mock
         when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.of(vehicle));
         when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
-        when(parkingRecordRepository.findByVehicleAndCheckOutTimeIsNull(vehicle)).thenReturn(Optional.of(activeRecord));
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class,
                 () -> service.checkIn(dto));
 
         assertEquals("Vehicle is already checked in this parking lot", exception.getReason());
+        assertEquals(1.0, meterRegistry.get("smartpark.parking.rejections").tag("reason", "already_checked_in").counter().count());
     }
 
     @Test
@@ -174,15 +228,13 @@ class ParkingRecordServiceTest {
         ParkingLot newLot = new ParkingLot();
         newLot.setLotId("LOT2");
 
-        ParkingRecord activeRecord = new ParkingRecord();
-        activeRecord.setVehicle(vehicle);
-        activeRecord.setParkingLot(currentLot);
+        // Given: vehicle is checked in another lot
+        activeSessionIndex.claim(new ActiveSession("ABC-123", "LOT1", LocalDateTime.now(), 1L));
 
-        // Mock: vehicle is checked in another lot
+        // Mock
         when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.of(vehicle));
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(currentLot));
         when(parkingLotRepository.findById("LOT2")).thenReturn(Optional.of(newLot));
-        when(parkingRecordRepository.findByVehicleAndCheckOutTimeIsNull(vehicle))
-                .thenReturn(Optional.of(activeRecord));
 
         // When
         ResponseStatusException exception = assertThrows(ResponseStatusException.class,
@@ -208,7 +260,6 @@ class ParkingRecordServiceTest {
         // Mock: vehicle exists, lot exists, no active record
         when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.of(vehicle));
         when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
-        when(parkingRecordRepository.findByVehicleAndCheckOutTimeIsNull(vehicle)).thenReturn(Optional.empty());
 
         // When
         ResponseStatusException exception = assertThrows(ResponseStatusException.class,
@@ -216,10 +267,68 @@ class ParkingRecordServiceTest {
 
         // Then
         assertEquals("Parking lot is full", exception.getReason());
+        assertEquals(1.0, meterRegistry.get("smartpark.parking.rejections").tag("reason", "lot_full").counter().count());
 
-        // Verify that no records were saved
+        // Verify that no records were saved and the vehicle is not left in the index
         verify(parkingRecordRepository, never()).save(any());
         verify(parkingLotRepository, never()).save(any());
+        assertTrue(activeSessionIndex.find("ABC-123").isEmpty());
+    }
+
+    @Test
+    void processBatch_shouldReportBusyLot_andNotLeaveVehicleInIndex() {
+        // Given: the database keeps rejecting optimistic check-ins
+        LotCapacityGuard capacityGuard = mock(LotCapacityGuard.class);
+        lotOccupancyTracker = new LotOccupancyTracker(parkingLotRepository, Optional.of(capacityGuard));
+        service = newService();
+
+        when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.of(
+                Vehicle.builder().licensePlate("ABC-123").type(VehicleType.CAR).build()));
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(
+                ParkingLot.builder().lotId("LOT1").capacity(10).build()));
+        when(capacityGuard.tryTake("LOT1", null, 10))
+                .thenThrow(new ResponseStatusException(HttpStatus.CONFLICT, "Parking lot is busy, please try again"));
+
+        // When
+        List<BatchResultDto> results = service.processBatch(List.of(
+                new BatchOperationDto(BatchOperationType.CHECK_IN, "ABC-123", "LOT1")));
+
+        // Then
+        assertEquals(409, results.get(0).status());
+        assertTrue(activeSessionIndex.find("ABC-123").isEmpty());
+        assertEquals(0, lotOccupancyTracker.getOccupiedSpaces("LOT1"));
+        verify(parkingRecordRepository, never()).save(any());
+    }
+
+    @Test
+    void checkIn_shouldUseTheVehicleTypesPool_whenSharedSpacesAreFull() {
+        // Given: the shared space is taken, the truck bay is free
+        CheckInDto dto = new CheckInDto("TRK-001", "LOT1");
+
+        Vehicle truck = Vehicle.builder().licensePlate("TRK-001").type(VehicleType.TRUCK).build();
+        Vehicle car = Vehicle.builder().licensePlate("CAR-001").type(VehicleType.CAR).build();
+
+        ParkingLot lot = ParkingLot.builder().lotId("LOT1").capacity(2).occupiedSpaces(1).build();
+        lot.getCapacityPools().put(VehicleType.TRUCK, new CapacityPool(1, 0));
+
+        when(vehicleRepository.findById("TRK-001")).thenReturn(Optional.of(truck));
+        when(vehicleRepository.findById("CAR-001")).thenReturn(Optional.of(car));
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
+        when(parkingRecordRepository.save(any(ParkingRecord.class))).thenAnswer(invocation -> {
+            ParkingRecord record = invocation.getArgument(0);
+            record.setId(1L);
+            return record;
+        });
+
+        // When
+        service.checkIn(dto);
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> service.checkIn(new CheckInDto("CAR-001", "LOT1")));
+
+        // Then
+        assertEquals("Parking lot is full", exception.getReason());
+        assertEquals(1, lotOccupancyTracker.getPoolOccupancy("LOT1", VehicleType.TRUCK).occupiedSpaces());
+        assertEquals(2, lotOccupancyTracker.getOccupiedSpaces("LOT1"));
     }
 
     // =======================
@@ -250,14 +359,15 @@ class ParkingRecordServiceTest {
                 .checkOutTime(LocalDateTime.now())
                 .build();
 
+        activeSessionIndex.claim(new ActiveSession("ABC-123", "LOT1", activeRecord.getCheckInTime(), 1L));
+
         // Mock repository calls
         when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.of(vehicle));
         when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
-        when(parkingRecordRepository.findByVehicleAndParkingLotAndCheckOutTimeIsNull(vehicle, lot))
-                .thenReturn(Optional.of(activeRecord));
+        when(parkingRecordRepository.findById(1L)).thenReturn(Optional.of(activeRecord));
         when(parkingRecordRepository.save(activeRecord)).thenReturn(savedRecord);
         when(parkingRecordMapper.toDto(savedRecord)).thenReturn(new ParkingRecordDto(
-                "ABC-123", "LOT1", savedRecord.getCheckInTime(), savedRecord.getCheckOutTime()
+                "ABC-123", "LOT1", savedRecord.getCheckInTime(), savedRecord.getCheckOutTime(), null
         ));
 
         // When
@@ -267,10 +377,48 @@ class ParkingRecordServiceTest {
         assertEquals("ABC-123", result.licensePlate());
         assertEquals("LOT1", result.lotId());
         assertNotNull(result.checkOutTime());
-        assertEquals(0, lot.getOccupiedSpaces()); // verify occupied spaces decreased
+        assertEquals(0, lotOccupancyTracker.getOccupiedSpaces("LOT1")); // verify occupied spaces decreased
 
-        verify(parkingLotRepository).save(lot);
+        verify(parkingLotRepository, never()).save(any());
         verify(parkingRecordRepository).save(activeRecord);
+        assertTrue(activeSessionIndex.find("ABC-123").isEmpty());
+        // Two hours (and the started minute the test takes) at 2.00 per hour
+        assertTrue(activeRecord.getFee().compareTo(new BigDecimal("4.00")) >= 0);
+        assertTrue(activeRecord.getFee().compareTo(new BigDecimal("4.04")) <= 0);
+        verify(occupancyRollupService).recordCheckOut("LOT1", activeRecord.getCheckInTime(),
+                activeRecord.getCheckOutTime(), 0);
+    }
+
+    @Test
+    void checkOut_shouldUseTheOpenRecordOfTheVehicle_whenTheSessionsRecordIdIsStale() {
+        // Given: the session carries a journal sequence number that is the ID of another vehicle's record
+        Vehicle vehicle = Vehicle.builder().licensePlate("ABC-123").type(VehicleType.CAR).build();
+        Vehicle other = Vehicle.builder().licensePlate("XYZ-789").type(VehicleType.CAR).build();
+        ParkingLot lot = ParkingLot.builder().lotId("LOT1").capacity(10).occupiedSpaces(1).build();
+        LocalDateTime checkInTime = LocalDateTime.now().minusHours(1);
+        ParkingRecord unrelated = ParkingRecord.builder().id(7L).vehicle(other).parkingLot(lot)
+                .checkInTime(checkInTime.minusDays(1)).checkOutTime(checkInTime.minusHours(20)).build();
+        ParkingRecord open = ParkingRecord.builder().id(12L).vehicle(vehicle).parkingLot(lot)
+                .checkInTime(checkInTime).build();
+        activeSessionIndex.claim(new ActiveSession("ABC-123", "LOT1", checkInTime, 7L));
+
+        when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.of(vehicle));
+        when(vehicleRepository.getReferenceById("ABC-123")).thenReturn(vehicle);
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
+        when(parkingLotRepository.getReferenceById("LOT1")).thenReturn(lot);
+        when(parkingRecordRepository.findById(7L)).thenReturn(Optional.of(unrelated));
+        when(parkingRecordRepository.findByVehicleAndParkingLotAndCheckOutTimeIsNull(vehicle, lot))
+                .thenReturn(Optional.of(open));
+        when(parkingRecordRepository.save(open)).thenReturn(open);
+
+        // When
+        service.checkOut(new CheckOutDto("ABC-123", "LOT1"));
+
+        // Then
+        assertNotNull(open.getCheckOutTime());
+        assertEquals(checkInTime.minusHours(20), unrelated.getCheckOutTime());
+        assertNull(unrelated.getFee());
+        verify(parkingRecordRepository, never()).save(unrelated);
     }
 
     @Test
@@ -289,7 +437,7 @@ class ParkingRecordServiceTest {
         assertEquals("Vehicle not found", exception.getReason());
 
         verify(parkingLotRepository, never()).findById(any());
-        verify(parkingRecordRepository, never()).findByVehicleAndParkingLotAndCheckOutTimeIsNull(any(), any());
+        verify(parkingRecordRepository, never()).findById(any());
     }
 
     @Test
@@ -310,7 +458,7 @@ class ParkingRecordServiceTest {
         // Then
         assertEquals("Parking lot not found", exception.getReason());
 
-        verify(parkingRecordRepository, never()).findByVehicleAndParkingLotAndCheckOutTimeIsNull(any(), any());
+        verify(parkingRecordRepository, never()).findById(any());
     }
 
     @Test
@@ -326,8 +474,6 @@ class ParkingRecordServiceTest {
 
         when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.of(vehicle));
         when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
-        when(parkingRecordRepository.findByVehicleAndParkingLotAndCheckOutTimeIsNull(vehicle, lot))
-                .thenReturn(Optional.empty());
 
         // When
         ResponseStatusException exception = assertThrows(ResponseStatusException.class,
@@ -337,4 +483,179 @@ class ParkingRecordServiceTest {
         assertEquals("Vehicle is not currently checked in this parking lot", exception.getReason());
     }
 
-}
\ No newline at end of file
+    @Test
+    void checkOut_shouldThrowException_whenVehicleCheckedInDifferentLot() {
+        // Given
+        CheckOutDto dto = new CheckOutDto("ABC-123", "LOT1");
+
+        Vehicle vehicle = new Vehicle();
+        vehicle.setLicensePlate("ABC-123");
+
+        ParkingLot lot = new ParkingLot();
+        lot.setLotId("LOT1");
+
+        activeSessionIndex.claim(new ActiveSession("ABC-123", "LOT2", LocalDateTime.now(), 1L));
+
+        when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.of(vehicle));
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
+
+        // When
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> service.checkOut(dto));
+
+        // Then
+        assertEquals("Vehicle is not currently checked in this parking lot", exception.getReason());
+        assertTrue(activeSessionIndex.find("ABC-123").isPresent());
+        verify(parkingRecordRepository, never()).save(any());
+    }
+
+    // =======================
+    // Tests for processBatch()
+    // =======================
+    @Test
+    void processBatch_shouldReportResultPerOperation_andContinueAfterRejection() {
+        // Given
+        Vehicle vehicle = new Vehicle();
+        vehicle.setLicensePlate("ABC-123");
+
+        ParkingLot lot = new ParkingLot();
+        lot.setLotId("LOT1");
+        lot.setCapacity(10);
+
+        when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.of(vehicle));
+        when(vehicleRepository.findById("NOPE-1")).thenReturn(Optional.empty());
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
+        when(parkingRecordRepository.save(any(ParkingRecord.class))).thenAnswer(invocation -> {
+            ParkingRecord record = invocation.getArgument(0);
+            if (record.getId() == null) {
+                record.setId(1L);
+            }
+            return record;
+        });
+        when(parkingRecordRepository.findById(1L)).thenAnswer(invocation -> Optional.of(ParkingRecord.builder()
+                .id(1L)
+                .vehicle(vehicle)
+                .parkingLot(lot)
+                .checkInTime(LocalDateTime.now())
+                .build()));
+        when(parkingRecordMapper.toDto(any(ParkingRecord.class))).thenAnswer(invocation -> {
+            ParkingRecord record = invocation.getArgument(0);
+            return new ParkingRecordDto("ABC-123", "LOT1", record.getCheckInTime(), record.getCheckOutTime(), record.getFee());
+        });
+
+        List<BatchOperationDto> operations = List.of(
+                new BatchOperationDto(BatchOperationType.CHECK_IN, "ABC-123", "LOT1"),
+                new BatchOperationDto(BatchOperationType.CHECK_IN, "NOPE-1", "LOT1"),
+                new BatchOperationDto(BatchOperationType.CHECK_OUT, "ABC-123", "LOT1")
+        );
+
+        // When
+        List<BatchResultDto> results = service.processBatch(operations);
+
+        // Then
+        assertEquals(3, results.size());
+
+        assertEquals(201, results.get(0).status());
+        assertNotNull(results.get(0).record());
+
+        assertEquals(1, results.get(1).index());
+        assertEquals(404, results.get(1).status());
+        assertEquals("Vehicle not found", results.get(1).message());
+        assertNull(results.get(1).record());
+
+        assertEquals(BatchOperationType.CHECK_OUT, results.get(2).operation());
+        assertEquals(200, results.get(2).status());
+        assertNotNull(results.get(2).record().checkOutTime());
+
+        assertEquals(0, lotOccupancyTracker.getOccupiedSpaces("LOT1"));
+        assertTrue(activeSessionIndex.find("ABC-123").isEmpty());
+    }
+
+    // =======================
+    // Tests for journal mode
+    // =======================
+    private ParkingRecordService journalService(EventJournal eventJournal) {
+        return new ParkingRecordService(
+                parkingRecordRepository,
+                vehicleRepository,
+                parkingLotRepository,
+                parkingRecordMapper,
+                lotOccupancyTracker,
+                activeSessionIndex,
+                new ReferenceDataCache(vehicleRepository, parkingLotRepository, 1000, Duration.ofMinutes(10)),
+                new ParkingMetrics(meterRegistry, lotOccupancyTracker, parkingLotRepository),
+                occupancyRollupService,
+                tariffService,
+                reservationService,
+                Optional.of(eventJournal)
+        );
+    }
+
+    @Test
+    void checkIn_shouldAppendToJournal_insteadOfSavingRecord_whenJournalEnabled() {
+        // Given
+        Vehicle vehicle = new Vehicle();
+        vehicle.setLicensePlate("ABC-123");
+
+        ParkingLot lot = new ParkingLot();
+        lot.setLotId("LOT1");
+        lot.setCapacity(2);
+
+        when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.of(vehicle));
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
+
+        EventJournal eventJournal = mock(EventJournal.class);
+        when(eventJournal.append(any(JournalEvent.class))).thenReturn(42L);
+
+        // When
+        ParkingRecordDto result = journalService(eventJournal).checkIn(new CheckInDto("ABC-123", "LOT1"));
+
+        // Then
+        ArgumentCaptor<JournalEvent> event = ArgumentCaptor.forClass(JournalEvent.class);
+        verify(eventJournal).append(event.capture());
+        assertEquals(JournalEvent.Type.CHECK_IN, event.getValue().type());
+        assertEquals("ABC-123", event.getValue().licensePlate());
+        assertEquals(result.checkInTime(), event.getValue().time());
+
+        verify(parkingRecordRepository, never()).save(any());
+        assertEquals(1, lotOccupancyTracker.getOccupiedSpaces("LOT1"));
+
+        // The session is marked as recorded, so it can be checked out before the journal is drained
+        assertEquals(42L, activeSessionIndex.find("ABC-123").orElseThrow().recordId());
+    }
+
+    @Test
+    void checkOut_shouldAppendToJournal_insteadOfUpdatingRecord_whenJournalEnabled() {
+        // Given
+        Vehicle vehicle = new Vehicle();
+        vehicle.setLicensePlate("ABC-123");
+
+        ParkingLot lot = new ParkingLot();
+        lot.setLotId("LOT1");
+        lot.setCapacity(2);
+
+        when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.of(vehicle));
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
+
+        EventJournal eventJournal = mock(EventJournal.class);
+        when(eventJournal.append(any(JournalEvent.class))).thenReturn(1L, 2L);
+        ParkingRecordService service = journalService(eventJournal);
+        ParkingRecordDto checkIn = service.checkIn(new CheckInDto("ABC-123", "LOT1"));
+
+        // When
+        ParkingRecordDto result = service.checkOut(new CheckOutDto("ABC-123", "LOT1"));
+
+        // Then
+        ArgumentCaptor<JournalEvent> events = ArgumentCaptor.forClass(JournalEvent.class);
+        verify(eventJournal, times(2)).append(events.capture());
+        assertEquals(JournalEvent.Type.CHECK_OUT, events.getValue().type());
+        assertEquals(result.checkOutTime(), events.getValue().time());
+        assertEquals(checkIn.checkInTime(), result.checkInTime());
+        // One started minute at 2.00 per hour
+        assertEquals(new BigDecimal("0.03"), result.fee());
+
+        verifyNoInteractions(parkingRecordRepository);
+        assertEquals(0, lotOccupancyTracker.getOccupiedSpaces("LOT1"));
+        assertTrue(activeSessionIndex.find("ABC-123").isEmpty());
+    }
+}
@@ -0,0 +1,120 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.CacheStatsDto;
+import com.fayemanalo.smartpark.model.LotInfo;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.Vehicle;
+import com.fayemanalo.smartpark.model.VehicleInfo;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.repository.VehicleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReferenceDataCacheTest {
+
+    private VehicleRepository vehicleRepository;
+    private ParkingLotRepository parkingLotRepository;
+    private ReferenceDataCache cache;
+
+    @BeforeEach
+    void setUp() {
+        vehicleRepository = mock(VehicleRepository.class);
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        cache = new ReferenceDataCache(vehicleRepository, parkingLotRepository, 1000, Duration.ofMinutes(10));
+    }
+
+    // =======================
+    // Tests for findVehicle()
+    // =======================
+    @Test
+    void findVehicle_shouldLoadFromDatabaseOnce() {
+        // Given
+        Vehicle vehicle = Vehicle.builder()
+                .licensePlate("ABC-123")
+                .type(VehicleType.CAR)
+                .ownerName("John Doe")
+                .build();
+
+        when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.of(vehicle));
+
+        // When
+        Optional<VehicleInfo> first = cache.findVehicle("ABC-123");
+        Optional<VehicleInfo> second = cache.findVehicle("ABC-123");
+
+        // Then
+        assertEquals(new VehicleInfo("ABC-123", VehicleType.CAR, "John Doe"), first.orElseThrow());
+        assertEquals(first, second);
+        verify(vehicleRepository, times(1)).findById("ABC-123");
+    }
+
+    @Test
+    void findVehicle_shouldNotCacheMisses() {
+        // Given
+        when(vehicleRepository.findById("ABC-123")).thenReturn(Optional.empty());
+
+        // When
+        cache.findVehicle("ABC-123");
+        Optional<VehicleInfo> result = cache.findVehicle("ABC-123");
+
+        // Then
+        assertTrue(result.isEmpty());
+        verify(vehicleRepository, times(2)).findById("ABC-123");
+    }
+
+    // =======================
+    // Tests for findLot()
+    // =======================
+    @Test
+    void findLot_shouldLoadFromDatabaseOnce() {
+        // Given
+        ParkingLot lot = ParkingLot.builder()
+                .lotId("LOT1")
+                .location("Main Street")
+                .capacity(10)
+                .occupiedSpaces(3)
+                .build();
+
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(lot));
+
+        // When
+        cache.findLot("LOT1");
+        Optional<LotInfo> result = cache.findLot("LOT1");
+
+        // Then
+        assertEquals(new LotInfo("LOT1", "Main Street", 10), result.orElseThrow());
+        verify(parkingLotRepository, times(1)).findById("LOT1");
+    }
+
+    // =======================
+    // Tests for getStats()
+    // =======================
+    @Test
+    void getStats_shouldReportHitsAndMisses() {
+        // Given
+        when(parkingLotRepository.findById("LOT1")).thenReturn(Optional.of(
+                ParkingLot.builder().lotId("LOT1").location("Main Street").capacity(10).build()));
+
+        cache.findLot("LOT1");
+        cache.findLot("LOT1");
+        cache.findLot("LOT1");
+
+        // When
+        List<CacheStatsDto> stats = cache.getStats();
+
+        // Then
+        CacheStatsDto lots = stats.stream().filter(s -> s.name().equals("parkingLots")).findFirst().orElseThrow();
+        assertEquals(1, lots.size());
+        assertEquals(2, lots.hitCount());
+        assertEquals(1, lots.missCount());
+        assertEquals(0, lots.evictionCount());
+    }
+
+}
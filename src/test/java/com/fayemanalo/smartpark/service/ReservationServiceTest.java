@@ -0,0 +1,317 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.dto.LotAvailabilityDto;
+import com.fayemanalo.smartpark.dto.ReservationDto;
+import com.fayemanalo.smartpark.dto.ReservationRequestDto;
+import com.fayemanalo.smartpark.mapper.ReservationMapper;
+import com.fayemanalo.smartpark.model.BookedReservation;
+import com.fayemanalo.smartpark.model.CapacityPool;
+import com.fayemanalo.smartpark.model.ParkingLot;
+import com.fayemanalo.smartpark.model.Reservation;
+import com.fayemanalo.smartpark.model.ReservationStatus;
+import com.fayemanalo.smartpark.model.Vehicle;
+import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.repository.ParkingLotRepository;
+import com.fayemanalo.smartpark.repository.ReservationRepository;
+import com.fayemanalo.smartpark.repository.VehicleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ReservationServiceTest {
+
+    // A slot-aligned time well after now, so nothing below starts in the current slot
+    private static final LocalDateTime T = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.HOURS);
+
+    private ReservationRepository reservationRepository;
+    private VehicleRepository vehicleRepository;
+    private ParkingLotRepository parkingLotRepository;
+    private LotOccupancyTracker lotOccupancyTracker;
+    private ReservationService service;
+
+    @BeforeEach
+    void setUp() {
+        reservationRepository = mock(ReservationRepository.class);
+        vehicleRepository = mock(VehicleRepository.class);
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        lotOccupancyTracker = new LotOccupancyTracker(parkingLotRepository, Optional.empty());
+        service = new ReservationService(reservationRepository, vehicleRepository, parkingLotRepository,
+                new ReservationMapper(),
+                new ReferenceDataCache(vehicleRepository, parkingLotRepository, 1000, Duration.ofMinutes(10)),
+                lotOccupancyTracker, Duration.ofMinutes(15), Duration.ofDays(30));
+
+        AtomicLong ids = new AtomicLong();
+        when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> {
+            Reservation reservation = invocation.getArgument(0);
+            reservation.setId(ids.incrementAndGet());
+            return reservation;
+        });
+        givenLot("LOT1", 2);
+        givenVehicle("AAA-111");
+        givenVehicle("BBB-222");
+        givenVehicle("CCC-333");
+    }
+
+    private void givenLot(String lotId, int capacity) {
+        ParkingLot lot = ParkingLot.builder().lotId(lotId).location("Main Street").capacity(capacity).occupiedSpaces(0).build();
+        when(parkingLotRepository.findById(lotId)).thenReturn(Optional.of(lot));
+        when(parkingLotRepository.getReferenceById(lotId)).thenReturn(lot);
+    }
+
+    private void givenVehicle(String licensePlate) {
+        Vehicle vehicle = Vehicle.builder().licensePlate(licensePlate).type(VehicleType.CAR).ownerName("Owner").build();
+        when(vehicleRepository.findById(licensePlate)).thenReturn(Optional.of(vehicle));
+        when(vehicleRepository.getReferenceById(licensePlate)).thenReturn(vehicle);
+    }
+
+    private ReservationDto book(String licensePlate, LocalDateTime start, LocalDateTime end) {
+        return service.book(new ReservationRequestDto(licensePlate, "LOT1", start, end));
+    }
+
+    // =======================
+    // Tests for book()
+    // =======================
+    @Test
+    void book_shouldSaveReservation_andHoldItsSpace() {
+        // When
+        ReservationDto result = book("AAA-111", T, T.plusHours(2));
+
+        // Then
+        assertEquals(1L, result.id());
+        assertEquals("AAA-111", result.licensePlate());
+        assertEquals(ReservationStatus.BOOKED, result.status());
+        assertEquals(1, service.getAvailability("LOT1", T.plusHours(1), T.plusHours(3)).reservedSpaces());
+        assertEquals(0, service.getAvailability("LOT1", T.plusHours(2), T.plusHours(3)).reservedSpaces());
+    }
+
+    @Test
+    void book_shouldThrowBadRequest_whenAnySlotIsFullyBooked() {
+        // Given: both spaces are held from T+1h to T+2h only
+        book("AAA-111", T, T.plusHours(2));
+        book("BBB-222", T.plusHours(1), T.plusHours(3));
+
+        // When
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> book("CCC-333", T.plusMinutes(90), T.plusHours(4)));
+
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        assertEquals("Parking lot has no space left to book at that time", ex.getReason());
+        // Ranges next to the full one can still be booked
+        assertEquals(ReservationStatus.BOOKED, book("CCC-333", T.plusHours(2), T.plusHours(4)).status());
+    }
+
+    @Test
+    void book_shouldThrowBadRequest_whenVehicleHasOverlappingReservation() {
+        // Given
+        book("AAA-111", T, T.plusHours(2));
+
+        // When
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> book("AAA-111", T.plusHours(1), T.plusHours(3)));
+
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        assertEquals("Vehicle already has a reservation in this parking lot at that time", ex.getReason());
+    }
+
+    @Test
+    void book_shouldThrowBadRequest_whenVehicleTypeHasItsOwnPool() {
+        // Given: LOT2 has two shared spaces and a motorcycle bay
+        ParkingLot lot = ParkingLot.builder().lotId("LOT2").location("Main Street").capacity(3).occupiedSpaces(0).build();
+        lot.getCapacityPools().put(VehicleType.MOTORCYCLE, new CapacityPool(1, 0));
+        when(parkingLotRepository.findById("LOT2")).thenReturn(Optional.of(lot));
+        Vehicle motorcycle = Vehicle.builder().licensePlate("MOTO-1").type(VehicleType.MOTORCYCLE).ownerName("Owner").build();
+        when(vehicleRepository.findById("MOTO-1")).thenReturn(Optional.of(motorcycle));
+
+        // When
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.book(new ReservationRequestDto("MOTO-1", "LOT2", T, T.plusHours(2))));
+
+        // Then
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        assertEquals("Vehicles of type MOTORCYCLE park in their own spaces and cannot be booked ahead", ex.getReason());
+        verify(reservationRepository, never()).save(any());
+        assertEquals(0, service.getAvailability("LOT2", T, T.plusHours(2)).reservedSpaces());
+    }
+
+    @Test
+    void book_shouldThrowBadRequest_whenRangeIsInvalid() {
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThrows(ResponseStatusException.class, () -> book("AAA-111", now.minusHours(1), now.plusHours(1)));
+        assertThrows(ResponseStatusException.class, () -> book("AAA-111", T, T));
+        assertThrows(ResponseStatusException.class, () -> book("AAA-111", T, now.plusDays(31)));
+        verify(reservationRepository, never()).save(any());
+    }
+
+    @Test
+    void book_shouldThrowNotFound_whenVehicleOrLotDoesNotExist() {
+        when(vehicleRepository.findById("XXX-999")).thenReturn(Optional.empty());
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> book("XXX-999", T, T.plusHours(1)));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+
+        ex = assertThrows(ResponseStatusException.class,
+                () -> service.book(new ReservationRequestDto("AAA-111", "LOT9", T, T.plusHours(1))));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+    }
+
+    // =======================
+    // Tests for cancel()
+    // =======================
+    @Test
+    void cancel_shouldReleaseSpace() {
+        // Given
+        book("AAA-111", T, T.plusHours(2));
+        Reservation reservation = Reservation.builder()
+                .id(1L)
+                .vehicle(vehicleRepository.getReferenceById("AAA-111"))
+                .parkingLot(parkingLotRepository.getReferenceById("LOT1"))
+                .startTime(T)
+                .endTime(T.plusHours(2))
+                .status(ReservationStatus.BOOKED)
+                .build();
+        when(reservationRepository.findById(1L)).thenReturn(Optional.of(reservation));
+
+        // When
+        ReservationDto result = service.cancel(1L);
+
+        // Then
+        assertEquals(ReservationStatus.CANCELLED, result.status());
+        assertEquals(0, service.getAvailability("LOT1", T, T.plusHours(2)).reservedSpaces());
+
+        // And it cannot be cancelled twice
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> service.cancel(1L));
+        assertEquals("Reservation is already cancelled", ex.getReason());
+    }
+
+    @Test
+    void cancel_shouldThrowNotFound_whenReservationDoesNotExist() {
+        when(reservationRepository.findById(1L)).thenReturn(Optional.empty());
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> service.cancel(1L));
+
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+    }
+
+    // =======================
+    // Tests for admit()
+    // =======================
+    @Test
+    void admit_shouldKeepHeldSpacesFree_forVehiclesWithoutReservation() {
+        // Given: one of the two spaces is held
+        book("AAA-111", T, T.plusHours(2));
+
+        // When / Then
+        assertTrue(service.admit("LOT1", "BBB-222", T, held -> lotOccupancyTracker.tryReserve("LOT1", null, held)));
+        assertFalse(service.admit("LOT1", "CCC-333", T, held -> lotOccupancyTracker.tryReserve("LOT1", null, held)));
+        // The vehicle with the reservation still gets its space
+        assertTrue(service.admit("LOT1", "AAA-111", T.plusMinutes(5), held -> lotOccupancyTracker.tryReserve("LOT1", null, held)));
+        assertEquals(2, lotOccupancyTracker.getOccupiedSpaces("LOT1"));
+    }
+
+    @Test
+    void admit_shouldFulfillReservation_andReleaseItsSlots() {
+        // Given
+        book("AAA-111", T, T.plusHours(2));
+
+        // When: arriving up to one slot early
+        boolean admitted = service.admit("LOT1", "AAA-111", T.minusMinutes(10),
+                held -> lotOccupancyTracker.tryReserve("LOT1", null, held));
+
+        // Then
+        assertTrue(admitted);
+        verify(reservationRepository).updateStatus(1L, ReservationStatus.FULFILLED);
+        assertEquals(0, service.getAvailability("LOT1", T, T.plusHours(2)).reservedSpaces());
+    }
+
+    @Test
+    void admit_shouldGiveReservationBack_whenDatabaseGuardRejectsOrIsBusy() {
+        // Given: the database decides whether the lot is full
+        LotCapacityGuard guard = mock(LotCapacityGuard.class);
+        lotOccupancyTracker = new LotOccupancyTracker(parkingLotRepository, Optional.of(guard));
+        service = new ReservationService(reservationRepository, vehicleRepository, parkingLotRepository,
+                new ReservationMapper(),
+                new ReferenceDataCache(vehicleRepository, parkingLotRepository, 1000, Duration.ofMinutes(10)),
+                lotOccupancyTracker, Duration.ofMinutes(15), Duration.ofDays(30));
+        book("AAA-111", T, T.plusHours(2));
+        when(guard.tryTake("LOT1", null, 2))
+                .thenReturn(false)
+                .thenThrow(new ResponseStatusException(HttpStatus.CONFLICT, "Parking lot is busy, please try again"))
+                .thenReturn(true);
+        IntPredicate reserveSpace = held -> lotOccupancyTracker.tryReserve("LOT1", null, held);
+
+        // When / Then: the reservation still holds its space after each failed attempt
+        assertFalse(service.admit("LOT1", "AAA-111", T, reserveSpace));
+        assertEquals(1, service.getAvailability("LOT1", T, T.plusHours(2)).reservedSpaces());
+        assertThrows(ResponseStatusException.class, () -> service.admit("LOT1", "AAA-111", T, reserveSpace));
+        assertEquals(1, service.getAvailability("LOT1", T, T.plusHours(2)).reservedSpaces());
+        assertTrue(service.admit("LOT1", "AAA-111", T, reserveSpace));
+        assertEquals(0, service.getAvailability("LOT1", T, T.plusHours(2)).reservedSpaces());
+        verify(reservationRepository, times(1)).updateStatus(1L, ReservationStatus.FULFILLED);
+    }
+
+    @Test
+    void admit_shouldNotTouchReservations_ofLotsWithoutAny() {
+        assertTrue(service.admit("LOT2", "AAA-111", T, held -> held == 0));
+        verifyNoInteractions(reservationRepository);
+    }
+
+    // =======================
+    // Tests for getAvailability() / load()
+    // =======================
+    @Test
+    void getAvailability_shouldCountOccupiedSpaces_onlyForTheCurrentSlot() {
+        // Given
+        lotOccupancyTracker.tryReserve("LOT1");
+        book("AAA-111", T, T.plusHours(1));
+
+        // When
+        LotAvailabilityDto now = service.getAvailability("LOT1", null, null);
+        LotAvailabilityDto later = service.getAvailability("LOT1", T, T.plusHours(1));
+
+        // Then
+        assertEquals(new LotAvailabilityDto("LOT1", later.from(), later.to(), 2, 1, 0, 1), later);
+        assertEquals(1, now.occupiedSpaces());
+        assertEquals(0, now.reservedSpaces());
+        assertEquals(1, now.availableSpaces());
+    }
+
+    @Test
+    void getAvailability_shouldThrowBadRequest_whenRangeIsEmpty() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.getAvailability("LOT1", T, T.minusHours(1)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
+
+    @Test
+    void load_shouldRestoreBookedReservations() {
+        // Given
+        when(reservationRepository.findBookedEndingAfter(any())).thenReturn(List.of(
+                new BookedReservation(1L, "AAA-111", "LOT1", T, T.plusHours(1)),
+                new BookedReservation(2L, "BBB-222", "LOT1", T, T.plusHours(1))));
+
+        // When
+        service.load();
+
+        // Then
+        assertEquals(0, service.getAvailability("LOT1", T, T.plusHours(1)).availableSpaces());
+        assertThrows(ResponseStatusException.class, () -> book("CCC-333", T, T.plusMinutes(15)));
+    }
+}
@@ -0,0 +1,162 @@
+package com.fayemanalo.smartpark.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    static final int CALLERS = 8;
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    // =======================
+    // Tests for execute()
+    // =======================
+    @Test
+    void execute_shouldShareOneLoad_betweenConcurrentCalls() throws Exception {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<String> loader = () -> {
+            loads.incrementAndGet();
+            entered.countDown();
+            await(release);
+            return "status";
+        };
+
+        // When
+        List<String> results = executeConcurrently(() -> singleFlight.execute("LOT1", loader), entered, release);
+
+        // Then
+        assertEquals(1, loads.get());
+        assertEquals(CALLERS, results.size());
+        results.forEach(result -> assertEquals("status", result));
+    }
+
+    @Test
+    void execute_shouldShareException_betweenConcurrentCalls() throws Exception {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<String> loader = () -> {
+            loads.incrementAndGet();
+            entered.countDown();
+            await(release);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Parking lot not found");
+        };
+
+        // When
+        List<String> results = executeConcurrently(() -> {
+            try {
+                return singleFlight.execute("NOPE", loader);
+            } catch (ResponseStatusException ex) {
+                return ex.getReason();
+            }
+        }, entered, release);
+
+        // Then
+        assertEquals(1, loads.get());
+        results.forEach(result -> assertEquals("Parking lot not found", result));
+    }
+
+    @Test
+    void execute_shouldLoadAgain_afterPreviousCallFinished() {
+        AtomicInteger loads = new AtomicInteger();
+
+        singleFlight.execute("LOT1", () -> "first " + loads.incrementAndGet());
+        String result = singleFlight.execute("LOT1", () -> "second " + loads.incrementAndGet());
+
+        assertEquals("second 2", result);
+    }
+
+    @Test
+    void execute_shouldLoadAgain_afterPreviousCallFailed() {
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("LOT1", () -> {
+            throw new IllegalStateException();
+        }));
+
+        assertEquals("status", singleFlight.execute("LOT1", () -> "status"));
+    }
+
+    @Test
+    void execute_shouldNotShareLoads_betweenKeys() {
+        // Given: a load of LOT1 is still running when LOT2 is asked for
+        String result = singleFlight.execute("LOT1",
+                () -> "LOT1 then " + singleFlight.execute("LOT2", () -> "LOT2"));
+
+        // Then
+        assertEquals("LOT1 then LOT2", result);
+    }
+
+    // The first caller enters the loader and waits there until every other caller waits for it; also used by
+    // the tests of the services that coalesce their reads
+    static <T> List<T> executeConcurrently(Supplier<T> call, CountDownLatch entered,
+                                           CountDownLatch release) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            futures.add(executor.submit(call::get));
+            assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+            List<Thread> followers = new ArrayList<>();
+            for (int i = 1; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> {
+                    synchronized (followers) {
+                        followers.add(Thread.currentThread());
+                    }
+                    return call.get();
+                }));
+            }
+            awaitWaiting(followers, CALLERS - 1);
+            release.countDown();
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitWaiting(List<Thread> threads, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            synchronized (threads) {
+                if (threads.size() == count
+                        && threads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING)) {
+                    return;
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                fail("Callers did not wait for the running load");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.fayemanalo.smartpark.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlotSegmentTreeTest {
+
+    // =======================
+    // Tests for add() / max()
+    // =======================
+    @Test
+    void max_shouldReturnLargestCountInRange() {
+        // Given
+        SlotSegmentTree tree = new SlotSegmentTree(10);
+
+        // When
+        tree.add(0, 4, 1);
+        tree.add(2, 6, 1);
+        tree.add(3, 4, -1);
+
+        // Then
+        assertEquals(2, tree.max(0, 10));
+        assertEquals(1, tree.max(3, 4));
+        assertEquals(1, tree.max(4, 6));
+        assertEquals(0, tree.max(6, 10));
+        assertEquals(0, tree.max(5, 5));
+    }
+
+    @Test
+    void add_shouldIgnoreSlotsOutsideTheTree() {
+        // Given
+        SlotSegmentTree tree = new SlotSegmentTree(4);
+
+        // When
+        tree.add(-5, 1, 1);
+        tree.add(3, 100, 2);
+
+        // Then
+        assertEquals(4, tree.size());
+        assertEquals(1, tree.max(0, 1));
+        assertEquals(0, tree.max(1, 3));
+        assertEquals(2, tree.max(-1, 100));
+    }
+
+    @Test
+    void max_shouldMatchNaiveCounts_forRandomRanges() {
+        // Given
+        Random random = new Random(7);
+        SlotSegmentTree tree = new SlotSegmentTree(100);
+        int[] counts = new int[tree.size()];
+
+        for (int i = 0; i < 1000; i++) {
+            int from = random.nextInt(tree.size());
+            int to = from + random.nextInt(tree.size() - from) + 1;
+            if (random.nextBoolean()) {
+                // When
+                int delta = random.nextInt(5) - 2;
+                tree.add(from, to, delta);
+                for (int slot = from; slot < to; slot++) {
+                    counts[slot] += delta;
+                }
+            } else {
+                // Then
+                int expected = Integer.MIN_VALUE;
+                for (int slot = from; slot < to; slot++) {
+                    expected = Math.max(expected, counts[slot]);
+                }
+                assertEquals(expected, tree.max(from, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.fayemanalo.smartpark.service;
+
+import com.fayemanalo.smartpark.model.VehicleType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TariffServiceTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2025, 11, 8, 0, 0);
+
+    // 2.50 per hour in the day, 1.00 at night, at most 20.00 per 24 hours
+    private final Tariff tariff = Tariff.of("07:00=2.50, 19:00=1.00", new BigDecimal("20.00"));
+
+    private static TariffProperties.Entry entry(String lotId, VehicleType vehicleType, String bands) {
+        return new TariffProperties.Entry(lotId, vehicleType, bands, null);
+    }
+
+    // =======================
+    // Tests for Tariff.fee()
+    // =======================
+    @Test
+    void fee_shouldChargeEachMinuteAtTheRateOfItsBand() {
+        // 30 minutes at 2.50 and 30 minutes at 1.00
+        assertEquals(new BigDecimal("1.75"), tariff.fee(DAY.withHour(18).withMinute(30), DAY.withHour(19).withMinute(30)));
+        // Before the first band of the day, the last band of the previous day applies
+        assertEquals(new BigDecimal("1.00"), tariff.fee(DAY.minusMinutes(30), DAY.plusMinutes(30)));
+    }
+
+    @Test
+    void fee_shouldChargeStartedMinutes_andNothingForEmptyStays() {
+        // One started minute at 2.50 per hour, rounded to the cent
+        assertEquals(new BigDecimal("0.04"), tariff.fee(DAY.withHour(10), DAY.withHour(10).withSecond(1)));
+        assertEquals(new BigDecimal("0.00"), tariff.fee(DAY.withHour(10), DAY.withHour(10)));
+        assertEquals(new BigDecimal("0.00"), tariff.fee(DAY.withHour(10), DAY.withHour(9)));
+    }
+
+    @Test
+    void fee_shouldCapEach24HourPeriodFromCheckIn() {
+        // Given: a full day costs 42.00 uncapped
+        LocalDateTime checkIn = DAY.withHour(7);
+
+        // When: three full days and two hours
+        BigDecimal fee = tariff.fee(checkIn, checkIn.plusDays(3).plusHours(2));
+
+        // Then
+        assertEquals(new BigDecimal("65.00"), fee);
+        assertEquals(new BigDecimal("42.00"), Tariff.of("07:00=2.50, 19:00=1.00", null).fee(checkIn, checkIn.plusDays(1)));
+    }
+
+    @Test
+    void of_shouldRejectInvalidBands() {
+        assertThrows(IllegalArgumentException.class, () -> Tariff.of("", null));
+        assertThrows(IllegalArgumentException.class, () -> Tariff.of("07:00", null));
+        assertThrows(IllegalArgumentException.class, () -> Tariff.of("7am=2.50", null));
+        assertThrows(IllegalArgumentException.class, () -> Tariff.of("07:00=2.50, 07:00=1.00", null));
+        assertThrows(IllegalArgumentException.class, () -> Tariff.of("07:00=2.505", null));
+        assertThrows(IllegalArgumentException.class, () -> Tariff.of("07:00=-1.00", null));
+    }
+
+    // =======================
+    // Tests for findTariff() / calculateFee()
+    // =======================
+    @Test
+    void findTariff_shouldPreferTheMostSpecificMatch() {
+        // Given
+        TariffService service = new TariffService(new TariffProperties(List.of(
+                entry(null, null, "00:00=1.00"),
+                entry(null, VehicleType.TRUCK, "00:00=2.00"),
+                entry("LOT1", null, "00:00=3.00"),
+                entry("LOT1", VehicleType.TRUCK, "00:00=4.00"))));
+        LocalDateTime checkOut = DAY.plusHours(1);
+
+        // Then
+        assertEquals(Optional.of(new BigDecimal("4.00")), service.calculateFee("LOT1", VehicleType.TRUCK, DAY, checkOut));
+        assertEquals(Optional.of(new BigDecimal("3.00")), service.calculateFee("LOT1", VehicleType.CAR, DAY, checkOut));
+        assertEquals(Optional.of(new BigDecimal("2.00")), service.calculateFee("LOT2", VehicleType.TRUCK, DAY, checkOut));
+        assertEquals(Optional.of(new BigDecimal("1.00")), service.calculateFee("LOT2", null, DAY, checkOut));
+    }
+
+    @Test
+    void calculateFee_shouldReturnEmpty_whenNoTariffApplies() {
+        TariffService service = new TariffService(new TariffProperties(List.of(entry("LOT1", null, "00:00=1.00"))));
+
+        assertTrue(service.calculateFee("LOT2", VehicleType.CAR, DAY, DAY.plusHours(1)).isEmpty());
+    }
+
+    @Test
+    void constructor_shouldRejectDuplicateOrInvalidTariffs() {
+        assertThrows(IllegalArgumentException.class, () -> new TariffService(new TariffProperties(List.of(
+                entry("LOT1", null, "00:00=1.00"), entry("LOT1", null, "00:00=2.00")))));
+        assertThrows(IllegalArgumentException.class, () -> new TariffService(new TariffProperties(List.of(
+                entry("LOT1", null, null)))));
+    }
+}
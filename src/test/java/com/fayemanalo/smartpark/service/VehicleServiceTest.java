@@ -1,14 +1,21 @@
 package com.fayemanalo.smartpark.service;
 
 import com.fayemanalo.smartpark.dto.VehicleDto;
+import com.fayemanalo.smartpark.dto.VehicleLocationDto;
 import com.fayemanalo.smartpark.mapper.VehicleMapper;
+import com.fayemanalo.smartpark.model.ActiveSession;
 import com.fayemanalo.smartpark.model.Vehicle;
 import com.fayemanalo.smartpark.model.VehicleType;
+import com.fayemanalo.smartpark.repository.ParkingRecordRepository;
 import com.fayemanalo.smartpark.repository.VehicleRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDateTime;
+import java.util.Optional;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -16,13 +23,15 @@ class VehicleServiceTest {
 
     private VehicleRepository vehicleRepository;
     private VehicleMapper vehicleMapper;
+    private ActiveSessionIndex activeSessionIndex;
     private VehicleService vehicleService;
 
     @BeforeEach
     void setUp() {
         vehicleRepository = mock(VehicleRepository.class);
         vehicleMapper = mock(VehicleMapper.class);
-        vehicleService = new VehicleService(vehicleRepository, vehicleMapper);
+        activeSessionIndex = new ActiveSessionIndex(mock(ParkingRecordRepository.class), Optional.empty());
+        vehicleService = new VehicleService(vehicleRepository, vehicleMapper, activeSessionIndex);
     }
 
     @Test
@@ -83,4 +92,34 @@ class VehicleServiceTest {
         verify(vehicleMapper, never()).toDto(any());
     }
 
-}
\ No newline at end of file
+    // =======================
+    // Tests for getLocation()
+    // =======================
+    @Test
+    void getLocation_shouldReturnLot_whenVehicleIsParked() {
+        // Given
+        LocalDateTime checkInTime = LocalDateTime.now();
+        activeSessionIndex.claim(new ActiveSession("ABC-123", "LOT1", checkInTime, 1L));
+
+        // When
+        VehicleLocationDto location = vehicleService.getLocation("ABC-123");
+
+        // Then
+        assertEquals("ABC-123", location.licensePlate());
+        assertEquals("LOT1", location.lotId());
+        assertEquals(checkInTime, location.checkInTime());
+        verifyNoInteractions(vehicleRepository);
+    }
+
+    @Test
+    void getLocation_shouldThrowException_whenVehicleIsNotParked() {
+        // When
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> vehicleService.getLocation("ABC-123"));
+
+        // Then
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        assertEquals("Vehicle is not currently parked", exception.getReason());
+    }
+
+}